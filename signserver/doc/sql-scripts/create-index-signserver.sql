@@ -11,6 +11,12 @@ CREATE INDEX auditrecorddata_idx3 ON AuditRecordData (timeStamp);
 -- ordered by time stamp.
 CREATE INDEX archivedata_idx3 ON ArchiveData (time);
 
+-- Paging through the archive using continuation tokens (AdminCLI archive query
+-- -paged and archive export) seeks on time and uniqueId, usually for one signer.
+-- Paging over all signers uses archivedata_idx3. Only one index is added as
+-- ArchiveData is written for every archived request and response.
+CREATE INDEX archivedata_idx4 ON ArchiveData (signerid, time, uniqueId);
+
 -- Selecting by signerType is done by the services loader
 CREATE INDEX signerconfigdata_idx2 ON signerconfigdata (signerType);
 
@@ -28,6 +28,8 @@ public class ArchiveFields {
     /** Option strings */
     public static final String QUERY = "query";
     public static final String FROM = "from";
+    public static final String AFTER = "after";
+    public static final String PAGED = "paged";
     public static final String LIMIT = "limit";
     public static final String CRITERIA = "criteria";
     public static final String HEADER = "header";
@@ -0,0 +1,90 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.admin.cli.defaultimpl;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.signserver.cli.CommandLineInterface;
+import org.signserver.cli.spi.CommandFailureException;
+import org.signserver.cli.spi.IllegalCommandArgumentsException;
+import org.signserver.cli.spi.UnexpectedCommandFailureException;
+import org.signserver.common.InvalidWorkerIdException;
+import org.signserver.common.ProcessingMetrics;
+import org.signserver.common.WorkerIdentifier;
+
+/**
+ * Shows the time spent by a worker in each phase of processing requests and
+ * optionally resets the metrics.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class GetProcessingMetricsCommand extends AbstractAdminCommand {
+
+    /** The command line options. */
+    private static final Options OPTIONS;
+
+    private static final String USAGE = "Usage: signserver getprocessingmetrics <worker id | worker name> [-reset]\n"
+            + "Example 1: signserver getprocessingmetrics mySigner\n"
+            + "Example 2: signserver getprocessingmetrics 71 -reset";
+
+    private static final String RESET = "reset";
+
+    static {
+        OPTIONS = new Options();
+        OPTIONS.addOption(RESET, false, "Start over recording after the metrics have been shown");
+    }
+
+    @Override
+    public String getDescription() {
+        return "Shows latency statistics for each phase of processing requests by a worker";
+    }
+
+    @Override
+    public String getUsages() {
+        return USAGE;
+    }
+
+    @Override
+    public int execute(String... args) throws IllegalCommandArgumentsException, CommandFailureException, UnexpectedCommandFailureException {
+        final CommandLine line;
+        try {
+            line = new GnuParser().parse(OPTIONS, args);
+        } catch (ParseException ex) {
+            throw new IllegalCommandArgumentsException(ex.getMessage());
+        }
+        if (line.getArgs().length != 1) {
+            throw new IllegalCommandArgumentsException(USAGE);
+        }
+
+        try {
+            final WorkerIdentifier wi = WorkerIdentifier.createFromIdOrName(line.getArgs()[0]);
+            final ProcessingMetrics metrics = getWorkerSession().getProcessingMetrics(wi);
+            metrics.display(getOutputStream());
+
+            if (line.hasOption(RESET)) {
+                getWorkerSession().resetProcessingMetrics(wi);
+                getOutputStream().println();
+                getOutputStream().println("Processing metrics reset");
+            }
+            return CommandLineInterface.RETURN_SUCCESS;
+        } catch (InvalidWorkerIdException ex) {
+            getErrorStream().println(ex.getMessage());
+            return CommandLineInterface.RETURN_ERROR;
+        } catch (Exception e) {
+            throw new UnexpectedCommandFailureException(e);
+        }
+    }
+}
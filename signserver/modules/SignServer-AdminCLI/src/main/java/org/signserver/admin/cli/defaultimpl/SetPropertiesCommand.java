@@ -14,6 +14,10 @@ package org.signserver.admin.cli.defaultimpl;
 
 import java.io.FileInputStream;
 import java.util.Properties;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
 import org.signserver.cli.spi.CommandFailureException;
 import org.signserver.cli.spi.IllegalCommandArgumentsException;
 import org.signserver.cli.spi.UnexpectedCommandFailureException;
@@ -27,6 +31,18 @@ import org.signserver.cli.spi.UnexpectedCommandFailureException;
  */
 public class SetPropertiesCommand extends AbstractAdminCommand {
 
+    /** The command line options. */
+    private static final Options OPTIONS;
+
+    private static final String NORELOAD = "noreload";
+    private static final String THREADS = "threads";
+
+    static {
+        OPTIONS = new Options();
+        OPTIONS.addOption(NORELOAD, false, "Do not reload the configuration of the updated workers when done");
+        OPTIONS.addOption(THREADS, true, "Number of workers to update in parallel (default " + SetPropertiesHelper.DEFAULT_THREADS + ")");
+    }
+
     @Override
     public String getDescription() {
         return "Sets properties from a given property file";
@@ -34,23 +50,44 @@ public class SetPropertiesCommand extends AbstractAdminCommand {
 
     @Override
     public String getUsages() {
-        return "Usage: signserver setproperties <propertyfile>\n"
+        return "Usage: signserver setproperties [-noreload] [-threads <number>] <propertyfile>\n"
                     + "Example 1: signserver setproperties mysettings.properties\n"
-                    + "Example 2: signserver setproperties -host node3.someorg.com mysettings.properties\n\n";
+                    + "Example 2: signserver setproperties -host node3.someorg.com mysettings.properties\n"
+                    + "Example 3: signserver setproperties -noreload mysettings.properties\n\n";
     }
     
     @Override
     public int execute(String... args) throws IllegalCommandArgumentsException, CommandFailureException, UnexpectedCommandFailureException {
-        if (args.length != 1) {
+        final CommandLine line;
+        try {
+            line = new GnuParser().parse(OPTIONS, args);
+        } catch (ParseException ex) {
+            throw new IllegalCommandArgumentsException(ex.getMessage());
+        }
+        if (line.getArgs().length != 1) {
             throw new IllegalCommandArgumentsException("Wrong number of arguments");
         }
+        final String file = line.getArgs()[0];
+        int threads = SetPropertiesHelper.DEFAULT_THREADS;
+        if (line.hasOption(THREADS)) {
+            try {
+                threads = Integer.parseInt(line.getOptionValue(THREADS).trim());
+            } catch (NumberFormatException ex) {
+                threads = 0;
+            }
+            if (threads < 1) {
+                throw new IllegalCommandArgumentsException("Illegal value for -" + THREADS + ": " + line.getOptionValue(THREADS));
+            }
+        }
         try {
 
             SetPropertiesHelper helper =
                     new SetPropertiesHelper(getOutputStream(), getConfiguration());
-            Properties properties = loadProperties(args[0]);
+            helper.setThreads(threads);
+            helper.setReload(!line.hasOption(NORELOAD));
+            Properties properties = loadProperties(file);
 
-            getOutputStream().println("Configuring properties as defined in the file : " + args[0]);
+            getOutputStream().println("Configuring properties as defined in the file : " + file);
             helper.process(properties);
 
             this.getOutputStream().println("\n\n");
@@ -16,6 +16,10 @@ import org.bouncycastle.util.encoders.Base64;
 import java.io.PrintStream;
 import java.rmi.RemoteException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.lang.StringUtils;
 import org.signserver.cli.spi.CommandFailureException;
 import org.signserver.common.AuthorizedClient;
@@ -32,6 +36,14 @@ import static org.signserver.common.util.PropertiesConstants.*;
  * Helper class containing methods to parse a set properties file 
  * used from different locations.
  *
+ * Worker properties are collected per worker and applied with one
+ * updateWorkerProperties call for each worker at the end, with different
+ * workers updated in parallel. Properties with special handling on the
+ * server side are set one by one right after the bulk update of the worker,
+ * followed by the operations that can not be part of the bulk update (i.e.
+ * certificate uploads). When requested the updated workers are reloaded at
+ * the end.
+ *
  * TODO: Refactor: This feature could be interesting to reuse in other parts of 
  * SignServer as well. Move to SignServer-Common or to a session bean.
  * 
@@ -42,12 +54,18 @@ public class SetPropertiesHelper {
 
     private HashMap<String, Integer> genIds = new HashMap<>();
     private PrintStream out;
-    private AdminCommandHelper helper = new AdminCommandHelper();
+    private final AdminCommandHelper helper;
     private List<Integer> workerDeclarations = new ArrayList<>();
     private final Map<String, AuthClientEntry> addAuthClientGen2EntryMap = new HashMap<>();
     private final Map<String, AuthClientEntry> removeAuthClientGen2EntryMap = new HashMap<>();
     private List<AuthClientEntry> addAuthClientGen2Entries = new ArrayList<>();
     private List<AuthClientEntry> removeAuthClientGen2Entries = new ArrayList<>();
+    private final Map<Integer, WorkerUpdate> workerUpdates = new LinkedHashMap<>();
+    private int threads = DEFAULT_THREADS;
+    private boolean reload;
+
+    /** Default number of workers to update in parallel. */
+    public static final int DEFAULT_THREADS = 4;
 
     protected static final String WORKER_PROPERTY_MASK_PLACEHOLDER = "_MASKED_";
     private static final Set<String> DEFAULT_MASKED_PROPERTIES;
@@ -62,8 +80,15 @@ public class SetPropertiesHelper {
     
     public SetPropertiesHelper(final PrintStream out,
                                final Properties configuration) {
+        this(out, configuration, new AdminCommandHelper());
+    }
+
+    SetPropertiesHelper(final PrintStream out,
+                        final Properties configuration,
+                        final AdminCommandHelper helper) {
         this.out = out;
         this.configuration = configuration;
+        this.helper = helper;
     }
 
     public void process(Properties properties) throws RemoteException, Exception {
@@ -79,9 +104,97 @@ public class SetPropertiesHelper {
         // Check if all Gen2 auth client rules valid
         checkAllGen2AuthClientRulesValid(addAuthClientGen2EntryMap, true);
         checkAllGen2AuthClientRulesValid(removeAuthClientGen2EntryMap, false);
-        
+
+        // Store the collected worker properties
+        applyWorkerUpdates();
+
         // Process all Gen2 auth client rules
         processGen2AuthClientRules();
+
+        if (reload) {
+            for (final int workerId : workerUpdates.keySet()) {
+                out.println("Reloading worker " + workerId);
+                helper.getWorkerSession().reloadConfiguration(workerId);
+            }
+        }
+    }
+
+    /**
+     * @param threads number of workers to update in parallel
+     */
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param reload if the configuration of the updated workers should be
+     * reloaded after the properties have been set
+     */
+    public void setReload(final boolean reload) {
+        this.reload = reload;
+    }
+
+    private WorkerUpdate getWorkerUpdate(final int workerId) {
+        return workerUpdates.computeIfAbsent(workerId, id -> new WorkerUpdate());
+    }
+
+    /**
+     * Applies the collected worker properties and operations, one worker at
+     * a time per thread.
+     */
+    void applyWorkerUpdates() throws Exception {
+        if (workerUpdates.isEmpty()) {
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, workerUpdates.size())));
+        try {
+            final List<Future<?>> futures = new ArrayList<>(workerUpdates.size());
+            for (final Map.Entry<Integer, WorkerUpdate> entry : workerUpdates.entrySet()) {
+                futures.add(executor.submit(() -> {
+                    applyWorkerUpdate(entry.getKey(), entry.getValue());
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof Exception) {
+                        throw (Exception) ex.getCause();
+                    }
+                    throw ex;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void applyWorkerUpdate(final int workerId, final WorkerUpdate update) throws Exception {
+        if (!update.propertiesToSet.isEmpty() || !update.propertiesToRemove.isEmpty()) {
+            helper.getWorkerSession().updateWorkerProperties(workerId,
+                    new HashMap<>(update.propertiesToSet),
+                    new ArrayList<>(update.propertiesToRemove));
+        }
+        for (final Map.Entry<String, String> entry : update.separatePropertiesToSet.entrySet()) {
+            helper.getWorkerSession().setWorkerProperty(workerId, entry.getKey(), entry.getValue());
+        }
+        for (final WorkerOperation operation : update.operations) {
+            operation.perform();
+        }
+    }
+
+    /**
+     * Properties handled specially when set one by one, either by the
+     * server (type auto-detection) or in the audit log (key selection and
+     * certificate installation), are not included in the bulk update.
+     */
+    private static boolean isSeparateProperty(final String propertykey, final String propertyvalue) {
+        final String name = propertykey.substring(propertykey.lastIndexOf('.') + 1);
+        return (WorkerConfig.TYPE.equalsIgnoreCase(propertykey) && (propertyvalue == null || propertyvalue.trim().isEmpty()))
+                || "DEFAULTKEY".equalsIgnoreCase(name)
+                || SIGNERCERT.equalsIgnoreCase(name)
+                || SIGNERCERTCHAIN.equalsIgnoreCase(name);
     }
 
     public void processKey(String key, String value) throws RemoteException, Exception {
@@ -263,11 +376,12 @@ public class SetPropertiesHelper {
                 String values[] = propertyvalue.split(";");
                 AuthorizedClient ac = new AuthorizedClient(values[0], values[1]);
                 out.println("Adding Authorized Client with certificate serial " + ac.getCertSN() + " and issuer DN " + ac.getIssuerDN() + " to " + propertyvalue + " for worker " + workerId);
-                helper.getWorkerSession().addAuthorizedClient(workerId, ac);
+                getWorkerUpdate(workerId).operations.add(() -> helper.getWorkerSession().addAuthorizedClient(workerId, ac));
             }
         } else {
             if (propertykey.startsWith(DOT_SIGNERCERTIFICATE.substring(1))) {
-                helper.getWorkerSession().uploadSignerCertificate(workerId, Base64.decode(propertyvalue.getBytes()), GlobalConfiguration.SCOPE_GLOBAL);
+                final byte[] cert = Base64.decode(propertyvalue.getBytes());
+                getWorkerUpdate(workerId).operations.add(() -> helper.getWorkerSession().uploadSignerCertificate(workerId, cert, GlobalConfiguration.SCOPE_GLOBAL));
             } else {
                 if (propertykey.startsWith(DOT_SIGNERCERTCHAIN.substring(1))) {
                     String certs[] = propertyvalue.split(";");
@@ -278,14 +392,22 @@ public class SetPropertiesHelper {
                             chain.add(cert);
                         }
                     }
-                    helper.getWorkerSession().uploadSignerCertificateChain(workerId, chain, GlobalConfiguration.SCOPE_GLOBAL);
+                    getWorkerUpdate(workerId).operations.add(() -> helper.getWorkerSession().uploadSignerCertificateChain(workerId, chain, GlobalConfiguration.SCOPE_GLOBAL));
                 } else {
                     final String value =
                             shouldMaskProperty(propertykey) ?
                             WORKER_PROPERTY_MASK_PLACEHOLDER: propertyvalue;
 
                     out.println("Setting the property " + propertykey + " to " + value + " for worker " + workerId);
-                    helper.getWorkerSession().setWorkerProperty(workerId, propertykey, propertyvalue);
+                    final WorkerUpdate update = getWorkerUpdate(workerId);
+                    update.propertiesToRemove.remove(propertykey);
+                    if (isSeparateProperty(propertykey, propertyvalue)) {
+                        update.propertiesToSet.remove(propertykey);
+                        update.separatePropertiesToSet.put(propertykey, propertyvalue);
+                    } else {
+                        update.separatePropertiesToSet.remove(propertykey);
+                        update.propertiesToSet.put(propertykey, propertyvalue);
+                    }
                 }
             }
         }
@@ -330,7 +452,7 @@ public class SetPropertiesHelper {
                 String values[] = propertyvalue.split(";");
                 AuthorizedClient ac = new AuthorizedClient(values[0], values[1]);
                 out.println("Removing authorized client with certificate serial " + ac.getCertSN() + " and issuer DN " + ac.getIssuerDN() + " from " + propertyvalue + " for worker " + workerId);
-                helper.getWorkerSession().removeAuthorizedClient(workerId, ac);
+                getWorkerUpdate(workerId).operations.add(() -> helper.getWorkerSession().removeAuthorizedClient(workerId, ac));
             }
         } else {
             if (propertykey.startsWith(DOT_SIGNERCERTIFICATE.substring(1))) {
@@ -340,7 +462,10 @@ public class SetPropertiesHelper {
                     out.println("Removal of signing certificate chains isn't supported, skipped.");
                 } else {
                     out.println("Removing the property " + propertykey + "  for worker " + workerId);
-                    helper.getWorkerSession().removeWorkerProperty(workerId, propertykey);
+                    final WorkerUpdate update = getWorkerUpdate(workerId);
+                    update.propertiesToSet.remove(propertykey);
+                    update.separatePropertiesToSet.remove(propertykey);
+                    update.propertiesToRemove.add(propertykey);
                 }
             }
         }
@@ -506,6 +631,19 @@ public class SetPropertiesHelper {
         }
     }
     
+    /** Operation on a worker not part of the bulk property update. */
+    private interface WorkerOperation {
+        void perform() throws Exception;
+    }
+
+    /** Changes collected for one worker. */
+    private static class WorkerUpdate {
+        private final Map<String, String> propertiesToSet = new LinkedHashMap<>();
+        private final Set<String> propertiesToRemove = new LinkedHashSet<>();
+        private final Map<String, String> separatePropertiesToSet = new LinkedHashMap<>();
+        private final List<WorkerOperation> operations = new ArrayList<>();
+    }
+
     private static class AuthClientEntry {
 
         private CertificateMatchingRule rule;
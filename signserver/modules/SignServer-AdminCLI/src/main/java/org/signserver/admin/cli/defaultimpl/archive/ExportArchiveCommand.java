@@ -0,0 +1,287 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.admin.cli.defaultimpl.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.lang.StringUtils;
+import org.bouncycastle.util.encoders.Hex;
+import org.cesecore.util.query.Criteria;
+import org.cesecore.util.query.Elem;
+import org.cesecore.util.query.QueryCriteria;
+import org.cesecore.util.query.elems.RelationalOperator;
+import org.cesecore.util.query.elems.Term;
+import org.signserver.admin.cli.defaultimpl.AdminCommandHelper;
+import org.signserver.admin.common.query.ArchiveFields;
+import org.signserver.admin.common.query.QueryUtil;
+import org.signserver.cli.spi.AbstractCommand;
+import org.signserver.cli.spi.CommandFailureException;
+import org.signserver.cli.spi.IllegalCommandArgumentsException;
+import org.signserver.cli.spi.UnexpectedCommandFailureException;
+import org.signserver.common.ArchiveDataVO;
+import org.signserver.common.ArchiveMetadata;
+
+/**
+ * Export archive entries matching a query to a ZIP file.
+ *
+ * The meta data of the entries is fetched in batches using continuation
+ * tokens and the archived data is then fetched one entry at a time. Memory
+ * use is therefore bounded by the batch size and the largest archived
+ * document, regardless of the size of the export, at the cost of one extra
+ * call to the server per entry.
+ * The ZIP file contains one file per entry, named by signer ID and archive
+ * ID, and a MANIFEST.csv file listing the entries and the SHA-256 digest of
+ * their content.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class ExportArchiveCommand extends AbstractCommand {
+
+    private final AdminCommandHelper helper;
+
+    /** Option strings */
+    public static final String OUTFILE = "outfile";
+    public static final String BATCHSIZE = "batchsize";
+
+    /** Name of the manifest file in the ZIP. */
+    public static final String MANIFEST_NAME = "MANIFEST.csv";
+
+    private static final String MANIFEST_HEADER = "file, uniqueId, archiveid, time, type, signerid, requestIssuerDN, requestCertSerialNumber, requestIP, sha256";
+
+    private static final int DEFAULT_BATCHSIZE = 100;
+
+    /** The command line options */
+    private static final Options OPTIONS;
+
+    private QueryCriteria qc;
+    private File outFile;
+    private int batchSize = DEFAULT_BATCHSIZE;
+
+    static {
+        OPTIONS = new Options();
+        OPTIONS.addOption(ArchiveFields.CRITERIA, true, "Search criteria (can specify multiple criterias)");
+        OPTIONS.addOption(QueryArchiveCommand.REQUEST, false, "Export only requests");
+        OPTIONS.addOption(QueryArchiveCommand.RESPONSE, false, "Export only responses");
+        OPTIONS.addOption(OUTFILE, true, "ZIP file to write the export to");
+        OPTIONS.addOption(BATCHSIZE, true, "Number of entries to list at a time (default " + DEFAULT_BATCHSIZE + ")");
+    }
+
+    public ExportArchiveCommand() {
+        this(new AdminCommandHelper());
+    }
+
+    ExportArchiveCommand(final AdminCommandHelper helper) {
+        this.helper = helper;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Export the content of the archive to a ZIP file";
+    }
+
+    @Override
+    public String getUsages() {
+        return "Usage: signserver archive export -outfile <file> [-criteria  \"<field> <op> <value>\" [-criteria...]] [-request|-response] [-batchsize <number>]\n"
+        + "<field> is a field name from the archive: archiveid, requestCertSerialnumber, requestIP, requestIssuerDN, signerid, time, type, uniqueId\n"
+        + "<op> is a relational operator: GT, GE, LT, LE, EQ, NEQ, LIKE, NULL, NOTNULL\n"
+        + "The ZIP file contains one file per archive entry and a " + MANIFEST_NAME + " listing the entries\n"
+        + "Example: signserver archive export -outfile /tmp/export.zip -criteria \"signerid EQ 1\"\n"
+        + "Example: signserver archive export -outfile /tmp/export.zip -criteria \"time GE 2024-01-01 00:00:00+0000\" -criteria \"time LT 2024-02-01 00:00:00+0000\" -response\n\n";
+    }
+
+    @Override
+    public int execute(String... args) throws IllegalCommandArgumentsException,
+            CommandFailureException, UnexpectedCommandFailureException {
+        qc = QueryCriteria.create().add(Criteria.orderDesc(ArchiveMetadata.TIME));
+
+        try {
+            parseCommandLine(new GnuParser().parse(OPTIONS, args));
+        } catch (ParseException ex) {
+            throw new IllegalCommandArgumentsException(ex.getMessage());
+        }
+
+        File manifestFile = null;
+        try {
+            // The manifest is collected in a temporary file and added last
+            manifestFile = File.createTempFile("archive-export", ".csv");
+            final MessageDigest md = MessageDigest.getInstance("SHA-256");
+            long exported = 0;
+
+            try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(outFile)));
+                 Writer manifest = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(manifestFile), StandardCharsets.UTF_8))) {
+                manifest.write(MANIFEST_HEADER);
+                manifest.write("\n");
+
+                String after = null;
+                List<ArchiveMetadata> batch;
+                do {
+                    batch = helper.getWorkerSession().searchArchiveAfter(after, batchSize, qc, false);
+
+                    for (final ArchiveMetadata entry : batch) {
+                        final String name = entry.getSignerId() + "/" + entry.suggestedFilename();
+                        final byte[] data = fetchData(entry);
+                        if (data == null) {
+                            err.println("Skipping entry no longer in the archive: " + entry.getUniqueId());
+                            continue;
+                        }
+
+                        final ZipEntry zipEntry = new ZipEntry(name);
+                        zipEntry.setTime(entry.getTime().getTime());
+                        zip.putNextEntry(zipEntry);
+                        zip.write(data);
+                        zip.closeEntry();
+
+                        manifest.write(StringUtils.join(new Object[] {
+                            name,
+                            entry.getUniqueId(),
+                            entry.getArchiveId(),
+                            entry.getTime().getTime(),
+                            ArchiveMetadata.getTypeName(entry.getType()),
+                            entry.getSignerId(),
+                            csvValue(entry.getRequestIssuerDN()),
+                            csvValue(entry.getRequestCertSerialNumber()),
+                            csvValue(entry.getRequestIP()),
+                            Hex.toHexString(md.digest(data))
+                        }, ", "));
+                        manifest.write("\n");
+                        exported++;
+                    }
+
+                    if (!batch.isEmpty()) {
+                        after = batch.get(batch.size() - 1).getContinuationToken();
+                        out.print(String.format("\rExported %d archive entries", exported));
+                    }
+                } while (batch.size() == batchSize);
+
+                manifest.flush();
+                zip.putNextEntry(new ZipEntry(MANIFEST_NAME));
+                Files.copy(manifestFile.toPath(), zip);
+                zip.closeEntry();
+            }
+
+            out.println(String.format("\rExported %d archive entries to %s", exported, outFile.getAbsolutePath()));
+            out.println("\n\n");
+            return 0;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new CommandFailureException("Export failed: " + e.getMessage());
+        } catch (Exception e) {
+            throw new UnexpectedCommandFailureException(e);
+        } finally {
+            if (manifestFile != null && !manifestFile.delete()) {
+                manifestFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Fetch the archived data of an entry.
+     *
+     * @param entry to fetch the data for
+     * @return the archived data or null if the entry has been removed
+     */
+    private byte[] fetchData(final ArchiveMetadata entry) throws Exception {
+        final List<ArchiveMetadata> withData = helper.getWorkerSession().searchArchiveWithIds(Collections.singletonList(entry.getUniqueId()), true);
+        if (withData.isEmpty()) {
+            return null;
+        }
+        final byte[] data = withData.get(0).getArchiveData();
+        return data == null ? new byte[0] : data;
+    }
+
+    /**
+     * Quote values possibly containing the separator.
+     */
+    private static String csvValue(final String value) {
+        if (value == null) {
+            return "";
+        } else if (value.contains(",") || value.contains("\"")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        } else {
+            return value;
+        }
+    }
+
+    private void parseCommandLine(final CommandLine line) throws ParseException {
+        final String outFileString = line.getOptionValue(OUTFILE);
+        final String batchSizeString = line.getOptionValue(BATCHSIZE);
+
+        if (outFileString == null) {
+            throw new ParseException("Must specify an output file.");
+        }
+        outFile = new File(outFileString);
+        if (outFile.exists()) {
+            throw new ParseException("Output file already exists: " + outFile.getAbsolutePath());
+        }
+
+        if (batchSizeString != null) {
+            try {
+                batchSize = Integer.parseInt(batchSizeString);
+
+                if (batchSize <= 0) {
+                    throw new ParseException("Too small value specified for batch size: " + batchSize);
+                }
+            } catch (NumberFormatException ex) {
+                throw new ParseException("Invalid batch size value: " + batchSizeString);
+            }
+        }
+
+        if (line.hasOption(QueryArchiveCommand.REQUEST) && line.hasOption(QueryArchiveCommand.RESPONSE)) {
+            throw new ParseException("Can not specify both -request and -response at the same time");
+        } else if (line.hasOption(QueryArchiveCommand.REQUEST)) {
+            qc.add(new Term(RelationalOperator.EQ, ArchiveMetadata.TYPE, ArchiveDataVO.TYPE_REQUEST));
+        } else if (line.hasOption(QueryArchiveCommand.RESPONSE)) {
+            qc.add(new Term(RelationalOperator.EQ, ArchiveMetadata.TYPE, ArchiveDataVO.TYPE_RESPONSE));
+        }
+
+        final String[] criterias = line.getOptionValues(ArchiveFields.CRITERIA);
+
+        final List<Elem> terms = new LinkedList<>();
+
+        if (criterias != null && criterias.length > 0) {
+            for (final String criteria : criterias) {
+                try {
+                    terms.add(QueryArchiveCommand.parseCriteria(criteria));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("Invalid critera, expected a numeric value: " + criteria);
+                } catch (IllegalArgumentException e) {
+                    throw new ParseException("Invalid critera specified: " + e.getMessage() + ": " +
+                            criteria);
+                } catch (java.text.ParseException e) {
+                    throw new ParseException("Invalid date specified: " + criteria);
+                }
+            }
+
+            qc.add(QueryUtil.andAll(terms, 0));
+        }
+    }
+}
@@ -47,7 +47,7 @@ import org.signserver.admin.common.query.ArchiveFields;
  */
 public class QueryArchiveCommand extends AbstractCommand {
 
-    private AdminCommandHelper helper = new AdminCommandHelper();
+    private final AdminCommandHelper helper;
     
     /** Option strings */
     public static final String REQUEST = "request";
@@ -58,6 +58,8 @@ public class QueryArchiveCommand extends AbstractCommand {
     private static final Options OPTIONS;
     
     private int from;
+    private String after;
+    private boolean paged;
     private int limit;
     private boolean printHeader;
     private QueryCriteria qc;
@@ -72,6 +74,8 @@ public class QueryArchiveCommand extends AbstractCommand {
         OPTIONS = new Options();
         OPTIONS.addOption(ArchiveFields.CRITERIA, true, "Search criteria (can specify multiple criterias)");
         OPTIONS.addOption(ArchiveFields.FROM, true, "Lower index in search result (0-based)");
+        OPTIONS.addOption(ArchiveFields.PAGED, false, "Page through the results using continuation tokens");
+        OPTIONS.addOption(ArchiveFields.AFTER, true, "Continue after the entry with the given continuation token (implies -" + ArchiveFields.PAGED + ")");
         OPTIONS.addOption(ArchiveFields.LIMIT, true, "Maximum number of search results");
         OPTIONS.addOption(ArchiveFields.HEADER, false, "Print a column header");
         OPTIONS.addOption(REQUEST, false, "Search for requests");
@@ -79,6 +83,14 @@ public class QueryArchiveCommand extends AbstractCommand {
         OPTIONS.addOption(OUTPATH, true, "Directory to write output to");
     }
 
+    public QueryArchiveCommand() {
+        this(new AdminCommandHelper());
+    }
+
+    QueryArchiveCommand(final AdminCommandHelper helper) {
+        this.helper = helper;
+    }
+
     @Override
     public String getDescription() {
         return "Query the content of the archive";
@@ -86,16 +98,20 @@ public class QueryArchiveCommand extends AbstractCommand {
 
     @Override
     public String getUsages() {
-        return "Usage: signserver archive query -limit <number> [-criteria  \"<field> <op> <value>\" [-criteria...]] [-from <index>] [-header] [-request|-response] [-outpath <path>]\n"
+        return "Usage: signserver archive query -limit <number> [-criteria  \"<field> <op> <value>\" [-criteria...]] [-from <index>|-paged|-after <token>] [-header] [-request|-response] [-outpath <path>]\n"
         + "<field> is a field name from the archive: archiveid, requestCertSerialnumber, requestIP, requestIssuerDN, signerid, time, type, uniqueId\n"
         + "<op> is a relational operator: GT, GE, LT, LE, EQ, NEQ, LIKE, NULL, NOTNULL\n"
 	+ "-request shows only entries for requests\n"
 	+ "-response shows only entries for responses\n"
         + "if the -outpath option is given, archive data for the matched items are written to the given directory\n"
+        + "with -paged the results are ordered by time, newest first, and a continuation token is printed when there are more results\n"
+        + "the token can be given to -after to fetch the next page, which is faster than -from for large archives\n"
         + "Example: signserver archive query -limit 10 -criteria \"signerid EQ 1\"\n"
 	+ "Example: signserver archive query -limit 10 -criteria \"signerid EQ 1\" -request\n"
         + "Example: signserver archive query -limit 10 -criteria \"time GT 1359623137000\" -criteria \"requestIP EQ 127.0.0.1\"\n"
-        + "Example: signserver archive query -limit 10 -criteria \"signerid EQ 1\" -outpath /tmp/out\n\n";
+        + "Example: signserver archive query -limit 10 -criteria \"signerid EQ 1\" -outpath /tmp/out\n"
+        + "Example: signserver archive query -limit 10 -criteria \"signerid EQ 1\" -paged\n"
+        + "Example: signserver archive query -limit 10 -criteria \"signerid EQ 1\" -after MTM1OTYyMzEzNzAwMDoyYTJiM2M\n\n";
     }
 
     @Override
@@ -119,8 +135,11 @@ public class QueryArchiveCommand extends AbstractCommand {
                 out.println(HEADER_FIELDS);
             }
  
-            // Perform the query
-            List<? extends ArchiveMetadata> entries =
+            // Perform the query, seeking using the continuation token if
+            // paging was requested
+            final boolean useContinuation = paged || after != null;
+            List<? extends ArchiveMetadata> entries = useContinuation ?
+                    helper.getWorkerSession().searchArchiveAfter(after, limit, qc, downloadData) :
                     helper.getWorkerSession().searchArchive(from, limit, qc, downloadData);
     
             for (final ArchiveMetadata entry : entries) {
@@ -155,6 +174,12 @@ public class QueryArchiveCommand extends AbstractCommand {
                 out.print(String.format("\nDownloaded %d archive entries",
                         downloadedItems));
             }
+
+            if (useContinuation && entries.size() == limit) {
+                out.print("\nMore results available, continue with: -"
+                        + ArchiveFields.AFTER + " "
+                        + entries.get(entries.size() - 1).getContinuationToken());
+            }
             
             out.println("\n\n");
             return 0;
@@ -176,6 +201,20 @@ public class QueryArchiveCommand extends AbstractCommand {
         final String limitString = line.getOptionValue(ArchiveFields.LIMIT);
         
         printHeader = line.hasOption(ArchiveFields.HEADER);
+        after = line.getOptionValue(ArchiveFields.AFTER);
+        paged = line.hasOption(ArchiveFields.PAGED);
+        
+        if (fromString != null && (after != null || paged)) {
+            throw new ParseException("Can not specify -" + ArchiveFields.FROM + " together with -" + ArchiveFields.PAGED + " or -" + ArchiveFields.AFTER);
+        }
+
+        if (after != null) {
+            try {
+                ArchiveMetadata.ContinuationToken.parse(after);
+            } catch (IllegalArgumentException ex) {
+                throw new ParseException(ex.getMessage());
+            }
+        }
         
         if (fromString != null) {
             try {
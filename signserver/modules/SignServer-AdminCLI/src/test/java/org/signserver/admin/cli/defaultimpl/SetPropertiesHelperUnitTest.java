@@ -0,0 +1,202 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.admin.cli.defaultimpl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import org.junit.Test;
+import org.signserver.ejb.interfaces.WorkerSessionRemote;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the worker updates collected by the SetPropertiesHelper.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class SetPropertiesHelperUnitTest {
+
+    /** Calls made to the worker session. */
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+    /** Worker for which updateWorkerProperties fails. */
+    private int failingWorker;
+
+    /**
+     * Tests that all properties of a worker are set with one
+     * updateWorkerProperties call per worker.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testOneUpdatePerWorker() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty("WORKER1.NAME", "Worker1");
+        properties.setProperty("WORKER1.FOO", "foo1");
+        properties.setProperty("WORKER1.TYPE", "PROCESSABLE");
+        properties.setProperty("WORKER2.NAME", "Worker2");
+        properties.setProperty("WORKER2.FOO", "foo2");
+        properties.setProperty("-WORKER2.BAR", "");
+
+        createInstance().process(properties);
+
+        assertEquals("calls", 2, calls.size());
+        assertTrue(calls.toString(), calls.contains("updateWorkerProperties 1 {FOO=foo1, NAME=Worker1, TYPE=PROCESSABLE} []"));
+        assertTrue(calls.toString(), calls.contains("updateWorkerProperties 2 {FOO=foo2, NAME=Worker2} [BAR]"));
+    }
+
+    /**
+     * Tests that the last of setting and removing the same property wins.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testSetThenRemove() throws Exception {
+        final SetPropertiesHelper instance = createInstance();
+        instance.processKey("WORKER1.FOO", "foo");
+        instance.processKey("-WORKER1.FOO", "");
+        instance.processKey("-WORKER1.BAR", "");
+        instance.processKey("WORKER1.BAR", "bar");
+
+        instance.applyWorkerUpdates();
+
+        assertEquals("calls", "[updateWorkerProperties 1 {BAR=bar} [FOO]]", calls.toString());
+    }
+
+    /**
+     * Tests that properties with special handling on the server side are
+     * still set one by one after the bulk update.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testSpecialPropertiesSetSeparately() throws Exception {
+        final SetPropertiesHelper instance = createInstance();
+        instance.processKey("WORKER1.FOO", "foo");
+        instance.processKey("WORKER1.TYPE", "");
+        instance.processKey("WORKER1.DEFAULTKEY", "key1");
+        instance.processKey("WORKER1.SIGNERCERT", "cert");
+        instance.processKey("WORKER1.KEY1.SIGNERCERTCHAIN", "chain");
+
+        instance.applyWorkerUpdates();
+
+        assertEquals("calls", "[updateWorkerProperties 1 {FOO=foo} [], "
+                + "setWorkerProperty 1 TYPE=, "
+                + "setWorkerProperty 1 DEFAULTKEY=key1, "
+                + "setWorkerProperty 1 SIGNERCERT=cert, "
+                + "setWorkerProperty 1 KEY1.SIGNERCERTCHAIN=chain]", calls.toString());
+    }
+
+    /**
+     * Tests that removing a property with special handling after setting it
+     * leaves it removed.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testSetThenRemoveSeparateProperty() throws Exception {
+        final SetPropertiesHelper instance = createInstance();
+        instance.processKey("WORKER1.DEFAULTKEY", "key1");
+        instance.processKey("-WORKER1.DEFAULTKEY", "");
+        instance.processKey("-WORKER1.TYPE", "");
+        instance.processKey("WORKER1.TYPE", "");
+
+        instance.applyWorkerUpdates();
+
+        assertEquals("calls", "[updateWorkerProperties 1 {} [DEFAULTKEY], "
+                + "setWorkerProperty 1 TYPE=]", calls.toString());
+    }
+
+    /**
+     * Tests that only the updated workers are reloaded at the end.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testReloadUpdatedWorkers() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty("WORKER1.FOO", "foo1");
+        properties.setProperty("WORKER3.FOO", "foo3");
+        final SetPropertiesHelper instance = createInstance();
+        instance.setReload(true);
+
+        instance.process(properties);
+
+        assertEquals("reloads", 2, calls.stream().filter(call -> call.startsWith("reloadConfiguration")).count());
+        assertTrue(calls.toString(), calls.indexOf("reloadConfiguration 1") > calls.indexOf("updateWorkerProperties 1 {FOO=foo1} []"));
+        assertTrue(calls.toString(), calls.indexOf("reloadConfiguration 3") > calls.indexOf("updateWorkerProperties 3 {FOO=foo3} []"));
+    }
+
+    /**
+     * Tests that a failure updating one worker is reported while the other
+     * workers are still updated.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testFailureInOneWorker() throws Exception {
+        failingWorker = 2;
+        final SetPropertiesHelper instance = createInstance();
+        instance.setThreads(1);
+        instance.processKey("WORKER1.FOO", "foo1");
+        instance.processKey("WORKER2.FOO", "foo2");
+        instance.processKey("WORKER3.FOO", "foo3");
+
+        try {
+            instance.applyWorkerUpdates();
+            fail("Should have failed");
+        } catch (IllegalStateException expected) {
+            assertEquals("Update failed for worker 2", expected.getMessage());
+        }
+        assertEquals("calls", "[updateWorkerProperties 1 {FOO=foo1} [], "
+                + "updateWorkerProperties 2 {FOO=foo2} [], "
+                + "updateWorkerProperties 3 {FOO=foo3} []]", calls.toString());
+    }
+
+    private SetPropertiesHelper createInstance() {
+        final WorkerSessionRemote workerSession = new WorkerSessionRemoteMock() {
+            @Override
+            public List<String> getAllWorkerNames() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public void updateWorkerProperties(int workerId, Map<String, String> propertiesAndValues, List<String> propertiesToRemove) {
+                calls.add("updateWorkerProperties " + workerId + " "
+                        + new TreeMap<>(propertiesAndValues) + " " + propertiesToRemove);
+                if (workerId == failingWorker) {
+                    throw new IllegalStateException("Update failed for worker " + workerId);
+                }
+            }
+
+            @Override
+            public void reloadConfiguration(int workerId) {
+                calls.add("reloadConfiguration " + workerId);
+            }
+
+            @Override
+            public void setWorkerProperty(int workerId, String key, String value) {
+                calls.add("setWorkerProperty " + workerId + " " + key + "=" + value);
+            }
+        };
+        return new SetPropertiesHelper(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8),
+                new Properties(), new AdminCommandHelper() {
+            @Override
+            public WorkerSessionRemote getWorkerSession() {
+                return workerSession;
+            }
+        });
+    }
+}
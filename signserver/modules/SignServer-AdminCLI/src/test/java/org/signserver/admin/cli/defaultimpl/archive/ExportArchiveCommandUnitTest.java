@@ -0,0 +1,233 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.admin.cli.defaultimpl.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.bouncycastle.util.encoders.Hex;
+import org.cesecore.util.query.QueryCriteria;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signserver.admin.cli.defaultimpl.AdminCommandHelper;
+import org.signserver.admin.cli.defaultimpl.WorkerSessionRemoteMock;
+import org.signserver.cli.spi.CommandContext;
+import org.signserver.cli.spi.CommandFactoryContext;
+import org.signserver.cli.spi.IllegalCommandArgumentsException;
+import org.signserver.common.ArchiveDataVO;
+import org.signserver.common.ArchiveMetadata;
+import org.signserver.ejb.interfaces.WorkerSessionRemote;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the ExportArchiveCommand.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class ExportArchiveCommandUnitTest {
+
+    private File tempDir;
+
+    /** Entries in the simulated archive, newest first. */
+    private final List<ArchiveMetadata> archive = new ArrayList<>();
+
+    /** Entries removed after being listed. */
+    private final Set<String> removed = new HashSet<>();
+
+    /** Calls made to the worker session. */
+    private final List<String> calls = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("export").toFile();
+        for (int i = 5; i >= 1; i--) {
+            archive.add(new ArchiveMetadata(i % 2 == 0 ? ArchiveDataVO.TYPE_REQUEST : ArchiveDataVO.TYPE_RESPONSE, 1,
+                    "u" + i, "archive" + i, new Date(1000L + i), null, null, i == 3 ? "10.0.0.1, 10.0.0.2" : "127.0.0.1",
+                    ("<document id=\"" + i + "\"/>").getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (File file : tempDir.listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(tempDir.toPath());
+    }
+
+    /**
+     * Tests exporting entries spread over several batches. Each batch should
+     * continue after the last entry of the previous one, only list the meta
+     * data and the data should be fetched one entry at a time.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testExportInBatches() throws Exception {
+        final File outFile = new File(tempDir, "export.zip");
+
+        execute("-outfile", outFile.getAbsolutePath(), "-batchsize", "2");
+
+        assertEquals("calls", "[searchArchiveAfter null 2 false, "
+                + "searchArchiveWithIds [u5] true, searchArchiveWithIds [u4] true, "
+                + "searchArchiveAfter " + archive.get(1).getContinuationToken() + " 2 false, "
+                + "searchArchiveWithIds [u3] true, searchArchiveWithIds [u2] true, "
+                + "searchArchiveAfter " + archive.get(3).getContinuationToken() + " 2 false, "
+                + "searchArchiveWithIds [u1] true]", calls.toString());
+
+        final Map<String, byte[]> files = readZip(outFile);
+        assertEquals("files", "[1/archive5.response, 1/archive4.request, 1/archive3.response, 1/archive2.request, 1/archive1.response, "
+                + ExportArchiveCommand.MANIFEST_NAME + "]", files.keySet().toString());
+        assertArrayEquals("content", archive.get(0).getArchiveData(), files.get("1/archive5.response"));
+
+        final String[] manifest = new String(files.get(ExportArchiveCommand.MANIFEST_NAME), StandardCharsets.UTF_8).split("\n");
+        assertEquals("manifest lines", 6, manifest.length);
+        assertEquals("header", "file, uniqueId, archiveid, time, type, signerid, requestIssuerDN, requestCertSerialNumber, requestIP, sha256", manifest[0]);
+        final String digest = Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(archive.get(2).getArchiveData()));
+        assertEquals("entry", "1/archive3.response, u3, archive3, 1003, RESPONSE, 1, , , \"10.0.0.1, 10.0.0.2\", " + digest, manifest[3]);
+    }
+
+    /**
+     * Tests that an entry removed after being listed is skipped.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testExportEntryRemoved() throws Exception {
+        final File outFile = new File(tempDir, "export.zip");
+        removed.add("u4");
+
+        execute("-outfile", outFile.getAbsolutePath());
+
+        final Map<String, byte[]> files = readZip(outFile);
+        assertFalse("removed entry", files.containsKey("1/archive4.request"));
+        assertEquals("manifest lines", 5, new String(files.get(ExportArchiveCommand.MANIFEST_NAME), StandardCharsets.UTF_8).split("\n").length);
+    }
+
+    /**
+     * Tests that an existing output file is not overwritten.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testExistingOutFile() throws Exception {
+        final File outFile = new File(tempDir, "export.zip");
+        Files.write(outFile.toPath(), new byte[] {1});
+        try {
+            execute("-outfile", outFile.getAbsolutePath());
+            fail("Should throw IllegalCommandArgumentsException");
+        } catch (IllegalCommandArgumentsException expected) { // NOPMD
+            // OK
+        }
+        assertArrayEquals("unchanged", new byte[] {1}, Files.readAllBytes(outFile.toPath()));
+        assertTrue("no calls", calls.isEmpty());
+    }
+
+    /**
+     * Tests that invalid arguments are rejected.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testInvalidArguments() throws Exception {
+        final String outFile = new File(tempDir, "export.zip").getAbsolutePath();
+        for (String[] args : new String[][] {
+                {},
+                {"-outfile", outFile, "-batchsize", "0"},
+                {"-outfile", outFile, "-batchsize", "foo"},
+                {"-outfile", outFile, "-request", "-response"},
+                {"-outfile", outFile, "-criteria", "foo EQ 1"}}) {
+            try {
+                execute(args);
+                fail("Should throw IllegalCommandArgumentsException for " + String.join(" ", args));
+            } catch (IllegalCommandArgumentsException expected) { // NOPMD
+                // OK
+            }
+        }
+    }
+
+    private void execute(final String... args) throws Exception {
+        final WorkerSessionRemote workerSession = new WorkerSessionRemoteMock() {
+            @Override
+            public List<ArchiveMetadata> searchArchiveAfter(String continuationToken, int max, QueryCriteria criteria, boolean includeData) {
+                calls.add("searchArchiveAfter " + continuationToken + " " + max + " " + includeData);
+                return searchAfter(continuationToken, max);
+            }
+
+            @Override
+            public List<ArchiveMetadata> searchArchiveWithIds(List<String> uniqueIds, boolean includeData) {
+                calls.add("searchArchiveWithIds " + uniqueIds + " " + includeData);
+                return searchWithIds(uniqueIds.get(0));
+            }
+        };
+        final ExportArchiveCommand instance = new ExportArchiveCommand(new AdminCommandHelper() {
+            @Override
+            public WorkerSessionRemote getWorkerSession() {
+                return workerSession;
+            }
+        });
+        instance.init(new CommandContext("archive", "export", new CommandFactoryContext(new Properties(),
+                new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8),
+                new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8))));
+        instance.execute(args);
+    }
+
+    private List<ArchiveMetadata> searchAfter(final String token, final int max) {
+        int start = 0;
+        if (token != null) {
+            while (!archive.get(start).getContinuationToken().equals(token)) {
+                start++;
+            }
+            start++;
+        }
+        final List<ArchiveMetadata> result = new ArrayList<>();
+        for (ArchiveMetadata entry : archive.subList(start, Math.min(start + max, archive.size()))) {
+            result.add(new ArchiveMetadata(entry.getType(), entry.getSignerId(), entry.getUniqueId(), entry.getArchiveId(),
+                    entry.getTime(), entry.getRequestIssuerDN(), entry.getRequestCertSerialNumber(), entry.getRequestIP()));
+        }
+        return result;
+    }
+
+    private List<ArchiveMetadata> searchWithIds(final String uniqueId) {
+        for (ArchiveMetadata entry : archive) {
+            if (entry.getUniqueId().equals(uniqueId) && !removed.contains(uniqueId)) {
+                return Collections.singletonList(entry);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static Map<String, byte[]> readZip(final File file) throws Exception {
+        final Map<String, byte[]> result = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(file.toPath()))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                result.put(entry.getName(), in.readAllBytes());
+            }
+        }
+        return result;
+    }
+}
@@ -12,11 +12,26 @@
  *************************************************************************/
 package org.signserver.admin.cli.defaultimpl.archive;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
 
+import org.cesecore.util.query.QueryCriteria;
 import org.cesecore.util.query.elems.RelationalOperator;
 import org.cesecore.util.query.elems.Term;
+import org.signserver.admin.cli.defaultimpl.AdminCommandHelper;
+import org.signserver.admin.cli.defaultimpl.WorkerSessionRemoteMock;
+import org.signserver.cli.spi.CommandContext;
+import org.signserver.cli.spi.CommandFactoryContext;
+import org.signserver.cli.spi.IllegalCommandArgumentsException;
+import org.signserver.common.ArchiveDataVO;
 import org.signserver.common.ArchiveMetadata;
+import org.signserver.ejb.interfaces.WorkerSessionRemote;
 
 import junit.framework.TestCase;
 
@@ -185,4 +200,99 @@ public class QueryArchiveCommandTest extends TestCase {
             fail("Unexpected exception: " + e.getClass().getName());
         }
     }
+
+    /**
+     * Test that the offset based search is used unless paging is requested.
+     * @throws Exception
+     */
+    public void test12QueryWithoutPaging() throws Exception {
+        final List<String> calls = new ArrayList<>();
+        final String output = execute(calls, 2, "-limit", "2", "-from", "4");
+
+        assertEquals("calls", "[searchArchive 4 2]", calls.toString());
+        assertFalse("no token printed: " + output, output.contains("continue with"));
+
+        calls.clear();
+        execute(calls, 2, "-limit", "2");
+        assertEquals("calls", "[searchArchive 0 2]", calls.toString());
+    }
+
+    /**
+     * Test that -paged seeks from the start and prints a token to continue
+     * with and that -after continues after the given token.
+     * @throws Exception
+     */
+    public void test13QueryPaged() throws Exception {
+        final List<String> calls = new ArrayList<>();
+        String output = execute(calls, 2, "-limit", "2", "-paged");
+
+        assertEquals("calls", "[searchArchiveAfter null 2]", calls.toString());
+        final String token = new ArchiveMetadata.ContinuationToken(1002L, "u2").toString();
+        assertTrue("token printed: " + output, output.contains("continue with: -after " + token + "\n"));
+
+        calls.clear();
+        output = execute(calls, 1, "-limit", "2", "-after", token);
+        assertEquals("calls", "[searchArchiveAfter " + token + " 2]", calls.toString());
+        assertFalse("no more results: " + output, output.contains("continue with"));
+    }
+
+    /**
+     * Test that paging can not be combined with -from and that a malformed
+     * token is rejected.
+     * @throws Exception
+     */
+    public void test14QueryPagedInvalidArguments() throws Exception {
+        final String token = new ArchiveMetadata.ContinuationToken(1002L, "u2").toString();
+        for (String[] args : new String[][] {
+                {"-limit", "2", "-from", "1", "-paged"},
+                {"-limit", "2", "-from", "1", "-after", token},
+                {"-limit", "2", "-after", "1002:u2"}}) {
+            try {
+                execute(new ArrayList<>(), 0, args);
+                fail("Should throw IllegalCommandArgumentsException for " + String.join(" ", args));
+            } catch (IllegalCommandArgumentsException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Execute the command against a worker session returning the given
+     * number of entries.
+     *
+     * @param calls to record the searches performed in
+     * @param results number of entries to return from a search
+     * @param args command arguments
+     * @return the output of the command
+     */
+    private static String execute(final List<String> calls, final int results, final String... args) throws Exception {
+        final List<ArchiveMetadata> entries = new ArrayList<>();
+        for (int i = 1; i <= results; i++) {
+            entries.add(new ArchiveMetadata(ArchiveDataVO.TYPE_RESPONSE, 1, "u" + i, "archive" + i, new Date(1000L + i), null, null, null));
+        }
+        final WorkerSessionRemote workerSession = new WorkerSessionRemoteMock() {
+            @Override
+            public List<ArchiveMetadata> searchArchive(int startIndex, int max, QueryCriteria criteria, boolean includeData) {
+                calls.add("searchArchive " + startIndex + " " + max);
+                return entries;
+            }
+
+            @Override
+            public List<ArchiveMetadata> searchArchiveAfter(String continuationToken, int max, QueryCriteria criteria, boolean includeData) {
+                calls.add("searchArchiveAfter " + continuationToken + " " + max);
+                return entries;
+            }
+        };
+        final QueryArchiveCommand instance = new QueryArchiveCommand(new AdminCommandHelper() {
+            @Override
+            public WorkerSessionRemote getWorkerSession() {
+                return workerSession;
+            }
+        });
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        instance.init(new CommandContext("archive", "query", new CommandFactoryContext(new Properties(),
+                new PrintStream(out, true, StandardCharsets.UTF_8), System.err)));
+        instance.execute(args);
+        return out.toString(StandardCharsets.UTF_8);
+    }
 }
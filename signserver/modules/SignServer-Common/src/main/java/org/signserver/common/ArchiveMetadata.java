@@ -13,6 +13,8 @@
 package org.signserver.common;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Date;
 import org.signserver.server.archive.Archivable;
 
@@ -140,6 +142,18 @@ public class ArchiveMetadata implements Serializable {
         return archiveData;
     }
     
+    /**
+     * Get a token that can be used to continue a search directly after this
+     * entry. The token encodes the time and the uniqueId as the archive
+     * is paged ordered by those columns.
+     *
+     * @return The continuation token
+     * @see ContinuationToken
+     */
+    public String getContinuationToken() {
+        return new ContinuationToken(time.getTime(), uniqueId).toString();
+    }
+
     /**
      * Get a suggested output file name for storing archive data.
      * The file name is based on the archiveId when extensions ".request" and ".response"
@@ -214,4 +228,60 @@ public class ArchiveMetadata implements Serializable {
             throw new IllegalArgumentException("Unknown type name: " + name);
         }
     }
+
+    /**
+     * Position in the archive to continue a search after.
+     *
+     * The string form is the time and uniqueId base64url encoded without
+     * padding so that it can be passed on a command line or in a URL without
+     * quoting.
+     */
+    public static final class ContinuationToken {
+
+        private final long time;
+        private final String uniqueId;
+
+        public ContinuationToken(final long time, final String uniqueId) {
+            this.time = time;
+            this.uniqueId = uniqueId;
+        }
+
+        /**
+         * Parse the string form of a continuation token.
+         *
+         * @param token Token as returned by {@link #toString()}
+         * @return The parsed token
+         * @throws IllegalArgumentException If the token is malformed
+         */
+        public static ContinuationToken parse(final String token) {
+            final String decoded;
+            try {
+                decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Malformed continuation token: " + token);
+            }
+            final int separator = decoded.indexOf(':');
+            if (separator < 1 || separator == decoded.length() - 1) {
+                throw new IllegalArgumentException("Malformed continuation token: " + token);
+            }
+            try {
+                return new ContinuationToken(Long.parseLong(decoded.substring(0, separator)), decoded.substring(separator + 1));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Malformed continuation token: " + token);
+            }
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public String getUniqueId() {
+            return uniqueId;
+        }
+
+        @Override
+        public String toString() {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString((time + ":" + uniqueId).getBytes(StandardCharsets.UTF_8));
+        }
+    }
 }
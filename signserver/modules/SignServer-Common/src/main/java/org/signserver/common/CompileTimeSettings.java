@@ -68,6 +68,7 @@ public class CompileTimeSettings {
             = "cryptotoken.disablekeygeneration";
     
     public static final String FILEBASED_DB_FOLDER = "database.nodb.location";
+    public static final String FILEBASED_DB_WORKERCONFIG_STORAGE = "database.nodb.workerconfig.storage";
     public static final String DATABASE_NAME = "database.name";
     
     public static final String STATUSREPOSITORY_LOG = "statusrepository.log";
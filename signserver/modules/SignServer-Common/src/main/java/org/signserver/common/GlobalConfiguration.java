@@ -44,6 +44,7 @@ public class GlobalConfiguration implements Serializable {
     private final Properties config;
     private final String state;
     private final String appVersion;
+    private final long version;
 
     /**
      * Constructor that should only be called within
@@ -54,9 +55,24 @@ public class GlobalConfiguration implements Serializable {
      * @param appVersion
      */
     public GlobalConfiguration(Properties config, String state, String appVersion) {
+        this(config, state, appVersion, 0);
+    }
+
+    /**
+     * Constructor that should only be called within
+     * the GlobalConfigurationSessionBean.
+     *
+     * @param config
+     * @param state
+     * @param appVersion
+     * @param version of the configuration, increased for every change or
+     * 0 if the configuration is not versioned
+     */
+    public GlobalConfiguration(Properties config, String state, String appVersion, long version) {
         this.config = config;
         this.state = state;
         this.appVersion = appVersion;
+        this.version = version;
     }
 
     /**
@@ -104,6 +120,17 @@ public class GlobalConfiguration implements Serializable {
         return appVersion;
     }
 
+    /**
+     * Returns the version of this configuration. Two instances with the same
+     * non-zero version contains the same properties so values derived from
+     * the configuration can be reused as long as the version is unchanged.
+     *
+     * @return the version or 0 if the configuration is not versioned
+     */
+    public long getVersion() {
+        return version;
+    }
+
     /**
      * @return A new Properties object with the current configuration
      */
@@ -0,0 +1,132 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.common;
+
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang.time.FastDateFormat;
+
+/**
+ * Time spent by one worker in each phase of processing requests, kept as one
+ * latency histogram in microseconds per phase.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class ProcessingMetrics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final FastDateFormat FDF = FastDateFormat.getInstance("yyyy-MM-dd HH:mm:ss z");
+
+    /** Phase of processing a request. */
+    public enum Phase {
+        /** Checking that the client is authorized. */
+        AUTHORIZATION,
+        /** Waiting for admission when the concurrent requests are limited. */
+        QUEUE,
+        /** Acquiring crypto instances (keys) from the crypto token. */
+        CRYPTO_INSTANCE,
+        /** Processing by the worker apart from acquiring crypto instances. */
+        PROCESSING,
+        /** Charging the client. */
+        ACCOUNTING,
+        /** Archiving the request and response. */
+        ARCHIVING,
+        /** Checking and incrementing the key usage counter. */
+        KEY_USAGE_COUNTER,
+        /** Writing the worker log. */
+        LOGGING,
+        /** The whole request apart from the queue, including failed requests. */
+        TOTAL
+    }
+
+    private final long startTime;
+    private final EnumMap<Phase, LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+
+    /**
+     * Creates empty metrics starting now.
+     */
+    public ProcessingMetrics() {
+        this(System.currentTimeMillis());
+    }
+
+    private ProcessingMetrics(final long startTime) {
+        this.startTime = startTime;
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Records the time spent in one phase.
+     * @param phase the time was spent in
+     * @param nanos time in nanoseconds
+     */
+    public void record(final Phase phase, final long nanos) {
+        histograms.get(phase).record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * @param phase to get the histogram for
+     * @return histogram with the times in microseconds for the phase
+     */
+    public LatencyHistogram getHistogram(final Phase phase) {
+        return histograms.get(phase);
+    }
+
+    /**
+     * @return all histograms by phase
+     */
+    public Map<Phase, LatencyHistogram> getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * @return time in milliseconds when the metrics were created or reset
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return a copy of the metrics not affected by later recordings
+     */
+    public ProcessingMetrics copy() {
+        final ProcessingMetrics result = new ProcessingMetrics(startTime);
+        for (Map.Entry<Phase, LatencyHistogram> entry : histograms.entrySet()) {
+            result.histograms.get(entry.getKey()).add(entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Writes the metrics as a table with the times in microseconds.
+     *
+     * @param out Print stream used for output
+     */
+    public void display(final PrintStream out) {
+        out.println("Processing metrics since " + FDF.format(new Date(startTime)) + " (times in microseconds):");
+        out.println(String.format("%-18s %10s %10s %10s %10s %10s %10s %10s", "Phase", "Count", "Mean", "p50", "p90", "p99", "p99.9", "Max"));
+        for (Map.Entry<Phase, LatencyHistogram> entry : histograms.entrySet()) {
+            final LatencyHistogram h = entry.getValue();
+            out.println(String.format("%-18s %10d %10d %10d %10d %10d %10d %10d", entry.getKey(),
+                    h.getCount(), Math.round(h.getMean()), h.getValueAtPercentile(50), h.getValueAtPercentile(90),
+                    h.getValueAtPercentile(99), h.getValueAtPercentile(99.9), h.getMax()));
+        }
+    }
+}
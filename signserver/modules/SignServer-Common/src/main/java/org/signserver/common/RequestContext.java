@@ -115,6 +115,14 @@ public class RequestContext implements Serializable {
      * request.
      */
     public static final String WORKER_FULFILLED_REQUEST = "WORKER_GRANTED_REQUEST";
+
+    /**
+     * Number of times the signing key was used when processing the request
+     * (Integer). Set by workers making more than one signature per request,
+     * such as for a batch of digests. The key usage counter is increased
+     * with this value. If not set one usage is assumed.
+     */
+    public static final String KEY_USAGE_COUNT = "KEY_USAGE_COUNT";
     
     /**
      * Holds one of client credentials provided such as client certificate or
@@ -89,6 +89,33 @@ public class SignServerConstants {
      */
     public static final String KEYUSAGELIMIT = "KEYUSAGELIMIT";
     public static String DISABLEKEYUSAGECOUNTER = "DISABLEKEYUSAGECOUNTER";
+
+    /**
+     * Maximum number of requests processed by the worker at the same time.
+     * Further requests are queued by priority. Not set means no limit.
+     */
+    public static final String MAX_CONCURRENT_REQUESTS = "MAX_CONCURRENT_REQUESTS";
+
+    /**
+     * Maximum number of requests waiting to be processed by the worker when
+     * MAX_CONCURRENT_REQUESTS is set. Further requests are rejected.
+     */
+    public static final String MAX_QUEUED_REQUESTS = "MAX_QUEUED_REQUESTS";
+
+    /**
+     * Maximum time in milliseconds a request waits in the queue before it is
+     * rejected. A request dispatched from another worker waits within the
+     * transaction of the dispatching request so the value should be well
+     * under the transaction timeout.
+     */
+    public static final String MAX_QUEUE_WAIT = "MAX_QUEUE_WAIT";
+
+    /**
+     * Number of seconds a client is suggested to wait before trying again
+     * when its request was rejected.
+     */
+    public static final String RETRY_AFTER = "RETRY_AFTER";
+
     /**
      * Constant used to set the default value of configuration property to NULL if not setting property means property value is NULL.
      * 
@@ -0,0 +1,46 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.common;
+
+/**
+ * Exception thrown when a request is not admitted to a worker because it
+ * already has as many requests in progress and queued as it is configured to
+ * accept, or because the request waited too long in the queue.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class WorkerOverloadedException extends ServiceUnavailableException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfter;
+
+    /**
+     * @param message describing why the request was not admitted
+     * @param retryAfter number of seconds the client is suggested to wait
+     * before trying again
+     */
+    public WorkerOverloadedException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return number of seconds the client is suggested to wait before
+     * trying again
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -58,6 +58,14 @@ public class ValidationServiceConstants {
      */
     public static final String VALIDATIONSERVICE_TIMEINCACHE = "TIMEINCACHE";
     public static final String DEFAULT_TIMEINCACHE = "10";
+
+    /**
+     * Setting defining the maximum number of validations to cache
+     *
+     * Default: 10000
+     */
+    public static final String VALIDATIONSERVICE_CACHESIZE = "CACHESIZE";
+    public static final String DEFAULT_CACHESIZE = "10000";
     
     public static final int NUM_OF_SUPPORTED_ISSUERS = 255;
     
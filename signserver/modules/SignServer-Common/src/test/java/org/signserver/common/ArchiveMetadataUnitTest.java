@@ -0,0 +1,78 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.common;
+
+import java.util.Date;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the continuation tokens of ArchiveMetadata.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class ArchiveMetadataUnitTest {
+
+    /**
+     * Tests that the token of an entry can be parsed back to its time and
+     * uniqueId.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testContinuationTokenRoundTrip() throws Exception {
+        final String uniqueId = "1;2;3:a b/c+d=e'\"$x";
+        final ArchiveMetadata entry = new ArchiveMetadata(ArchiveDataVO.TYPE_RESPONSE, 42, uniqueId, "archive1",
+                new Date(1359623137000L), null, null, null);
+
+        final ArchiveMetadata.ContinuationToken token = ArchiveMetadata.ContinuationToken.parse(entry.getContinuationToken());
+        assertEquals("time", 1359623137000L, token.getTime());
+        assertEquals("uniqueId", uniqueId, token.getUniqueId());
+        assertEquals("string form", entry.getContinuationToken(), token.toString());
+    }
+
+    /**
+     * Tests that the token only contains characters that do not need quoting
+     * in a shell or URL.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testContinuationTokenShellSafe() throws Exception {
+        final String token = new ArchiveMetadata.ContinuationToken(1359623137000L, "1;1;2a2b3c&|<>*?").toString();
+        assertTrue("token: " + token, token.matches("[A-Za-z0-9_-]+"));
+    }
+
+    /**
+     * Tests that malformed tokens are rejected.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testContinuationTokenMalformed() throws Exception {
+        for (String token : new String[] {
+                "",
+                "1359623137000:abc",
+                "not base64!",
+                "MTM1OTYyMzEzNzAwMA", // "1359623137000"
+                "OjJhMmIzYw", // ":2a2b3c"
+                "TUVTU0FHRToyYTJiM2M", // "MESSAGE:2a2b3c"
+                "MTM1OTYyMzEzNzAwMDo"}) { // "1359623137000:"
+            try {
+                ArchiveMetadata.ContinuationToken.parse(token);
+                fail("Should have failed for: " + token);
+            } catch (IllegalArgumentException expected) { // NOPMD
+                // OK
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit tests for the LatencyHistogram and ProcessingMetrics classes.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class LatencyHistogramUnitTest {
+
+    /**
+     * Tests that an empty histogram reports zeros.
+     */
+    @Test
+    public void testEmpty() {
+        final LatencyHistogram instance = new LatencyHistogram();
+        assertEquals("count", 0, instance.getCount());
+        assertEquals("max", 0, instance.getMax());
+        assertEquals("mean", 0, instance.getMean(), 0);
+        assertEquals("p99", 0, instance.getValueAtPercentile(99));
+    }
+
+    /**
+     * Tests that small values are counted exactly.
+     */
+    @Test
+    public void testSmallValuesExact() {
+        final LatencyHistogram instance = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            instance.record(i);
+        }
+        assertEquals("count", 10, instance.getCount());
+        assertEquals("total", 55, instance.getTotal());
+        assertEquals("mean", 5.5, instance.getMean(), 0.0001);
+        assertEquals("p50", 5, instance.getValueAtPercentile(50));
+        assertEquals("p90", 9, instance.getValueAtPercentile(90));
+        assertEquals("p100", 10, instance.getValueAtPercentile(100));
+        assertEquals("max", 10, instance.getMax());
+    }
+
+    /**
+     * Tests that percentiles of larger values are within the precision of
+     * the buckets.
+     */
+    @Test
+    public void testPercentilesWithinPrecision() {
+        final LatencyHistogram instance = new LatencyHistogram();
+        for (int i = 1; i <= 100000; i++) {
+            instance.record(i);
+        }
+        assertWithinPrecision("p50", 50000, instance.getValueAtPercentile(50));
+        assertWithinPrecision("p90", 90000, instance.getValueAtPercentile(90));
+        assertWithinPrecision("p99", 99000, instance.getValueAtPercentile(99));
+        assertWithinPrecision("p99.9", 99900, instance.getValueAtPercentile(99.9));
+        assertEquals("p100", 100000, instance.getValueAtPercentile(100));
+    }
+
+    /**
+     * Tests that the tail is visible even if it is rare.
+     */
+    @Test
+    public void testTail() {
+        final LatencyHistogram instance = new LatencyHistogram();
+        for (int i = 0; i < 999; i++) {
+            instance.record(100);
+        }
+        instance.record(1000000);
+        assertWithinPrecision("p99", 100, instance.getValueAtPercentile(99));
+        assertEquals("p99.99", 1000000, instance.getValueAtPercentile(99.99));
+        assertEquals("max", 1000000, instance.getMax());
+    }
+
+    /**
+     * Tests that negative and very large values are recorded.
+     */
+    @Test
+    public void testOutOfRange() {
+        final LatencyHistogram instance = new LatencyHistogram();
+        instance.record(-5);
+        instance.record(Long.MAX_VALUE / 2);
+        assertEquals("count", 2, instance.getCount());
+        assertEquals("p50", 0, instance.getValueAtPercentile(50));
+        assertEquals("p100", Long.MAX_VALUE / 2, instance.getValueAtPercentile(100));
+    }
+
+    /**
+     * Tests that a copy is not affected by later recordings.
+     */
+    @Test
+    public void testCopy() {
+        final LatencyHistogram instance = new LatencyHistogram();
+        instance.record(1000);
+        final LatencyHistogram copy = instance.copy();
+        instance.record(2000);
+        assertEquals("copy count", 1, copy.getCount());
+        assertEquals("copy max", 1000, copy.getMax());
+        assertEquals("count", 2, instance.getCount());
+    }
+
+    /**
+     * Tests recording processing metrics and displaying them.
+     */
+    @Test
+    public void testProcessingMetrics() {
+        final ProcessingMetrics instance = new ProcessingMetrics();
+        instance.record(ProcessingMetrics.Phase.AUTHORIZATION, 2000);
+        instance.record(ProcessingMetrics.Phase.TOTAL, 5000000);
+        final ProcessingMetrics copy = instance.copy();
+        instance.record(ProcessingMetrics.Phase.TOTAL, 5000000);
+
+        assertEquals("authorization", 2, copy.getHistogram(ProcessingMetrics.Phase.AUTHORIZATION).getMax());
+        assertEquals("total", 1, copy.getHistogram(ProcessingMetrics.Phase.TOTAL).getCount());
+        assertEquals("start time", instance.getStartTime(), copy.getStartTime());
+
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        copy.display(new PrintStream(bout, true, StandardCharsets.UTF_8));
+        final String output = bout.toString(StandardCharsets.UTF_8);
+        for (ProcessingMetrics.Phase phase : ProcessingMetrics.Phase.values()) {
+            assertTrue("contains " + phase + ": " + output, output.contains(phase.name()));
+        }
+        assertTrue("contains total: " + output, output.contains("5000"));
+    }
+
+    private static void assertWithinPrecision(final String message, final long expected, final long actual) {
+        assertTrue(message + ": " + actual, actual >= expected && actual <= expected + expected / 16);
+    }
+}
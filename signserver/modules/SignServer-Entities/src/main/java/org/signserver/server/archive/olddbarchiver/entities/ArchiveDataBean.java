@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Date;
 import java.util.HashMap;
 import jakarta.ejb.EJBException;
@@ -71,6 +72,13 @@ public class ArchiveDataBean implements Serializable {
     public static final int DATA_ENCODING_XML = 0;
     public static final int DATA_ENCODING_BASE64 = 1;
 
+    /**
+     * The archiveData column only contains the hex encoded SHA-256 digest
+     * of a file with the archived bytes in the archive directory of the
+     * worker.
+     */
+    public static final int DATA_ENCODING_FILE_REFERENCE = 2;
+
     @Id
     private String uniqueId;
     
@@ -239,6 +247,8 @@ public class ArchiveDataBean implements Serializable {
 
         if (dataEncoding != null && dataEncoding == DATA_ENCODING_BASE64) {
             result = new ArchiveData(Base64.decode(getArchiveData().getBytes(StandardCharsets.UTF_8)));
+        } else if (dataEncoding != null && dataEncoding == DATA_ENCODING_FILE_REFERENCE) {
+            throw new IOException("Archive data only references a file");
         } else {
             SecureXMLDecoder decoder;
 
@@ -283,8 +293,21 @@ public class ArchiveDataBean implements Serializable {
      * Method used to get the ArchiveDataVO representation of the data row.
      * 
      * @return Archive data
+     * @throws IllegalArgumentException if the row only references a file
      */
     public ArchiveDataVO getArchiveDataVO() {
+        return getArchiveDataVO(null);
+    }
+
+    /**
+     * Method used to get the ArchiveDataVO representation of the data row.
+     *
+     * @param fileResolver to find the file for rows only referencing a file
+     * or null if not available
+     * @return Archive data
+     * @throws IllegalArgumentException if the archived data could not be read
+     */
+    public ArchiveDataVO getArchiveDataVO(final ArchiveFileResolver fileResolver) {
         if (LOG.isDebugEnabled()) {
             LOG.debug("getArchiveDataVO: dataEncoding: " + getDataEncoding());
         }
@@ -292,6 +315,14 @@ public class ArchiveDataBean implements Serializable {
             return new ArchiveDataVO(getType(), getSignerid(), getArchiveid(), new Date(getTime()),
                 getRequestIssuerDN(), getRequestCertSerialnumber(), getRequestIP(),
                 Base64.decode(getArchiveData().getBytes(StandardCharsets.UTF_8)));
+        } else if (getDataEncoding() != null && getDataEncoding() == DATA_ENCODING_FILE_REFERENCE) {
+            try {
+                return new ArchiveDataVO(getType(), getSignerid(), getArchiveid(), new Date(getTime()),
+                    getRequestIssuerDN(), getRequestCertSerialnumber(), getRequestIP(),
+                    readReferencedFile(fileResolver));
+            } catch (IOException ex) {
+                throw new IllegalArgumentException("Unable to read archived file", ex);
+            }
         } else {
             try {
                 return new ArchiveDataVO(getType(), getSignerid(), getArchiveid(), new Date(getTime()),
@@ -302,4 +333,19 @@ public class ArchiveDataBean implements Serializable {
             }
         }
     }
+
+    /**
+     * Reads the archived bytes from the file referenced by the archiveData
+     * column.
+     *
+     * @param fileResolver to find the file with
+     * @return the archived bytes
+     * @throws IOException in case the file could not be found or read
+     */
+    private byte[] readReferencedFile(final ArchiveFileResolver fileResolver) throws IOException {
+        if (fileResolver == null) {
+            throw new IOException("No archive directory available for the file reference");
+        }
+        return Files.readAllBytes(fileResolver.resolve(getSignerid(), getArchiveData()));
+    }
 }
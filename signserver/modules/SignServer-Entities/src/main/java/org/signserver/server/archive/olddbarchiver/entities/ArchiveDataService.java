@@ -26,9 +26,12 @@ import jakarta.persistence.Query;
 
 import org.apache.log4j.Logger;
 import org.cesecore.util.CertTools;
+import org.cesecore.util.query.Elem;
 import org.cesecore.util.query.QueryCriteria;
 import org.cesecore.util.query.QueryGenerator;
+import org.cesecore.util.query.clauses.Order;
 import org.signserver.common.ArchiveData;
+import org.signserver.common.ArchiveDataVO;
 import org.signserver.common.ArchiveMetadata;
 
 /**
@@ -44,10 +47,23 @@ public class ArchiveDataService {
     /** Logger for this class. */
     private static final Logger LOG = Logger.getLogger(ArchiveDataService.class);
     
+    private static final String WHERE = "WHERE";
+
     private final EntityManager em;
+    private final ArchiveFileResolver fileResolver;
 
     public ArchiveDataService(EntityManager em) {
+        this(em, null);
+    }
+
+    /**
+     * @param em entity manager
+     * @param fileResolver to read the data of entries only referencing a file
+     * or null if not available
+     */
+    public ArchiveDataService(EntityManager em, ArchiveFileResolver fileResolver) {
         this.em = em;
+        this.fileResolver = fileResolver;
     }
 
     /**
@@ -105,7 +121,53 @@ public class ArchiveDataService {
         adb.setRequestIP(requestIP);
         adb.setArchiveData(archiveData);
         adb.setDataEncoding(ArchiveDataBean.DATA_ENCODING_BASE64);
- 
+
+        em.persist(adb);
+        return uniqueId;
+    }
+
+    /**
+     * @param bean archive entry
+     * @return the value object including the archived bytes, also for
+     * entries only referencing a file
+     */
+    public ArchiveDataVO toArchiveDataVO(ArchiveDataBean bean) {
+        return bean.getArchiveDataVO(fileResolver);
+    }
+
+    /**
+     * Creates an archive entry only referencing a file containing the
+     * archived bytes instead of storing them in the database.
+     *
+     * @param type Archive type
+     * @param signerId Signer ID
+     * @param archiveid Archive ID
+     * @param clientCert Client certificate
+     * @param requestIP Request IP address
+     * @param fileReference Hex encoded SHA-256 digest of the archived bytes
+     * @return Unique ID
+     * @see ArchiveDataBean#DATA_ENCODING_FILE_REFERENCE
+     */
+    public String createFileReference(int type, int signerId, String archiveid, X509Certificate clientCert,
+            String requestIP, String fileReference) {
+        String uniqueId = type + ";" + signerId + ";" + archiveid;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Creating archive data reference, uniqueId=" + uniqueId);
+        }
+        ArchiveDataBean adb = new ArchiveDataBean();
+        adb.setUniqueId(uniqueId);
+        adb.setType(type);
+        adb.setSignerid(signerId);
+        adb.setTime(new Date().getTime());
+        adb.setArchiveid(archiveid);
+        if (clientCert != null) {
+            adb.setRequestIssuerDN(CertTools.getIssuerDN(clientCert));
+            adb.setRequestCertSerialnumber(clientCert.getSerialNumber().toString(16));
+        }
+        adb.setRequestIP(requestIP);
+        adb.setArchiveData(fileReference);
+        adb.setDataEncoding(ArchiveDataBean.DATA_ENCODING_FILE_REFERENCE);
+
         em.persist(adb);
         return uniqueId;
     }
@@ -225,7 +287,7 @@ public class ArchiveDataService {
                                                    archiveData.getRequestCertSerialnumber(),
                                                    archiveData.getRequestIP(),
                                                    includeData ?
-                                                    archiveData.getArchiveDataVO().getArchivedBytes() :
+                                                    archiveData.getArchiveDataVO(fileResolver).getArchivedBytes() :
                                                     null));
                 }
 
@@ -272,42 +334,124 @@ public class ArchiveDataService {
                 query.setMaxResults(max);
             }
             
-            final List<ArchiveMetadata> result = new LinkedList<>();
+            return toMetadata(query, includeData);
             
-            if (includeData) {
-                final List<ArchiveDataBean> queryResults = query.getResultList();
-
-                for (final ArchiveDataBean bean : queryResults) {
-                    final ArchiveMetadata metadata =
-                        new ArchiveMetadata(bean.getType(), bean.getSignerid(),
-                                            bean.getUniqueId(), bean.getArchiveid(),
-                                            new Date(bean.getTime()), bean.getRequestIssuerDN(),
-                                            bean.getRequestCertSerialnumber(),
-                                            bean.getRequestIP(),
-                                            bean.getArchiveDataVO().getArchivedBytes());
-                    result.add(metadata);
+        } catch (NoResultException ignored) { // NOPMD
+            // ignored
+        }
+        
+        return Collections.emptyList();
+    }
+
+    /**
+     * Find archive entries based on search query criterias continuing after
+     * the entry identified by a continuation token.
+     *
+     * Instead of skipping a number of rows (which requires the database to
+     * scan all of them) this seeks directly to the entry after the last
+     * returned one. The result is always ordered by time and uniqueId, newest
+     * first, so any ordering in the criteria is ignored.
+     *
+     * @param continuationToken Token from the last entry of the previous page
+     * or null to start from the newest entry
+     * @param max Maximum number of entries returned (0 means no limit)
+     * @param criteria Query criteria
+     * @param includeData If true, include archive data (could result in large result sets)
+     * @return Collection of archive meta data entries
+     * @throws IllegalArgumentException If the continuation token is malformed
+     * @see ArchiveMetadata#getContinuationToken()
+     */
+    public List<ArchiveMetadata> findMatchingCriteriaAfter(String continuationToken, int max,
+            QueryCriteria criteria, boolean includeData) {
+
+        // Only the conditions are used from the criteria
+        final QueryCriteria conditionsOnly = QueryCriteria.create();
+        if (criteria != null) {
+            for (final Elem elem : criteria.getElements()) {
+                if (!(elem instanceof Order)) {
+                    conditionsOnly.add(elem);
                 }
+            }
+        }
+        final QueryGenerator generator = QueryGenerator.generator(ArchiveDataBean.class, conditionsOnly, "a");
+        final StringBuilder conditions = new StringBuilder(generator.generate());
+
+        final ArchiveMetadata.ContinuationToken seek = continuationToken == null ? null : ArchiveMetadata.ContinuationToken.parse(continuationToken);
+        if (seek != null) {
+            if (conditions.length() == 0) {
+                conditions.append(" WHERE");
             } else {
-                final List<Object[]> queryResults = query.getResultList();
-                
-                for (final Object[] o : queryResults) {
-                    final ArchiveMetadata metadata =
-                            new ArchiveMetadata((Integer) o[0], (Integer) o[1],
-                                                (String) o[2], (String) o[3],
-                                                new Date((Long) o[4]),
-                                                (String) o[5], (String) o[6],
-                                                (String) o[7]);
-                    result.add(metadata);
-                }
+                conditions.insert(conditions.indexOf(WHERE) + WHERE.length(), " (").append(") AND");
             }
-            
-            return result;
-            
+            conditions.append(" (a.time < :seekTime OR (a.time = :seekTime AND a.uniqueId < :seekUniqueId))");
+        }
+        conditions.append(" ORDER BY a.time DESC, a.uniqueId DESC");
+
+        try {
+            final Query query = includeData ?
+                    em.createQuery("SELECT a FROM ArchiveDataBean a" + conditions) :
+                    em.createQuery("SELECT a.type, a.signerid, a.uniqueId, a.archiveid, a.time, a.requestIssuerDN, a.requestCertSerialnumber, a.requestIP FROM ArchiveDataBean a" + conditions);
+
+            for (final String key : generator.getParameterKeys()) {
+                query.setParameter(key, generator.getParameterValue(key));
+            }
+
+            if (seek != null) {
+                query.setParameter("seekTime", seek.getTime());
+                query.setParameter("seekUniqueId", seek.getUniqueId());
+            }
+
+            if (max > 0) {
+                query.setMaxResults(max);
+            }
+
+            return toMetadata(query, includeData);
         } catch (NoResultException ignored) { // NOPMD
             // ignored
         }
-        
+
         return Collections.emptyList();
     }
 
+    /**
+     * Execute the query and assemble the ArchiveMetadataS.
+     *
+     * @param query Either selecting the complete entities (when including data)
+     * or only the meta data columns
+     * @param includeData If the query selects the complete entities
+     * @return List of archive meta data entries
+     */
+    @SuppressWarnings("unchecked")
+    private List<ArchiveMetadata> toMetadata(final Query query, final boolean includeData) {
+        final List<ArchiveMetadata> result = new LinkedList<>();
+
+        if (includeData) {
+            final List<ArchiveDataBean> queryResults = query.getResultList();
+
+            for (final ArchiveDataBean bean : queryResults) {
+                final ArchiveMetadata metadata =
+                    new ArchiveMetadata(bean.getType(), bean.getSignerid(),
+                                        bean.getUniqueId(), bean.getArchiveid(),
+                                        new Date(bean.getTime()), bean.getRequestIssuerDN(),
+                                        bean.getRequestCertSerialnumber(),
+                                        bean.getRequestIP(),
+                                        bean.getArchiveDataVO(fileResolver).getArchivedBytes());
+                result.add(metadata);
+            }
+        } else {
+            final List<Object[]> queryResults = query.getResultList();
+
+            for (final Object[] o : queryResults) {
+                final ArchiveMetadata metadata =
+                        new ArchiveMetadata((Integer) o[0], (Integer) o[1],
+                                            (String) o[2], (String) o[3],
+                                            new Date((Long) o[4]),
+                                            (String) o[5], (String) o[6],
+                                            (String) o[7]);
+                result.add(metadata);
+            }
+        }
+
+        return result;
+    }
 }
@@ -0,0 +1,36 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.archive.olddbarchiver.entities;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Finds the file with the archived bytes for archive entries only
+ * referencing a file.
+ *
+ * @author agent
+ * @version $Id$
+ * @see ArchiveDataBean#DATA_ENCODING_FILE_REFERENCE
+ */
+public interface ArchiveFileResolver {
+
+    /**
+     * @param signerId ID of the worker that archived the file
+     * @param reference the reference stored in the archive entry
+     * @return the file with the archived bytes
+     * @throws IOException in case the reference is malformed or the file
+     * could not be found
+     */
+    Path resolve(int signerId, String reference) throws IOException;
+}
@@ -51,6 +51,7 @@ public class FileBasedWorkerConfigDataService implements IWorkerConfigDataServic
     private final File folder;
     private static final String DATA_PREFIX = "signerdata-";
     private static final String SUFFIX = ".dat";
+    static final String IMPORTED_SUFFIX = ".imported";
     private static final int EXPECTED_SCHEMA_VERSION = 1;
     private static final int TABLE_VERSION_10 = 10;
     private static final int EXPECTED_TABLE_VERSION = TABLE_VERSION_10;
@@ -338,6 +339,25 @@ public class FileBasedWorkerConfigDataService implements IWorkerConfigDataServic
         }
     }
     
+    /**
+     * Renames the file of a worker configuration imported into another
+     * storage so that it is not read anymore but is kept for reference.
+     *
+     * @param workerId of the imported worker
+     */
+    void markImported(final int workerId) {
+        synchronized (manager) {
+            final File file = new File(folder, DATA_PREFIX + workerId + SUFFIX);
+            final File imported = new File(folder, DATA_PREFIX + workerId + SUFFIX + IMPORTED_SUFFIX);
+            if (!file.renameTo(imported)) {
+                LOG.error("File not renamed after import: " + file.getAbsolutePath());
+            }
+            if (index != null) {
+                index.remove(workerId);
+            }
+        }
+    }
+
     private void checkSchemaVersion() {
         if (manager.getSchemaVersion() != EXPECTED_SCHEMA_VERSION) {
             throw new FileBasedDatabaseException("Unsupported schema version: " + manager.getSchemaVersion());
@@ -0,0 +1,286 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.config.entities;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import org.signserver.common.FileBasedDatabaseException;
+import org.signserver.common.NoSuchWorkerException;
+import org.signserver.common.WorkerConfig;
+import org.signserver.common.WorkerType;
+import org.signserver.server.nodb.FileBasedDatabaseManager;
+
+/**
+ * Worker configuration storage for the file based database keeping all
+ * configurations in a {@link WorkerConfigJournal} instead of one file per
+ * worker.
+ *
+ * Reads are served from memory without taking the database lock. At first
+ * start any worker configurations stored by the
+ * {@link FileBasedWorkerConfigDataService} are imported. Once the imported
+ * configurations have been written to the first snapshot the old files are
+ * renamed so that they are not mistaken for the current configuration.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class JournaledWorkerConfigDataService implements IWorkerConfigDataService {
+
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getLogger(JournaledWorkerConfigDataService.class);
+
+    private static final int EXPECTED_SCHEMA_VERSION = 1;
+    private static final int TABLE_VERSION_10 = 10;
+    private static final String TABLE_VERSION_PROPERTY = "FileBasedWorkerConfigDataService.version";
+
+    private static volatile WorkerConfigJournal journal;
+
+    private final FileBasedDatabaseManager manager;
+
+    /** Configurations stored one file per worker to import. */
+    private final FileBasedWorkerConfigDataService files;
+
+    public JournaledWorkerConfigDataService(FileBasedDatabaseManager manager) {
+        this(manager, new FileBasedWorkerConfigDataService(manager));
+    }
+
+    JournaledWorkerConfigDataService(FileBasedDatabaseManager manager, FileBasedWorkerConfigDataService files) {
+        this.manager = manager;
+        this.files = files;
+    }
+
+    private WorkerConfigJournal getJournal() {
+        WorkerConfigJournal result = journal;
+        if (result == null) {
+            synchronized (manager) {
+                result = journal;
+                if (result == null) {
+                    if (manager.getSchemaVersion() != EXPECTED_SCHEMA_VERSION) {
+                        throw new FileBasedDatabaseException("Unsupported schema version: " + manager.getSchemaVersion());
+                    }
+                    result = new WorkerConfigJournal(manager.getDataFolder());
+                    try {
+                        final List<Integer> imported = result.exists() ? Collections.<Integer>emptyList() : importWorkerConfigs(result);
+                        result.open();
+                        for (Integer id : imported) {
+                            files.markImported(id);
+                        }
+                    } catch (IOException ex) {
+                        throw new FileBasedDatabaseException("Could not load from or write data to file based database", ex);
+                    }
+                    journal = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Closes the journal, if loaded, so that it is loaded again on next use.
+     */
+    public void close() {
+        synchronized (manager) {
+            final WorkerConfigJournal current = journal;
+            if (current != null) {
+                current.close();
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * Loads the configurations stored one file per worker.
+     *
+     * @return IDs of the imported workers
+     */
+    private List<Integer> importWorkerConfigs(final WorkerConfigJournal target) throws IOException {
+        final List<Integer> ids = files.findAllIds();
+        final List<Integer> result = new ArrayList<>(ids.size());
+        if (!ids.isEmpty()) {
+            LOG.info("Importing " + ids.size() + " worker configurations");
+            for (Integer id : ids) {
+                final WorkerConfig config = files.getWorkerProperties(id, false);
+                if (config != null) {
+                    target.load(id, getName(id, config), getType(config).getType(), getData(config));
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void create(int workerId, String configClassName) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(">create(" + workerId + ", " + configClassName + ")");
+        }
+        try {
+            setWorkerConfig(workerId, (WorkerConfig) this.getClass().getClassLoader().loadClass(configClassName).newInstance());
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | FileBasedDatabaseException e) {
+            LOG.error(e);
+        }
+    }
+
+    @Override
+    public void setWorkerConfig(int workerId, WorkerConfig signconf) throws FileBasedDatabaseException {
+        try {
+            getJournal().put(workerId, getName(workerId, signconf), getType(signconf).getType(), getData(signconf));
+        } catch (IOException ex) {
+            throw new FileBasedDatabaseException("Could not load from or write data to file based database", ex);
+        }
+    }
+
+    @Override
+    public boolean removeWorkerConfig(int workerId) throws FileBasedDatabaseException {
+        try {
+            getJournal().remove(workerId);
+            return getJournal().get(workerId) == null;
+        } catch (IOException ex) {
+            throw new FileBasedDatabaseException("Could not load from or write data to file based database", ex);
+        }
+    }
+
+    @Override
+    public WorkerConfig getWorkerProperties(int workerId, boolean create) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(">getWorkerProperties(" + workerId + ")");
+        }
+        WorkerConfig result = null;
+        final WorkerConfigJournal.Record record = getJournal().get(workerId);
+        if (record != null) {
+            result = new WorkerConfig();
+            try {
+                result.loadData(record.getData());
+                result.upgrade();
+            } catch (IOException ex) {
+                throw new FileBasedDatabaseException("Could not load from or write data to file based database", ex);
+            } catch (Exception e) {
+                LOG.error(e);
+            }
+            result.setProperty("NAME", record.getName());
+            if (getType(result) == WorkerType.UNKNOWN) {
+                result.setProperty("TYPE", WorkerType.UNKNOWN.name());
+            }
+        } else if (create) { // XXX remove 'create' parameter and instead let caller do the 'new'
+            result = new WorkerConfig();
+        }
+        return result;
+    }
+
+    @Override
+    public List<Integer> findAllIds() {
+        final List<Integer> result = new ArrayList<>();
+        for (WorkerConfigJournal.Record record : getJournal().getAll()) {
+            result.add(record.getWorkerId());
+        }
+        return result;
+    }
+
+    @Override
+    public List<Integer> findAllIds(WorkerType workerType) {
+        if (workerType == null) {
+            workerType = WorkerType.UNKNOWN;
+        }
+        final List<Integer> result = new ArrayList<>();
+        for (WorkerConfigJournal.Record record : getJournal().getAll()) {
+            if (record.getType() == workerType.getType()) {
+                result.add(record.getWorkerId());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<String> findAllNames() {
+        final List<String> result = new ArrayList<>();
+        for (WorkerConfigJournal.Record record : getJournal().getAll()) {
+            result.add(record.getName());
+        }
+        return result;
+    }
+
+    @Override
+    public int findId(String workerName) throws NoSuchWorkerException {
+        final Integer result = getJournal().getId(workerName);
+        if (result == null) {
+            throw new NoSuchWorkerException(workerName);
+        }
+        return result;
+    }
+
+    @Override
+    public void populateNameColumn() {
+        // Unused, the name is always stored
+    }
+
+    /**
+     * Loads the worker configurations, importing them if needed, and marks
+     * the table as upgraded as the import sets the name and type of all
+     * workers.
+     */
+    public void upgrade() {
+        synchronized (manager) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(">upgrade()");
+            }
+            if (manager.getSchemaVersion() != EXPECTED_SCHEMA_VERSION) {
+                throw new FileBasedDatabaseException("Unsupported schema version: " + manager.getSchemaVersion());
+            }
+            final int currentTableVersion = Integer.parseInt(manager.getMetadata().getProperty(TABLE_VERSION_PROPERTY, "0"));
+            if (currentTableVersion > TABLE_VERSION_10) {
+                throw new FileBasedDatabaseException("Unsupported table version: " + currentTableVersion);
+            }
+            getJournal();
+            if (currentTableVersion < TABLE_VERSION_10) {
+                manager.getMetadata().setProperty(TABLE_VERSION_PROPERTY, String.valueOf(TABLE_VERSION_10));
+                manager.storeMetadata();
+                LOG.info("Finished table upgrade");
+            }
+        }
+    }
+
+    private static String getName(int workerId, WorkerConfig config) {
+        String name = config.getProperty("NAME");
+        if (name == null || name.trim().isEmpty()) {
+            name = "UnamedWorker" + workerId;
+        }
+        return name;
+    }
+
+    private static WorkerType getType(WorkerConfig config) {
+        final String typeValue = config.getProperty("TYPE");
+        if (typeValue == null || typeValue.trim().isEmpty()) {
+            return WorkerType.UNKNOWN;
+        }
+        try {
+            return WorkerType.valueOf(typeValue);
+        } catch (IllegalArgumentException ex) {
+            LOG.error("Unsupported worker type: " + typeValue + ": " + ex.getLocalizedMessage());
+            return WorkerType.UNKNOWN;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> getData(WorkerConfig config) {
+        final Object o = config.saveData();
+        if (o instanceof Map) {
+            return (Map<Object, Object>) o;
+        } else {
+            throw new IllegalArgumentException("WorkerConfig should return a Map");
+        }
+    }
+}
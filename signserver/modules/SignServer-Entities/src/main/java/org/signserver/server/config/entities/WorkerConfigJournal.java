@@ -0,0 +1,497 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.config.entities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import org.apache.log4j.Logger;
+
+/**
+ * Storage of worker configurations as a snapshot file and an append-only
+ * journal of the changes made after the snapshot.
+ *
+ * All configurations are kept in memory, in their serialized form, so that
+ * reading a configuration or querying the index by name or type does not
+ * need any locking or disk access. A change is appended to the journal and
+ * synced before it is published in memory. When the journal has grown large
+ * enough its content is compacted into a new snapshot.
+ *
+ * Both files consist of records containing the worker ID, name, type and
+ * the configuration data as a serialized map. Each record is stored with
+ * its length and a CRC32 so that a record partially written when the server
+ * stopped can be detected and discarded.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class WorkerConfigJournal {
+
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getLogger(WorkerConfigJournal.class);
+
+    static final String SNAPSHOT_FILE = "workerconfig.snapshot";
+    static final String JOURNAL_FILE = "workerconfig.journal";
+
+    private static final int SNAPSHOT_MAGIC = 0x53535743; // SSWC
+    private static final int JOURNAL_MAGIC = 0x5353574a; // SSWJ
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    /** Number of journal records after which a new snapshot is written. */
+    private static final int DEFAULT_COMPACT_THRESHOLD = 1000;
+
+    /** Classes that may occur in the configuration data. */
+    private static final ObjectInputFilter DATA_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=20;"
+            + "java.lang.String;java.lang.Number;java.lang.Integer;java.lang.Long;"
+            + "java.lang.Float;java.lang.Double;java.lang.Boolean;java.lang.Enum;"
+            + "java.util.Map$Entry;java.util.HashMap;java.util.LinkedHashMap;java.util.Hashtable;java.util.Properties;"
+            + "java.util.HashSet;java.util.LinkedHashSet;"
+            + "org.signserver.common.AuthorizedClient;org.signserver.common.CertificateMatchingRule;"
+            + "org.signserver.common.MatchSubjectWithType;org.signserver.common.MatchIssuerWithType;"
+            + "!*");
+
+    /**
+     * Immutable stored version of one worker configuration.
+     */
+    public static class Record {
+        private final int workerId;
+        private final String name;
+        private final int type;
+        private final byte[] data;
+
+        Record(final int workerId, final String name, final int type, final byte[] data) {
+            this.workerId = workerId;
+            this.name = name;
+            this.type = type;
+            this.data = data;
+        }
+
+        public int getWorkerId() {
+            return workerId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        /**
+         * @return a new copy of the configuration data
+         * @throws IOException in case the data could not be parsed
+         */
+        public Map<Object, Object> getData() throws IOException {
+            return decode(data);
+        }
+    }
+
+    private final File snapshotFile;
+    private final File journalFile;
+    private final int compactThreshold;
+
+    private final Map<Integer, Record> records = new ConcurrentHashMap<>();
+    private final Map<String, Integer> names = new ConcurrentHashMap<>();
+
+    /** Journal open for appending, guarded by this. */
+    private FileChannel journal;
+    private int journalRecords;
+
+    /**
+     * Creates an instance for the given folder. The files are not read until
+     * {@link #open()} is called.
+     *
+     * @param folder to store the files in
+     */
+    public WorkerConfigJournal(final File folder) {
+        this(folder, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    WorkerConfigJournal(final File folder, final int compactThreshold) {
+        this.snapshotFile = new File(folder, SNAPSHOT_FILE);
+        this.journalFile = new File(folder, JOURNAL_FILE);
+        this.compactThreshold = compactThreshold;
+    }
+
+    /**
+     * @return true if there is a snapshot or journal in the folder
+     */
+    public boolean exists() {
+        return snapshotFile.exists() || journalFile.exists();
+    }
+
+    /**
+     * Loads the snapshot, replays the journal and opens the journal for
+     * appending. If the journal contained any records a new snapshot is
+     * written so that the next start only has to read the snapshot.
+     *
+     * @throws IOException in case of failure reading or writing the files
+     */
+    public synchronized void open() throws IOException {
+        final long start = System.currentTimeMillis();
+        if (snapshotFile.exists()) {
+            readSnapshot();
+        }
+        final long validLength = journalFile.exists() ? replayJournal() : 0;
+
+        journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (validLength < HEADER_LENGTH) {
+            journal.truncate(0);
+            writeJournalHeader();
+        } else if (journal.size() > validLength) {
+            LOG.warn("Discarding incomplete record at the end of " + journalFile.getName());
+            journal.truncate(validLength);
+            journal.force(false);
+        }
+        journal.position(journal.size());
+
+        if (journalRecords > 0 || !snapshotFile.exists()) {
+            compact();
+        }
+        LOG.info("Loaded " + records.size() + " worker configurations in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Closes the journal.
+     */
+    public synchronized void close() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ex) {
+                LOG.error("Failed to close journal", ex);
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * @param workerId of worker
+     * @return the current record for the worker or null if there is none
+     */
+    public Record get(final int workerId) {
+        return records.get(workerId);
+    }
+
+    /**
+     * @param name of worker
+     * @return ID of the worker or null if there is no worker by that name
+     */
+    public Integer getId(final String name) {
+        return names.get(name);
+    }
+
+    /**
+     * @return all current records
+     */
+    public Collection<Record> getAll() {
+        return new ArrayList<>(records.values());
+    }
+
+    /**
+     * Stores a worker configuration.
+     *
+     * @param workerId of worker
+     * @param name of worker
+     * @param type of worker
+     * @param data configuration data
+     * @throws IOException in case of failure writing to the journal
+     */
+    public synchronized void put(final int workerId, final String name, final int type, final Map<Object, Object> data) throws IOException {
+        final Record record = new Record(workerId, name, type, encode(data));
+        append(OP_PUT, record);
+        publish(record);
+        maybeCompact();
+    }
+
+    /**
+     * Removes a worker configuration.
+     *
+     * @param workerId of worker
+     * @return true if there was a configuration for the worker
+     * @throws IOException in case of failure writing to the journal
+     */
+    public synchronized boolean remove(final int workerId) throws IOException {
+        if (!records.containsKey(workerId)) {
+            return false;
+        }
+        append(OP_REMOVE, new Record(workerId, null, 0, null));
+        unpublish(workerId);
+        maybeCompact();
+        return true;
+    }
+
+    /**
+     * Adds a record to the in-memory state without writing it to the
+     * journal. Used when importing existing configurations before the
+     * first snapshot is written.
+     */
+    synchronized void load(final int workerId, final String name, final int type, final Map<Object, Object> data) throws IOException {
+        publish(new Record(workerId, name, type, encode(data)));
+    }
+
+    private void publish(final Record record) {
+        final Record old = records.put(record.workerId, record);
+        if (old != null && !old.name.equals(record.name)) {
+            removeName(old);
+        }
+        final Integer existing = names.put(record.name, record.workerId);
+        if (existing != null && existing != record.workerId) {
+            LOG.warn("Duplicated name: \"" + record.name + "\"");
+        }
+    }
+
+    private void unpublish(final int workerId) {
+        final Record old = records.remove(workerId);
+        if (old != null) {
+            removeName(old);
+        }
+    }
+
+    /**
+     * Removes the name of a record no longer current from the index. If
+     * another worker has the same name the name then refers to that worker.
+     */
+    private void removeName(final Record old) {
+        if (names.remove(old.name, old.workerId)) {
+            for (final Record other : records.values()) {
+                if (other.name.equals(old.name)) {
+                    names.putIfAbsent(other.name, other.workerId);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void append(final byte op, final Record record) throws IOException {
+        if (journal == null) {
+            throw new IOException("Journal not open");
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(frame(encodeRecord(op, record)));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        journal.force(false);
+        journalRecords++;
+    }
+
+    private void maybeCompact() throws IOException {
+        if (journalRecords >= compactThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * Writes all current records to a new snapshot and empties the journal.
+     * The snapshot replaces the old one atomically and replaying the journal
+     * on top of the new snapshot gives the same result, so a failure at any
+     * point leaves a consistent state on disk.
+     */
+    synchronized void compact() throws IOException {
+        final long start = System.currentTimeMillis();
+        final File tmpFile = new File(snapshotFile.getParentFile(), SNAPSHOT_FILE + ".tmp");
+        final List<Record> all = new ArrayList<>(records.values());
+        try (FileOutputStream fout = new FileOutputStream(tmpFile);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(all.size());
+            for (final Record record : all) {
+                out.write(frame(encodeRecord(OP_PUT, record)));
+            }
+            out.flush();
+            fout.getFD().sync();
+        }
+        Files.move(tmpFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (journal != null) {
+            journal.truncate(HEADER_LENGTH);
+            journal.position(HEADER_LENGTH);
+            journal.force(false);
+        }
+        journalRecords = 0;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Wrote snapshot with " + all.size() + " worker configurations in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    private void readSnapshot() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile.toPath())))) {
+            checkHeader(in, SNAPSHOT_MAGIC, snapshotFile);
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final byte[] body = readFrame(in);
+                if (body == null) {
+                    throw new IOException("Corrupt snapshot: " + snapshotFile.getAbsolutePath());
+                }
+                apply(body);
+            }
+        }
+    }
+
+    /**
+     * @return the length of the valid part of the journal
+     */
+    private long replayJournal() throws IOException {
+        if (journalFile.length() < HEADER_LENGTH) {
+            return 0;
+        }
+        long validLength;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile.toPath())))) {
+            checkHeader(in, JOURNAL_MAGIC, journalFile);
+            validLength = HEADER_LENGTH;
+            byte[] body;
+            while ((body = readFrame(in)) != null) {
+                apply(body);
+                journalRecords++;
+                validLength += body.length + 12;
+            }
+        }
+        return validLength;
+    }
+
+    private void writeJournalHeader() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(JOURNAL_MAGIC).putInt(FORMAT_VERSION).flip();
+        while (header.hasRemaining()) {
+            journal.write(header);
+        }
+        journal.force(false);
+    }
+
+    private static void checkHeader(final DataInputStream in, final int magic, final File file) throws IOException {
+        if (in.readInt() != magic) {
+            throw new IOException("Not a worker configuration file: " + file.getAbsolutePath());
+        }
+        final int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version " + version + " of " + file.getAbsolutePath());
+        }
+    }
+
+    private void apply(final byte[] body) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            final byte op = in.readByte();
+            final int workerId = in.readInt();
+            if (op == OP_PUT) {
+                final String name = in.readUTF();
+                final int type = in.readInt();
+                final byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                publish(new Record(workerId, name, type, data));
+            } else if (op == OP_REMOVE) {
+                unpublish(workerId);
+            } else {
+                throw new IOException("Unknown record type: " + op);
+            }
+        }
+    }
+
+    private static byte[] encodeRecord(final byte op, final Record record) throws IOException {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bout)) {
+            out.writeByte(op);
+            out.writeInt(record.workerId);
+            if (op == OP_PUT) {
+                out.writeUTF(record.name);
+                out.writeInt(record.type);
+                out.writeInt(record.data.length);
+                out.write(record.data);
+            }
+        }
+        return bout.toByteArray();
+    }
+
+    /**
+     * @return the body as length, body and CRC32
+     */
+    private static byte[] frame(final byte[] body) {
+        final CRC32 crc = new CRC32();
+        crc.update(body);
+        return ByteBuffer.allocate(body.length + 12)
+                .putInt(body.length)
+                .put(body)
+                .putLong(crc.getValue())
+                .array();
+    }
+
+    /**
+     * @return the body of the next record or null if there is no complete
+     * and valid record
+     */
+    private static byte[] readFrame(final DataInputStream in) throws IOException {
+        try {
+            final int length = in.readInt();
+            if (length < 0 || length > MAX_RECORD_LENGTH) {
+                return null;
+            }
+            final byte[] body = new byte[length];
+            in.readFully(body);
+            final long expected = in.readLong();
+            final CRC32 crc = new CRC32();
+            crc.update(body);
+            return crc.getValue() == expected ? body : null;
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    private static byte[] encode(final Map<Object, Object> data) throws IOException {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bout)) {
+            out.writeObject(new HashMap<>(data));
+        }
+        return bout.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> decode(final byte[] data) throws IOException {
+        try (InputStream bin = new ByteArrayInputStream(data);
+                ObjectInputStream in = new ObjectInputStream(bin)) {
+            in.setObjectInputFilter(DATA_FILTER);
+            return (Map<Object, Object>) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException("Unable to parse worker configuration data", ex);
+        }
+    }
+}
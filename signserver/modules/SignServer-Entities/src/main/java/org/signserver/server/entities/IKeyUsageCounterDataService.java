@@ -43,6 +43,18 @@ public interface IKeyUsageCounterDataService {
      */
     boolean incrementIfWithinLimit(String keyHash, long limit);
 
+    /**
+     * Increase the value of the key usage counter with the given amount but
+     * only if the limit is not exceeded in which case it instead just returns
+     * false.
+     * @param keyHash Hash of the key
+     * @param limit The maximum number of operations
+     * @param amount Number of operations to add to the counter
+     * @return True if the counter was increased or false if the limit would
+     * have been exceeded or the counter not initialized
+     */
+    boolean incrementIfWithinLimit(String keyHash, long limit, long amount);
+
     /**
      * Checks if the counter for the given key is within the given limit.
      * @param keyHash Hash of the key
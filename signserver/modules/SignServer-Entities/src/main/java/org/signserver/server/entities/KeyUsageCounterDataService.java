@@ -51,13 +51,19 @@ public class KeyUsageCounterDataService implements IKeyUsageCounterDataService {
 
     @Override
     public boolean incrementIfWithinLimit(String keyHash, long limit) {
+        return incrementIfWithinLimit(keyHash, limit, 1);
+    }
+
+    @Override
+    public boolean incrementIfWithinLimit(String keyHash, long limit, long amount) {
         final Query updateQuery;
         if (limit < 0) {
-            updateQuery = em.createQuery("UPDATE KeyUsageCounter w SET w.counter = w.counter + 1 WHERE w.keyHash = :keyhash");
+            updateQuery = em.createQuery("UPDATE KeyUsageCounter w SET w.counter = w.counter + :amount WHERE w.keyHash = :keyhash");
         } else {
-            updateQuery = em.createQuery("UPDATE KeyUsageCounter w SET w.counter = w.counter + 1 WHERE w.keyHash = :keyhash AND w.counter < :limit");
-            updateQuery.setParameter("limit", limit);
+            updateQuery = em.createQuery("UPDATE KeyUsageCounter w SET w.counter = w.counter + :amount WHERE w.keyHash = :keyhash AND w.counter <= :limit");
+            updateQuery.setParameter("limit", limit - amount);
         }
+        updateQuery.setParameter("amount", amount);
         updateQuery.setParameter("keyhash", keyHash);
 
         return updateQuery.executeUpdate() > 0;
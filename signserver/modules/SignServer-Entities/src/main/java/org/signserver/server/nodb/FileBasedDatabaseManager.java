@@ -39,6 +39,9 @@ public class FileBasedDatabaseManager {
     /** Name used for this database as database.name in signserver_deploy.properties. */
     private static final String DATABASE_NAME = "nodb";
     
+    /** Value of database.nodb.workerconfig.storage for the journaled storage. */
+    private static final String WORKERCONFIG_STORAGE_JOURNAL = "journal";
+
     private static final int CURRENT_SCHEMA_VERSION = 1;
     private static final String SCHEMA_VERSION = "schema.version";
     
@@ -48,7 +51,7 @@ public class FileBasedDatabaseManager {
     private MetaDataService dataService;
     private boolean initialized;
     
-    private FileBasedDatabaseManager(File dataFolder) {
+    FileBasedDatabaseManager(File dataFolder) {
         this.dataFolder = dataFolder;
         this.dataService = new MetaDataService(this);
     }
@@ -125,6 +128,14 @@ public class FileBasedDatabaseManager {
         return DATABASE_NAME.equalsIgnoreCase(CompileTimeSettings.getInstance().getProperty(CompileTimeSettings.DATABASE_NAME));
     }
 
+    /**
+     * @return True if the worker configurations should be stored in a journal
+     * instead of one file per worker
+     */
+    public boolean isJournaledWorkerConfig() {
+        return WORKERCONFIG_STORAGE_JOURNAL.equalsIgnoreCase(CompileTimeSettings.getInstance().getProperty(CompileTimeSettings.FILEBASED_DB_WORKERCONFIG_STORAGE, "").trim());
+    }
+
     /**
      * @return List of errors preventing the file based database from functioning
      */
@@ -0,0 +1,182 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.archive.olddbarchiver.entities;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.cesecore.util.query.Criteria;
+import org.cesecore.util.query.QueryCriteria;
+import org.cesecore.util.query.elems.RelationalOperator;
+import org.cesecore.util.query.elems.Term;
+import org.junit.Test;
+import org.signserver.common.ArchiveDataVO;
+import org.signserver.common.ArchiveMetadata;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the keyset paging in ArchiveDataService.
+ *
+ * The database is simulated by evaluating the seek condition on a list of
+ * rows ordered by time and uniqueId, newest first.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class ArchiveDataServiceUnitTest {
+
+    private static final String SEEK_CONDITION = "(a.time < :seekTime OR (a.time = :seekTime AND a.uniqueId < :seekUniqueId))";
+    private static final String SEEK_ORDER = " ORDER BY a.time DESC, a.uniqueId DESC";
+
+    /**
+     * Tests paging through all entries, where several entries have the same
+     * time and a page boundary falls in between them so that the uniqueId
+     * has to break the tie.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testFindMatchingCriteriaAfterTimeTies() throws Exception {
+        final List<Object[]> rows = new ArrayList<>();
+        rows.add(row("u01", 1000L));
+        rows.add(row("u02", 2000L));
+        rows.add(row("u03", 2000L));
+        rows.add(row("u04", 2000L));
+        rows.add(row("u05", 2000L));
+        rows.add(row("u06", 2000L));
+        rows.add(row("u07", 3000L));
+        rows.add(row("u08", 4000L));
+        final FakeDatabase database = new FakeDatabase(rows);
+        final ArchiveDataService instance = new ArchiveDataService(database.createEntityManager());
+
+        final List<String> pages = new ArrayList<>();
+        String token = null;
+        List<ArchiveMetadata> page;
+        do {
+            page = instance.findMatchingCriteriaAfter(token, 3, QueryCriteria.create().add(Criteria.orderAsc(ArchiveMetadata.SIGNER_ID)), false);
+            pages.add(page.stream().map(ArchiveMetadata::getUniqueId).collect(Collectors.joining(",")));
+            if (!page.isEmpty()) {
+                token = page.get(page.size() - 1).getContinuationToken();
+            }
+        } while (page.size() == 3);
+
+        assertEquals("pages", "[u08,u07,u06, u05,u04,u03, u02,u01]", pages.toString());
+        assertEquals("first query", "SELECT a.type, a.signerid, a.uniqueId, a.archiveid, a.time, a.requestIssuerDN, a.requestCertSerialnumber, a.requestIP FROM ArchiveDataBean a" + SEEK_ORDER,
+                database.queries.get(0));
+        assertEquals("next query", "SELECT a.type, a.signerid, a.uniqueId, a.archiveid, a.time, a.requestIssuerDN, a.requestCertSerialnumber, a.requestIP FROM ArchiveDataBean a WHERE " + SEEK_CONDITION + SEEK_ORDER,
+                database.queries.get(1));
+        assertEquals("seek of last query", Long.valueOf(2000L), database.parameters.get("seekTime"));
+        assertEquals("seek of last query", "u03", database.parameters.get("seekUniqueId"));
+    }
+
+    /**
+     * Tests that the seek condition is combined with the criteria so that
+     * an OR in the criteria can not widen the result.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testFindMatchingCriteriaAfterWithCriteria() throws Exception {
+        final FakeDatabase database = new FakeDatabase(new ArrayList<>());
+        final ArchiveDataService instance = new ArchiveDataService(database.createEntityManager());
+
+        instance.findMatchingCriteriaAfter(new ArchiveMetadata.ContinuationToken(2000L, "u03").toString(), 3,
+                QueryCriteria.create().add(new Term(RelationalOperator.EQ, ArchiveMetadata.SIGNER_ID, 42)), false);
+
+        final String query = database.queries.get(0);
+        assertTrue("criteria in parenthesis before seek: " + query,
+                query.matches(".* WHERE \\(.*signerid.*\\) AND " + java.util.regex.Pattern.quote(SEEK_CONDITION + SEEK_ORDER)));
+        assertTrue("criteria parameter: " + database.parameters, database.parameters.containsValue(42));
+    }
+
+    /**
+     * Tests that a malformed token is rejected.
+     * @throws Exception in case of error
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindMatchingCriteriaAfterMalformedToken() throws Exception {
+        new ArchiveDataService(new FakeDatabase(new ArrayList<>()).createEntityManager())
+                .findMatchingCriteriaAfter("1359623137000:1;1;2a2b3c", 3, QueryCriteria.create(), false);
+    }
+
+    private static Object[] row(final String uniqueId, final long time) {
+        return new Object[] {ArchiveDataVO.TYPE_RESPONSE, 1, uniqueId, "archive-" + uniqueId, time, null, null, null};
+    }
+
+    /**
+     * Evaluates the seek condition of the queries on a list of meta data
+     * rows.
+     */
+    private static class FakeDatabase {
+        private final List<Object[]> rows;
+        private final List<String> queries = new ArrayList<>();
+        private final Map<String, Object> parameters = new HashMap<>();
+        private int maxResults;
+
+        FakeDatabase(final List<Object[]> rows) {
+            this.rows = rows;
+        }
+
+        EntityManager createEntityManager() {
+            return new EntityManagerMock() {
+                @Override
+                public Query createQuery(String qlString) {
+                    queries.add(qlString);
+                    parameters.clear();
+                    maxResults = Integer.MAX_VALUE;
+                    return createResultQuery();
+                }
+            };
+        }
+
+        private Query createResultQuery() {
+            return new QueryMock() {
+                @Override
+                public Query setParameter(String name, Object value) {
+                    parameters.put(name, value);
+                    return this;
+                }
+
+                @Override
+                public Query setMaxResults(int maxResult) {
+                    maxResults = maxResult;
+                    return this;
+                }
+
+                @Override
+                public List<Object[]> getResultList() {
+                    return rows.stream()
+                            .filter(FakeDatabase.this::afterSeek)
+                            .sorted(Comparator.comparing((Object[] r) -> (Long) r[4])
+                                    .thenComparing(r -> (String) r[2]).reversed())
+                            .limit(maxResults)
+                            .collect(Collectors.toList());
+                }
+            };
+        }
+
+        private boolean afterSeek(final Object[] row) {
+            if (!parameters.containsKey("seekTime")) {
+                return true;
+            }
+            final long seekTime = (Long) parameters.get("seekTime");
+            final long time = (Long) row[4];
+            return time < seekTime
+                    || (time == seekTime && ((String) row[2]).compareTo((String) parameters.get("seekUniqueId")) < 0);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.archive.olddbarchiver.entities;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import jakarta.persistence.FlushModeType;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.Parameter;
+import jakarta.persistence.Query;
+import jakarta.persistence.TemporalType;
+
+/**
+ * Mocked Query not supporting any of the operations. Tests override the
+ * methods used by the code being tested.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class QueryMock implements Query {
+
+    @Override
+    public List getResultList() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Object getSingleResult() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public int executeUpdate() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setMaxResults(int maxResult) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public int getMaxResults() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setFirstResult(int startPosition) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public int getFirstResult() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setHint(String hintName, Object value) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Map<String, Object> getHints() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public <T> Query setParameter(Parameter<T> param, T value) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setParameter(Parameter<Calendar> param, Calendar value, TemporalType temporalType) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setParameter(Parameter<Date> param, Date value, TemporalType temporalType) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setParameter(String name, Object value) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setParameter(String name, Calendar value, TemporalType temporalType) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setParameter(String name, Date value, TemporalType temporalType) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setParameter(int position, Object value) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setParameter(int position, Calendar value, TemporalType temporalType) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setParameter(int position, Date value, TemporalType temporalType) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Set<Parameter<?>> getParameters() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Parameter<?> getParameter(String name) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public <T> Parameter<T> getParameter(String name, Class<T> type) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Parameter<?> getParameter(int position) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public <T> Parameter<T> getParameter(int position, Class<T> type) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public boolean isBound(Parameter<?> param) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public <T> T getParameterValue(Parameter<T> param) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Object getParameterValue(String name) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Object getParameterValue(int position) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setFlushMode(FlushModeType flushMode) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public FlushModeType getFlushMode() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public Query setLockMode(LockModeType lockMode) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public LockModeType getLockMode() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> cls) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+}
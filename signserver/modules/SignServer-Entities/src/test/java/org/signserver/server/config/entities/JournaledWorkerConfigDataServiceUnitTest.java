@@ -0,0 +1,140 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.config.entities;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signserver.common.NoSuchWorkerException;
+import org.signserver.common.WorkerConfig;
+import org.signserver.common.WorkerType;
+import org.signserver.server.nodb.FileBasedDatabaseManager;
+import org.signserver.server.nodb.FileBasedDatabaseManagerTestUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the JournaledWorkerConfigDataService.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class JournaledWorkerConfigDataServiceUnitTest {
+
+    private File folder;
+    private FileBasedDatabaseManager manager;
+    private JournaledWorkerConfigDataService instance;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("nodb").toFile();
+        manager = FileBasedDatabaseManagerTestUtils.create(folder);
+        instance = new JournaledWorkerConfigDataService(manager);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        instance.close();
+        FileUtils.deleteDirectory(folder);
+    }
+
+    /**
+     * Tests that the configurations stored one file per worker are imported
+     * at first start and that the imported files are renamed.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testImportFromWorkerFiles() throws Exception {
+        final Map<Integer, WorkerConfig> configs = new LinkedHashMap<>();
+        configs.put(1, config("Worker1", WorkerType.PROCESSABLE, "value1"));
+        configs.put(2, config("Worker2", WorkerType.TIMED_SERVICE, "value2"));
+        for (Integer id : configs.keySet()) {
+            Files.write(new File(folder, "signerdata-" + id + ".dat").toPath(), new byte[] {1});
+        }
+        instance = new JournaledWorkerConfigDataService(manager, new FileBasedWorkerConfigDataService(manager) {
+            @Override
+            public List<Integer> findAllIds() {
+                return new ArrayList<>(configs.keySet());
+            }
+
+            @Override
+            public WorkerConfig getWorkerProperties(int workerId, boolean create) {
+                return configs.get(workerId);
+            }
+        });
+
+        instance.upgrade();
+
+        assertEquals("ids", new TreeSet<>(Arrays.asList(1, 2)), new TreeSet<>(instance.findAllIds()));
+        assertEquals(Collections.singletonList(2), instance.findAllIds(WorkerType.TIMED_SERVICE));
+        assertEquals(1, instance.findId("Worker1"));
+        assertEquals("value1", instance.getWorkerProperties(1, false).getProperty("FOO"));
+
+        for (int id : new int[] {1, 2}) {
+            assertFalse("old file " + id, new File(folder, "signerdata-" + id + ".dat").exists());
+            assertTrue("renamed file " + id, new File(folder, "signerdata-" + id + ".dat" + FileBasedWorkerConfigDataService.IMPORTED_SUFFIX).exists());
+        }
+        assertEquals("table version", "10", manager.getMetadata().getProperty("FileBasedWorkerConfigDataService.version"));
+
+        // Not imported again
+        instance.setWorkerConfig(1, config("Worker1", WorkerType.PROCESSABLE, "changed"));
+        instance.close();
+        instance.upgrade();
+        assertEquals("changed", instance.getWorkerProperties(1, false).getProperty("FOO"));
+    }
+
+    /**
+     * Tests that changes are kept after the journal has been closed and that
+     * removed and renamed workers can not be found by their old names.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testChangesKeptAfterClose() throws Exception {
+        instance.setWorkerConfig(1, config("Worker1", WorkerType.PROCESSABLE, "value1"));
+        instance.setWorkerConfig(2, config("Worker2", WorkerType.PROCESSABLE, "value2"));
+        instance.setWorkerConfig(1, config("Renamed1", WorkerType.PROCESSABLE, "value3"));
+        assertTrue(instance.removeWorkerConfig(2));
+        instance.close();
+
+        assertEquals(Collections.singletonList(1), instance.findAllIds());
+        assertEquals(Collections.singletonList("Renamed1"), instance.findAllNames());
+        assertEquals("value3", instance.getWorkerProperties(1, false).getProperty("FOO"));
+        assertNull(instance.getWorkerProperties(2, false));
+        for (String name : new String[] {"Worker1", "Worker2"}) {
+            try {
+                instance.findId(name);
+                fail("Should not find " + name);
+            } catch (NoSuchWorkerException expected) { // NOPMD
+                // OK
+            }
+        }
+    }
+
+    private static WorkerConfig config(final String name, final WorkerType type, final String foo) {
+        final WorkerConfig result = new WorkerConfig();
+        result.setProperty("NAME", name);
+        result.setProperty("TYPE", type.name());
+        result.setProperty("FOO", foo);
+        return result;
+    }
+}
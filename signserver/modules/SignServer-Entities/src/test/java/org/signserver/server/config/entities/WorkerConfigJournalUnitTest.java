@@ -0,0 +1,257 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.config.entities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the WorkerConfigJournal.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class WorkerConfigJournalUnitTest {
+
+    /** Length of the journal header. */
+    private static final int HEADER_LENGTH = 8;
+
+    private File folder;
+    private File journalFile;
+    private File snapshotFile;
+    private WorkerConfigJournal instance;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("journal").toFile();
+        journalFile = new File(folder, WorkerConfigJournal.JOURNAL_FILE);
+        snapshotFile = new File(folder, WorkerConfigJournal.SNAPSHOT_FILE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (instance != null) {
+            instance.close();
+        }
+        FileUtils.deleteDirectory(folder);
+    }
+
+    /**
+     * Tests that a record only partially written at the end of the journal is
+     * discarded while the records before it are kept.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testTornTailRecord() throws Exception {
+        instance = open(100);
+        instance.put(1, "Worker1", 1, data("KEY", "value1"));
+        instance.put(2, "Worker2", 1, data("KEY", "value2"));
+        instance.close();
+
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        instance = open(100);
+        assertEquals("value1", instance.get(1).getData().get("KEY"));
+        assertNull("torn record", instance.get(2));
+        assertNull("torn name", instance.getId("Worker2"));
+
+        // The journal is usable after the torn record has been discarded
+        instance.put(3, "Worker3", 1, data("KEY", "value3"));
+        instance.close();
+        instance = open(100);
+        assertEquals(Arrays.asList(1, 3), ids());
+    }
+
+    /**
+     * Tests that garbage after the last record of the journal is discarded.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testGarbageAfterLastRecord() throws Exception {
+        instance = open(100);
+        instance.put(1, "Worker1", 1, data("KEY", "value1"));
+        instance.close();
+
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 10, 1, 2, 3}));
+        }
+
+        instance = open(100);
+        assertEquals(Arrays.asList(1), ids());
+        assertEquals("journal emptied by the compaction at open", HEADER_LENGTH, journalFile.length());
+    }
+
+    /**
+     * Tests that the state is the same after a crash between writing the new
+     * snapshot and truncating the journal, i.e. when the journal records are
+     * replayed on top of a snapshot that already contains them.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testCrashBetweenSnapshotAndTruncate() throws Exception {
+        instance = open(100);
+        instance.put(1, "Worker1", 1, data("KEY", "a"));
+        instance.put(2, "Worker2", 1, data("KEY", "b"));
+        instance.put(1, "Renamed1", 2, data("KEY", "c"));
+        instance.remove(2);
+        instance.put(3, "Worker2", 1, data("KEY", "d"));
+        final byte[] journal = Files.readAllBytes(journalFile.toPath());
+        final String expected = dump(instance);
+
+        instance.compact();
+        instance.close();
+        assertEquals("journal truncated", HEADER_LENGTH, journalFile.length());
+        Files.write(journalFile.toPath(), journal);
+
+        instance = open(100);
+        assertEquals(expected, dump(instance));
+        assertEquals(Integer.valueOf(3), instance.getId("Worker2"));
+        assertNull(instance.getId("Worker1"));
+    }
+
+    /**
+     * Tests that replaying the same journal records twice gives the same
+     * state as replaying them once.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testReplayIdempotent() throws Exception {
+        instance = open(100);
+        instance.put(1, "Worker1", 1, data("KEY", "a"));
+        instance.put(2, "Worker2", 1, data("KEY", "b"));
+        instance.remove(1);
+        instance.put(2, "Worker1", 1, data("KEY", "c"));
+        final String expected = dump(instance);
+        instance.close();
+        Files.delete(snapshotFile.toPath());
+
+        final byte[] journal = Files.readAllBytes(journalFile.toPath());
+        final byte[] doubled = Arrays.copyOf(journal, 2 * journal.length - HEADER_LENGTH);
+        System.arraycopy(journal, HEADER_LENGTH, doubled, journal.length, journal.length - HEADER_LENGTH);
+        Files.write(journalFile.toPath(), doubled);
+
+        instance = open(100);
+        assertEquals(expected, dump(instance));
+        instance.close();
+
+        instance = open(100);
+        assertEquals("after compaction", expected, dump(instance));
+    }
+
+    /**
+     * Tests that the journal is compacted into a new snapshot once it has
+     * reached the threshold.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        instance = open(3);
+        final long snapshotLength = snapshotFile.length();
+        instance.put(1, "Worker1", 1, data("KEY", "a"));
+        instance.put(2, "Worker2", 1, data("KEY", "b"));
+        assertTrue("journal written", journalFile.length() > HEADER_LENGTH);
+        assertEquals("snapshot unchanged", snapshotLength, snapshotFile.length());
+
+        instance.put(3, "Worker3", 1, data("KEY", "c"));
+        assertEquals("journal truncated", HEADER_LENGTH, journalFile.length());
+        assertTrue("snapshot written", snapshotFile.length() > snapshotLength);
+        assertFalse("no temporary file", new File(folder, WorkerConfigJournal.SNAPSHOT_FILE + ".tmp").exists());
+
+        final String expected = dump(instance);
+        instance.close();
+        instance = open(3);
+        assertEquals(expected, dump(instance));
+    }
+
+    /**
+     * Tests that the name index follows renames and removals, also when
+     * several workers have the same name.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testNameIndex() throws Exception {
+        instance = open(100);
+        instance.put(1, "A", 1, data("KEY", "a"));
+        instance.put(1, "B", 1, data("KEY", "a"));
+        assertNull("old name", instance.getId("A"));
+        assertEquals(Integer.valueOf(1), instance.getId("B"));
+
+        instance.put(2, "B", 1, data("KEY", "b"));
+        assertEquals("last stored", Integer.valueOf(2), instance.getId("B"));
+        instance.remove(2);
+        assertEquals("other worker with the name", Integer.valueOf(1), instance.getId("B"));
+
+        instance.put(3, "B", 1, data("KEY", "c"));
+        instance.put(3, "C", 1, data("KEY", "c"));
+        assertEquals("other worker with the name", Integer.valueOf(1), instance.getId("B"));
+        assertEquals(Integer.valueOf(3), instance.getId("C"));
+
+        assertTrue(instance.remove(1));
+        assertFalse("already removed", instance.remove(1));
+        assertNull(instance.getId("B"));
+        instance.close();
+
+        instance = open(100);
+        assertNull(instance.getId("A"));
+        assertNull(instance.getId("B"));
+        assertEquals(Integer.valueOf(3), instance.getId("C"));
+    }
+
+    private WorkerConfigJournal open(final int compactThreshold) throws IOException {
+        final WorkerConfigJournal result = new WorkerConfigJournal(folder, compactThreshold);
+        result.open();
+        return result;
+    }
+
+    private List<Integer> ids() {
+        final TreeSet<Integer> result = new TreeSet<>();
+        for (WorkerConfigJournal.Record record : instance.getAll()) {
+            result.add(record.getWorkerId());
+        }
+        return new ArrayList<>(result);
+    }
+
+    private static String dump(final WorkerConfigJournal journal) throws IOException {
+        final TreeMap<Integer, String> result = new TreeMap<>();
+        for (WorkerConfigJournal.Record record : journal.getAll()) {
+            result.put(record.getWorkerId(), record.getName() + " " + record.getType() + " " + record.getData()
+                    + " " + journal.getId(record.getName()));
+        }
+        return result.toString();
+    }
+
+    private static Map<Object, Object> data(final String key, final String value) {
+        final Map<Object, Object> result = new HashMap<>();
+        result.put(key, value);
+        return result;
+    }
+}
@@ -0,0 +1,38 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.nodb;
+
+import java.io.File;
+
+/**
+ * Creates file based databases in other folders than the configured one for
+ * use by the unit tests.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class FileBasedDatabaseManagerTestUtils {
+
+    private FileBasedDatabaseManagerTestUtils() {
+    }
+
+    /**
+     * @param dataFolder empty or existing database folder
+     * @return an initialized manager for the folder
+     */
+    public static FileBasedDatabaseManager create(final File dataFolder) {
+        final FileBasedDatabaseManager result = new FileBasedDatabaseManager(dataFolder);
+        result.initialize();
+        return result;
+    }
+}
@@ -307,6 +307,9 @@ public class CMSSigner extends BaseSigner {
      * Augment CMSSignedData object with extended attributes.
      * Must be overridden by extending implementations when extendCMSData
      * returns true.
+     *
+     * The content is never included in the CMSSignedData passed in. If the
+     * content should be encapsulated it is added when the result is written.
      * 
      * @param cms Basic CMS signature data
      * @param context Request context
@@ -355,14 +358,16 @@ public class CMSSigner extends BaseSigner {
                 IOUtils.copyLarge(requestIn, out);
             }
         } else {
-            // Sign and then parse and re-encode as DER
-            // Note, this will not support large files as the above case and will not be as performant.
+            // Sign with the content detached so that only the certificates
+            // and signer infos are kept in memory, extend them if needed and
+            // then write it out as DER streaming in the content if it should
+            // be encapsulated
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Signing and then re-encoding as DER");
             }
             final ByteArrayOutputStream bout = new ByteArrayOutputStream();
             try (
-                    final OutputStream out = generator.open(contentOID, bout, !detached);
+                    final OutputStream out = generator.open(contentOID, bout, false);
                     final InputStream requestIn = requestData.getAsInputStream();
                 ) {
                 IOUtils.copyLarge(requestIn, out);
@@ -375,7 +380,9 @@ public class CMSSigner extends BaseSigner {
             } 
             
             try (final OutputStream responseOutputStream = requestData.isFile() && !detached ? responseData.getAsFileOutputStream() : responseData.getAsInMemoryOutputStream();) {
-                if (derReEncode) {
+                if (!detached) {
+                    DERSignedDataWriter.writeEncapsulated(signedData, requestData, responseOutputStream);
+                } else if (derReEncode) {
                     final ASN1OutputStream derOut =
                             ASN1OutputStream.create(responseOutputStream,
                                                     ASN1Encoding.DER);
@@ -397,9 +404,6 @@ public class CMSSigner extends BaseSigner {
                           final WritableData responseData,
                           final ASN1ObjectIdentifier contentOID)
             throws OperatorCreationException, CertificateEncodingException, CMSException, IOException, IllegalRequestException {
-        final CMSSignedDataGenerator generator
-                    = new CMSSignedDataGenerator();
-        final ContentSigner contentSigner = new JcaContentSignerBuilder(sigAlg).setProvider(crypto.getProvider()).build(crypto.getPrivateKey());
         final byte[] digestData = requestData.getAsByteArray();
         final AlgorithmIdentifier alg = clientSideHelper.getClientSideHashAlgorithm(requestContext);
                 
@@ -409,7 +413,56 @@ public class CMSSigner extends BaseSigner {
         if (!isSuppliedHashDigestLengthOk) {
             throw new IllegalRequestException("Client-side hashing data length must match with the length of client specified digest algorithm");
         }
-        
+
+        final byte[] signedData = signHash(crypto, cert, certs, sigAlg,
+                requestContext, alg, digestData, contentOID);
+
+        try (final OutputStream responseOutputStream = responseData.getAsInMemoryOutputStream();) {
+            responseOutputStream.write(signedData);
+        }
+    }
+
+    private void signHashBatch(final ICryptoInstance crypto,
+                               final X509Certificate cert,
+                               final Collection<Certificate> certs,
+                               final String sigAlg,
+                               final RequestContext requestContext,
+                               final ReadableData requestData,
+                               final WritableData responseData,
+                               final ASN1ObjectIdentifier contentOID)
+            throws IOException, IllegalRequestException, CryptoTokenOfflineException {
+        final AlgorithmIdentifier alg = clientSideHelper.getClientSideHashAlgorithm(requestContext);
+        final String clientSpecifiedHashDigestAlgo = RequestMetadata.getInstance(requestContext).get(CLIENTSIDE_HASHDIGESTALGORITHM_PROPERTY);
+        final List<byte[]> digests = clientSideHelper.getBatchDigests(requestData.getAsByteArray(), clientSpecifiedHashDigestAlgo);
+
+        try (final OutputStream responseOutputStream = responseData.getAsInMemoryOutputStream();) {
+            final int signed = ClientSideHashingHelper.signBatch(digests,
+                    digest -> signHash(crypto, cert, certs, sigAlg, requestContext, alg, digest, contentOID),
+                    responseOutputStream);
+
+            LogMap.getInstance(requestContext).put(IWorkerLogger.LOG_BATCH_SIZE, digests.size());
+            requestContext.put(RequestContext.KEY_USAGE_COUNT, signed);
+        }
+    }
+
+    /**
+     * Creates a detached CMS signature for a digest computed by the client.
+     *
+     * @return the encoded CMS structure
+     */
+    private byte[] signHash(final ICryptoInstance crypto,
+                            final X509Certificate cert,
+                            final Collection<Certificate> certs,
+                            final String sigAlg,
+                            final RequestContext requestContext,
+                            final AlgorithmIdentifier alg,
+                            final byte[] digestData,
+                            final ASN1ObjectIdentifier contentOID)
+            throws OperatorCreationException, CertificateEncodingException, CMSException, IOException {
+        final CMSSignedDataGenerator generator
+                    = new CMSSignedDataGenerator();
+        final ContentSigner contentSigner = new JcaContentSignerBuilder(sigAlg).setProvider(crypto.getProvider()).build(crypto.getPrivateKey());
+
         final DigestCalculator digestCalculator = new DigestCalculator() {
             @Override
             public AlgorithmIdentifier getAlgorithmIdentifier() {
@@ -453,15 +506,14 @@ public class CMSSigner extends BaseSigner {
             signedData = extendCMSData(signedData, requestContext);
         }
 
-        try (final OutputStream responseOutputStream = responseData.getAsInMemoryOutputStream();) {
-            if (derReEncode) {
-                final ASN1OutputStream derOut =
-                        ASN1OutputStream.create(responseOutputStream,
-                                                ASN1Encoding.DER);
-                derOut.writeObject(signedData.toASN1Structure());
-            } else {
-                responseOutputStream.write(signedData.getEncoded());
-            }
+        if (derReEncode) {
+            final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            final ASN1OutputStream derOut =
+                    ASN1OutputStream.create(bout, ASN1Encoding.DER);
+            derOut.writeObject(signedData.toASN1Structure());
+            return bout.toByteArray();
+        } else {
+            return signedData.getEncoded();
         }
     }
 
@@ -549,10 +601,13 @@ public class CMSSigner extends BaseSigner {
             sign(crypto, cert, certs, sigAlg, requestContext, requestData,
                          responseData, contentOIDToUse);
 
+            final boolean batch = clientSideHelper.isBatchRequested(requestContext);
+            final String contentType = batch ? ClientSideHashingHelper.BATCH_CONTENT_TYPE : CONTENT_TYPE;
+
             final String archiveId = createArchiveId(new byte[0], (String) requestContext.get(RequestContext.TRANSACTION_ID));
             final Collection<? extends Archivable> archivables = Arrays.asList(
                     new DefaultArchivable(Archivable.TYPE_REQUEST, CONTENT_TYPE, requestData, archiveId), 
-                    new DefaultArchivable(Archivable.TYPE_RESPONSE, CONTENT_TYPE, responseData.toReadableData(), archiveId));
+                    new DefaultArchivable(Archivable.TYPE_RESPONSE, contentType, responseData.toReadableData(), archiveId));
 
             final byte[] responseDigest;
             if (doLogResponseDigest) {
@@ -577,14 +632,14 @@ public class CMSSigner extends BaseSigner {
 
             // Suggest new file name
             final Object fileNameOriginal = requestContext.get(RequestContext.FILENAME);
-            if (fileNameOriginal instanceof String) {
+            if (fileNameOriginal instanceof String && !batch) {
                 requestContext.put(RequestContext.RESPONSE_FILENAME, fileNameOriginal + ".p7s");
             }
             
             // The client can be charged for the request
             requestContext.setRequestFulfilledByWorker(true);
             
-            return new SignatureResponse(sReq.getRequestID(), responseData, cert, archiveId, archivables, CONTENT_TYPE);
+            return new SignatureResponse(sReq.getRequestID(), responseData, cert, archiveId, archivables, contentType);
         } catch (OperatorCreationException ex) {
             LOG.error("Error initializing signer", ex);
             throw new SignServerException("Error initializing signer", ex);
@@ -660,12 +715,13 @@ public class CMSSigner extends BaseSigner {
                         ASN1ObjectIdentifier contentOIDToUse)
             throws IllegalRequestException, OperatorCreationException,
                    CertificateEncodingException, CMSException, IOException,
-                   SignServerException {
+                   SignServerException, CryptoTokenOfflineException {
         final boolean useClientSideHashing =
                 clientSideHelper.shouldUseClientSideHashing(requestContext);
         if (LOG.isDebugEnabled()) {
             LOG.debug("Using client-side supplied hash: " + useClientSideHashing);
         }
+        final boolean batch = clientSideHelper.isBatchRequested(requestContext);
         if (useClientSideHashing) {
             final Boolean requestDetached =
                 getDetachedSignatureRequest(requestContext);
@@ -673,9 +729,17 @@ public class CMSSigner extends BaseSigner {
                 throw new IllegalRequestException("Client-side hashing can only be used with detached signatures");
             }
             
-            signHash(crypto, cert, certs, sigAlg, requestContext, requestData,
-                     responseData, contentOIDToUse);
+            if (batch) {
+                signHashBatch(crypto, cert, certs, sigAlg, requestContext,
+                              requestData, responseData, contentOIDToUse);
+            } else {
+                signHash(crypto, cert, certs, sigAlg, requestContext, requestData,
+                         responseData, contentOIDToUse);
+            }
         } else {
+            if (batch) {
+                throw new IllegalRequestException("Batch of digests can only be used with client-side hashing");
+            }
             signData(crypto, cert, certs, sigAlg, requestContext, requestData,
                      responseData, contentOIDToUse);
         }
@@ -12,8 +12,14 @@
  *************************************************************************/
 package org.signserver.module.cmssigner;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -23,16 +29,25 @@ import org.bouncycastle.asn1.DERNull;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.operator.DefaultDigestAlgorithmIdentifierFinder;
 import org.bouncycastle.operator.DigestAlgorithmIdentifierFinder;
+import org.bouncycastle.util.encoders.Base64;
+import org.signserver.common.CryptoTokenOfflineException;
 import org.signserver.common.IllegalRequestException;
 import org.signserver.common.RequestContext;
 import org.signserver.common.RequestMetadata;
 import static org.signserver.common.SignServerConstants.DEFAULT_NULL;
 import org.signserver.common.WorkerConfig;
+import org.signserver.server.HashDigestUtils;
 
 /**
  * Helper class for handling the client-side hashing worker properties and its
  * logic.
  *
+ * If MAX_BATCH_DIGESTS is configured a request can carry a batch of digests
+ * by specifying the request metadata CLIENTSIDE_HASHDIGEST_BATCH=true. The
+ * request data is then the concatenation of the digests and the response
+ * contains one line per digest, in the same order, with either
+ * "OK &lt;base64 encoded signature&gt;" or "ERROR &lt;message&gt;".
+ *
  * @author Markus Kilås
  * @version $Id$
  */
@@ -47,9 +62,31 @@ public class ClientSideHashingHelper {
     public static final String CLIENTSIDE_HASHDIGESTALGORITHM_PROPERTY = "CLIENTSIDE_HASHDIGESTALGORITHM";
     public static final String USING_CLIENTSUPPLIED_HASH_PROPERTY = "USING_CLIENTSUPPLIED_HASH";
 
+    /** Maximum number of digests in a batch request, 0 disables batches. */
+    public static final String MAX_BATCH_DIGESTS = "MAX_BATCH_DIGESTS";
+    public static final String CLIENTSIDE_HASHDIGEST_BATCH_PROPERTY = "CLIENTSIDE_HASHDIGEST_BATCH";
+
+    /** Content-type for the response to a batch request. */
+    public static final String BATCH_CONTENT_TYPE = "text/plain";
+
+    private static final int DEFAULT_MAX_BATCH_DIGESTS = 0;
+
     private boolean clientSideHashing;
     private boolean allowClientSideHashingOverride;
     private Set<AlgorithmIdentifier> acceptedHashDigestAlgorithms;
+    private int maxBatchDigests;
+
+    /**
+     * Signs one digest of a batch.
+     */
+    public interface DigestSigner {
+        /**
+         * @param digest to sign
+         * @return the signature
+         * @throws Exception in case the digest could not be signed
+         */
+        byte[] sign(byte[] digest) throws Exception;
+    }
 
     public void init(WorkerConfig config, LinkedList<String> configErrors) {
 
@@ -104,6 +141,15 @@ public class ClientSideHashingHelper {
                              ALLOW_CLIENTSIDEHASHING_OVERRIDE + " is true");
         }
 
+        final String maxBatchDigestsValue = config.getProperty(MAX_BATCH_DIGESTS, String.valueOf(DEFAULT_MAX_BATCH_DIGESTS));
+        try {
+            maxBatchDigests = Integer.parseInt(maxBatchDigestsValue.trim());
+            if (maxBatchDigests < 0) {
+                configErrors.add("Incorrect value for property " + MAX_BATCH_DIGESTS + ". Expecting a non-negative number.");
+            }
+        } catch (NumberFormatException ex) {
+            configErrors.add("Incorrect value for property " + MAX_BATCH_DIGESTS + ". Expecting a number.");
+        }
     }
 
     /**
@@ -173,6 +219,97 @@ public class ClientSideHashingHelper {
         return acceptedHashDigestAlgorithms;
     }
 
+    public int getMaxBatchDigests() {
+        return maxBatchDigests;
+    }
+
+    /**
+     * Checks if the request is for signing a batch of digests and that it is
+     * configured to be allowed.
+     * @param requestContext of the request
+     * @return true if the request data is a batch of digests
+     * @throws IllegalRequestException If a batch is requested but not allowed
+     */
+    public boolean isBatchRequested(final RequestContext requestContext)
+            throws IllegalRequestException {
+        final String value = RequestMetadata.getInstance(requestContext).get(CLIENTSIDE_HASHDIGEST_BATCH_PROPERTY);
+        if (StringUtils.isBlank(value) || !Boolean.parseBoolean(value)) {
+            return false;
+        }
+        if (maxBatchDigests < 1) {
+            throw new IllegalRequestException("Batch of client-side hashes requested but not allowed");
+        }
+        return true;
+    }
+
+    /**
+     * Splits the request data of a batch request into the digests.
+     * @param data concatenation of the digests
+     * @param hashAlgorithmName client specified digest algorithm
+     * @return the digests
+     * @throws IllegalRequestException in case the data length does not match
+     * the digest algorithm or the batch contains too many digests
+     */
+    public List<byte[]> getBatchDigests(final byte[] data, final String hashAlgorithmName)
+            throws IllegalRequestException {
+        final int digestLength;
+        try {
+            digestLength = HashDigestUtils.getOutputSizeBitsFromDigestAlgorithmString(hashAlgorithmName) / 8;
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalRequestException("Client specified an unsupported digest algorithm for batch: " + hashAlgorithmName);
+        }
+        if (data.length == 0 || data.length % digestLength != 0) {
+            throw new IllegalRequestException("Client-side hashing batch data length must be a multiple of the length of client specified digest algorithm");
+        }
+        final int count = data.length / digestLength;
+        if (count > maxBatchDigests) {
+            throw new IllegalRequestException("Too many digests in batch: " + count + ", maximum is " + maxBatchDigests);
+        }
+        final List<byte[]> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(Arrays.copyOfRange(data, i * digestLength, (i + 1) * digestLength));
+        }
+        return result;
+    }
+
+    /**
+     * Signs each of the digests and writes one status line per digest.
+     *
+     * A failure to sign one digest is reported on its line and does not stop
+     * the batch, unless the crypto token is offline in which case the whole
+     * request fails.
+     *
+     * @param digests to sign
+     * @param signer signing one digest
+     * @param out to write the response to
+     * @return number of digests successfully signed
+     * @throws CryptoTokenOfflineException in case the crypto token is offline
+     * @throws IOException in case of failure writing the response
+     */
+    public static int signBatch(final List<byte[]> digests, final DigestSigner signer,
+            final OutputStream out) throws CryptoTokenOfflineException, IOException {
+        int signed = 0;
+        for (int i = 0; i < digests.size(); i++) {
+            String line;
+            try {
+                line = "OK " + Base64.toBase64String(signer.sign(digests.get(i)));
+                signed++;
+            } catch (CryptoTokenOfflineException ex) {
+                throw ex;
+            } catch (IllegalRequestException ex) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Illegal digest " + i + " in batch: " + ex.getMessage());
+                }
+                line = "ERROR " + StringUtils.defaultString(ex.getMessage()).replaceAll("[\\r\\n]", " ");
+            } catch (Exception ex) {
+                LOG.error("Signing digest " + i + " in batch failed", ex);
+                line = "ERROR Signing failed";
+            }
+            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return signed;
+    }
+
     /**
      * Checks if the request is for client-side hashing and it is configured
      * to be allowed etc.
@@ -0,0 +1,144 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.module.cmssigner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.commons.io.IOUtils;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.BERTags;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.asn1.cms.SignedData;
+import org.bouncycastle.cms.CMSSignedData;
+import org.signserver.common.data.ReadableData;
+
+/**
+ * Writes a DER encoded CMS SignedData with encapsulated content without
+ * keeping the content in memory.
+ *
+ * The signed data is created with the content detached, so that it only
+ * contains the certificates and signer infos, and the content is then
+ * streamed into its place. As DER requires the length of every element up
+ * front the lengths are computed from the length of the content before
+ * anything is written.
+ *
+ * @author agent
+ * @version $Id$
+ */
+final class DERSignedDataWriter {
+
+    private static final int TAG_CONTEXT_0 = BERTags.CONTEXT_SPECIFIC | BERTags.CONSTRUCTED;
+
+    private DERSignedDataWriter() {
+    }
+
+    /**
+     * Writes the signed data with the content encapsulated.
+     *
+     * @param detachedSignedData signed data without the content
+     * @param content to encapsulate, read once
+     * @param out to write the DER encoding to
+     * @throws IOException in case of error reading the content or writing
+     */
+    static void writeEncapsulated(final CMSSignedData detachedSignedData,
+                                  final ReadableData content,
+                                  final OutputStream out) throws IOException {
+        final ContentInfo contentInfo = detachedSignedData.toASN1Structure();
+        final SignedData signedData = SignedData.getInstance(contentInfo.getContent());
+
+        final byte[] contentType = der(contentInfo.getContentType());
+        final byte[] version = der(signedData.getVersion());
+        final byte[] digestAlgorithms = der(signedData.getDigestAlgorithms());
+        final byte[] eContentType = der(signedData.getEncapContentInfo().getContentType());
+        final byte[] certificates = signedData.getCertificates() == null
+                ? new byte[0] : der(new DERTaggedObject(false, 0, signedData.getCertificates()));
+        final byte[] crls = signedData.getCRLs() == null
+                ? new byte[0] : der(new DERTaggedObject(false, 1, signedData.getCRLs()));
+        final byte[] signerInfos = der(signedData.getSignerInfos());
+
+        // Lengths from the inside out
+        final long contentLength = content.getLength();
+        final long octetString = encodedLength(contentLength);
+        final long eContent = encodedLength(octetString);
+        final long encapContentInfoBody = eContentType.length + eContent;
+        final long signedDataBody = version.length + digestAlgorithms.length
+                + encodedLength(encapContentInfoBody) + certificates.length
+                + crls.length + signerInfos.length;
+        final long explicitContent = encodedLength(signedDataBody);
+        final long contentInfoBody = contentType.length + encodedLength(explicitContent);
+
+        // ContentInfo
+        writeHeader(out, BERTags.SEQUENCE | BERTags.CONSTRUCTED, contentInfoBody);
+        out.write(contentType);
+        writeHeader(out, TAG_CONTEXT_0, explicitContent);
+
+        // SignedData
+        writeHeader(out, BERTags.SEQUENCE | BERTags.CONSTRUCTED, signedDataBody);
+        out.write(version);
+        out.write(digestAlgorithms);
+
+        // EncapsulatedContentInfo
+        writeHeader(out, BERTags.SEQUENCE | BERTags.CONSTRUCTED, encapContentInfoBody);
+        out.write(eContentType);
+        writeHeader(out, TAG_CONTEXT_0, octetString);
+        writeHeader(out, BERTags.OCTET_STRING, contentLength);
+        try (InputStream in = content.getAsInputStream()) {
+            final long copied = IOUtils.copyLarge(in, out);
+            if (copied != contentLength) {
+                throw new IOException("Content length changed while writing: " + copied + " instead of " + contentLength);
+            }
+        }
+
+        out.write(certificates);
+        out.write(crls);
+        out.write(signerInfos);
+    }
+
+    private static byte[] der(final ASN1Encodable object) throws IOException {
+        return object.toASN1Primitive().getEncoded(ASN1Encoding.DER);
+    }
+
+    /**
+     * @return length of a DER element with the given body length
+     */
+    private static long encodedLength(final long bodyLength) {
+        return 1 + lengthOfLength(bodyLength) + bodyLength;
+    }
+
+    private static int lengthOfLength(final long length) {
+        if (length < 128) {
+            return 1;
+        }
+        int bytes = 0;
+        for (long l = length; l > 0; l >>>= 8) {
+            bytes++;
+        }
+        return 1 + bytes;
+    }
+
+    private static void writeHeader(final OutputStream out, final int tag, final long length) throws IOException {
+        out.write(tag);
+        if (length < 128) {
+            out.write((int) length);
+        } else {
+            final int bytes = lengthOfLength(length) - 1;
+            out.write(0x80 | bytes);
+            for (int i = bytes - 1; i >= 0; i--) {
+                out.write((int) (length >>> (i * 8)));
+            }
+        }
+    }
+}
@@ -248,15 +248,31 @@ public class PlainSigner extends BaseSigner {
             final String sigAlg = signatureAlgorithm == null ? getDefaultSignatureAlgorithm(cert.getPublicKey()) : signatureAlgorithm;
             final String sigAlgUpperCase = sigAlg.toUpperCase(Locale.ENGLISH);
             final byte[] signedbytes;
+            final String contentType;
 
-            if (clientSideHelper.shouldUseClientSideHashing(requestContext)) {
-                String clientSideHashAlgorithm = clientSideHelper.getClientSideHashAlgorithmName(requestContext);
-
-                // Special case as BC (ContentSignerBuilder) does not handle NONEwithRSA
-                final Signature signature = Signature.getInstance(sigAlg, crypto.getProvider());
+            final boolean useClientSideHashing = clientSideHelper.shouldUseClientSideHashing(requestContext);
+            final boolean batch = clientSideHelper.isBatchRequested(requestContext);
+            if (batch && !useClientSideHashing) {
+                throw new IllegalRequestException("Batch of digests can only be used with client-side hashing");
+            }
 
+            if (batch) {
+                final String clientSideHashAlgorithm = clientSideHelper.getClientSideHashAlgorithmName(requestContext);
+                final List<byte[]> digests = clientSideHelper.getBatchDigests(requestData.getAsByteArray(), clientSideHashAlgorithm);
+                final ICryptoInstance batchCrypto = crypto;
+                final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+
+                final int signed = ClientSideHashingHelper.signBatch(digests,
+                        digest -> signClientSideHash(batchCrypto, sigAlg, clientSideHashAlgorithm, digest),
+                        bout);
+                signedbytes = bout.toByteArray();
+                contentType = ClientSideHashingHelper.BATCH_CONTENT_TYPE;
+
+                logMap.put(IWorkerLogger.LOG_BATCH_SIZE, digests.size());
+                requestContext.put(RequestContext.KEY_USAGE_COUNT, signed);
+            } else if (useClientSideHashing) {
+                final String clientSideHashAlgorithm = clientSideHelper.getClientSideHashAlgorithmName(requestContext);
                 final byte[] data = requestData.getAsByteArray();
-                final byte[] dataToSign;
 
                 // check that the digest is of the expected length
                 if (!HashDigestUtils.isSuppliedHashDigestLengthValid(clientSideHashAlgorithm,
@@ -264,38 +280,10 @@ public class PlainSigner extends BaseSigner {
                     throw new IllegalRequestException("Input length doesn't match hash digest algorithm specified through request metadata");
                 }
 
-                if (sigAlgUpperCase.endsWith("ANDMGF1") || sigAlgUpperCase.endsWith("SSA-PSS")) {
-                    final Integer saltLength = HASH_ALGORITHM_AND_SALT_MAP.get(clientSideHashAlgorithm);
-                    if(saltLength == null) {
-                        throw new InvalidKeyException("Unsupported digest for PSS parameters: " + clientSideHashAlgorithm);
-                    }
-                    PSSParameterSpec params = new PSSParameterSpec(clientSideHashAlgorithm, "MGF1", new MGF1ParameterSpec(clientSideHashAlgorithm), saltLength, 1);
-                    signature.setParameter(params);
-                }
-
-                if (sigAlgUpperCase.equals("NONEWITHRSA")) {
-                    final byte[] modifierBytes =
-                            getModifierBytes(clientSideHashAlgorithm);
-
-                    if (modifierBytes == null) {
-                        throw new IllegalArgumentException("RSA padding unknown for hash algorithm: " +
-                                                           clientSideHashAlgorithm);
-                    }
-
-                    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-                    baos.write(modifierBytes);
-                    baos.write(data);
-
-                    dataToSign = baos.toByteArray();
-                } else {
-                    dataToSign = data;
-                }
-                
-                signature.initSign(privKey);
-                signature.update(dataToSign);
-                signedbytes = signature.sign();
+                signedbytes = signClientSideHash(crypto, sigAlg, clientSideHashAlgorithm, data);
+                contentType = CONTENT_TYPE;
             } else {
+                contentType = CONTENT_TYPE;
                 try (final InputStream in = requestData.getAsInputStream()) {
                     // Special case as BC (ContentSignerBuilder) does not handle NONEwithRSA
                     if (sigAlgUpperCase.startsWith("NONEWITH")) { 
@@ -358,10 +346,10 @@ public class PlainSigner extends BaseSigner {
 
             final Collection<? extends Archivable> archivables = Arrays.asList(
                     new DefaultArchivable(Archivable.TYPE_REQUEST, CONTENT_TYPE, requestData, archiveId),
-                    new DefaultArchivable(Archivable.TYPE_RESPONSE, CONTENT_TYPE, responseData.toReadableData(), archiveId));
+                    new DefaultArchivable(Archivable.TYPE_RESPONSE, contentType, responseData.toReadableData(), archiveId));
 
             // Suggest new file name
-            if (fileNameOriginal != null) {
+            if (fileNameOriginal != null && !batch) {
                 requestContext.put(RequestContext.RESPONSE_FILENAME, fileNameOriginal + ".sig");
             }
 
@@ -371,7 +359,7 @@ public class PlainSigner extends BaseSigner {
             return new SignatureResponse(sReq.getRequestID(),
                         responseData, cert, archiveId,
                         archivables,
-                        CONTENT_TYPE);
+                        contentType);
         } catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException | OperatorCreationException | InvalidAlgorithmParameterException ex) {
             LOG.error("Error initializing signer", ex);
             throw new SignServerException("Error initializing signer", ex);
@@ -382,6 +370,60 @@ public class PlainSigner extends BaseSigner {
         }
     }
 
+    /**
+     * Signs a digest computed by the client.
+     *
+     * @param crypto instance with the key to sign with
+     * @param sigAlg signature algorithm
+     * @param clientSideHashAlgorithm digest algorithm used by the client
+     * @param data the digest
+     * @return the signature
+     */
+    private byte[] signClientSideHash(final ICryptoInstance crypto,
+            final String sigAlg, final String clientSideHashAlgorithm,
+            final byte[] data) throws NoSuchAlgorithmException,
+            InvalidKeyException, InvalidAlgorithmParameterException,
+            SignatureException, IOException {
+        final String sigAlgUpperCase = sigAlg.toUpperCase(Locale.ENGLISH);
+
+        // Special case as BC (ContentSignerBuilder) does not handle NONEwithRSA
+        final Signature signature = Signature.getInstance(sigAlg, crypto.getProvider());
+
+        final byte[] dataToSign;
+
+        if (sigAlgUpperCase.endsWith("ANDMGF1") || sigAlgUpperCase.endsWith("SSA-PSS")) {
+            final Integer saltLength = HASH_ALGORITHM_AND_SALT_MAP.get(clientSideHashAlgorithm);
+            if(saltLength == null) {
+                throw new InvalidKeyException("Unsupported digest for PSS parameters: " + clientSideHashAlgorithm);
+            }
+            PSSParameterSpec params = new PSSParameterSpec(clientSideHashAlgorithm, "MGF1", new MGF1ParameterSpec(clientSideHashAlgorithm), saltLength, 1);
+            signature.setParameter(params);
+        }
+
+        if (sigAlgUpperCase.equals("NONEWITHRSA")) {
+            final byte[] modifierBytes =
+                    getModifierBytes(clientSideHashAlgorithm);
+
+            if (modifierBytes == null) {
+                throw new IllegalArgumentException("RSA padding unknown for hash algorithm: " +
+                                                   clientSideHashAlgorithm);
+            }
+
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+            baos.write(modifierBytes);
+            baos.write(data);
+
+            dataToSign = baos.toByteArray();
+        } else {
+            dataToSign = data;
+        }
+
+        signature.initSign(crypto.getPrivateKey());
+        signature.update(dataToSign);
+        return signature.sign();
+    }
+
     /**
      * Get PKCS1 v1.5 padding bytes for RSA
      *
@@ -12,8 +12,18 @@
  *************************************************************************/
 package org.signserver.module.cmssigner;
 
+import com.sun.management.ThreadMXBean;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.MessageDigest;
@@ -26,6 +36,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.Random;
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertTrue;
 import org.apache.log4j.Logger;
@@ -38,14 +49,17 @@ import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
 import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataParser;
 import org.bouncycastle.cms.SignerInformation;
 import org.bouncycastle.cms.SignerInformationStore;
 import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.AlgorithmNameFinder;
 import org.bouncycastle.operator.DefaultAlgorithmNameFinder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
 import org.bouncycastle.util.Store;
+import org.bouncycastle.util.encoders.Base64;
 import org.bouncycastle.util.encoders.Hex;
 import static org.junit.Assert.*;
 import org.junit.BeforeClass;
@@ -838,6 +852,60 @@ public class CMSSignerUnitTest {
         }
     }
 
+    /**
+     * Tests signing a batch of client-side computed digests giving one
+     * detached CMS signature per digest.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testClientSideHashingBatch() throws Exception {
+        LOG.info("testClientSideHashingBatch");
+        WorkerConfig config = new WorkerConfig();
+        config.setProperty("CLIENTSIDEHASHING", "TRUE");
+        config.setProperty("ACCEPTED_HASH_DIGEST_ALGORITHMS", "SHA-256");
+        config.setProperty("DETACHEDSIGNATURE", "TRUE");
+        config.setProperty("MAX_BATCH_DIGESTS", "10");
+        final CMSSigner instance = createMockSigner(tokenRSA);
+        instance.init(1, config, new SignServerContext(), null);
+
+        final byte[][] originalData = new byte[][] {
+            "data-1".getBytes("ASCII"), "data-2".getBytes("ASCII")
+        };
+        final MessageDigest md = MessageDigest.getInstance("SHA-256");
+        final ByteArrayOutputStream digests = new ByteArrayOutputStream();
+        for (byte[] data : originalData) {
+            digests.write(md.digest(data));
+        }
+
+        final RequestContext requestContext = new RequestContext();
+        requestContext.put(RequestContext.TRANSACTION_ID, "0000-100-1");
+        RequestMetadata metadata = RequestMetadata.getInstance(requestContext);
+        metadata.put("USING_CLIENTSUPPLIED_HASH", "TRUE");
+        metadata.put("CLIENTSIDE_HASHDIGESTALGORITHM", "SHA-256");
+        metadata.put("CLIENTSIDE_HASHDIGEST_BATCH", "TRUE");
+
+        try (
+                CloseableReadableData requestData = ModulesTestCase.createRequestData(digests.toByteArray());
+                CloseableWritableData responseData = ModulesTestCase.createResponseData(false);
+            ) {
+            SignatureRequest request = new SignatureRequest(100, requestData, responseData);
+            SignatureResponse response = (SignatureResponse) instance.processData(request, requestContext);
+            assertEquals("content type", "text/plain", response.getContentType());
+
+            final String[] lines = new String(responseData.toReadableData().getAsByteArray(), StandardCharsets.UTF_8).split("\n");
+            assertEquals("lines", originalData.length, lines.length);
+            for (int i = 0; i < lines.length; i++) {
+                assertTrue("status: " + lines[i], lines[i].startsWith("OK "));
+                final CMSSignedData signedData = new CMSSignedData(new CMSProcessableByteArray(originalData[i]), Base64.decode(lines[i].substring(3)));
+                final SignerInformation signer = signedData.getSignerInfos().getSigners().iterator().next();
+                final X509CertificateHolder cert = (X509CertificateHolder) signedData.getCertificates().getMatches(signer.getSID()).iterator().next();
+                assertTrue("verified " + i, signer.verify(new JcaSimpleSignerInfoVerifierBuilder().build(cert)));
+            }
+            assertEquals("key usages", 2, requestContext.get(RequestContext.KEY_USAGE_COUNT));
+        }
+    }
+
     /**
      * Tests that detached signature is not used if not specified in config and
      * that overriding it is not allowed by default.
@@ -947,6 +1015,75 @@ public class CMSSignerUnitTest {
         assertEquals("expect DER format", Hex.toHexString(der), Hex.toHexString(cms));
     }
 
+    /**
+     * Tests that DER re-encoding of a large file streams the content into the
+     * response instead of keeping it in memory. Measures the bytes allocated
+     * by the signing thread, which does not depend on the garbage collector.
+     * @throws Exception
+     */
+    @Test
+    public void testDERReEncodeLargeFile() throws Exception {
+        LOG.info("testDERReEncodeLargeFile");
+        final long size = 16 * 1024 * 1024;
+        WorkerConfig config = new WorkerConfig();
+        config.setProperty("DER_RE_ENCODE", "true");
+        CMSSigner instance = createMockSigner(tokenRSA);
+        instance.init(1, config, new SignServerContext(), null);
+
+        final File file = File.createTempFile("cmssigner-large", ".bin");
+        try {
+            final byte[] buffer = new byte[64 * 1024];
+            final Random random = new Random(42);
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                for (long written = 0; written < size; written += buffer.length) {
+                    random.nextBytes(buffer);
+                    out.write(buffer);
+                }
+            }
+
+            final RequestContext requestContext = new RequestContext();
+            requestContext.put(RequestContext.TRANSACTION_ID, "0000-100-1");
+
+            try (
+                    CloseableReadableData requestData = ModulesTestCase.createRequestDataKeepingFile(file);
+                    CloseableWritableData responseData = ModulesTestCase.createResponseData(true);
+                ) {
+                final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+                final long threadId = Thread.currentThread().getId();
+                final long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+                instance.processData(new SignatureRequest(100, requestData, responseData), requestContext);
+                final long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+                LOG.info("Allocated while signing: " + allocated);
+                // Streaming allocates about one read buffer per chunk of
+                // content while buffering allocates several copies of it
+                assertTrue("allocated " + allocated + " should be less than 3 copies of the content", allocated < 3 * size);
+
+                try (InputStream in = new BufferedInputStream(responseData.toReadableData().getAsInputStream())) {
+                    in.mark(2);
+                    assertEquals("SEQUENCE", 0x30, in.read());
+                    assertNotEquals("definite length", 0x80, in.read());
+                    in.reset();
+
+                    final CMSSignedDataParser parser = new CMSSignedDataParser(new JcaDigestCalculatorProviderBuilder().setProvider("BC").build(), in);
+                    long contentLength = 0;
+                    try (InputStream content = parser.getSignedContent().getContentStream()) {
+                        int n;
+                        while ((n = content.read(buffer)) != -1) {
+                            contentLength += n;
+                        }
+                    }
+                    assertEquals("content length", size, contentLength);
+
+                    final SignerInformation signer = parser.getSignerInfos().getSigners().iterator().next();
+                    final X509CertificateHolder cert = (X509CertificateHolder) parser.getCertificates().getMatches(signer.getSID()).iterator().next();
+                    assertTrue("verified", signer.verify(new JcaSimpleSignerInfoVerifierBuilder().build(cert)));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
     /**
      * Tests that setting DER_RE_ENCODE=true gives DER encoding for
      * clientside.
@@ -853,5 +853,85 @@ public class PlainSignerTest {
         SimplifiedResponse resp = sign(hash, tokenRSA, config, context);
         assertSignedAndVerifiable(plainText, "SHA384withRSAandMGF1", tokenRSA, resp);
     }
-    
+
+    /**
+     * Tests signing a batch of client-side computed digests giving one
+     * signature per digest and a key usage count for all of them.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBatchSigning_ECDSA_SHA256() throws Exception {
+        LOG.info("testBatchSigning_ECDSA_SHA256");
+        final MessageDigest md = MessageDigest.getInstance("SHA-256");
+        final byte[][] plainTexts = new byte[][] {
+            "data-1".getBytes("ASCII"), "data-2".getBytes("ASCII"), "data-3".getBytes("ASCII")
+        };
+        final ByteArrayOutputStream digests = new ByteArrayOutputStream();
+        for (byte[] plainText : plainTexts) {
+            digests.write(md.digest(plainText));
+        }
+
+        final RequestContext context = new RequestContext();
+        RequestMetadata.getInstance(context).put("USING_CLIENTSUPPLIED_HASH", "true");
+        RequestMetadata.getInstance(context).put("CLIENTSIDE_HASHDIGESTALGORITHM", "SHA-256");
+        RequestMetadata.getInstance(context).put("CLIENTSIDE_HASHDIGEST_BATCH", "true");
+
+        final WorkerConfig config = createConfig("NONEwithECDSA", null, null, true, "SHA-256");
+        config.setProperty("MAX_BATCH_DIGESTS", "10");
+
+        final SimplifiedResponse resp = sign(digests.toByteArray(), tokenECDSA, config, context);
+        final String[] lines = new String(resp.getProcessedData(), "UTF-8").split("\n");
+        assertEquals("lines", plainTexts.length, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertTrue("status: " + lines[i], lines[i].startsWith("OK "));
+            final Signature signature = Signature.getInstance("SHA256withECDSA", "BC");
+            signature.initVerify(resp.getSignerCertificate());
+            signature.update(plainTexts[i]);
+            assertTrue("consistent signature " + i, signature.verify(Base64.decode(lines[i].substring(3))));
+        }
+        assertEquals("key usages", 3, context.get(RequestContext.KEY_USAGE_COUNT));
+    }
+
+    /**
+     * Tests that a batch request is rejected when not enabled, has too many
+     * digests or data not matching the digest length.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBatchSigning_rejected() throws Exception {
+        LOG.info("testBatchSigning_rejected");
+        final byte[] digest = MessageDigest.getInstance("SHA-256").digest("data".getBytes("ASCII"));
+
+        final RequestContext context = new RequestContext();
+        RequestMetadata.getInstance(context).put("USING_CLIENTSUPPLIED_HASH", "true");
+        RequestMetadata.getInstance(context).put("CLIENTSIDE_HASHDIGESTALGORITHM", "SHA-256");
+        RequestMetadata.getInstance(context).put("CLIENTSIDE_HASHDIGEST_BATCH", "true");
+
+        final WorkerConfig config = createConfig("NONEwithECDSA", null, null, true, "SHA-256");
+        try {
+            sign(digest, tokenECDSA, config, context);
+            fail("Should have failed as batches are not enabled");
+        } catch (IllegalRequestException ex) {
+            assertEquals("Batch of client-side hashes requested but not allowed", ex.getMessage());
+        }
+
+        config.setProperty("MAX_BATCH_DIGESTS", "2");
+        final byte[] threeDigests = new byte[digest.length * 3];
+        try {
+            sign(threeDigests, tokenECDSA, config, context);
+            fail("Should have failed as the batch is too large");
+        } catch (IllegalRequestException ex) {
+            assertEquals("Too many digests in batch: 3, maximum is 2", ex.getMessage());
+        }
+
+        try {
+            sign(Arrays.copyOf(digest, digest.length + 1), tokenECDSA, config, context);
+            fail("Should have failed as the length does not match");
+        } catch (IllegalRequestException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("multiple of the length"));
+        }
+    }
+
 }
@@ -13,7 +13,6 @@
 package org.signserver.module.tsa;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collections;
 import java.util.HashMap;
@@ -41,6 +40,7 @@ import org.signserver.server.log.AdminInfo;
 import org.signserver.server.log.ExceptionLoggable;
 import org.signserver.server.log.IWorkerLogger;
 import org.signserver.server.log.LogMap;
+import org.signserver.server.tsa.ParsedTimeStampRequest;
 
 /**
  * Dispatching requests to a Time Stamp Unit based on the requested profile.
@@ -131,20 +131,25 @@ public class RequestedPolicyDispatcher extends BaseDispatcher {
         
         // Get TimeStampRequest
 
-        try (InputStream in = request.getRequestData().getAsInputStream()) {
-            
-            final TimeStampRequest timeStampRequest;
-            
-            try {
-                timeStampRequest =  new TimeStampRequest(in);
-            } catch (IOException ex) {
-                throw new IllegalRequestException("Could not parse TimeStampRequest", ex);
+        try {
+            ParsedTimeStampRequest parsed = ParsedTimeStampRequest.get(context, request.getRequestData());
+            if (parsed == null) {
+                final byte[] requestBytes = request.getRequestData().getAsByteArray();
+                try {
+                    parsed = new ParsedTimeStampRequest(request.getRequestData(), requestBytes, new TimeStampRequest(requestBytes));
+                } catch (IOException ex) {
+                    throw new IllegalRequestException("Could not parse TimeStampRequest", ex);
+                }
             }
+            final TimeStampRequest timeStampRequest = parsed.getRequest();
             
             // Add to context
             if (timeStampRequest.getReqPolicy() != null) {
                 nextContext.put(TSA_REQUESTEDPOLICYOID, timeStampRequest.getReqPolicy().getId());
             }
+
+            // Pass on the parsed request so it is not parsed again
+            nextContext.put(ParsedTimeStampRequest.CONTEXT_KEY, parsed);
             
             // Find to which worker the request should be dispatched
             final WorkerIdentifier toWorker = lookupWorkerToDispatchTo(timeStampRequest, context);
@@ -178,7 +183,7 @@ public class RequestedPolicyDispatcher extends BaseDispatcher {
         return result;
     }
 
-    private DispatcherProcessSessionLocal getProcessSession(IServices services) {
+    protected DispatcherProcessSessionLocal getProcessSession(IServices services) {
         return services.get(DispatcherProcessSessionLocal.class);
     }
     
@@ -91,6 +91,7 @@ import org.signserver.server.log.IWorkerLogger;
 import org.signserver.server.log.LogMap;
 import org.signserver.server.log.Loggable;
 import org.signserver.server.signers.BaseSigner;
+import org.signserver.server.tsa.ParsedTimeStampRequest;
 import static org.signserver.common.SignServerConstants.DEFAULT_NULL;
 
 /**
@@ -576,7 +577,8 @@ public class TimeStampSigner extends BaseSigner {
         ICryptoInstance crypto = null;
         try (OutputStream out = responseData.getAsInMemoryOutputStream()) {
             crypto = acquireCryptoInstance(ICryptoTokenV4.PURPOSE_SIGN, signRequest, requestContext);
-            final byte[] requestBytes = sReq.getRequestData().getAsByteArray();
+            final ParsedTimeStampRequest parsed = ParsedTimeStampRequest.get(requestContext, sReq.getRequestData());
+            final byte[] requestBytes = parsed == null ? sReq.getRequestData().getAsByteArray() : parsed.getEncoded();
 
             if (ArrayUtils.isEmpty(requestBytes)) {
                 LOG.error("Request must contain data");
@@ -594,7 +596,7 @@ public class TimeStampSigner extends BaseSigner {
 
             TimeStampRequest timeStampRequest = null;
             try {
-                timeStampRequest = new TimeStampRequest(requestBytes);
+                timeStampRequest = parsed == null ? new TimeStampRequest(requestBytes) : parsed.getRequest();
 
                 final TimeStampRequest parsedRequest = timeStampRequest;
 
@@ -712,6 +714,11 @@ public class TimeStampSigner extends BaseSigner {
 
             final TimeStampResponse tspResponse = timeStampResponse;
 
+            // Hand back the response unless it was written differently
+            if (parsed != null && !legacyEncoding) {
+                parsed.setResponse(timeStampResponse);
+            }
+
             // Log values for timestamp response
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Time stamp response status: "
@@ -74,6 +74,7 @@ import org.signserver.server.data.impl.CloseableReadableData;
 import org.signserver.server.data.impl.CloseableWritableData;
 import org.signserver.server.log.AdminInfo;
 import org.signserver.server.log.LogMap;
+import org.signserver.server.tsa.ParsedTimeStampRequest;
 import org.signserver.test.utils.builders.CertBuilder;
 import org.signserver.test.utils.builders.CertExt;
 import org.signserver.test.utils.mock.GlobalConfigurationSessionMock;
@@ -341,6 +342,77 @@ public class TimeStampSignerUnitTest extends ModulesTestCase {
                 requestLoggable.toString().lastIndexOf('\n'));
     }
 
+    /**
+     * Tests that a time-stamp request already parsed by the dispatcher is
+     * used instead of parsing the request data again, but only for the same
+     * request data.
+     */
+    @Test
+    public void testDispatchedRequestNotParsedAgain() throws Exception {
+        LOG.info("testDispatchedRequestNotParsedAgain");
+        final TimeStampRequestGenerator timeStampRequestGenerator =
+                new TimeStampRequestGenerator();
+        final TimeStampRequest sent = timeStampRequestGenerator.generate(
+                TSPAlgorithms.SHA256, new byte[32], BigInteger.valueOf(100));
+        // Stands in for the parsed request to tell them apart
+        final TimeStampRequest dispatched = timeStampRequestGenerator.generate(
+                TSPAlgorithms.SHA256, new byte[32], BigInteger.valueOf(200));
+        final byte[] requestBytes = sent.getEncoded();
+
+        try (
+                CloseableReadableData requestData = createRequestData(requestBytes);
+                CloseableWritableData responseData = createResponseData(false);
+                CloseableReadableData otherData = createRequestData(requestBytes);
+                CloseableWritableData otherResponseData = createResponseData(false)
+            ) {
+            // Same request data: the dispatched request is used
+            RequestContext context = new MockedRequestContext(services);
+            context.put(ParsedTimeStampRequest.CONTEXT_KEY, new ParsedTimeStampRequest(requestData, requestBytes, dispatched));
+            processSession.process(new AdminInfo("Client user", null, null), new WorkerIdentifier(WORKER1), new SignatureRequest(100, requestData, responseData), context);
+            TimeStampResponse response = new TimeStampResponse(responseData.toReadableData().getAsInputStream());
+            assertEquals("nonce from dispatched", BigInteger.valueOf(200), response.getTimeStampToken().getTimeStampInfo().getNonce());
+
+            // Other request data: parsed
+            context = new MockedRequestContext(services);
+            context.put(ParsedTimeStampRequest.CONTEXT_KEY, new ParsedTimeStampRequest(requestData, requestBytes, dispatched));
+            processSession.process(new AdminInfo("Client user", null, null), new WorkerIdentifier(WORKER1), new SignatureRequest(101, otherData, otherResponseData), context);
+            response = new TimeStampResponse(otherResponseData.toReadableData().getAsInputStream());
+            assertEquals("nonce from request data", BigInteger.valueOf(100), response.getTimeStampToken().getTimeStampInfo().getNonce());
+        }
+    }
+
+    /**
+     * Tests that the response is handed back to the caller that passed on
+     * the parsed request and that it has the same token as the response
+     * written.
+     */
+    @Test
+    public void testResponseHandedBack() throws Exception {
+        LOG.info("testResponseHandedBack");
+        final TimeStampRequestGenerator timeStampRequestGenerator =
+                new TimeStampRequestGenerator();
+        timeStampRequestGenerator.setCertReq(true);
+        final TimeStampRequest timeStampRequest = timeStampRequestGenerator.generate(
+                TSPAlgorithms.SHA256, new byte[32], BigInteger.valueOf(100));
+        final byte[] requestBytes = timeStampRequest.getEncoded();
+
+        try (
+                CloseableReadableData requestData = createRequestData(requestBytes);
+                CloseableWritableData responseData = createResponseData(false)
+            ) {
+            final ParsedTimeStampRequest parsed = new ParsedTimeStampRequest(requestData, requestBytes, timeStampRequest);
+            final RequestContext context = new MockedRequestContext(services);
+            context.put(ParsedTimeStampRequest.CONTEXT_KEY, parsed);
+            processSession.process(new AdminInfo("Client user", null, null), new WorkerIdentifier(WORKER1), new SignatureRequest(100, requestData, responseData), context);
+
+            final TimeStampResponse written = new TimeStampResponse(responseData.toReadableData().getAsInputStream());
+            final TimeStampResponse handedBack = parsed.getResponse();
+            assertNotNull("response handed back", handedBack);
+            handedBack.validate(timeStampRequest);
+            assertTrue("same token", Arrays.equals(written.getTimeStampToken().getEncoded(), handedBack.getTimeStampToken().getEncoded()));
+        }
+    }
+
     /**
      * Tests that a request including an extension not listed will cause a
      * rejection.
@@ -36,7 +36,7 @@ import org.eclipse.microprofile.openapi.annotations.info.Info;
 @OpenAPIDefinition(
         info = @Info(
                 title = "SignServer REST Interface",
-                version = "1.2.2"
+                version = "1.3.0"
         )
 )
 public class ApplicationConfig extends Application {
@@ -0,0 +1,33 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.rest.api.exception;
+
+/**
+ * Representation of a request rejected because its body is larger than the
+ * configured maximum upload size.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class RequestEntityTooLargeException extends Exception {
+
+    /**
+     * Constructs an instance of
+     * <code>RequestEntityTooLargeException</code> with the specified detail message.
+     *
+     * @param msg the detail message.
+     */
+    public RequestEntityTooLargeException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,105 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.rest.api.io.response;
+
+import jakarta.json.Json;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import org.signserver.common.data.ReadableData;
+import org.signserver.server.data.impl.DataUtils;
+import org.signserver.server.data.impl.ResourcesAutoCloseable;
+
+/**
+ * Writes a ProcessResponse as JSON where the response data is base64 encoded
+ * directly from the response data stream while writing, so that the response
+ * data never has to be fully in memory.
+ *
+ * The request and response data are closed when the output has been written.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class ProcessResponseOutput implements StreamingOutput {
+
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getLogger(ProcessResponseOutput.class);
+
+    private final String archiveId;
+    private final ReadableData data;
+    private final String requestId;
+    private final String signerCertificate;
+    private final Map<String, String> metaData;
+    private final ResourcesAutoCloseable[] resources;
+
+    /**
+     * Creates a new instance of the output.
+     * @param archiveId of the response
+     * @param data of the response to write base64 encoded
+     * @param requestId of the request
+     * @param signerCertificate base64 encoded or null
+     * @param metaData of the response
+     * @param resources to close after writing
+     */
+    public ProcessResponseOutput(String archiveId, ReadableData data, String requestId, String signerCertificate, Map<String, String> metaData, ResourcesAutoCloseable... resources) {
+        this.archiveId = archiveId;
+        this.data = data;
+        this.requestId = requestId;
+        this.signerCertificate = signerCertificate;
+        this.metaData = metaData;
+        this.resources = resources;
+    }
+
+    @Override
+    public void write(OutputStream out) throws IOException {
+        try {
+            // Same fields as ProcessResponse, null values are left out
+            final StringBuilder sb = new StringBuilder();
+            sb.append('{');
+            if (archiveId != null) {
+                sb.append("\"archiveId\":").append(Json.createValue(archiveId)).append(',');
+            }
+            if (metaData != null) {
+                sb.append("\"metaData\":").append(Json.createObjectBuilder(Collections.<String, Object>unmodifiableMap(metaData)).build()).append(',');
+            }
+            if (requestId != null) {
+                sb.append("\"requestId\":").append(Json.createValue(requestId)).append(',');
+            }
+            if (signerCertificate != null) {
+                sb.append("\"signerCertificate\":").append(Json.createValue(signerCertificate)).append(',');
+            }
+            sb.append("\"data\":\"");
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+            try (InputStream in = data.getAsInputStream()) {
+                DataUtils.encodeBase64(in, out);
+            }
+
+            out.write("\"}".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } finally {
+            for (final ResourcesAutoCloseable resource : resources) {
+                try {
+                    resource.close();
+                } catch (IOException ex) {
+                    LOG.error("Unable to close request or response data: " + ex.getLocalizedMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.rest.api.io.response;
+
+import java.util.List;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+/**
+ * Represents the time spent by a worker in each phase of processing requests.
+ *
+ * @author agent
+ * @version $Id$
+ */
+@Schema(
+    name = "ProcessingMetricsResponse",
+    description = "POJO representing a response with the processing metrics of a worker"
+)
+public class ProcessingMetricsResponse {
+    @Schema(
+        name = "since",
+        description = "Time in milliseconds since the epoch when the metrics were reset or first recorded"
+    )
+    private long since;
+
+    @Schema(
+        name = "phases",
+        description = "Latency statistics in microseconds for each processing phase"
+    )
+    private List<Phase> phases;
+
+    public ProcessingMetricsResponse(final long since, final List<Phase> phases) {
+        this.since = since;
+        this.phases = phases;
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public List<Phase> getPhases() {
+        return phases;
+    }
+
+    public static class Phase {
+        private String name;
+        private long count;
+        private long mean;
+        private long p50;
+        private long p90;
+        private long p99;
+        private long p999;
+        private long max;
+
+        public Phase(final String name, final long count, final long mean, final long p50, final long p90, final long p99, final long p999, final long max) {
+            this.name = name;
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getP999() {
+            return p999;
+        }
+
+        public long getMax() {
+            return max;
+        }
+    }
+}
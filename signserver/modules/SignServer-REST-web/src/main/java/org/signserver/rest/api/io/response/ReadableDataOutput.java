@@ -0,0 +1,64 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.rest.api.io.response;
+
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.log4j.Logger;
+import org.signserver.common.data.ReadableData;
+import org.signserver.server.data.impl.ResourcesAutoCloseable;
+
+/**
+ * Writes the response data as is, streamed from the response data.
+ *
+ * The request and response data are closed when the output has been written.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class ReadableDataOutput implements StreamingOutput {
+
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getLogger(ReadableDataOutput.class);
+
+    private final ReadableData data;
+    private final ResourcesAutoCloseable[] resources;
+
+    /**
+     * Creates a new instance of the output.
+     * @param data to write
+     * @param resources to close after writing
+     */
+    public ReadableDataOutput(ReadableData data, ResourcesAutoCloseable... resources) {
+        this.data = data;
+        this.resources = resources;
+    }
+
+    @Override
+    public void write(OutputStream out) throws IOException {
+        try (InputStream in = data.getAsInputStream()) {
+            in.transferTo(out);
+            out.flush();
+        } finally {
+            for (final ResourcesAutoCloseable resource : resources) {
+                try {
+                    resource.close();
+                } catch (IOException ex) {
+                    LOG.error("Unable to close request or response data: " + ex.getLocalizedMessage());
+                }
+            }
+        }
+    }
+}
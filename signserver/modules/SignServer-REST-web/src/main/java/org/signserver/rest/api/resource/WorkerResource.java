@@ -14,13 +14,16 @@ package org.signserver.rest.api.resource;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
+import org.apache.commons.fileupload.FileUploadBase;
 import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.log4j.Logger;
 import org.bouncycastle.util.encoders.DecoderException;
 import org.bouncycastle.util.encoders.Base64;
 import org.signserver.admin.common.auth.AdminAuthHelper;
 import org.signserver.common.*;
 import org.signserver.common.ForbiddenException;
+import org.signserver.common.data.ReadableData;
 import org.signserver.common.data.Request;
 import org.signserver.common.data.SignatureRequest;
 import org.signserver.common.data.SignatureResponse;
@@ -29,11 +32,14 @@ import org.signserver.ejb.interfaces.ProcessSessionLocal;
 import org.signserver.ejb.interfaces.WorkerSessionLocal;
 import org.signserver.rest.api.entities.Metadata;
 import org.signserver.rest.api.exception.InternalServerException;
+import org.signserver.rest.api.exception.RequestEntityTooLargeException;
 import org.signserver.rest.api.exception.RequestFailedException;
 import org.signserver.rest.api.io.request.ProcessRequest;
 import org.signserver.rest.api.io.request.ReloadRequest;
 import org.signserver.rest.api.io.request.WorkerRequest;
 import org.signserver.rest.api.io.response.ProcessResponse;
+import org.signserver.rest.api.io.response.ProcessResponseOutput;
+import org.signserver.rest.api.io.response.ReadableDataOutput;
 import org.signserver.rest.api.io.response.WorkerResponse;
 import org.signserver.server.CredentialUtils;
 import org.signserver.server.data.impl.*;
@@ -49,7 +55,9 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.*;
@@ -70,11 +78,13 @@ import org.signserver.rest.api.entities.ErrorMessage;
 import org.signserver.rest.api.entities.DataEncoding;
 import org.signserver.rest.api.helper.WorkerAuthHelper;
 import org.signserver.rest.api.io.response.ListWorkersResponse;
+import org.signserver.rest.api.io.response.ProcessingMetricsResponse;
 import org.signserver.rest.api.io.response.WorkerConfigResponse;
 
 /**
  * REST API implementation containing operations:
  * POST /workers/{idOrName}/process : Gets data bytes or a file, worker, MetaData and returns signature.
+ * POST /workers/{idOrName}/process/binary : Gets the data as the request body and returns the signature as the response body.
  * POST /workers/{id} : Creates a new worker from the request properties. ID is optional.
  * PUT /workers/{id} : Replacing all the worker properties with the new ones for the given worker ID.
  * PATCH /workers/{id} : Update/add/remove worker properties for the given worker ID.
@@ -91,6 +101,14 @@ import org.signserver.rest.api.io.response.WorkerConfigResponse;
 public class WorkerResource {
     private static final Logger LOG = Logger.getLogger(WorkerResource.class);
 
+    /** Response headers for the binary process operation. */
+    public static final String HEADER_ARCHIVE_ID = "X-SignServer-Archive-Id";
+    public static final String HEADER_REQUEST_ID = "X-SignServer-Request-Id";
+    public static final String HEADER_SIGNER_CERTIFICATE = "X-SignServer-Signer-Certificate";
+
+    /** Prefix for query parameters with request metadata for the binary process operation. */
+    public static final String REQUEST_METADATA_PREFIX = "REQUEST_METADATA.";
+
     @Resource
     private WebServiceContext wsContext;
 
@@ -727,6 +745,83 @@ public class WorkerResource {
                 .header("Content-Type", MediaType.APPLICATION_JSON).build();
     }
 
+    /**
+     * REST operation for getting the time spent by a worker in each phase of
+     * processing requests.
+     *
+     * @param httpServletRequest Http Servlet request to extract request context from it
+     * @param id Worker ID
+     * @return The operation result in a JSON format.
+     * @throws IllegalRequestException
+     * @throws AdminNotAuthorizedException
+     */
+    @GET
+    @Path("{id}/metrics")
+    @Produces({MediaType.APPLICATION_JSON})
+    @APIResponse(
+            responseCode = "200",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ProcessingMetricsResponse.class))
+    )
+    @APIResponse(
+            responseCode = "403",
+            description = "Access is forbidden!",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ErrorMessage.class)
+            )
+    )
+    @APIResponse(
+            responseCode = "404",
+            description = "No such worker",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ErrorMessage.class)
+            )
+    )
+    @APIResponse(
+            responseCode = "500",
+            description = "The server were unable to process the request. See server-side logs for more details.",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ErrorMessage.class)
+            )
+    )
+    @Operation(
+            summary = "Get processing metrics",
+            description = "Required role: admin role \n\n"
+            + "Latency statistics in microseconds for each phase of processing requests by the worker."
+    )
+    public Response getProcessingMetrics(
+            @Context final HttpServletRequest httpServletRequest,
+            @PathParam("id") final int id)
+            throws IllegalRequestException, AdminNotAuthorizedException {
+        checkCustomHeader(httpServletRequest);
+
+        final AdminInfo adminInfo =
+                auth.requireAdminAuthorization(getCertificate(httpServletRequest),
+                                               "getProcessingMetrics", String.valueOf(id));
+
+        final ProcessingMetrics metrics;
+        try {
+            metrics = workerSession.getProcessingMetrics(new WorkerIdentifier(id));
+        } catch (InvalidWorkerIdException ex) {
+            throw new NoSuchWorkerException(String.valueOf(id));
+        }
+        final List<ProcessingMetricsResponse.Phase> phases = new ArrayList<>();
+
+        for (final Map.Entry<ProcessingMetrics.Phase, LatencyHistogram> entry : metrics.getHistograms().entrySet()) {
+            final LatencyHistogram h = entry.getValue();
+            phases.add(new ProcessingMetricsResponse.Phase(entry.getKey().name(), h.getCount(),
+                    Math.round(h.getMean()), h.getValueAtPercentile(50), h.getValueAtPercentile(90),
+                    h.getValueAtPercentile(99), h.getValueAtPercentile(99.9), h.getMax()));
+        }
+
+        return Response.ok(new ProcessingMetricsResponse(metrics.getStartTime(), phases))
+                .header("Content-Type", MediaType.APPLICATION_JSON).build();
+    }
+
     /**
      * REST operation to get a list of workers.
      *
@@ -840,7 +935,7 @@ public class WorkerResource {
     )
     @APIResponse(
             responseCode = "503",
-            description = "Crypto Token not available",
+            description = "Crypto Token not available or too many requests queued for the worker",
             content = @Content(
                     mediaType = MediaType.APPLICATION_JSON,
                     schema = @Schema(implementation = ErrorMessage.class)
@@ -863,7 +958,7 @@ public class WorkerResource {
             @RequestBody(
                     description = "The request",
                     required = true
-            ) final ProcessRequest request) throws RequestFailedException, InternalServerException, CryptoTokenOfflineException, IllegalRequestException {
+            ) final ProcessRequest request) throws RequestFailedException, InternalServerException, CryptoTokenOfflineException, IllegalRequestException, WorkerOverloadedException {
         final List<Metadata> requestMetadata = new ArrayList<>();
         if (request.getMetaData() != null) {
             request.getMetaData().forEach((name, value) -> requestMetadata.add(new Metadata(name, value)));
@@ -871,22 +966,181 @@ public class WorkerResource {
         if (request.getData() == null) {
             throw new IllegalRequestException("Missing data in request");
         }
-        byte[] dataBytes = request.getData().getBytes(StandardCharsets.UTF_8);
+        final UploadConfig uploadConfig = UploadConfig.create(globalSession);
+        final CloseableReadableData requestData;
 
         DataEncoding encoding = request.getEncoding();
-        if (encoding == DataEncoding.BASE64) {
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Decoding base64 data");
-            }
-            if (dataBytes.length > 0) {
+        try {
+            if (encoding == DataEncoding.BASE64 && request.getData().length() > uploadConfig.getSizeThreshold()) {
+                // Decode directly to a file so the decoded data is not kept in memory
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Decoding base64 data to file");
+                }
                 try {
-                    dataBytes = Base64.decode(dataBytes);
+                    requestData = DataUtils.decodeBase64ToFile(request.getData(), uploadConfig.getRepository());
                 } catch (DecoderException ex) {
                     throw new InternalServerException("Incorrect base64 data");
+                } catch (IOException ex) {
+                    LOG.error("Unable to store request data: " + ex.getLocalizedMessage());
+                    throw new InternalServerException("Internal IO error: " + ex.getMessage());
+                }
+                if (requestData.getLength() > uploadConfig.getMaxUploadSize()) {
+                    try {
+                        requestData.close();
+                    } catch (IOException ignored) {} // NOPMD
+                    throw new FileUploadBase.SizeLimitExceededException(
+                            String.format("the request was rejected because its size (%s) exceeds the configured maximum (%s)",
+                                    requestData.getLength(), uploadConfig.getMaxUploadSize()),
+                            requestData.getLength(), uploadConfig.getMaxUploadSize());
                 }
+            } else {
+                byte[] dataBytes = request.getData().getBytes(StandardCharsets.UTF_8);
+
+                if (encoding == DataEncoding.BASE64) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Decoding base64 data");
+                    }
+                    if (dataBytes.length > 0) {
+                        try {
+                            dataBytes = Base64.decode(dataBytes);
+                        } catch (DecoderException ex) {
+                            throw new InternalServerException("Incorrect base64 data");
+                        }
+                    }
+                }
+                requestData = dataFactory.createReadableData(dataBytes, uploadConfig.getMaxUploadSize(), uploadConfig.getRepository());
+            }
+        } catch (FileUploadException e) {
+            throw new RuntimeException(e);
+        }
+        return process(idOrName, httpServletRequest, requestMetadata, requestData, uploadConfig, false);
+    }
+
+    /**
+     * Process REST operation taking the data to process as the request body
+     * and returning the resulting data as the response body.
+     *
+     * The request body is streamed to a file if it is larger than the file
+     * size threshold and the response is streamed from the response data, so
+     * large documents do not have to be held in memory and are not base64
+     * encoded.
+     *
+     * @param idOrName           Name or ID of worker to send the request to
+     * @param httpServletRequest Http Servlet request to extract request context from it
+     * @param uriInfo            To get the request metadata query parameters from
+     * @param body               The data to process
+     * @return The response data
+     * @throws RequestFailedException  In case the request could not be processed typically because some error in the request data.
+     * @throws InternalServerException In case the request could not be processed by some error at the server side.
+     * @throws RequestEntityTooLargeException In case the request body is larger than the maximum upload size.
+     */
+    @POST
+    @Path("{idOrName}/process/binary")
+    @Consumes({MediaType.APPLICATION_OCTET_STREAM, MediaType.WILDCARD})
+    @Produces({MediaType.APPLICATION_OCTET_STREAM, MediaType.WILDCARD})
+    @APIResponse(
+            responseCode = "200",
+            description = "The response data. The archive ID, request ID and "
+                    + "signer certificate are returned in the headers "
+                    + HEADER_ARCHIVE_ID + ", " + HEADER_REQUEST_ID + " and "
+                    + HEADER_SIGNER_CERTIFICATE + " (base64 encoded)."
+    )
+    @APIResponse(
+            responseCode = "400",
+            description = "Bad request from the client",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ErrorMessage.class)
+            )
+    )
+    @APIResponse(
+            responseCode = "403",
+            description = "Access is forbidden!",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ErrorMessage.class)
+            )
+    )
+    @APIResponse(
+            responseCode = "404",
+            description = "No such worker",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ErrorMessage.class)
+            )
+    )
+    @APIResponse(
+            responseCode = "413",
+            description = "The request body is larger than the maximum upload size",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ErrorMessage.class)
+            )
+    )
+    @APIResponse(
+            responseCode = "500",
+            description = "The server were unable to process the request. See server-side logs for more details.",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ErrorMessage.class)
+            )
+    )
+    @APIResponse(
+            responseCode = "503",
+            description = "Crypto Token not available or too many requests queued for the worker",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = ErrorMessage.class)
+            )
+    )
+    @Operation(
+            summary = "Submit binary data for processing",
+            description = "Required role: set by AUTHTYPE in worker \n\n"
+                    + "Submit data/document/file as the request body for processing "
+                    + "such as for instance signing and get back the result "
+                    + "(i.e. signature) as the response body. Request metadata "
+                    + "can be given as query parameters named "
+                    + REQUEST_METADATA_PREFIX + "<name>."
+    )
+    public Response processBinary(
+            @Parameter(
+                    description = "Worker Id or name of the worker",
+                    example = "ExampleSigner1",
+                    schema = @Schema(anyOf = {String.class, Integer.class})
+            )
+            @PathParam("idOrName") final String idOrName,
+            @Context final HttpServletRequest httpServletRequest,
+            @Context final UriInfo uriInfo,
+            @RequestBody(
+                    description = "The data to process",
+                    required = true
+            ) final InputStream body) throws RequestFailedException, InternalServerException, CryptoTokenOfflineException, IllegalRequestException, WorkerOverloadedException, RequestEntityTooLargeException {
+        final List<Metadata> requestMetadata = new ArrayList<>();
+        uriInfo.getQueryParameters().forEach((name, values) -> {
+            if (name.startsWith(REQUEST_METADATA_PREFIX) && name.length() > REQUEST_METADATA_PREFIX.length() && !values.isEmpty()) {
+                requestMetadata.add(new Metadata(name.substring(REQUEST_METADATA_PREFIX.length()), values.get(0)));
             }
+        });
+
+        final UploadConfig uploadConfig = UploadConfig.create(globalSession);
+        final DiskFileItemFactory factory = new DiskFileItemFactory();
+        factory.setSizeThreshold(uploadConfig.getSizeThreshold());
+        factory.setRepository(uploadConfig.getRepository());
+
+        final BinaryFileUpload upload = new BinaryFileUpload(body, httpServletRequest.getContentType(), factory);
+        upload.setSizeMax(uploadConfig.getMaxUploadSize());
+
+        final CloseableReadableData requestData;
+        try {
+            requestData = dataFactory.createReadableData(upload.parseTheRequest(), uploadConfig.getRepository());
+        } catch (FileUploadBase.SizeLimitExceededException ex) {
+            LOG.error(UploadConfig.HTTP_MAX_UPLOAD_SIZE + " exceeded: " + ex.getLocalizedMessage());
+            throw new RequestEntityTooLargeException("Maximum content length is " + uploadConfig.getMaxUploadSize() + " bytes");
+        } catch (FileUploadException ex) {
+            LOG.error("Upload failed: " + ex.getLocalizedMessage());
+            throw new InternalServerException("Upload failed: " + ex.getMessage());
         }
-        return process(idOrName, httpServletRequest, requestMetadata, dataBytes);
+        return process(idOrName, httpServletRequest, requestMetadata, requestData, uploadConfig, true);
     }
 
     /**
@@ -901,21 +1155,31 @@ public class WorkerResource {
      * @throws InternalServerException In case the request could not be processed by some error at the server side.
      */
     public Response process(String idOrName, HttpServletRequest httpServletRequest, List<Metadata> requestMetadata,
-                            byte[] data) throws RequestFailedException, InternalServerException, CryptoTokenOfflineException, IllegalRequestException {
+                            byte[] data) throws RequestFailedException, InternalServerException, CryptoTokenOfflineException, IllegalRequestException, WorkerOverloadedException {
         final UploadConfig uploadConfig = UploadConfig.create(globalSession);
 
-        final int requestId = ThreadLocalRandom.current().nextInt();
-
-        CloseableReadableData requestData;
-        CloseableWritableData responseData;
-
+        final CloseableReadableData requestData;
         try {
             requestData = dataFactory.createReadableData(data, uploadConfig.getMaxUploadSize(), uploadConfig.getRepository());
-            responseData = dataFactory.createWritableData(requestData, uploadConfig.getRepository());
-
         } catch (FileUploadException e) {
             throw new RuntimeException(e);
         }
+        return process(idOrName, httpServletRequest, requestMetadata, requestData, uploadConfig, false);
+    }
+
+    /**
+     * Process the request data and return a response where the response data
+     * is streamed, either as is or base64 encoded in a JSON response.
+     *
+     * The request data (and the response data) are closed after the response
+     * has been written or in case of failure.
+     */
+    private Response process(String idOrName, HttpServletRequest httpServletRequest, List<Metadata> requestMetadata,
+                             CloseableReadableData requestData, UploadConfig uploadConfig, boolean binary) throws RequestFailedException, InternalServerException, CryptoTokenOfflineException, IllegalRequestException, WorkerOverloadedException {
+        final int requestId = ThreadLocalRandom.current().nextInt();
+
+        final CloseableWritableData responseData = dataFactory.createWritableData(requestData, uploadConfig.getRepository());
+        boolean responseReturned = false;
 
         final RequestContext requestContext = handleRequestContext(requestMetadata, httpServletRequest);
         WorkerIdentifier workerIdentifier = WorkerIdentifier.createFromIdOrName(idOrName);
@@ -955,12 +1219,29 @@ public class WorkerResource {
                     LOG.error("Response ID " + signatureResponse.getRequestID() + " not matching request ID " + requestId);
                     throw new InternalServerException("Error in process operation, response id didn't match request id");
                 }
-                return Response.ok(new ProcessResponse(signatureResponse.getArchiveId(),
-                                Base64.toBase64String(signatureResponse.getResponseData().toReadableData().getAsByteArray()),
-                                String.valueOf(signatureResponse.getRequestID()),
-                                signatureResponse.getSignerCertificate() == null ? null : Base64.toBase64String(signatureResponse.getSignerCertificate().getEncoded()),
-                                getResponseMetadata(requestContext)))
-                        .header("Content-Type", MediaType.APPLICATION_JSON).build();
+                final String signerCertificate = signatureResponse.getSignerCertificate() == null ? null : Base64.toBase64String(signatureResponse.getSignerCertificate().getEncoded());
+                final Response response;
+                if (binary) {
+                    final ReadableData readable = signatureResponse.getResponseData().toReadableData();
+                    final String contentType = signatureResponse.getContentType() == null ? MediaType.APPLICATION_OCTET_STREAM : signatureResponse.getContentType();
+                    response = Response.ok(new ReadableDataOutput(readable, requestData, responseData))
+                            .header("Content-Type", contentType)
+                            .header("Content-Length", readable.getLength())
+                            .header(HEADER_ARCHIVE_ID, signatureResponse.getArchiveId())
+                            .header(HEADER_REQUEST_ID, String.valueOf(signatureResponse.getRequestID()))
+                            .header(HEADER_SIGNER_CERTIFICATE, signerCertificate)
+                            .build();
+                } else {
+                    response = Response.ok(new ProcessResponseOutput(signatureResponse.getArchiveId(),
+                                    signatureResponse.getResponseData().toReadableData(),
+                                    String.valueOf(signatureResponse.getRequestID()),
+                                    signerCertificate,
+                                    getResponseMetadata(requestContext),
+                                    requestData, responseData))
+                            .header("Content-Type", MediaType.APPLICATION_JSON).build();
+                }
+                responseReturned = true;
+                return response;
             } else {
                 LOG.error("Unexpected return type: " + resp.getClass().getName());
                 throw new InternalServerException("Unexpected return type");
@@ -971,9 +1252,8 @@ public class WorkerResource {
                 LOG.debug("Request failed: " + e.getMessage(), e);
             }
             throw new RequestFailedException(e.getMessage());
-        } catch (IOException e) {
-            LOG.debug("Internal IO error", e);
-            throw new InternalServerException("Internal IO error: " + e.getMessage());
+        } catch (WorkerOverloadedException e) {
+            throw e;
         } catch (SignServerException e) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Internal server error", e);
@@ -982,6 +1262,16 @@ public class WorkerResource {
         } catch (CertificateEncodingException e) {
             LOG.error("Certificate encoding error", e);
             throw new InternalServerException("Internal server error");
+        } finally {
+            // Otherwise closed after the response has been written
+            if (!responseReturned) {
+                try {
+                    requestData.close();
+                    responseData.close();
+                } catch (IOException ex) {
+                    LOG.error("Unable to remove temporary files: " + ex.getLocalizedMessage());
+                }
+            }
         }
     }
 
@@ -35,6 +35,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.IOUtils;
@@ -43,6 +44,7 @@ import org.apache.commons.lang.math.NumberUtils;
 import org.apache.http.Header;
 import org.apache.http.HeaderElement;
 import org.apache.http.NameValuePair;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
@@ -52,6 +54,7 @@ import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.log4j.Logger;
 import org.bouncycastle.jcajce.provider.asymmetric.util.EC5Util;
@@ -88,7 +91,16 @@ public class AzureCryptoToken extends BaseCryptoToken {
      * It is possible to have multiple crypto tokens configured to multiple key vaults (with different names), because this is
      * local to this instance of CryptoToken. 
      */
-    private String authorizationHeader;
+    private volatile String authorizationHeader;
+    /** Time (ms) when the authorization header expires, 0 if unknown */
+    private volatile long authorizationExpires;
+    /** Time (ms) after which the authorization header should be renewed, 0 if unknown */
+    private volatile long authorizationRenewal;
+    /** Authorization URI and resource from the last WWW-Authenticate challenge, used to renew the authorization before it expires */
+    private volatile String oauthServiceURL;
+    private volatile String oauthResource;
+    /** Only one thread at a time fetches a new authorization header */
+    private final ReentrantLock authorizationLock = new ReentrantLock();
     /** The same but for client secret */
     private String clientSecret;
     /** The same but for client ID */
@@ -99,8 +111,8 @@ public class AzureCryptoToken extends BaseCryptoToken {
     /** We can make two types of requests, to different hosts/URLs, one is for the REST API requests 
      * and the other for the authorization URL we need to go to if we don't have a valid authorizationHeader
      */
-    private CloseableHttpClient httpClient = HttpClientBuilder.create().build();
-    private CloseableHttpClient authHttpClient = HttpClientBuilder.create().build();
+    private volatile CloseableHttpClient httpClient;
+    private volatile CloseableHttpClient authHttpClient;
 
     /** Property for storing the key vault type in the crypto token properties.
      * Key Vault Type is the "pricing tier" as it says when creating an Azure Key Vault, it is also called SKU_TYPE somewhere else.
@@ -127,6 +139,27 @@ public class AzureCryptoToken extends BaseCryptoToken {
      * It is recommended by MS that we should use client certificate authentication instead of id/secret. You get the id/secret or client certificate from AD.
      */ 
     public static final String KEY_VAULT_CLIENTID = "keyVaultClientID";    
+
+    /** Property for the maximum number of concurrent connections to the key vault (default 50). */
+    public static final String KEY_VAULT_MAX_CONNECTIONS = "keyVaultMaxConnections";
+    /** Property for the connect timeout in milliseconds (default 10000). */
+    public static final String KEY_VAULT_CONNECT_TIMEOUT = "keyVaultConnectTimeout";
+    /** Property for the socket (read) timeout in milliseconds (default 30000). */
+    public static final String KEY_VAULT_SOCKET_TIMEOUT = "keyVaultSocketTimeout";
+    /** Property for how long, in milliseconds, to wait for a free connection (default 30000). */
+    public static final String KEY_VAULT_CONNECTION_REQUEST_TIMEOUT = "keyVaultConnectionRequestTimeout";
+    /** Property for how long, in seconds, before the authorization expires that it is renewed (default 300). */
+    public static final String KEY_VAULT_AUTHORIZATION_RENEWAL = "keyVaultAuthorizationRenewal";
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+    private static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    private static final int DEFAULT_SOCKET_TIMEOUT = 30000;
+    private static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 30000;
+    private static final long DEFAULT_AUTHORIZATION_RENEWAL = 300;
+    /** Idle pooled connections are checked before being reused after this many milliseconds */
+    private static final int VALIDATE_AFTER_INACTIVITY = 2000;
+
+    private long authorizationRenewalMillis = DEFAULT_AUTHORIZATION_RENEWAL * 1000;
     
     /** Cache for key aliases, to speed things up so we don't have to make multiple REST calls all the time to list aliases and public keys
      * We cache for a short time, 30 seconds to speed up GUI operations, but still allow for key generation on different nodes in a cluster, just leaving the 
@@ -205,6 +238,8 @@ public class AzureCryptoToken extends BaseCryptoToken {
         // Check that key vault name does not have any bad characters, should follow the same regexp as aliases, except also allow dots
         checkVaultName(keyVaultName);
         clientID = properties.getProperty(AzureCryptoToken.KEY_VAULT_CLIENTID);
+        authorizationRenewalMillis = getLongProperty(properties, KEY_VAULT_AUTHORIZATION_RENEWAL, DEFAULT_AUTHORIZATION_RENEWAL) * 1000;
+        createHttpClients(properties);
         log.info("Initializing Azure Key Vault: Type=" + properties.getProperty(AzureCryptoToken.KEY_VAULT_TYPE) + 
                 ", Name=" + keyVaultName + ", clientID=" + clientID);
         
@@ -228,6 +263,76 @@ public class AzureCryptoToken extends BaseCryptoToken {
         }
     }
 
+    /**
+     * Replaces the HTTP clients, closing the previous ones and with them
+     * their pooled connections.
+     *
+     * @param properties with the connection limits and timeouts
+     * @throws CryptoTokenOfflineException in case of an illegal value
+     */
+    private synchronized void createHttpClients(final Properties properties) throws CryptoTokenOfflineException {
+        final CloseableHttpClient newHttpClient = createHttpClient(properties);
+        final CloseableHttpClient newAuthHttpClient = createHttpClient(properties);
+        closeHttpClients();
+        httpClient = newHttpClient;
+        authHttpClient = newAuthHttpClient;
+    }
+
+    /**
+     * Closes the HTTP clients, if any, and with them their pooled connections.
+     */
+    private synchronized void closeHttpClients() {
+        for (final CloseableHttpClient client : new CloseableHttpClient[] {httpClient, authHttpClient}) {
+            if (client != null) {
+                try {
+                    client.close();
+                } catch (IOException e) {
+                    log.info("Failed to close HTTP client: " + e.getMessage());
+                }
+            }
+        }
+        httpClient = null;
+        authHttpClient = null;
+    }
+
+    /**
+     * Creates a HTTP client with a pool of keep-alive connections so that
+     * concurrent requests do not have to wait for each other or set up a new
+     * TLS connection.
+     *
+     * @param properties with the connection limits and timeouts
+     * @return the new client
+     * @throws CryptoTokenOfflineException in case of an illegal value
+     */
+    private static CloseableHttpClient createHttpClient(final Properties properties) throws CryptoTokenOfflineException {
+        final int maxConnections = (int) getLongProperty(properties, KEY_VAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
+        final RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) getLongProperty(properties, KEY_VAULT_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT))
+                .setSocketTimeout((int) getLongProperty(properties, KEY_VAULT_SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT))
+                .setConnectionRequestTimeout((int) getLongProperty(properties, KEY_VAULT_CONNECTION_REQUEST_TIMEOUT, DEFAULT_CONNECTION_REQUEST_TIMEOUT))
+                .build();
+        return HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+    }
+
+    private static long getLongProperty(final Properties properties, final String name, final long defaultValue) throws CryptoTokenOfflineException {
+        final String value = properties.getProperty(name);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new CryptoTokenOfflineException("Illegal value for " + name + ": " + value, ex);
+        }
+    }
+
     @Override
     public int getTokenStatus() {
         // Keep status in memory. As this method is called very often we don't want to make REST calls every time
@@ -313,7 +418,7 @@ public class AzureCryptoToken extends BaseCryptoToken {
     }
 
     private CloseableHttpResponse listKeysRESTCall() throws CryptoTokenAuthenticationFailedException, CryptoTokenOfflineException {
-        HttpGet request = new HttpGet(createFullKeyURL(null, getKeyVaultName()) + "?api-version=7.0");
+        HttpGet request = new HttpGet(getKeyURL(null) + "?api-version=7.0");
         return performRequest(request);
     }
 
@@ -335,7 +440,8 @@ public class AzureCryptoToken extends BaseCryptoToken {
             throw new CryptoTokenOfflineException("Crypto token is not active, there is no client secret available: " + request.toString());
         }
         try {
-            CloseableHttpResponse response = performRESTAPIRequest(request);
+            final String usedAuthorization = getAuthorizationHeader();
+            CloseableHttpResponse response = performRESTAPIRequest(request, usedAuthorization);
             final int requestStatusCode = response.getStatusLine().getStatusCode();
             if (requestStatusCode == 401) {
                 log.debug("Got access denied calling key vault, try to get authentication URI and fetch auth token");
@@ -344,8 +450,8 @@ public class AzureCryptoToken extends BaseCryptoToken {
                 // Close as soon as possible, we don't need this response, it's an "Error Response" for invalid_token 
                 response.close();
                 final HeaderElement[] elements = lastHeader.getElements();
-                String oauthServiceURL = null;
-                String oauthResource = null;
+                String serviceURL = null;
+                String resource = null;
                 for (HeaderElement element : elements) {
                     final String elementName = element.getName();
                     if (log.isDebugEnabled()) {
@@ -357,63 +463,27 @@ public class AzureCryptoToken extends BaseCryptoToken {
                     // resource="https://vault.azure.net"
                     // We play it safe and look for both values, the doc and the actual return
                     if (elementName.equals("Bearer authorization") || elementName.equals("Bearer authorization_uri")) {
-                        oauthServiceURL = element.getValue();
+                        serviceURL = element.getValue();
                         if (log.isDebugEnabled()) {
-                            log.debug("Found a Bearer authorization uri: " + oauthServiceURL);
+                            log.debug("Found a Bearer authorization uri: " + serviceURL);
                         }
                     } else if (elementName.equals("resource") || elementName.equals("resource_id")) {
                         // "resource_id" to be used as resource in request, see https://docs.microsoft.com/en-us/azure/active-directory/develop/v1-protocols-oauth-code.
-                        oauthResource = element.getValue();
+                        resource = element.getValue();
                         if (log.isDebugEnabled()) {
-                            log.debug("Found a resource ID: " + oauthResource);
+                            log.debug("Found a resource ID: " + resource);
                         }
                     }
                 }
-                if (oauthServiceURL == null) {
+                if (serviceURL == null) {
                     throw new CryptoTokenAuthenticationFailedException("We did not find a 'Bearer authorization' uri in the WWW-Authenticate for a 401 response");
                 }
-                final HttpPost request1 = new HttpPost(oauthServiceURL + "/oauth2/token");
-                final ArrayList<NameValuePair> parameters = new ArrayList<>();
-                parameters.add(new BasicNameValuePair("grant_type", "client_credentials"));                
-                // ECA-8473: We only support client_secret for authentication right now. A more recommended way is to use certificate to authenticate.
-                parameters.add(new BasicNameValuePair("client_id", clientID));
-                parameters.add(new BasicNameValuePair("client_secret", clientSecret));
-                if (log.isDebugEnabled()) {
-                    log.debug("Using client_id and client_secret: '" + clientID + (StringUtils.isNotEmpty(clientSecret) ? ":<nologgingcleartextpasswords>'" : ":<empty pwd>"));
-                }
-                parameters.add(new BasicNameValuePair("resource", oauthResource));
-                request1.setEntity(new UrlEncodedFormEntity(parameters));
-                if (log.isDebugEnabled()) {
-                    log.debug("Authorization request: " + request1.toString());
-                }
-                try (final CloseableHttpResponse authResponse = authHttpClient.execute(request1)) {
-                    final int authStatusCode = authResponse.getStatusLine().getStatusCode();
-                    if (log.isDebugEnabled()) {
-                        log.debug("Status code for authorization request is: " + authStatusCode);
-                        log.debug("Response.toString: " + authResponse.toString());
-                    }
-                    final String s = IOUtils.toString(authResponse.getEntity().getContent(), StandardCharsets.UTF_8);
-                    if (log.isDebugEnabled()) {
-                        log.debug("Authorization JSON response: " + s);
-                    }
-                    final JSONParser jsonParser = new JSONParser();
-                    final JSONObject parse = (JSONObject) jsonParser.parse(s);
-                    if (authStatusCode == 401 || authStatusCode == 400) { // 401 expected for no secret or wrong secret, 400 expected for wrong client_id
-                        authorizationHeader = null;
-                        log.info("Authorization denied with statusCode " + authStatusCode + " for Azure Crypto Token authentication call to URI " + request1.getURI() + ", for client_id " + clientID);
-                        throw new CryptoTokenAuthenticationFailedException("Azure Crypto Token authorization denied, JSON response: " + s);
-                    } else if (authStatusCode == 200) {
-                        final String access_token = (String) parse.get("access_token");
-                        authorizationHeader = "Bearer " + access_token;
-                        if (log.isDebugEnabled()) {
-                            log.debug("Authorization header from authentication response: " + authorizationHeader);
-                        }
-                        // Now we are authorized, make the request we came to this method for again
-                        response = performRESTAPIRequest(request);
-                    } else {
-                        throw new CryptoTokenAuthenticationFailedException("Azure Crypto Token authorization failed with unknown response code " + authStatusCode + ", JSON response: " + s);
-                    }
-                }
+                oauthServiceURL = serviceURL;
+                oauthResource = resource;
+                authorize(usedAuthorization);
+
+                // Now we are authorized, make the request we came to this method for again
+                response = performRESTAPIRequest(request, authorizationHeader);
             }
             return response;
         } catch (IOException | ParseException e) {
@@ -421,6 +491,136 @@ public class AzureCryptoToken extends BaseCryptoToken {
         }
     }
 
+    /**
+     * Returns the authorization header to use for a request. If it is about
+     * to expire one thread renews it while the others continue to use the
+     * current one. Only if it has already expired do they wait for the
+     * renewal.
+     *
+     * @return the authorization header or null if there is none yet
+     */
+    private String getAuthorizationHeader() {
+        final String current = authorizationHeader;
+        final long renewal = authorizationRenewal;
+        if (current == null || renewal == 0 || System.currentTimeMillis() < renewal) {
+            return current;
+        }
+        if (System.currentTimeMillis() < authorizationExpires) {
+            if (!authorizationLock.tryLock()) {
+                return current;
+            }
+        } else {
+            authorizationLock.lock();
+        }
+        try {
+            if (current.equals(authorizationHeader)) {
+                log.debug("Renewing authorization before it expires");
+                fetchAuthorization();
+            }
+        } catch (CryptoTokenAuthenticationFailedException | IOException | ParseException e) {
+            // The request will get a 401 if the current one is not valid anymore
+            log.info("Renewing authorization for Azure Crypto Token failed: " + e.getMessage());
+        } finally {
+            authorizationLock.unlock();
+        }
+        return authorizationHeader;
+    }
+
+    /**
+     * Fetches a new authorization header, unless another thread already did
+     * so after the given one was used.
+     *
+     * @param usedAuthorization the header used in the request that was denied
+     */
+    private void authorize(final String usedAuthorization) throws CryptoTokenAuthenticationFailedException, IOException, ParseException {
+        authorizationLock.lock();
+        try {
+            final String current = authorizationHeader;
+            if (current != null && !current.equals(usedAuthorization)) {
+                log.debug("Authorization already renewed by another request");
+                return;
+            }
+            fetchAuthorization();
+        } finally {
+            authorizationLock.unlock();
+        }
+    }
+
+    /**
+     * Fetches a new authorization header from the authorization URI given in
+     * the last WWW-Authenticate challenge. Must be called with the
+     * authorization lock held.
+     */
+    private void fetchAuthorization() throws CryptoTokenAuthenticationFailedException, IOException, ParseException {
+        final HttpPost request1 = new HttpPost(oauthServiceURL + "/oauth2/token");
+        final ArrayList<NameValuePair> parameters = new ArrayList<>();
+        parameters.add(new BasicNameValuePair("grant_type", "client_credentials"));                
+        // ECA-8473: We only support client_secret for authentication right now. A more recommended way is to use certificate to authenticate.
+        parameters.add(new BasicNameValuePair("client_id", clientID));
+        parameters.add(new BasicNameValuePair("client_secret", clientSecret));
+        if (log.isDebugEnabled()) {
+            log.debug("Using client_id and client_secret: '" + clientID + (StringUtils.isNotEmpty(clientSecret) ? ":<nologgingcleartextpasswords>'" : ":<empty pwd>"));
+        }
+        parameters.add(new BasicNameValuePair("resource", oauthResource));
+        request1.setEntity(new UrlEncodedFormEntity(parameters));
+        if (log.isDebugEnabled()) {
+            log.debug("Authorization request: " + request1.toString());
+        }
+        try (final CloseableHttpResponse authResponse = getHttpClient(authHttpClient).execute(request1)) {
+            final int authStatusCode = authResponse.getStatusLine().getStatusCode();
+            if (log.isDebugEnabled()) {
+                log.debug("Status code for authorization request is: " + authStatusCode);
+                log.debug("Response.toString: " + authResponse.toString());
+            }
+            final String s = IOUtils.toString(authResponse.getEntity().getContent(), StandardCharsets.UTF_8);
+            if (log.isDebugEnabled()) {
+                log.debug("Authorization JSON response: " + s);
+            }
+            final JSONParser jsonParser = new JSONParser();
+            final JSONObject parse = (JSONObject) jsonParser.parse(s);
+            if (authStatusCode == 401 || authStatusCode == 400) { // 401 expected for no secret or wrong secret, 400 expected for wrong client_id
+                authorizationHeader = null;
+                authorizationExpires = 0;
+                authorizationRenewal = 0;
+                log.info("Authorization denied with statusCode " + authStatusCode + " for Azure Crypto Token authentication call to URI " + request1.getURI() + ", for client_id " + clientID);
+                throw new CryptoTokenAuthenticationFailedException("Azure Crypto Token authorization denied, JSON response: " + s);
+            } else if (authStatusCode == 200) {
+                final String access_token = (String) parse.get("access_token");
+                final long expiresIn = getExpiresIn(parse);
+                final long now = System.currentTimeMillis();
+                if (expiresIn > 0) {
+                    // Renew in time but never more often than every half lifetime
+                    authorizationExpires = now + expiresIn * 1000;
+                    authorizationRenewal = now + Math.max(expiresIn * 1000 - authorizationRenewalMillis, expiresIn * 500);
+                } else {
+                    authorizationExpires = 0;
+                    authorizationRenewal = 0;
+                }
+                authorizationHeader = "Bearer " + access_token;
+                if (log.isDebugEnabled()) {
+                    log.debug("Authorization header from authentication response: " + authorizationHeader + ", expires in " + expiresIn + " seconds");
+                }
+            } else {
+                throw new CryptoTokenAuthenticationFailedException("Azure Crypto Token authorization failed with unknown response code " + authStatusCode + ", JSON response: " + s);
+            }
+        }
+    }
+
+    /**
+     * @param parse authorization response
+     * @return the lifetime of the access token in seconds or -1 if not known
+     */
+    private static long getExpiresIn(final JSONObject parse) {
+        final Object value = parse.get("expires_in");
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof String) {
+            // Version 1 endpoints return it as a string
+            return NumberUtils.toLong((String) value, -1);
+        }
+        return -1;
+    }
+
     /** 
      * @param alias the key alias you want to access, or null if the key alias should be left out of the returned URL
      * @return a URL to access a key (without trailing /), i.e. https://vaultname.vault.azure.net/keys/alias, or if alias is null https://vaultname.vault.azure.net/keys
@@ -439,13 +639,34 @@ public class AzureCryptoToken extends BaseCryptoToken {
         }
      }
 
-    private CloseableHttpResponse performRESTAPIRequest(HttpRequestBase request) throws IOException {
+    /**
+     * @param alias the key alias you want to access, or null if the key alias should be left out of the returned URL
+     * @return a URL to access a key in the key vault of this crypto token
+     * @see #createFullKeyURL(java.lang.String, java.lang.String)
+     */
+    protected String getKeyURL(final String alias) {
+        return createFullKeyURL(alias, getKeyVaultName());
+    }
+
+    /**
+     * @return the client
+     * @throws IOException if the client has been closed as the crypto token
+     * has been deactivated
+     */
+    private static CloseableHttpClient getHttpClient(final CloseableHttpClient client) throws IOException {
+        if (client == null) {
+            throw new IOException("Crypto token is not active");
+        }
+        return client;
+    }
+
+    private CloseableHttpResponse performRESTAPIRequest(HttpRequestBase request, String authorization) throws IOException {
         // Set the cached authorization token if we have any. If the token has expired, or we don't have a cached token, it will return http 401 and we can get a new one
-        request.setHeader("Authorization", authorizationHeader);
+        request.setHeader("Authorization", authorization);
         if (log.isDebugEnabled()) {
             log.debug("Request: " + request.toString());            
         }
-        final CloseableHttpResponse response = httpClient.execute(request);
+        final CloseableHttpResponse response = getHttpClient(httpClient).execute(request);
         if (log.isDebugEnabled()) {
             log.debug("Status code for request is: " + response.getStatusLine().getStatusCode());
             log.debug("Response.toString: " + response.toString());
@@ -455,6 +676,10 @@ public class AzureCryptoToken extends BaseCryptoToken {
 
     @Override
     public void activate(final char[] authCode) throws CryptoTokenOfflineException, CryptoTokenAuthenticationFailedException {
+        if (httpClient == null) {
+            // Closed when deactivated
+            createHttpClients(getProperties());
+        }
         clientSecret = new String(authCode);
         log.info("Activating Key Vault Crypto Token, listing aliases: " + getKeyVaultName());
         getAliases(); // getAliases sets status to on-line if it succeeds
@@ -465,8 +690,11 @@ public class AzureCryptoToken extends BaseCryptoToken {
         log.debug(">deactivate");
         clientSecret = null;
         authorizationHeader = null;
+        authorizationExpires = 0;
+        authorizationRenewal = 0;
         aliasCache.flush();
-        status = STATUS_OFFLINE;        
+        status = STATUS_OFFLINE;
+        closeHttpClients();
     }
 
     @Override
@@ -474,7 +702,10 @@ public class AzureCryptoToken extends BaseCryptoToken {
         log.debug(">reset");
         clientSecret = null;
         authorizationHeader = null;
+        authorizationExpires = 0;
+        authorizationRenewal = 0;
         aliasCache.flush();
+        closeHttpClients();
     }
 
     @Override
@@ -490,7 +721,7 @@ public class AzureCryptoToken extends BaseCryptoToken {
             // remove the key from azure
             // https://docs.microsoft.com/en-us/rest/api/keyvault/deletekey/deletekey
             // DELETE {vaultBaseUrl}/keys/{key-name}?api-version=7.0
-            HttpDelete request = new HttpDelete(createFullKeyURL(alias, getKeyVaultName()) + "?api-version=7.0");
+            HttpDelete request = new HttpDelete(getKeyURL(alias) + "?api-version=7.0");
             try (CloseableHttpResponse response = performRequest(request)) {
                 if (response.getStatusLine().getStatusCode() != 200) {
                     final InputStream content = response.getEntity().getContent();
@@ -572,7 +803,7 @@ public class AzureCryptoToken extends BaseCryptoToken {
             }
             str.append(", \"attributes\": {\"enabled\": true}}");
             //  generate key in our previously created key vault.
-            final HttpPost request = new HttpPost(createFullKeyURL(alias, getKeyVaultName()) + "/create?api-version=7.0");
+            final HttpPost request = new HttpPost(getKeyURL(alias) + "/create?api-version=7.0");
             request.setHeader("Content-Type", "application/json");
             try {
                 request.setEntity(new StringEntity(str.toString()));
@@ -673,7 +904,7 @@ public class AzureCryptoToken extends BaseCryptoToken {
             final String msg = intres.getLocalizedMessage("token.errornosuchkey", alias);
             throw new CryptoTokenOfflineException(msg);
         }
-        final String keyurl = createFullKeyURL(alias, getKeyVaultName());
+        final String keyurl = getKeyURL(alias);
         if (log.isDebugEnabled()) {
             // This is a URI for Key Vault
             log.debug("getPrivateKey: " + keyurl);
@@ -694,7 +925,7 @@ public class AzureCryptoToken extends BaseCryptoToken {
             }
             try {
                 // connect to Azure and retrieve public key, use empty version string to get last version (don't check for existing key versions to save a round trip)
-                HttpGet request2 = new HttpGet(createFullKeyURL(alias, getKeyVaultName()) + "/?api-version=7.0");
+                HttpGet request2 = new HttpGet(getKeyURL(alias) + "/?api-version=7.0");
                 try (CloseableHttpResponse response = performRequest(request2)) {
                     final InputStream content = response.getEntity().getContent();
                     String s = null;
@@ -894,7 +894,12 @@ public abstract class BaseProcessable extends BaseWorker implements IProcessable
             // Request caching for the default key only
             newParams.put(ICryptoTokenV4.PARAM_CACHEPRIVATEKEY, worker.cachePrivateKey && alias != null && alias.equals(worker.config.getProperty(CryptoTokenHelper.PROPERTY_DEFAULTKEY)));
 
-            result = token.acquireCryptoInstance(alias, newParams, context);
+            final long start = System.nanoTime();
+            try {
+                result = token.acquireCryptoInstance(alias, newParams, context);
+            } finally {
+                CryptoInstances.getInstance(context).addAcquireTime(System.nanoTime() - start);
+            }
         } catch (NoSuchAliasException ex) {
             throw new CryptoTokenOfflineException("Key not available: " + ex.getMessage());
         }
@@ -1023,10 +1028,13 @@ public abstract class BaseProcessable extends BaseWorker implements IProcessable
         if (token == null) {
             throw new CryptoTokenOfflineException("Crypto token not available");
         }
+        final long start = System.nanoTime();
         try {
             result = token.acquireCryptoInstance(alias, params, context);
         } catch (NoSuchAliasException ex) {
             throw new CryptoTokenOfflineException("Key not available: " + ex.getMessage());
+        } finally {
+            CryptoInstances.getInstance(context).addAcquireTime(System.nanoTime() - start);
         }
 
         // Register the new instance
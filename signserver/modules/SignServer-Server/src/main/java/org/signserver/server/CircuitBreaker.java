@@ -0,0 +1,134 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server;
+
+/**
+ * Circuit breaker for one dispatch target or crypto token slot.
+ *
+ * The circuit is closed while the target works. After a number of
+ * consecutive failures it is opened and the target is not invoked until the
+ * open time has passed. Then the circuit is half-open and a single request
+ * is let through as a probe: if it succeeds the circuit is closed again and
+ * if it fails the circuit is opened for another period.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class CircuitBreaker {
+
+    /** State of the circuit. */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openTimeMillis;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probeInProgress;
+
+    /**
+     * Creates a closed circuit breaker.
+     * @param failureThreshold number of consecutive failures opening the circuit
+     * @param openTimeMillis time to keep the circuit open before probing
+     */
+    public CircuitBreaker(final int failureThreshold, final long openTimeMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openTimeMillis = openTimeMillis;
+    }
+
+    /**
+     * Checks if a request can be sent to the target. If true is returned one
+     * of {@link #onSuccess()}, {@link #onFailure(long)} or
+     * {@link #onIgnored()} must be called when the request has finished.
+     *
+     * @param now current time in milliseconds
+     * @return true if the target can be invoked
+     */
+    public synchronized boolean tryAcquire(final long now) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAt < openTimeMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInProgress = true;
+                return true;
+            default:
+                if (probeInProgress) {
+                    return false;
+                }
+                probeInProgress = true;
+                return true;
+        }
+    }
+
+    /**
+     * The request succeeded so the circuit is closed.
+     */
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        probeInProgress = false;
+    }
+
+    /**
+     * The request failed because of the target.
+     * @param now current time in milliseconds
+     */
+    public synchronized void onFailure(final long now) {
+        if (state == State.HALF_OPEN) {
+            probeInProgress = false;
+            state = State.OPEN;
+            openedAt = now;
+        } else if (state == State.CLOSED) {
+            failures++;
+            if (failures >= failureThreshold) {
+                state = State.OPEN;
+                openedAt = now;
+            }
+        }
+    }
+
+    /**
+     * The target is known not to work so the circuit is opened regardless of
+     * the number of failures so far.
+     * @param now current time in milliseconds
+     */
+    public synchronized void trip(final long now) {
+        state = State.OPEN;
+        openedAt = now;
+        probeInProgress = false;
+    }
+
+    /**
+     * The request finished without telling anything about the health of the
+     * target, i.e. it was rejected as an illegal request.
+     */
+    public synchronized void onIgnored() {
+        probeInProgress = false;
+    }
+
+    /**
+     * @return the current state
+     */
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -15,6 +15,8 @@ package org.signserver.server;
 import java.math.BigInteger;
 import java.security.cert.X509Certificate;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -49,6 +51,12 @@ public class ClientCertAuthorizer implements IAuthorizer {
     private int workerId;
 
     private Set<AuthorizedClientEntry> authorizedClients;
+
+    /** Match types used by at least one of the authorized clients. */
+    private Set<MatchSubjectWithType> configuredMatchTypes;
+
+    /** Issuer DNs used by at least one of the authorized clients. */
+    private Set<String> authorizedIssuers;
     
     /**
      * Initialize a ClientCertAuthorizer.
@@ -64,6 +72,19 @@ public class ClientCertAuthorizer implements IAuthorizer {
         this.workerId = workerId;
         this.authorizedClients =
                 AuthorizedClientEntry.clientEntriesFromAuthClients(workerConfig.getAuthorizedClientsGen2());
+        this.configuredMatchTypes = EnumSet.noneOf(MatchSubjectWithType.class);
+        this.authorizedIssuers = new HashSet<>();
+        for (final AuthorizedClientEntry client : authorizedClients) {
+            final MatchSubjectWithType matchSubjectWithType = client.getMatchSubjectWithType();
+            if (matchSubjectWithType != MatchSubjectWithType.CERTIFICATE_SERIALNO
+                    && getExtractorParameter(matchSubjectWithType) == -1) {
+                // Do not match on unsupported match types
+                LOG.warn("Unsupported " + MatchSubjectWithType.class.getSimpleName() + " : " + matchSubjectWithType);
+            } else {
+                configuredMatchTypes.add(matchSubjectWithType);
+                authorizedIssuers.add(client.getMatchIssuerWithValue());
+            }
+        }
         if (LOG.isDebugEnabled()) {
             LOG.debug("Configured clients: " + authorizedClients);
         }
@@ -130,99 +151,108 @@ public class ClientCertAuthorizer implements IAuthorizer {
         return (X509Certificate) requestContext.get(RequestContext.CLIENT_CERTIFICATE);
     }
 
+    /**
+     * Check the client certificate against the index of authorized clients.
+     *
+     * The subject DN and subject alternative name of the certificate are only
+     * parsed once per request and only if there are rules configured that
+     * requires them. Each configured match type is then a single lookup in
+     * the hash set of authorized clients so the cost does not depend on the
+     * number of rules.
+     *
+     * @param clientCert to check
+     * @return true if any rule matched
+     */
     private boolean authorizedToRequestSignature(final X509Certificate clientCert) {
-        boolean ruleMatched = false;
-        String matchSubjectwithValue;
-        AuthorizedClientEntry client;
-
         // Only one MatchIssuerType is supported now
-        MatchIssuerWithType matchIssuerWithType = MatchIssuerWithType.ISSUER_DN_BCSTYLE;
+        final MatchIssuerWithType matchIssuerWithType = MatchIssuerWithType.ISSUER_DN_BCSTYLE;
         final String clientIssuerDN = CertTools.stringToBCDNString(clientCert.getIssuerX500Principal().getName());
-        
-        for (final AuthorizedClientEntry authClient : authorizedClients) {
-            MatchSubjectWithType matchSubjectWithType = authClient.getMatchSubjectWithType();
 
+        // No need to look at the subject if no rule is for this issuer
+        if (!authorizedIssuers.contains(clientIssuerDN)) {
+            return false;
+        }
+
+        DNFieldExtractor dnExtractor = null;
+        DNFieldExtractor anExtractor = null;
+
+        for (final MatchSubjectWithType matchSubjectWithType : configuredMatchTypes) {
             if (matchSubjectWithType == MatchSubjectWithType.CERTIFICATE_SERIALNO) {
                 final BigInteger sn = clientCert.getSerialNumber();
-                matchSubjectwithValue = sn.toString(16);
-                client = new AuthorizedClientEntry(matchSubjectwithValue, clientIssuerDN, MatchSubjectWithType.CERTIFICATE_SERIALNO, matchIssuerWithType);
-                
-                if (authorizedClients.contains(client)) {
-                    ruleMatched = true;
-                    break;
+                if (authorizedClients.contains(new AuthorizedClientEntry(sn.toString(16), clientIssuerDN, matchSubjectWithType, matchIssuerWithType))) {
+                    return true;
                 }
             } else {
-                // See X509CertificateAuthenticationToken in EJBCA/CESeCore
-                String certstring = CertTools.getSubjectDN(clientCert);
-                certstring = SERIAL_PATTERN.matcher(certstring).replaceAll("SN=");
-                final String altNameString = CertTools.getSubjectAlternativeName(clientCert);
-                final DNFieldExtractor dnExtractor = new DNFieldExtractor(certstring, DNFieldExtractor.TYPE_SUBJECTDN);
-                final DNFieldExtractor anExtractor = new DNFieldExtractor(altNameString, DNFieldExtractor.TYPE_SUBJECTALTNAME);
-                final int parameter;
-                DNFieldExtractor usedExtractor = dnExtractor;
-                
-                switch (matchSubjectWithType) {
-                    case SUBJECT_RDN_C:
-                        parameter = DNFieldExtractor.C;
-                        break;
-                    case SUBJECT_RDN_DC:
-                        parameter = DNFieldExtractor.DC;
-                        break;
-                    case SUBJECT_RDN_ST:
-                        parameter = DNFieldExtractor.ST;
-                        break;
-                    case SUBJECT_RDN_L:
-                        parameter = DNFieldExtractor.L;
-                        break;
-                    case SUBJECT_RDN_O:
-                        parameter = DNFieldExtractor.O;
-                        break;
-                    case SUBJECT_RDN_OU:
-                        parameter = DNFieldExtractor.OU;
-                        break;
-                    case SUBJECT_RDN_TITLE:
-                        parameter = DNFieldExtractor.T;
-                        break;
-                    case SUBJECT_RDN_SERIALNO:
-                        parameter = DNFieldExtractor.SN;
-                        break;
-                    case SUBJECT_RDN_CN:
-                        parameter = DNFieldExtractor.CN;
-                        break;
-                    case SUBJECT_RDN_UID:
-                        parameter = DNFieldExtractor.UID;
-                        break;
-                    case SUBJECT_RDN_E:
-                        parameter = DNFieldExtractor.E;
-                        break;
-                    case SUBJECT_ALTNAME_RFC822NAME:
-                        parameter = DNFieldExtractor.RFC822NAME;
-                        usedExtractor = anExtractor;
-                        break;
-                    case SUBJECT_ALTNAME_MSUPN:
-                        parameter = DNFieldExtractor.UPN;
-                        usedExtractor = anExtractor;
-                        break;
-                    default:
-                        // Do not match on supported match types
-                        LOG.warn("Unsupported " + MatchSubjectWithType.class.getSimpleName() + " : " + matchSubjectWithType);
-                        continue;
+                final DNFieldExtractor usedExtractor;
+                if (isAltNameType(matchSubjectWithType)) {
+                    if (anExtractor == null) {
+                        final String altNameString = CertTools.getSubjectAlternativeName(clientCert);
+                        anExtractor = new DNFieldExtractor(altNameString, DNFieldExtractor.TYPE_SUBJECTALTNAME);
+                    }
+                    usedExtractor = anExtractor;
+                } else {
+                    if (dnExtractor == null) {
+                        // See X509CertificateAuthenticationToken in EJBCA/CESeCore
+                        String certstring = CertTools.getSubjectDN(clientCert);
+                        certstring = SERIAL_PATTERN.matcher(certstring).replaceAll("SN=");
+                        dnExtractor = new DNFieldExtractor(certstring, DNFieldExtractor.TYPE_SUBJECTDN);
+                    }
+                    usedExtractor = dnExtractor;
                 }
-                
-                int size = usedExtractor.getNumberOfFields(parameter);
-                AuthorizedClientEntry[] clientstrings = new AuthorizedClientEntry[size];
+
+                final int parameter = getExtractorParameter(matchSubjectWithType);
+                final int size = usedExtractor.getNumberOfFields(parameter);
                 for (int i = 0; i < size; i++) {
-                    String value = usedExtractor.getField(parameter, i);
-                    clientstrings[i] = new AuthorizedClientEntry(value, clientIssuerDN, matchSubjectWithType, matchIssuerWithType);
-                    
-                    if (authorizedClients.contains(clientstrings[i])) {
-                        ruleMatched = true;
-                        break;
+                    final String value = usedExtractor.getField(parameter, i);
+                    if (authorizedClients.contains(new AuthorizedClientEntry(value, clientIssuerDN, matchSubjectWithType, matchIssuerWithType))) {
+                        return true;
                     }
                 }
             }
         }
 
-        return ruleMatched;
+        return false;
+    }
+
+    private static boolean isAltNameType(final MatchSubjectWithType matchSubjectWithType) {
+        return matchSubjectWithType == MatchSubjectWithType.SUBJECT_ALTNAME_RFC822NAME
+                || matchSubjectWithType == MatchSubjectWithType.SUBJECT_ALTNAME_MSUPN;
+    }
+
+    /**
+     * @param matchSubjectWithType to get the DNFieldExtractor field for
+     * @return the field or -1 if the match type is not supported
+     */
+    private static int getExtractorParameter(final MatchSubjectWithType matchSubjectWithType) {
+        switch (matchSubjectWithType) {
+            case SUBJECT_RDN_C:
+                return DNFieldExtractor.C;
+            case SUBJECT_RDN_DC:
+                return DNFieldExtractor.DC;
+            case SUBJECT_RDN_ST:
+                return DNFieldExtractor.ST;
+            case SUBJECT_RDN_L:
+                return DNFieldExtractor.L;
+            case SUBJECT_RDN_O:
+                return DNFieldExtractor.O;
+            case SUBJECT_RDN_OU:
+                return DNFieldExtractor.OU;
+            case SUBJECT_RDN_TITLE:
+                return DNFieldExtractor.T;
+            case SUBJECT_RDN_SERIALNO:
+                return DNFieldExtractor.SN;
+            case SUBJECT_RDN_CN:
+                return DNFieldExtractor.CN;
+            case SUBJECT_RDN_UID:
+                return DNFieldExtractor.UID;
+            case SUBJECT_RDN_E:
+                return DNFieldExtractor.E;
+            case SUBJECT_ALTNAME_RFC822NAME:
+                return DNFieldExtractor.RFC822NAME;
+            case SUBJECT_ALTNAME_MSUPN:
+                return DNFieldExtractor.UPN;
+            default:
+                return -1;
+        }
     }
 }
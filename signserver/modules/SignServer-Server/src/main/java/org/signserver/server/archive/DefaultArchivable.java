@@ -71,4 +71,15 @@ public class DefaultArchivable extends AbstractArchivable {
         }
     }
 
+    /**
+     * Get the data to archive without reading it into memory.
+     * Archivers able to stream the content can use this instead of
+     * getContentEncoded().
+     *
+     * @return the data or null if this instance has been serialized
+     */
+    public ReadableData getData() {
+        return data;
+    }
+
 }
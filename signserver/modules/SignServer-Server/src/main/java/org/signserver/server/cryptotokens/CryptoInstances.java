@@ -12,10 +12,13 @@
  *************************************************************************/
 package org.signserver.server.cryptotokens;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.signserver.common.RequestContext;
 
 /**
@@ -28,8 +31,14 @@ import org.signserver.common.RequestContext;
 public class CryptoInstances {
     
     private static final String REQUESTCONTEXT_KEY = "CRYPTO_INSTANCES";
+
+    private static final String COMPLETION_REPORTED_KEY = "CRYPTO_INSTANCES_COMPLETION_REPORTED";
     
     private final Set<ICryptoInstance> instances = new HashSet<>();
+
+    private final List<Consumer<Throwable>> completionListeners = new ArrayList<>();
+
+    private long acquireTime;
     
     /**
      * Get the CryptoInstances from the RequestContext or create and put a new 
@@ -73,4 +82,62 @@ public class CryptoInstances {
     public Collection<ICryptoInstance> getAll() {
         return Collections.unmodifiableSet(instances);
     }
+
+    /**
+     * Add time spent acquiring crypto instances in the transaction.
+     * @param nanos time in nanoseconds
+     */
+    public void addAcquireTime(final long nanos) {
+        acquireTime += nanos;
+    }
+
+    /**
+     * @return Total time in nanoseconds spent acquiring crypto instances
+     */
+    public long getAcquireTime() {
+        return acquireTime;
+    }
+
+    /**
+     * Tells that {@link #complete(Throwable)} will be called when the
+     * processing of the transaction has finished.
+     * @param requestContext The request context for the transaction
+     */
+    public static void setCompletionReported(final RequestContext requestContext) {
+        requestContext.put(COMPLETION_REPORTED_KEY, Boolean.TRUE);
+    }
+
+    /**
+     * @param requestContext The request context for the transaction
+     * @return True if {@link #complete(Throwable)} will be called when the
+     * processing of the transaction has finished
+     */
+    public static boolean isCompletionReported(final RequestContext requestContext) {
+        return Boolean.TRUE.equals(requestContext.get(COMPLETION_REPORTED_KEY));
+    }
+
+    /**
+     * Add a listener to be told how the processing of the transaction
+     * finished, i.e. for a crypto token to learn if the crypto instance it
+     * provided worked.
+     * @param listener called with the failure or null if the processing
+     * succeeded
+     */
+    public void addCompletionListener(final Consumer<Throwable> listener) {
+        completionListeners.add(listener);
+    }
+
+    /**
+     * Tell the listeners how the processing of the transaction finished.
+     * Each listener is only called once.
+     * @param failure The exception the processing failed with or null if it
+     * succeeded
+     */
+    public void complete(final Throwable failure) {
+        final List<Consumer<Throwable>> listeners = new ArrayList<>(completionListeners);
+        completionListeners.clear();
+        for (final Consumer<Throwable> listener : listeners) {
+            listener.accept(failure);
+        }
+    }
 }
@@ -144,6 +144,11 @@ public class CryptoTokenHelper {
     public static final String PROPERTY_KEY_VAULT_NAME = "KEY_VAULT_NAME";
     public static final String PROPERTY_KEY_VAULT_TYPE = "KEY_VAULT_TYPE";
     public static final String PROPERTY_KEY_VAULT_CLIENT_ID = "KEY_VAULT_CLIENT_ID";
+    public static final String PROPERTY_KEY_VAULT_MAX_CONNECTIONS = "KEY_VAULT_MAX_CONNECTIONS";
+    public static final String PROPERTY_KEY_VAULT_CONNECT_TIMEOUT = "KEY_VAULT_CONNECT_TIMEOUT";
+    public static final String PROPERTY_KEY_VAULT_SOCKET_TIMEOUT = "KEY_VAULT_SOCKET_TIMEOUT";
+    public static final String PROPERTY_KEY_VAULT_CONNECTION_REQUEST_TIMEOUT = "KEY_VAULT_CONNECTION_REQUEST_TIMEOUT";
+    public static final String PROPERTY_KEY_VAULT_AUTHORIZATION_RENEWAL = "KEY_VAULT_AUTHORIZATION_RENEWAL";
 
     public enum TokenEntryFields {
         /** Key alias of entry. */
@@ -265,6 +270,31 @@ public class CryptoTokenHelper {
         if (prop != null) {
             props.setProperty("nextCertSignKey", prop);
         }
+
+        prop = props.getProperty(PROPERTY_KEY_VAULT_MAX_CONNECTIONS);
+        if (prop != null) {
+            props.setProperty("keyVaultMaxConnections", prop);
+        }
+
+        prop = props.getProperty(PROPERTY_KEY_VAULT_CONNECT_TIMEOUT);
+        if (prop != null) {
+            props.setProperty("keyVaultConnectTimeout", prop);
+        }
+
+        prop = props.getProperty(PROPERTY_KEY_VAULT_SOCKET_TIMEOUT);
+        if (prop != null) {
+            props.setProperty("keyVaultSocketTimeout", prop);
+        }
+
+        prop = props.getProperty(PROPERTY_KEY_VAULT_CONNECTION_REQUEST_TIMEOUT);
+        if (prop != null) {
+            props.setProperty("keyVaultConnectionRequestTimeout", prop);
+        }
+
+        prop = props.getProperty(PROPERTY_KEY_VAULT_AUTHORIZATION_RENEWAL);
+        if (prop != null) {
+            props.setProperty("keyVaultAuthorizationRenewal", prop);
+        }
         
         return props;
     }
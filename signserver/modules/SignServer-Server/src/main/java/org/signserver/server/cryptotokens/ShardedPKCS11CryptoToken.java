@@ -0,0 +1,553 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.cryptotokens;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.ProviderException;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.crypto.SecretKey;
+import org.apache.log4j.Logger;
+import org.cesecore.util.query.QueryCriteria;
+import org.signserver.common.CryptoTokenAuthenticationFailureException;
+import org.signserver.common.CryptoTokenInitializationFailureException;
+import org.signserver.common.CryptoTokenOfflineException;
+import org.signserver.common.DuplicateAliasException;
+import org.signserver.common.ICertReqData;
+import org.signserver.common.ISignerCertReqInfo;
+import org.signserver.common.IllegalRequestException;
+import org.signserver.common.KeyTestResult;
+import org.signserver.common.NoSuchAliasException;
+import org.signserver.common.QueryException;
+import org.signserver.common.RequestContext;
+import org.signserver.common.SignServerException;
+import org.signserver.common.TokenOutOfSpaceException;
+import org.signserver.common.UnsupportedCryptoTokenParameter;
+import org.signserver.common.WorkerStatus;
+import org.signserver.server.IServices;
+import org.signserver.server.CircuitBreaker;
+
+/**
+ * Crypto token spreading the use of the keys over several PKCS#11 slots,
+ * possibly in different HSMs, holding the same key material or equivalent
+ * keys.
+ *
+ * Each slot, called a shard, is a PKCS11CryptoToken. The properties of this
+ * crypto token apply to all shards and can be overridden for the n:th shard
+ * with properties prefixed by SHARDn. like SHARD1.SLOTLABELVALUE and
+ * SHARD2.SLOTLABELVALUE. Shards are numbered from 1 and at least one must be
+ * configured.
+ *
+ * A crypto instance is acquired from the shard with the least number of
+ * outstanding instances. A shard failing to provide one, failing while
+ * signing with one or found not to be working when the status of the token
+ * is checked, is taken out of rotation by a circuit breaker and is probed
+ * again when the open time has passed. The outcome of a request, and so of a
+ * probe, is only known when the processing has finished: if it is reported
+ * through the CryptoInstances of the request a failure caused by the
+ * PKCS#11 provider counts against the shard, otherwise releasing the crypto
+ * instance counts as a success.
+ * Key management operations are performed on the first shard only, it is up
+ * to the HSM to replicate the keys to the other slots.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class ShardedPKCS11CryptoToken extends BaseCryptoToken {
+
+    private static final Logger LOG = Logger.getLogger(ShardedPKCS11CryptoToken.class);
+
+    /** Prefix of the properties of a shard, followed by its number and a dot. */
+    public static final String PROPERTY_SHARD_PREFIX = "SHARD";
+
+    /** Number of consecutive failures taking a shard out of rotation. */
+    public static final String PROPERTY_FAILURE_THRESHOLD = "FAILURE_THRESHOLD";
+
+    /** Time in seconds before a failed shard is probed again. */
+    public static final String PROPERTY_CIRCUIT_OPEN_TIME = "CIRCUIT_OPEN_TIME";
+
+    private static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    private static final long DEFAULT_CIRCUIT_OPEN_TIME = 30;
+
+    /** Key in the worker cache for the part of a shard, followed by its number. */
+    private static final String WORKERCACHE_SHARD_PREFIX = "ShardedPKCS11CryptoToken.SHARD";
+
+    /** Key in the part of the worker cache of a shard for the generation it was filled in. */
+    private static final String WORKERCACHE_GENERATION = "ShardedPKCS11CryptoToken.GENERATION";
+
+    private static final Pattern SHARD_PROPERTY = Pattern.compile(PROPERTY_SHARD_PREFIX + "(\\d+)\\.(.+)", Pattern.CASE_INSENSITIVE);
+
+    private final List<Shard> shards = new ArrayList<>();
+
+    /** Where to start looking for a shard, so that ties are spread out. */
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    @Override
+    public void init(int workerId, Properties props, IServices services) throws CryptoTokenInitializationFailureException {
+        CryptoTokenHelper.checkEnabled(props);
+
+        final int failureThreshold = (int) getPositiveLong(props, PROPERTY_FAILURE_THRESHOLD, DEFAULT_FAILURE_THRESHOLD);
+        final long openTime = getPositiveLong(props, PROPERTY_CIRCUIT_OPEN_TIME, DEFAULT_CIRCUIT_OPEN_TIME);
+
+        // Split the properties in the common ones and the ones of each shard
+        final Properties common = new Properties();
+        final SortedMap<Integer, Properties> shardProperties = new TreeMap<>();
+        for (final String name : props.stringPropertyNames()) {
+            final Matcher matcher = SHARD_PROPERTY.matcher(name);
+            if (matcher.matches()) {
+                final int number;
+                try {
+                    number = Integer.parseInt(matcher.group(1));
+                } catch (NumberFormatException ex) {
+                    throw new CryptoTokenInitializationFailureException("Incorrect shard number in property " + name);
+                }
+                shardProperties.computeIfAbsent(number, n -> new Properties())
+                        .setProperty(matcher.group(2), props.getProperty(name));
+            } else {
+                common.setProperty(name, props.getProperty(name));
+            }
+        }
+        if (shardProperties.isEmpty()) {
+            throw new CryptoTokenInitializationFailureException("No shards configured, specify the slot of each shard using properties like "
+                    + PROPERTY_SHARD_PREFIX + "1." + CryptoTokenHelper.PROPERTY_SLOTLABELVALUE);
+        }
+
+        shards.clear();
+        for (final Map.Entry<Integer, Properties> entry : shardProperties.entrySet()) {
+            final Properties properties = new Properties();
+            properties.putAll(common);
+            properties.putAll(entry.getValue());
+
+            final ICryptoTokenV4 token = createShardToken();
+            try {
+                token.init(workerId, properties, services);
+            } catch (CryptoTokenInitializationFailureException ex) {
+                throw new CryptoTokenInitializationFailureException("Shard " + entry.getKey() + ": " + ex.getMessage());
+            }
+            shards.add(new Shard(entry.getKey(), token, new CircuitBreaker(failureThreshold, openTime * 1000)));
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Worker " + workerId + " configured with shards " + shardProperties.keySet());
+        }
+    }
+
+    /**
+     * @return a new crypto token for one shard
+     */
+    protected ICryptoTokenV4 createShardToken() {
+        return new PKCS11CryptoToken();
+    }
+
+    private static long getPositiveLong(final Properties props, final String property, final long defaultValue) throws CryptoTokenInitializationFailureException {
+        final String value = props.getProperty(property);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            final long result = Long.parseLong(value.trim());
+            if (result < 1) {
+                throw new CryptoTokenInitializationFailureException("Incorrect value for " + property + ", must be positive: " + value);
+            }
+            return result;
+        } catch (NumberFormatException ex) {
+            throw new CryptoTokenInitializationFailureException("Incorrect value for " + property + ": " + value);
+        }
+    }
+
+    /**
+     * The token is active if at least one of the shards is. Shards not being
+     * active are taken out of rotation and active ones put back.
+     */
+    @Override
+    public int getCryptoTokenStatus(IServices services) {
+        int result = WorkerStatus.STATUS_OFFLINE;
+        for (final Shard shard : shards) {
+            if (shard.token.getCryptoTokenStatus(services) == WorkerStatus.STATUS_ACTIVE) {
+                shard.circuitBreaker.onSuccess();
+                result = WorkerStatus.STATUS_ACTIVE;
+            } else {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Shard " + shard.number + " not active");
+                }
+                shard.trip();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void activate(String authenticationcode, IServices services) throws CryptoTokenAuthenticationFailureException, CryptoTokenOfflineException {
+        CryptoTokenAuthenticationFailureException authenticationFailure = null;
+        CryptoTokenOfflineException offline = null;
+        boolean activated = false;
+        for (final Shard shard : shards) {
+            try {
+                shard.token.activate(authenticationcode, services);
+                shard.clearCache();
+                shard.circuitBreaker.onSuccess();
+                activated = true;
+            } catch (CryptoTokenAuthenticationFailureException ex) {
+                LOG.error("Activation of shard " + shard.number + " failed: " + ex.getMessage());
+                shard.trip();
+                authenticationFailure = ex;
+            } catch (CryptoTokenOfflineException ex) {
+                LOG.error("Activation of shard " + shard.number + " failed: " + ex.getMessage());
+                shard.trip();
+                offline = ex;
+            }
+        }
+        if (!activated) {
+            if (authenticationFailure != null) {
+                throw authenticationFailure;
+            }
+            throw offline;
+        }
+    }
+
+    @Override
+    public boolean deactivate(IServices services) throws CryptoTokenOfflineException {
+        for (final Shard shard : shards) {
+            shard.token.deactivate(services);
+            shard.clearCache();
+        }
+        return true;
+    }
+
+    @Override
+    public KeyStore getKeyStore() throws UnsupportedOperationException, CryptoTokenOfflineException, KeyStoreException {
+        return getFirstShard().getKeyStore();
+    }
+
+    @Override
+    public void importCertificateChain(List<Certificate> certChain, String alias, char[] athenticationCode, Map<String, Object> params, IServices services) throws TokenOutOfSpaceException, CryptoTokenOfflineException, NoSuchAliasException, InvalidAlgorithmParameterException, UnsupportedCryptoTokenParameter {
+        getFirstShard().importCertificateChain(certChain, alias, athenticationCode, params, services);
+    }
+
+    @Override
+    public TokenSearchResults searchTokenEntries(int startIndex, int max, QueryCriteria qc, boolean includeData, Map<String, Object> params, IServices services) throws CryptoTokenOfflineException, QueryException, InvalidAlgorithmParameterException, UnsupportedCryptoTokenParameter {
+        return getFirstShard().searchTokenEntries(startIndex, max, qc, includeData, params, services);
+    }
+
+    @Override
+    public void generateKey(String keyAlgorithm, String keySpec, String alias, char[] authCode, Map<String, Object> params, IServices services) throws TokenOutOfSpaceException, CryptoTokenOfflineException, DuplicateAliasException, NoSuchAlgorithmException, InvalidAlgorithmParameterException, UnsupportedCryptoTokenParameter {
+        getFirstShard().generateKey(keyAlgorithm, keySpec, alias, authCode, params, services);
+    }
+
+    @Override
+    public ICertReqData genCertificateRequest(ISignerCertReqInfo info, boolean explicitEccParameters, String keyAlias, IServices services) throws CryptoTokenOfflineException, NoSuchAliasException {
+        return getFirstShard().genCertificateRequest(info, explicitEccParameters, keyAlias, services);
+    }
+
+    @Override
+    public Collection<KeyTestResult> testKey(String alias, char[] authCode, IServices services) throws CryptoTokenOfflineException, KeyStoreException {
+        return getFirstShard().testKey(alias, authCode, services);
+    }
+
+    @Override
+    public boolean removeKey(String alias, IServices services) throws CryptoTokenOfflineException, KeyStoreException, SignServerException {
+        return getFirstShard().removeKey(alias, services);
+    }
+
+    private ICryptoTokenV4 getFirstShard() {
+        return shards.get(0).token;
+    }
+
+    @Override
+    public ICryptoInstance acquireCryptoInstance(String alias, Map<String, Object> params, RequestContext context) throws
+            CryptoTokenOfflineException,
+            NoSuchAliasException,
+            InvalidAlgorithmParameterException,
+            UnsupportedCryptoTokenParameter,
+            IllegalRequestException,
+            SignServerException {
+        final List<Shard> excluded = new ArrayList<>(shards.size());
+        Exception lastFailure = null;
+        Shard shard;
+        while ((shard = selectShard(excluded)) != null) {
+            excluded.add(shard);
+            shard.outstanding.incrementAndGet();
+            boolean acquired = false;
+            try {
+                final ICryptoInstance instance = shard.token.acquireCryptoInstance(alias, getShardParams(shard, params), context);
+                acquired = true;
+
+                // Finding the key does not tell if the shard works, wait for
+                // the signing to finish before telling the circuit breaker
+                final boolean completionReported = context != null && CryptoInstances.isCompletionReported(context);
+                if (completionReported) {
+                    CryptoInstances.getInstance(context).addCompletionListener(shard::completed);
+                }
+                return new ShardCryptoInstance(shard, instance, completionReported);
+            } catch (CryptoTokenOfflineException | ProviderException ex) {
+                LOG.warn("Shard " + shard.number + " failed: " + ex.getMessage());
+                shard.circuitBreaker.onFailure(System.currentTimeMillis());
+                shard.clearCache();
+                lastFailure = ex;
+            } catch (NoSuchAliasException | InvalidAlgorithmParameterException | UnsupportedCryptoTokenParameter | IllegalRequestException | SignServerException | RuntimeException ex) {
+                // Not a problem with the shard
+                shard.circuitBreaker.onIgnored();
+                throw ex;
+            } finally {
+                if (!acquired) {
+                    shard.outstanding.decrementAndGet();
+                }
+            }
+        }
+        if (lastFailure == null) {
+            throw new CryptoTokenOfflineException("No shard available");
+        }
+        throw new CryptoTokenOfflineException("No shard available, last failure: " + lastFailure.getMessage(), lastFailure);
+    }
+
+    /**
+     * Selects a failed shard due to be probed or otherwise the working shard
+     * with the least outstanding crypto instances.
+     *
+     * @param excluded shards not to select
+     * @return the shard, allowed by its circuit breaker, or null if none
+     */
+    private Shard selectShard(final List<Shard> excluded) {
+        final long now = System.currentTimeMillis();
+        final int size = shards.size();
+        final int start = Math.floorMod(nextShard.getAndIncrement(), size);
+
+        for (int i = 0; i < size; i++) {
+            final Shard shard = shards.get((start + i) % size);
+            if (shard.circuitBreaker.getState() != CircuitBreaker.State.CLOSED
+                    && !excluded.contains(shard) && shard.circuitBreaker.tryAcquire(now)) {
+                return shard;
+            }
+        }
+
+        while (true) {
+            Shard best = null;
+            int bestOutstanding = Integer.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                final Shard shard = shards.get((start + i) % size);
+                if (shard.circuitBreaker.getState() == CircuitBreaker.State.CLOSED && !excluded.contains(shard)) {
+                    final int outstanding = shard.outstanding.get();
+                    if (outstanding < bestOutstanding) {
+                        best = shard;
+                        bestOutstanding = outstanding;
+                    }
+                }
+            }
+            if (best == null || best.circuitBreaker.tryAcquire(now)) {
+                return best;
+            }
+            // Opened since we looked
+            excluded.add(best);
+        }
+    }
+
+    /**
+     * Gives each shard its own part of the worker cache of the caller, so
+     * that each worker caches one crypto instance per shard. The part is
+     * cleared if the shard has failed since it was last used.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getShardParams(final Shard shard, final Map<String, Object> params) {
+        final Map<String, Object> workerCache = (Map<String, Object>) params.get(PARAM_WORKERCACHE);
+        if (workerCache == null) {
+            return params;
+        }
+        final Map<String, Object> shardCache;
+        synchronized (workerCache) {
+            shardCache = (Map<String, Object>) workerCache.computeIfAbsent(WORKERCACHE_SHARD_PREFIX + shard.number, k -> new HashMap<>());
+        }
+        synchronized (shardCache) {
+            final Integer generation = shard.cacheGeneration.get();
+            if (!generation.equals(shardCache.get(WORKERCACHE_GENERATION))) {
+                shardCache.clear();
+                shardCache.put(WORKERCACHE_GENERATION, generation);
+            }
+        }
+        final Map<String, Object> result = new HashMap<>(params);
+        result.put(PARAM_WORKERCACHE, shardCache);
+        return result;
+    }
+
+    @Override
+    public void releaseCryptoInstance(ICryptoInstance instance, RequestContext context) {
+        if (instance instanceof ShardCryptoInstance) {
+            final ShardCryptoInstance shardInstance = (ShardCryptoInstance) instance;
+            if (shardInstance.released.compareAndSet(false, true)) {
+                try {
+                    shardInstance.shard.token.releaseCryptoInstance(shardInstance.delegate, context);
+                } finally {
+                    shardInstance.shard.outstanding.decrementAndGet();
+                    if (!shardInstance.completionReported) {
+                        shardInstance.shard.completed(null);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param number of the shard
+     * @return number of crypto instances acquired from the shard and not yet
+     * released or -1 if there is no such shard
+     */
+    public int getOutstanding(final int number) {
+        for (final Shard shard : shards) {
+            if (shard.number == number) {
+                return shard.outstanding.get();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param number of the shard
+     * @return true if the shard is in rotation, false if it has failed or
+     * there is no such shard
+     */
+    public boolean isInRotation(final int number) {
+        for (final Shard shard : shards) {
+            if (shard.number == number) {
+                return shard.circuitBreaker.getState() == CircuitBreaker.State.CLOSED;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One slot.
+     */
+    private static class Shard {
+        private final int number;
+        private final ICryptoTokenV4 token;
+        private final CircuitBreaker circuitBreaker;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        /** Incremented when the shard has failed so that the worker caches are cleared. */
+        private final AtomicInteger cacheGeneration = new AtomicInteger();
+
+        Shard(final int number, final ICryptoTokenV4 token, final CircuitBreaker circuitBreaker) {
+            this.number = number;
+            this.token = token;
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        /** Takes the shard out of rotation. */
+        void trip() {
+            circuitBreaker.trip(System.currentTimeMillis());
+            clearCache();
+        }
+
+        /** Drops any cached crypto instance so the key is looked up again. */
+        void clearCache() {
+            cacheGeneration.incrementAndGet();
+        }
+
+        /**
+         * Tells the circuit breaker how the processing using a crypto
+         * instance from the shard finished.
+         * @param failure the exception the processing failed with or null
+         */
+        void completed(final Throwable failure) {
+            if (failure == null) {
+                circuitBreaker.onSuccess();
+            } else if (isProviderFailure(failure)) {
+                LOG.warn("Shard " + number + " failed: " + failure.getMessage());
+                circuitBreaker.onFailure(System.currentTimeMillis());
+                clearCache();
+            } else {
+                // Not a problem with the shard
+                circuitBreaker.onIgnored();
+            }
+        }
+
+        /**
+         * @return true if the PKCS#11 provider failed, i.e. there is a
+         * ProviderException in the cause chain
+         */
+        private static boolean isProviderFailure(final Throwable failure) {
+            for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+                if (cause instanceof ProviderException) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Crypto instance remembering the shard it was acquired from.
+     */
+    private static class ShardCryptoInstance implements ICryptoInstance {
+        private final Shard shard;
+        private final ICryptoInstance delegate;
+        private final boolean completionReported;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ShardCryptoInstance(final Shard shard, final ICryptoInstance delegate, final boolean completionReported) {
+            this.shard = shard;
+            this.delegate = delegate;
+            this.completionReported = completionReported;
+        }
+
+        @Override
+        public Certificate getCertificate() {
+            return delegate.getCertificate();
+        }
+
+        @Override
+        public List<Certificate> getCertificateChain() {
+            return delegate.getCertificateChain();
+        }
+
+        @Override
+        public PrivateKey getPrivateKey() {
+            return delegate.getPrivateKey();
+        }
+
+        @Override
+        public PublicKey getPublicKey() {
+            return delegate.getPublicKey();
+        }
+
+        @Override
+        public SecretKey getSecretKey() {
+            return delegate.getSecretKey();
+        }
+
+        @Override
+        public Provider getProvider() {
+            return delegate.getProvider();
+        }
+
+        @Override
+        public String toString() {
+            return "ShardCryptoInstance{ shard: " + shard.number + ", " + delegate + " }";
+        }
+    }
+}
@@ -12,8 +12,18 @@
  *************************************************************************/
 package org.signserver.server.data.impl;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.Iterator;
 import java.util.ServiceLoader;
+import org.apache.commons.io.IOUtils;
+import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.encoders.DecoderException;
 
 /**
  * Utility methods for request/response data handling.
@@ -22,6 +32,12 @@ import java.util.ServiceLoader;
  * @version $Id$
  */
 public class DataUtils {
+
+    /** Buffer size used when encoding, a multiple of 3. */
+    private static final int ENCODE_BUFFER_SIZE = 3 * 4096;
+
+    /** Buffer size used when decoding. */
+    private static final int DECODE_BUFFER_SIZE = 4 * 4096;
     
     /**
      * Create a new DataFactory implementation, either a service provided
@@ -39,4 +55,141 @@ public class DataUtils {
         return result;
     }
 
+    /**
+     * Base64 encode all data from the input stream to the output stream
+     * without reading it all into memory.
+     * @param in to read data from
+     * @param out to write the base64 encoded data to
+     * @throws IOException in case of an error reading or writing
+     */
+    public static void encodeBase64(final InputStream in, final OutputStream out) throws IOException {
+        final byte[] buffer = new byte[ENCODE_BUFFER_SIZE];
+        int read;
+        // Only the last chunk can be shorter and thus need padding
+        while ((read = IOUtils.read(in, buffer)) > 0) {
+            Base64.encode(buffer, 0, read, out);
+        }
+    }
+
+    /**
+     * Base64 decode all data from the input stream to the output stream
+     * without reading it all into memory. Whitespace is ignored.
+     * @param in to read base64 encoded data from
+     * @param out to write the decoded data to
+     * @throws IOException in case of an error reading or writing
+     * @throws DecoderException in case the data is not correctly encoded
+     */
+    public static void decodeBase64(final InputStream in, final OutputStream out) throws IOException, DecoderException {
+        final byte[] buffer = new byte[DECODE_BUFFER_SIZE];
+        final byte[] pending = new byte[DECODE_BUFFER_SIZE + 3];
+        int pendingLength = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                final byte b = buffer[i];
+                if (!isWhitespace(b)) {
+                    pending[pendingLength++] = b;
+                }
+            }
+            pendingLength = decodeCompleteQuads(pending, pendingLength, out);
+        }
+        if (pendingLength > 0) {
+            Base64.decode(pending, 0, pendingLength, out);
+        }
+    }
+
+    /**
+     * Base64 decode the string to the output stream without creating a copy
+     * of all the data in memory. Whitespace is ignored.
+     * @param data base64 encoded data
+     * @param out to write the decoded data to
+     * @throws IOException in case of an error writing
+     * @throws DecoderException in case the data is not correctly encoded
+     */
+    public static void decodeBase64(final String data, final OutputStream out) throws IOException, DecoderException {
+        final byte[] pending = new byte[DECODE_BUFFER_SIZE + 3];
+        int pendingLength = 0;
+        for (int i = 0; i < data.length(); i++) {
+            final char c = data.charAt(i);
+            // Non-ASCII characters are mapped to an invalid character so that decoding fails
+            final byte b = c > 0x7f ? (byte) '?' : (byte) c;
+            if (!isWhitespace(b)) {
+                pending[pendingLength++] = b;
+                if (pendingLength == DECODE_BUFFER_SIZE) {
+                    pendingLength = decodeCompleteQuads(pending, pendingLength, out);
+                }
+            }
+        }
+        if (pendingLength > 0) {
+            Base64.decode(pending, 0, pendingLength, out);
+        }
+    }
+
+    /**
+     * Decode all complete quads and move the rest to the beginning.
+     * @return the number of bytes left
+     */
+    private static int decodeCompleteQuads(final byte[] pending, final int pendingLength, final OutputStream out) {
+        final int complete = pendingLength - pendingLength % 4;
+        if (complete > 0) {
+            Base64.decode(pending, 0, complete, out);
+            System.arraycopy(pending, complete, pending, 0, pendingLength - complete);
+        }
+        return pendingLength - complete;
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Base64 decode all data from the input stream into a new temporary file
+     * that is removed when the returned readable data is closed.
+     * @param in to read base64 encoded data from
+     * @param repository to create the file in
+     * @return the readable data backed by the file
+     * @throws IOException in case of an error reading or writing
+     * @throws DecoderException in case the data is not correctly encoded
+     */
+    public static CloseableReadableData decodeBase64ToFile(final InputStream in, final File repository) throws IOException, DecoderException {
+        final File file = File.createTempFile("signserver-upload", ".tmp", repository);
+        boolean success = false;
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                decodeBase64(in, out);
+            }
+            success = true;
+            return new FileReadableData(file, true);
+        } finally {
+            if (!success) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    /**
+     * Base64 decode the data into a new temporary file that is removed when
+     * the returned readable data is closed.
+     * @param data base64 encoded data
+     * @param repository to create the file in
+     * @return the readable data backed by the file
+     * @throws IOException in case of an error writing
+     * @throws DecoderException in case the data is not correctly encoded
+     */
+    public static CloseableReadableData decodeBase64ToFile(final String data, final File repository) throws IOException, DecoderException {
+        final File file = File.createTempFile("signserver-upload", ".tmp", repository);
+        boolean success = false;
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                decodeBase64(data, out);
+            }
+            success = true;
+            return new FileReadableData(file, true);
+        } finally {
+            if (!success) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
 }
@@ -13,6 +13,9 @@
 package org.signserver.server.data.impl;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.FileUploadBase;
 import org.apache.commons.fileupload.FileUploadException;
@@ -48,9 +51,35 @@ public class DefaultDataFactory implements DataFactory {
         return new ByteArrayReadableData(data, repository);
     }
 
+    /**
+     * Create a readable data from the uploaded item.
+     *
+     * Items that were small enough to be kept in memory are returned as byte
+     * array while items that have already been written to disk are moved to
+     * a new temporary file in the repository, without copying the data, and
+     * returned as a file that is removed when the readable data is closed.
+     *
+     * @param item data to use
+     * @param repository to store the data as file in (if requested)
+     * @return a new readable data instance
+     */
     @Override
     public CloseableReadableData createReadableData(FileItem item, File repository) {
-        DiskFileItem dfi = (DiskFileItem) item;
+        final DiskFileItem dfi = (DiskFileItem) item;
+        final File storeLocation = dfi.getStoreLocation();
+
+        if (!dfi.isInMemory() && storeLocation != null && storeLocation.exists()) {
+            try {
+                final File file = File.createTempFile("signserver-upload", ".tmp", repository);
+                Files.move(storeLocation.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Using uploaded file " + file.getAbsolutePath() + " of length " + file.length());
+                }
+                return new FileReadableData(file, true);
+            } catch (IOException ex) {
+                LOG.warn("Unable to move uploaded file, reading it into memory instead: " + ex.getMessage());
+            }
+        }
         return new ByteArrayReadableData(dfi.get(), repository);
     }
 
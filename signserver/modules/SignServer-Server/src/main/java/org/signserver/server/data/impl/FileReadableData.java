@@ -17,13 +17,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
 /**
  * ReadableData backed by a file.
- * Useful for unit tests.
- * Note: The file is not removed.
+ *
+ * Unless created with removeOnClose the file is not removed, which is useful
+ * for unit tests. Uploads stored as temporary files are created with
+ * removeOnClose so the file is removed when the instance is closed.
  *
  * @author Markus Kilås
  * @version $Id$
@@ -34,6 +37,7 @@ public class FileReadableData extends CloseableReadableData {
     private static final Logger LOG = Logger.getLogger(FileReadableData.class);
     
     private final File file;
+    private final boolean removeOnClose;
 
     /**
      * Creates a ReadableData backed by the provided file.
@@ -41,7 +45,18 @@ public class FileReadableData extends CloseableReadableData {
      * @param file that will back this instance
      */
     public FileReadableData(File file) {
+        this(file, false);
+    }
+
+    /**
+     * Creates a ReadableData backed by the provided file.
+     * @param file that will back this instance
+     * @param removeOnClose if the file should be removed when this instance
+     * is closed
+     */
+    public FileReadableData(File file, boolean removeOnClose) {
         this.file = file;
+        this.removeOnClose = removeOnClose;
     }
     
     @Override
@@ -74,4 +89,18 @@ public class FileReadableData extends CloseableReadableData {
         return register(new BufferedInputStream(new FileInputStream(file)));
     }
 
+    @Override
+    public void close() throws IOException {
+        // Close resources
+        super.close();
+
+        // Remove the file
+        if (removeOnClose) {
+            final boolean existed = Files.deleteIfExists(file.toPath());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Temporary file was " + file.getAbsolutePath() + (existed ? " removed" : " not removed as it did not exist"));
+            }
+        }
+    }
+
 }
@@ -21,6 +21,8 @@ import org.signserver.ejb.interfaces.GlobalConfigurationSessionLocal;
 /**
  * Configuration settings for file uploads (and storage of response data).
  *
+ * Instances are immutable as they are shared between requests.
+ *
  * @author Markus Kilås
  * @version $Id$
  */
@@ -42,11 +44,14 @@ public class UploadConfig {
     /** Global configuration property for the file size threshold. */
     public static final String FILE_SIZE_THRESHOLD = "FILE_SIZE_THRESHOLD";
     private static final int DEFAULT_FILE_SIZE_THRESHOLD = 1 * 1024 * 1024; // 1 MB
-    
-    private long maxUploadSize;
-    private long maxUploadCount;
-    private int sizeThreshold;
-    private File repository;
+
+    /** Instance created for the last seen global configuration version. */
+    private static volatile Cached cached;
+
+    private final long maxUploadSize;
+    private final long maxUploadCount;
+    private final int sizeThreshold;
+    private final File repository;
 
     /**
      * Creates an instance of UploadConfig with the default configuration.
@@ -71,14 +76,37 @@ public class UploadConfig {
     
     /**
      * Creates an UploadConfig instance by querying the global configuration.
+     *
+     * The instance is only created once for each version of the global
+     * configuration and is then shared.
+     *
      * @param globalSession to query for configuration
      * @return the instance
      */
     public static UploadConfig create(GlobalConfigurationSessionLocal globalSession) {
-        final File repository = new File(System.getProperty("java.io.tmpdir"));
-        
         final GlobalConfiguration globalConfiguration = globalSession.getGlobalConfiguration();
-        
+        final long version = globalConfiguration.getVersion();
+
+        final Cached current = cached;
+        if (current != null && version != 0 && current.version == version) {
+            return current.config;
+        }
+
+        final UploadConfig result = create(globalConfiguration);
+        if (version != 0) {
+            cached = new Cached(version, result);
+        }
+        return result;
+    }
+
+    /**
+     * Creates an UploadConfig instance from the global configuration.
+     * @param globalConfiguration to read the configuration from
+     * @return the new instance
+     */
+    public static UploadConfig create(GlobalConfiguration globalConfiguration) {
+        final File repository = new File(System.getProperty("java.io.tmpdir"));
+
         // Max upload size
         String confValue = globalConfiguration.getProperty(GlobalConfiguration.SCOPE_GLOBAL, HTTP_MAX_UPLOAD_SIZE);
         long maxUploadSize = DEFAULT_MAX_UPLOAD_SIZE;
@@ -140,32 +168,26 @@ public class UploadConfig {
         return maxUploadSize;
     }
 
-    public void setMaxUploadSize(long maxUploadSize) {
-        this.maxUploadSize = maxUploadSize;
-    }
-
     public long getMaxUploadCount() {
         return maxUploadCount;
     }
 
-    public void setMaxUploadCount(long maxUploadCount) {
-        this.maxUploadCount = maxUploadCount;
-    }
-
     public int getSizeThreshold() {
         return sizeThreshold;
     }
 
-    public void setSizeThreshold(int sizeThreshold) {
-        this.sizeThreshold = sizeThreshold;
-    }
-
     public File getRepository() {
         return repository;
     }
 
-    public void setRepository(File repository) {
-        this.repository = repository;
-    }
+    /** Upload configuration for a version of the global configuration. */
+    private static class Cached {
+        private final long version;
+        private final UploadConfig config;
 
+        Cached(final long version, final UploadConfig config) {
+            this.version = version;
+            this.config = config;
+        }
+    }
 }
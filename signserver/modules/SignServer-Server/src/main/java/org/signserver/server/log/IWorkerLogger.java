@@ -81,6 +81,9 @@ public interface IWorkerLogger {
     String LOG_RESPONSE_DIGEST = "RESPONSE_DIGEST";
     String LOG_RESPONSE_DIGEST_ALGORITHM = "RESPONSE_DIGEST_ALGORITHM";
 
+    /** Number of digests in a batch signing request. */
+    String LOG_BATCH_SIZE = "BATCH_SIZE";
+
     /**
      * Method called after creation of instance.
      * @param workerId for this worker
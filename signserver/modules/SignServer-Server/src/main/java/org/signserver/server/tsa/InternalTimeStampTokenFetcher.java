@@ -43,6 +43,10 @@ import org.signserver.server.log.AdminInfo;
 /**
  * Fetching time-stamp tokens internally using the internal worker session.
  *
+ * The request is processed as any other request to the time-stamp worker
+ * but the parsed request is passed on to it and the response is taken from
+ * it directly when possible instead of being encoded and parsed again.
+ *
  * @author Marcus Lundblad
  * @author Markus Kilås
  * @version $Id$
@@ -84,6 +88,11 @@ public class InternalTimeStampTokenFetcher {
 
             final RequestContext context = new RequestContext();
 
+            // Pass on the request so that the time-stamp worker does not
+            // have to parse it and can hand back the response
+            final ParsedTimeStampRequest parsed = new ParsedTimeStampRequest(requestData, requestBytes, request);
+            context.put(ParsedTimeStampRequest.CONTEXT_KEY, parsed);
+
             if (username != null && password != null) {
                 UsernamePasswordClientCredential cred
                         = new UsernamePasswordClientCredential(username, password);
@@ -94,8 +103,11 @@ public class InternalTimeStampTokenFetcher {
             session.process(new AdminInfo("Client user", null, null),
                     wi, new SignatureRequest(hashCode(), requestData, responseData), context);
 
-            final byte[] respBytes = responseData.toReadableData().getAsByteArray();
-            TimeStampResponse response = new TimeStampResponse(respBytes);
+            TimeStampResponse response = parsed.getResponse();
+            if (response == null) {
+                final byte[] respBytes = responseData.toReadableData().getAsByteArray();
+                response = new TimeStampResponse(respBytes);
+            }
 
             TimeStampToken  tsToken = response.getTimeStampToken();
             if (tsToken == null) {
@@ -0,0 +1,99 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.tsa;
+
+import org.bouncycastle.tsp.TimeStampRequest;
+import org.bouncycastle.tsp.TimeStampResponse;
+import org.signserver.common.RequestContext;
+import org.signserver.common.data.ReadableData;
+
+/**
+ * Time-stamp request already parsed by the caller of a time-stamp worker
+ * in the same server and passed on in the request context so that it does
+ * not have to be parsed again.
+ *
+ * It is put in the request context by the RequestedPolicyDispatcher and by
+ * the InternalTimeStampTokenFetcher and only used if the request data is
+ * the same as the one it was parsed from. The time-stamp worker can hand
+ * back the response it generated so that the caller does not have to parse
+ * the response data.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class ParsedTimeStampRequest {
+
+    /** Request context key. */
+    public static final String CONTEXT_KEY = "TSA_PARSEDTIMESTAMPREQUEST";
+
+    private final ReadableData requestData;
+    private final byte[] encoded;
+    private final TimeStampRequest request;
+
+    private volatile TimeStampResponse response;
+
+    /**
+     * @param requestData the request data the request was parsed from
+     * @param encoded the content of the request data
+     * @param request the parsed request
+     */
+    public ParsedTimeStampRequest(final ReadableData requestData, final byte[] encoded, final TimeStampRequest request) {
+        this.requestData = requestData;
+        this.encoded = encoded;
+        this.request = request;
+    }
+
+    /**
+     * @param context to get the request from
+     * @param requestData data of the request being processed
+     * @return the parsed request or null if none was passed on for this
+     * request data
+     */
+    public static ParsedTimeStampRequest get(final RequestContext context, final ReadableData requestData) {
+        final Object value = context.get(CONTEXT_KEY);
+        if (value instanceof ParsedTimeStampRequest
+                && ((ParsedTimeStampRequest) value).requestData == requestData) {
+            return (ParsedTimeStampRequest) value;
+        }
+        return null;
+    }
+
+    /**
+     * @return the content of the request data
+     */
+    public byte[] getEncoded() {
+        return encoded;
+    }
+
+    /**
+     * @return the parsed request
+     */
+    public TimeStampRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the response written to the response data by the time-stamp
+     * worker or null if it did not hand it back
+     */
+    public TimeStampResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * @param response the response written to the response data
+     */
+    public void setResponse(final TimeStampResponse response) {
+        this.response = response;
+    }
+}
@@ -71,7 +71,18 @@ public abstract class BaseValidationService implements IValidationService {
             log.error("Error in Validation Service " + workerId + " setting " + ValidationServiceConstants.VALIDATIONSERVICE_TIMEINCACHE + " should only contain numbers, using default value");
         }
 
-        validationCache = new ValidationCache(getCachedIssuers(config.getProperties()), cacheTime * 1000);
+        int cacheSize = ValidationCache.DEFAULT_MAX_ENTRIES;
+        try {
+            cacheSize = Integer.parseInt(config.getProperties().getProperty(ValidationServiceConstants.VALIDATIONSERVICE_CACHESIZE, ValidationServiceConstants.DEFAULT_CACHESIZE).trim());
+        } catch (NumberFormatException e) {
+            log.error("Error in Validation Service " + workerId + " setting " + ValidationServiceConstants.VALIDATIONSERVICE_CACHESIZE + " should only contain numbers, using default value");
+        }
+        if (cacheSize < 1) {
+            log.error("Error in Validation Service " + workerId + " setting " + ValidationServiceConstants.VALIDATIONSERVICE_CACHESIZE + " should be at least 1, using default value");
+            cacheSize = ValidationCache.DEFAULT_MAX_ENTRIES;
+        }
+
+        validationCache = new ValidationCache(getCachedIssuers(config.getProperties()), cacheTime * 1000, cacheSize);
     }
 
     private List<String> getCachedIssuers(Properties props) {
@@ -101,6 +112,14 @@ public abstract class BaseValidationService implements IValidationService {
             briefEntries.add(new WorkerStatusInfo.Entry("Number of validators", String.valueOf(validators.size())));
         }
 
+        // Validation cache
+        if (validationCache != null) {
+            briefEntries.add(new WorkerStatusInfo.Entry("Validation cache", "size: " + validationCache.size()
+                    + ", hits: " + validationCache.getHits()
+                    + ", misses: " + validationCache.getMisses()
+                    + ", evictions: " + validationCache.getEvictions()));
+        }
+
         // Properties
         final StringBuilder configValue = new StringBuilder();
         Properties properties = config.getProperties();
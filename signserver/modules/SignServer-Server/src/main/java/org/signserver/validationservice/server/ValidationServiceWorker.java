@@ -59,6 +59,17 @@ public class ValidationServiceWorker extends BaseProcessable {
     public void init(int workerId, WorkerConfig config, WorkerContext workerContext, EntityManager workerEntityManager) {
         super.init(workerId, config, workerContext, workerEntityManager);
         fatalErrors = new LinkedList<>();
+
+        final String cacheSize = config.getProperty(ValidationServiceConstants.VALIDATIONSERVICE_CACHESIZE);
+        if (cacheSize != null) {
+            try {
+                if (Integer.parseInt(cacheSize.trim()) < 1) {
+                    fatalErrors.add("Property " + ValidationServiceConstants.VALIDATIONSERVICE_CACHESIZE + " must be at least 1: " + cacheSize);
+                }
+            } catch (NumberFormatException e) {
+                fatalErrors.add("Incorrect value for property " + ValidationServiceConstants.VALIDATIONSERVICE_CACHESIZE + ": " + cacheSize);
+            }
+        }
         
         try {
             validationService = createValidationService(config);
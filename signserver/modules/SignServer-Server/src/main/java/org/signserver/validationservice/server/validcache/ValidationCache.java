@@ -12,50 +12,116 @@
  *************************************************************************/
 package org.signserver.validationservice.server.validcache;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.log4j.Logger;
+import org.bouncycastle.util.encoders.Hex;
 import org.cesecore.util.CertTools;
 
 import org.signserver.validationservice.common.Validation;
+import org.signserver.validationservice.common.ValidationServiceConstants;
 
 /**
- * Validation Cache remembering a certificate validation for a 
+ * Validation Cache remembering a certificate validation for a
  * configured amount of time. It only caches certificate
  * of a given issuers.
  *
+ * The validations are stored by the SHA-256 fingerprint of the certificate.
+ * Looking up a validation does not take any lock. When a validation is added
+ * (or replaced) expired entries are removed and if the cache is full the
+ * oldest entries are evicted. As all entries live equally long the oldest
+ * entry is always the one that expires first.
+ *
  * @author Philip Vendil 26 nov 2007
  * @version $Id$
  */
 public class ValidationCache {
 
-    private Set<String> cachedIssuersDNSet = new HashSet<>();
-    private ValidationMap validationMap = new ValidationMap();
-    private TimeQueue timeQueue;
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getLogger(ValidationCache.class);
+
+    /** Default maximum number of cached validations. */
+    public static final int DEFAULT_MAX_ENTRIES = Integer.parseInt(ValidationServiceConstants.DEFAULT_CACHESIZE);
+
+    private final Set<String> cachedIssuersDNSet = new HashSet<>();
+    private final long cacheTimeMS;
+    private final int maxEntries;
+
+    private final Map<String, Entry> validationMap = new ConcurrentHashMap<>();
+
+    /** Entries in the order they were added, guarded by itself. */
+    private final LinkedHashMap<String, Entry> timeQueue = new LinkedHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
 
     /**
      * Constructor creating a ValidationCache
-     * 
+     *
      * @param cachedIssuersDN a list of issuer DNs that should be cached.
      * @param cacheTimeMS time in milliseconds of how long it should be cached.
      */
     public ValidationCache(List<String> cachedIssuersDN, long cacheTimeMS) {
+        this(cachedIssuersDN, cacheTimeMS, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructor creating a ValidationCache
+     *
+     * @param cachedIssuersDN a list of issuer DNs that should be cached.
+     * @param cacheTimeMS time in milliseconds of how long it should be cached.
+     * @param maxEntries maximum number of validations to keep in the cache.
+     * @throws IllegalArgumentException if maxEntries is less than 1
+     */
+    public ValidationCache(List<String> cachedIssuersDN, long cacheTimeMS, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of entries must be at least 1: " + maxEntries);
+        }
         cachedIssuersDNSet.addAll(cachedIssuersDN);
-        timeQueue = new TimeQueue(validationMap, cacheTimeMS);
+        this.cacheTimeMS = cacheTimeMS;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param cert to check
+     * @return true if validations of the certificate are cached
+     */
+    public boolean isCachedIssuer(Certificate cert) {
+        return !cachedIssuersDNSet.isEmpty() && cachedIssuersDNSet.contains(CertTools.getIssuerDN(cert));
     }
 
     /**
      * Adds a validation to the cache if the issuer of the certificate
      * is one of the cachedIssuerDNs
-     * 
+     *
      * @param cert certificate used as key in the cache.
      * @param validation the validation to add.
      */
     public void put(Certificate cert, Validation validation) {
-        if (cachedIssuersDNSet.contains(CertTools.getIssuerDN(cert))) {
-            timeQueue.pushNew(cert);
-            validationMap.put(cert, validation);
+        if (isCachedIssuer(cert)) {
+            final String key = getKey(cert);
+            if (key != null) {
+                final long now = System.currentTimeMillis();
+                final Entry entry = new Entry(key, validation, now + cacheTimeMS);
+                synchronized (timeQueue) {
+                    validationMap.put(key, entry);
+                    // Replaced entries are moved last as they now expire last
+                    timeQueue.remove(key);
+                    timeQueue.put(key, entry);
+                    evict(now);
+                }
+            }
         }
     }
 
@@ -65,7 +131,99 @@ public class ValidationCache {
      * @return the validation if it exists otherwise null.
      */
     public Validation get(Certificate cert) {
-        timeQueue.popOld();
-        return validationMap.get(cert);
+        if (!isCachedIssuer(cert)) {
+            return null;
+        }
+        final String key = getKey(cert);
+        final Entry entry = key == null ? null : validationMap.get(key);
+        if (entry == null || entry.expires <= System.currentTimeMillis()) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.validation;
+    }
+
+    /**
+     * @return number of validations in the cache, including expired ones
+     * not yet removed
+     */
+    public int size() {
+        return validationMap.size();
+    }
+
+    /**
+     * @return number of validations in the expiry order, always the same
+     * as the number of validations in the cache
+     */
+    int queueSize() {
+        synchronized (timeQueue) {
+            return timeQueue.size();
+        }
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups not found in the cache
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of validations removed because the cache was full
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Removes expired entries and, if the cache is still too large, the
+     * oldest entries. Called holding the lock of the time queue.
+     */
+    private void evict(final long now) {
+        final Iterator<Entry> oldest = timeQueue.values().iterator();
+        while (oldest.hasNext()) {
+            final Entry head = oldest.next();
+            if (head.expires > now && timeQueue.size() <= maxEntries) {
+                break;
+            }
+            oldest.remove();
+            validationMap.remove(head.key, head);
+            if (head.expires > now) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static String getKey(Certificate cert) {
+        try {
+            return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(cert.getEncoded()));
+        } catch (CertificateEncodingException | NoSuchAlgorithmException ex) {
+            LOG.error("Unable to compute certificate fingerprint: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cached validation.
+     */
+    private static class Entry {
+
+        private final String key;
+        private final Validation validation;
+        private final long expires;
+
+        Entry(String key, Validation validation, long expires) {
+            this.key = key;
+            this.validation = validation;
+            this.expires = expires;
+        }
     }
 }
@@ -12,15 +12,38 @@
  *************************************************************************/
 package org.cesecore.keys.token;
 
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import junit.framework.TestCase;
+import org.apache.log4j.Logger;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.Test;
 
 /**
- * Makes some basic tests on Azure Crypto Token class
- * Future improvements: ECA-9374: mock Azure REST API to perform REST API tests
+ * Makes some basic tests on Azure Crypto Token class and tests of the REST
+ * API calls using the in-process AzureKeyVaultMock.
  */
 public class AzureCryptoTokenUnitTest extends TestCase {
 
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getLogger(AzureCryptoTokenUnitTest.class);
+
+    private static final byte[] DATA = "Data to sign".getBytes(StandardCharsets.UTF_8);
+
+    @Override
+    protected void setUp() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
     @Test
     public void testKeyVaultNameCheck() {
         AzureCryptoToken.checkAliasName("abcde123ABCDEFf123456");
@@ -71,4 +94,149 @@ public class AzureCryptoTokenUnitTest extends TestCase {
         url = AzureCryptoToken.createFullKeyURL("myalias", "ejbca-vault.primekey.vault.se/");
         assertEquals("URL is not the expected", "https://ejbca-vault.primekey.vault.se//keys/myalias", url);
     }
+
+    /**
+     * Tests that when the access token has expired, the threads signing
+     * concurrently only fetch one new token between them.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testConcurrentSigningSingleAuthorization() throws Exception {
+        final int threads = 16;
+        final int signaturesPerThread = 25;
+        try (AzureKeyVaultMock vault = new AzureKeyVaultMock(3600)) {
+            final AzureCryptoToken token = createToken(vault, 4711, new Properties());
+            assertEquals("authorized at activation", 1, vault.getAuthorizations());
+            final PrivateKey privateKey = token.getPrivateKey(AzureKeyVaultMock.KEY_ALIAS);
+            vault.expireTokens();
+
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<Void>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        for (int j = 0; j < signaturesPerThread; j++) {
+                            final Signature signature = Signature.getInstance("SHA256withECDSA", token.getSignProviderName());
+                            signature.initSign(privateKey);
+                            signature.update(DATA);
+                            final byte[] signatureBytes = signature.sign();
+
+                            final Signature verify = Signature.getInstance("SHA256withECDSA", BouncyCastleProvider.PROVIDER_NAME);
+                            verify.initVerify(vault.getPublicKey());
+                            verify.update(DATA);
+                            assertTrue("signature verifies", verify.verify(signatureBytes));
+                        }
+                        return null;
+                    }));
+                }
+                final long startTime = System.nanoTime();
+                start.countDown();
+                for (Future<Void> result : results) {
+                    result.get();
+                }
+                final long time = (System.nanoTime() - startTime) / 1000000;
+                LOG.info("Made " + threads * signaturesPerThread + " signatures with " + threads + " threads in " + time + " ms");
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals("signatures", threads * signaturesPerThread, vault.getSignings());
+            assertEquals("one new token for all threads", 2, vault.getAuthorizations());
+        }
+    }
+
+    /**
+     * Tests that the access token is renewed before it expires without any
+     * request first being denied.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testAuthorizationRenewedBeforeExpiry() throws Exception {
+        try (AzureKeyVaultMock vault = new AzureKeyVaultMock(4)) {
+            final Properties properties = new Properties();
+            properties.setProperty(AzureCryptoToken.KEY_VAULT_AUTHORIZATION_RENEWAL, "2");
+            final AzureCryptoToken token = createToken(vault, 4712, properties);
+            final PrivateKey privateKey = token.getPrivateKey(AzureKeyVaultMock.KEY_ALIAS);
+            sign(token, privateKey);
+            assertEquals("authorizations", 1, vault.getAuthorizations());
+            assertEquals("denied before first authorization", 1, vault.getUnauthorized());
+
+            // Renewed after 2 seconds while the token is still valid
+            Thread.sleep(2500);
+            sign(token, privateKey);
+            assertEquals("renewed", 2, vault.getAuthorizations());
+            assertEquals("no more denied", 1, vault.getUnauthorized());
+        }
+    }
+
+    /**
+     * Tests that an illegal value for a connection property is rejected.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testIllegalConnectionProperty() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty(AzureCryptoToken.KEY_VAULT_NAME, "mock");
+        properties.setProperty(AzureCryptoToken.KEY_VAULT_MAX_CONNECTIONS, "many");
+        try {
+            new AzureCryptoToken().init(properties, null, 4713);
+            fail("Should have thrown CryptoTokenOfflineException");
+        } catch (CryptoTokenOfflineException e) {
+            assertTrue("message: " + e.getMessage(), e.getMessage().contains(AzureCryptoToken.KEY_VAULT_MAX_CONNECTIONS));
+        }
+    }
+
+    /**
+     * Tests that the token can be used again after being deactivated, which
+     * closes its connections, and after being initialized again.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testDeactivateAndReinit() throws Exception {
+        try (AzureKeyVaultMock vault = new AzureKeyVaultMock(3600)) {
+            final Properties properties = new Properties();
+            final AzureCryptoToken token = createToken(vault, 4714, properties);
+            sign(token, token.getPrivateKey(AzureKeyVaultMock.KEY_ALIAS));
+
+            token.deactivate();
+            try {
+                sign(token, token.getPrivateKey(AzureKeyVaultMock.KEY_ALIAS));
+                fail("Should not sign when deactivated");
+            } catch (Exception expected) { // NOPMD
+                // OK
+            }
+            token.activate("secret".toCharArray());
+            sign(token, token.getPrivateKey(AzureKeyVaultMock.KEY_ALIAS));
+
+            token.init(properties, null, 4714);
+            token.activate("secret".toCharArray());
+            sign(token, token.getPrivateKey(AzureKeyVaultMock.KEY_ALIAS));
+            assertEquals("signings", 3, vault.getSignings());
+        }
+    }
+
+    private static void sign(final AzureCryptoToken token, final PrivateKey privateKey) throws Exception {
+        final Signature signature = Signature.getInstance("SHA256withECDSA", token.getSignProviderName());
+        signature.initSign(privateKey);
+        signature.update(DATA);
+        signature.sign();
+    }
+
+    private static AzureCryptoToken createToken(final AzureKeyVaultMock vault, final int id, final Properties properties) throws Exception {
+        final AzureCryptoToken token = new AzureCryptoToken() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected String getKeyURL(final String alias) {
+                return vault.getKeyURL(alias);
+            }
+        };
+        properties.setProperty(AzureCryptoToken.KEY_VAULT_NAME, "mock");
+        properties.setProperty(AzureCryptoToken.KEY_VAULT_TYPE, "premium");
+        properties.setProperty(AzureCryptoToken.KEY_VAULT_CLIENTID, "client");
+        token.init(properties, null, id);
+        token.activate("secret".toCharArray());
+        return token;
+    }
 }
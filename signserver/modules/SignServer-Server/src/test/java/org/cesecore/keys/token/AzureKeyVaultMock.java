@@ -0,0 +1,196 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.keys.token;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.IOUtils;
+import org.bouncycastle.util.BigIntegers;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+/**
+ * In-process HTTP server acting as an Azure Key Vault with one P-256 key
+ * and as the authorization endpoint issuing access tokens for it.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class AzureKeyVaultMock implements AutoCloseable {
+
+    public static final String KEY_ALIAS = "key1";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final KeyPair keyPair;
+    private final long tokenLifetime;
+
+    /** Valid access tokens and when they expire. */
+    private final Map<String, Long> tokens = new ConcurrentHashMap<>();
+
+    private final AtomicInteger authorizations = new AtomicInteger();
+    private final AtomicInteger unauthorized = new AtomicInteger();
+    private final AtomicInteger signings = new AtomicInteger();
+
+    /**
+     * Starts the server.
+     *
+     * @param tokenLifetime lifetime in seconds of the issued access tokens
+     * @throws Exception in case of error
+     */
+    public AzureKeyVaultMock(final long tokenLifetime) throws Exception {
+        this.tokenLifetime = tokenLifetime;
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        keyPair = generator.generateKeyPair();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newFixedThreadPool(16);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * @param alias of key or null
+     * @return URL of the key or of all keys
+     */
+    public String getKeyURL(final String alias) {
+        return getBaseURL() + (alias == null ? "/keys" : "/keys/" + alias);
+    }
+
+    public PublicKey getPublicKey() {
+        return keyPair.getPublic();
+    }
+
+    /** @return number of access tokens issued */
+    public int getAuthorizations() {
+        return authorizations.get();
+    }
+
+    /** @return number of requests denied for not having a valid access token */
+    public int getUnauthorized() {
+        return unauthorized.get();
+    }
+
+    /** @return number of signatures made */
+    public int getSignings() {
+        return signings.get();
+    }
+
+    /** Makes all issued access tokens invalid. */
+    public void expireTokens() {
+        tokens.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private String getBaseURL() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            final String path = exchange.getRequestURI().getPath();
+            final String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = IOUtils.toString(in, StandardCharsets.UTF_8);
+            }
+            if ("/tenant/oauth2/token".equals(path)) {
+                authorize(exchange, body);
+            } else if (!isAuthorized(exchange)) {
+                unauthorized.incrementAndGet();
+                exchange.getResponseHeaders().add("WWW-Authenticate", "Bearer authorization=\"" + getBaseURL() + "/tenant\", resource=\"https://vault.azure.net\"");
+                respond(exchange, 401, "{\"error\":{\"code\":\"Unauthorized\",\"message\":\"Access token is missing or invalid.\"}}");
+            } else if ("/keys".equals(path)) {
+                respond(exchange, 200, "{\"value\":[{\"kid\":\"" + getKeyURL(KEY_ALIAS) + "\"}]}");
+            } else if (("/keys/" + KEY_ALIAS).equals(path) || ("/keys/" + KEY_ALIAS + "/").equals(path)) {
+                final ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+                respond(exchange, 200, "{\"key\":{\"kid\":\"" + getKeyURL(KEY_ALIAS) + "\",\"kty\":\"EC-HSM\",\"crv\":\"P-256\",\"x\":\""
+                        + base64url(BigIntegers.asUnsignedByteArray(32, publicKey.getW().getAffineX())) + "\",\"y\":\""
+                        + base64url(BigIntegers.asUnsignedByteArray(32, publicKey.getW().getAffineY())) + "\"}}");
+            } else if (("/keys/" + KEY_ALIAS + "/sign").equals(path)) {
+                sign(exchange, body);
+            } else {
+                respond(exchange, 404, "{\"error\":{\"code\":\"KeyNotFound\",\"message\":\"Not found: " + path + "\"}}");
+            }
+        } catch (Exception ex) {
+            respond(exchange, 500, "{\"error\":{\"code\":\"InternalError\",\"message\":\"" + ex.getMessage() + "\"}}");
+        }
+    }
+
+    private boolean isAuthorized(final HttpExchange exchange) {
+        final String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            return false;
+        }
+        final Long expires = tokens.get(header.substring("Bearer ".length()));
+        return expires != null && System.currentTimeMillis() < expires;
+    }
+
+    private void authorize(final HttpExchange exchange, final String body) throws IOException {
+        if (!body.contains("client_secret=secret")) {
+            respond(exchange, 401, "{\"error\":\"invalid_client\"}");
+            return;
+        }
+        final String token = "token-" + authorizations.incrementAndGet();
+        tokens.put(token, System.currentTimeMillis() + tokenLifetime * 1000);
+        respond(exchange, 200, "{\"token_type\":\"Bearer\",\"expires_in\":\"" + tokenLifetime + "\",\"access_token\":\"" + token + "\"}");
+    }
+
+    private void sign(final HttpExchange exchange, final String body) throws Exception {
+        final JSONObject request = (JSONObject) new JSONParser().parse(body);
+        final byte[] digest = Base64.getDecoder().decode((String) request.get("value"));
+        final Signature signature = Signature.getInstance("NONEwithECDSAinP1363Format");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(digest);
+        final String value = base64url(signature.sign());
+        signings.incrementAndGet();
+        respond(exchange, 200, "{\"kid\":\"" + getKeyURL(KEY_ALIAS) + "\",\"value\":\"" + value + "\"}");
+    }
+
+    private static String base64url(final byte[] data) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(data);
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String json) throws IOException {
+        final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,459 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.cryptotokens;
+
+import java.security.KeyStore;
+import java.security.ProviderException;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.cesecore.util.query.QueryCriteria;
+import org.junit.Test;
+import org.signserver.common.CryptoTokenInitializationFailureException;
+import org.signserver.common.CryptoTokenOfflineException;
+import org.signserver.common.ICertReqData;
+import org.signserver.common.IllegalRequestException;
+import org.signserver.common.ISignerCertReqInfo;
+import org.signserver.common.KeyTestResult;
+import org.signserver.common.RequestContext;
+import org.signserver.common.SignServerException;
+import org.signserver.common.WorkerStatus;
+import org.signserver.server.IServices;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for the ShardedPKCS11CryptoToken using stubbed shards.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class ShardedPKCS11CryptoTokenUnitTest {
+
+    private final List<StubShardToken> stubs = new ArrayList<>();
+
+    private ShardedPKCS11CryptoToken createInstance(final Properties props) throws Exception {
+        final ShardedPKCS11CryptoToken instance = new ShardedPKCS11CryptoToken() {
+            @Override
+            protected ICryptoTokenV4 createShardToken() {
+                final StubShardToken stub = new StubShardToken();
+                stubs.add(stub);
+                return stub;
+            }
+        };
+        instance.init(1, props, null);
+        return instance;
+    }
+
+    private static Properties createProperties(final int shards) {
+        final Properties props = new Properties();
+        props.setProperty("SHAREDLIBRARYNAME", "SoftHSM");
+        props.setProperty("SLOTLABELTYPE", "SLOT_LABEL");
+        props.setProperty("DEFAULTKEY", "key1");
+        props.setProperty("FAILURE_THRESHOLD", "1");
+        for (int i = 1; i <= shards; i++) {
+            props.setProperty("SHARD" + i + ".SLOTLABELVALUE", "token" + i);
+        }
+        return props;
+    }
+
+    /**
+     * Tests that at least one shard must be configured.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testNoShards() throws Exception {
+        try {
+            createInstance(createProperties(0));
+            fail("Should have failed");
+        } catch (CryptoTokenInitializationFailureException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("SHARD1.SLOTLABELVALUE"));
+        }
+    }
+
+    /**
+     * Tests that each shard gets the common properties and its own ones.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testShardProperties() throws Exception {
+        final Properties props = createProperties(2);
+        props.setProperty("SHARD2.PIN", "foo123");
+        createInstance(props);
+
+        assertEquals(2, stubs.size());
+        assertEquals("token1", stubs.get(0).properties.getProperty("SLOTLABELVALUE"));
+        assertEquals("token2", stubs.get(1).properties.getProperty("SLOTLABELVALUE"));
+        assertEquals("SoftHSM", stubs.get(1).properties.getProperty("SHAREDLIBRARYNAME"));
+        assertEquals(null, stubs.get(0).properties.getProperty("PIN"));
+        assertEquals("foo123", stubs.get(1).properties.getProperty("PIN"));
+        assertFalse(stubs.get(1).properties.containsKey("SHARD2.PIN"));
+    }
+
+    /**
+     * Tests that an illegal circuit breaker property is reported.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testIllegalFailureThreshold() throws Exception {
+        final Properties props = createProperties(2);
+        props.setProperty("FAILURE_THRESHOLD", "0");
+        try {
+            createInstance(props);
+            fail("Should have failed");
+        } catch (CryptoTokenInitializationFailureException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("FAILURE_THRESHOLD"));
+        }
+    }
+
+    /**
+     * Tests that crypto instances are acquired from the shard with the least
+     * outstanding ones.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testLeastOutstanding() throws Exception {
+        final ShardedPKCS11CryptoToken instance = createInstance(createProperties(2));
+        final RequestContext context = new RequestContext();
+
+        final ICryptoInstance first = instance.acquireCryptoInstance("key1", new HashMap<>(), context);
+        final ICryptoInstance second = instance.acquireCryptoInstance("key1", new HashMap<>(), context);
+        assertEquals(1, instance.getOutstanding(1));
+        assertEquals(1, instance.getOutstanding(2));
+
+        instance.releaseCryptoInstance(first, context);
+        instance.releaseCryptoInstance(first, context); // Released twice by mistake
+        final int free = instance.getOutstanding(1) == 0 ? 1 : 2;
+        assertEquals(0, instance.getOutstanding(free));
+
+        instance.acquireCryptoInstance("key1", new HashMap<>(), context);
+        assertEquals(1, instance.getOutstanding(1));
+        assertEquals(1, instance.getOutstanding(2));
+
+        assertEquals(3, stubs.get(0).acquired + stubs.get(1).acquired);
+    }
+
+    /**
+     * Tests that a failing shard is taken out of rotation, that the request
+     * is served by another shard and that the shard is put back when the
+     * status check finds it working again.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testFailingShardTakenOutOfRotation() throws Exception {
+        final ShardedPKCS11CryptoToken instance = createInstance(createProperties(3));
+        final RequestContext context = new RequestContext();
+        stubs.get(1).failing = true;
+
+        for (int i = 0; i < 10; i++) {
+            instance.releaseCryptoInstance(instance.acquireCryptoInstance("key1", new HashMap<>(), context), context);
+        }
+        assertFalse("shard 2 in rotation", instance.isInRotation(2));
+        assertEquals("shard 2 tried once", 1, stubs.get(1).failures);
+        assertEquals(10, stubs.get(0).acquired + stubs.get(2).acquired);
+        assertEquals(0, instance.getOutstanding(2));
+
+        stubs.get(1).failing = false;
+        assertEquals(WorkerStatus.STATUS_ACTIVE, instance.getCryptoTokenStatus(null));
+        assertTrue("shard 2 in rotation", instance.isInRotation(2));
+    }
+
+    /**
+     * Tests that the token is active as long as one shard is and that shards
+     * not active are taken out of rotation.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testStatus() throws Exception {
+        final ShardedPKCS11CryptoToken instance = createInstance(createProperties(2));
+        stubs.get(0).status = WorkerStatus.STATUS_OFFLINE;
+
+        assertEquals(WorkerStatus.STATUS_ACTIVE, instance.getCryptoTokenStatus(null));
+        assertFalse("shard 1 in rotation", instance.isInRotation(1));
+        assertTrue("shard 2 in rotation", instance.isInRotation(2));
+
+        stubs.get(1).status = WorkerStatus.STATUS_OFFLINE;
+        assertEquals(WorkerStatus.STATUS_OFFLINE, instance.getCryptoTokenStatus(null));
+        try {
+            instance.acquireCryptoInstance("key1", new HashMap<>(), new RequestContext());
+            fail("Should have failed");
+        } catch (CryptoTokenOfflineException expected) { // NOPMD
+            // OK
+        }
+    }
+
+    /**
+     * Tests that the request fails when all shards fail.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testAllShardsFailing() throws Exception {
+        final ShardedPKCS11CryptoToken instance = createInstance(createProperties(2));
+        stubs.get(0).failing = true;
+        stubs.get(1).failing = true;
+        try {
+            instance.acquireCryptoInstance("key1", new HashMap<>(), new RequestContext());
+            fail("Should have failed");
+        } catch (CryptoTokenOfflineException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("Slot failure"));
+        }
+        assertEquals(1, stubs.get(0).failures);
+        assertEquals(1, stubs.get(1).failures);
+    }
+
+    /**
+     * Tests that each shard caches its crypto instance separately within the
+     * worker cache of the caller and that the caches of a failed shard are
+     * cleared.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testWorkerCachePerShard() throws Exception {
+        final ShardedPKCS11CryptoToken instance = createInstance(createProperties(2));
+        final Map<String, Object> workerCache = new HashMap<>();
+        final Map<String, Object> params = createCacheParams(workerCache);
+
+        instance.acquireCryptoInstance("key1", params, new RequestContext());
+        instance.acquireCryptoInstance("key1", params, new RequestContext());
+        final Object cache1 = stubs.get(0).workerCache;
+        final Object cache2 = stubs.get(1).workerCache;
+        assertNotSame(workerCache, cache1);
+        assertNotSame(workerCache, cache2);
+        assertNotSame(cache1, cache2);
+        assertEquals("created", 1, stubs.get(0).created);
+        assertEquals("created", 1, stubs.get(1).created);
+
+        instance.acquireCryptoInstance("key1", params, new RequestContext());
+        instance.acquireCryptoInstance("key1", params, new RequestContext());
+        assertEquals("cached", 1, stubs.get(0).created);
+        assertEquals("cached", 1, stubs.get(1).created);
+
+        stubs.get(0).status = WorkerStatus.STATUS_OFFLINE;
+        instance.getCryptoTokenStatus(null);
+        stubs.get(0).status = WorkerStatus.STATUS_ACTIVE;
+        instance.getCryptoTokenStatus(null);
+        instance.acquireCryptoInstance("key1", params, new RequestContext());
+        instance.acquireCryptoInstance("key1", params, new RequestContext());
+        assertSame("same cache for shard 1", cache1, stubs.get(0).workerCache);
+        assertEquals("new instance for shard 1", 2, stubs.get(0).created);
+        assertEquals("cached for shard 2", 1, stubs.get(1).created);
+    }
+
+    /**
+     * Tests that workers using the same token each have their own cached
+     * crypto instance.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testWorkerCacheOfEachWorker() throws Exception {
+        final ShardedPKCS11CryptoToken instance = createInstance(createProperties(1));
+        final Map<String, Object> params1 = createCacheParams(new HashMap<>());
+        final Map<String, Object> params2 = createCacheParams(new HashMap<>());
+
+        instance.acquireCryptoInstance("key1", params1, new RequestContext());
+        instance.acquireCryptoInstance("key2", params2, new RequestContext());
+        assertEquals("created", 2, stubs.get(0).created);
+        assertEquals("key2", stubs.get(0).returnedAlias);
+
+        instance.acquireCryptoInstance("key1", params1, new RequestContext());
+        assertEquals("key1", stubs.get(0).returnedAlias);
+        assertEquals("cached", 2, stubs.get(0).created);
+    }
+
+    private static Map<String, Object> createCacheParams(final Map<String, Object> workerCache) {
+        final Map<String, Object> result = new HashMap<>();
+        result.put(ICryptoTokenV4.PARAM_CACHEPRIVATEKEY, true);
+        result.put(ICryptoTokenV4.PARAM_WORKERCACHE, workerCache);
+        return result;
+    }
+
+    /**
+     * Tests that a failure from the provider while signing, reported when the
+     * processing has finished, takes the shard out of rotation while other
+     * failures do not.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testSigningFailureReported() throws Exception {
+        final ShardedPKCS11CryptoToken instance = createInstance(createProperties(2));
+
+        RequestContext context = createReportingContext();
+        instance.releaseCryptoInstance(instance.acquireCryptoInstance("key1", new HashMap<>(), context), context);
+        CryptoInstances.getInstance(context).complete(new IllegalRequestException("Bad request"));
+        assertTrue("shard 1 in rotation", instance.isInRotation(1));
+        assertTrue("shard 2 in rotation", instance.isInRotation(2));
+
+        context = createReportingContext();
+        instance.releaseCryptoInstance(instance.acquireCryptoInstance("key1", new HashMap<>(), context), context);
+        final int used = stubs.get(0).acquired == 2 ? 1 : 2;
+        assertTrue("still in rotation before completion", instance.isInRotation(used));
+        CryptoInstances.getInstance(context).complete(new SignServerException("Signing failed", new ProviderException("sign() failed")));
+        assertFalse("shard " + used + " in rotation", instance.isInRotation(used));
+        assertTrue("other shard in rotation", instance.isInRotation(3 - used));
+    }
+
+    /**
+     * Tests that a probe of a failed shard does not put it back in rotation
+     * when the key has been found but only when the processing has finished
+     * successfully.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testProbeDecidedWhenCompleted() throws Exception {
+        final Properties props = createProperties(2);
+        props.setProperty("CIRCUIT_OPEN_TIME", "1");
+        final ShardedPKCS11CryptoToken instance = createInstance(props);
+        stubs.get(0).status = WorkerStatus.STATUS_OFFLINE;
+        instance.getCryptoTokenStatus(null);
+        stubs.get(0).status = WorkerStatus.STATUS_ACTIVE;
+        assertFalse("shard 1 in rotation", instance.isInRotation(1));
+
+        // The probe fails while signing
+        Thread.sleep(1100);
+        RequestContext context = createReportingContext();
+        instance.releaseCryptoInstance(instance.acquireCryptoInstance("key1", new HashMap<>(), context), context);
+        assertEquals("probe sent to shard 1", 1, stubs.get(0).acquired);
+        assertFalse("shard 1 in rotation after key lookup", instance.isInRotation(1));
+        instance.releaseCryptoInstance(instance.acquireCryptoInstance("key1", new HashMap<>(), context), context);
+        assertEquals("only one probe", 1, stubs.get(0).acquired);
+        CryptoInstances.getInstance(context).complete(new ProviderException("sign() failed"));
+        assertFalse("shard 1 in rotation", instance.isInRotation(1));
+
+        // The next probe succeeds
+        Thread.sleep(1100);
+        context = createReportingContext();
+        instance.releaseCryptoInstance(instance.acquireCryptoInstance("key1", new HashMap<>(), context), context);
+        assertEquals("probe sent to shard 1", 2, stubs.get(0).acquired);
+        assertFalse("shard 1 in rotation after key lookup", instance.isInRotation(1));
+        CryptoInstances.getInstance(context).complete(null);
+        assertTrue("shard 1 in rotation", instance.isInRotation(1));
+    }
+
+    private static RequestContext createReportingContext() {
+        final RequestContext result = new RequestContext();
+        CryptoInstances.setCompletionReported(result);
+        return result;
+    }
+
+    /**
+     * Shard token counting the crypto instances acquired.
+     */
+    private static class StubShardToken extends BaseCryptoToken {
+
+        private Properties properties;
+        private volatile boolean failing;
+        private volatile int status = WorkerStatus.STATUS_ACTIVE;
+        private int acquired;
+        private int failures;
+        private int created;
+        private Object workerCache;
+        private String returnedAlias;
+
+        @Override
+        public void init(int workerId, Properties props, IServices services) {
+            this.properties = props;
+        }
+
+        @Override
+        public int getCryptoTokenStatus(IServices services) {
+            return failing ? WorkerStatus.STATUS_OFFLINE : status;
+        }
+
+        @Override
+        public synchronized ICryptoInstance acquireCryptoInstance(String alias, Map<String, Object> params, RequestContext context) throws CryptoTokenOfflineException {
+            if (failing) {
+                failures++;
+                throw new CryptoTokenOfflineException("Slot failure");
+            }
+            acquired++;
+            workerCache = params.get(PARAM_WORKERCACHE);
+            DefaultCryptoInstance result = null;
+            if (Boolean.TRUE.equals(params.get(PARAM_CACHEPRIVATEKEY)) && workerCache != null) {
+                final Map<String, Object> cache = (Map<String, Object>) workerCache;
+                synchronized (cache) {
+                    result = (DefaultCryptoInstance) cache.get("CRYPTO_INSTANCE");
+                    if (result == null) {
+                        result = createCryptoInstance(alias, context);
+                        cache.put("CRYPTO_INSTANCE", result);
+                    }
+                }
+            }
+            if (result == null) {
+                result = createCryptoInstance(alias, context);
+            }
+            returnedAlias = result.getAlias();
+            return result;
+        }
+
+        private DefaultCryptoInstance createCryptoInstance(final String alias, final RequestContext context) {
+            created++;
+            return new DefaultCryptoInstance(alias, context, null, null, (List<Certificate>) null);
+        }
+
+        @Override
+        public void releaseCryptoInstance(ICryptoInstance instance, RequestContext context) {
+        }
+
+        @Override
+        public void activate(String authenticationcode, IServices services) {
+        }
+
+        @Override
+        public boolean deactivate(IServices services) {
+            return true;
+        }
+
+        @Override
+        public KeyStore getKeyStore() {
+            throw new UnsupportedOperationException("Not supported");
+        }
+
+        @Override
+        public void importCertificateChain(List<Certificate> certChain, String alias, char[] athenticationCode, Map<String, Object> params, IServices services) {
+            throw new UnsupportedOperationException("Not supported");
+        }
+
+        @Override
+        public TokenSearchResults searchTokenEntries(int startIndex, int max, QueryCriteria qc, boolean includeData, Map<String, Object> params, IServices services) {
+            throw new UnsupportedOperationException("Not supported");
+        }
+
+        @Override
+        public void generateKey(String keyAlgorithm, String keySpec, String alias, char[] authCode, Map<String, Object> params, IServices services) {
+            throw new UnsupportedOperationException("Not supported");
+        }
+
+        @Override
+        public ICertReqData genCertificateRequest(ISignerCertReqInfo info, boolean explicitEccParameters, String keyAlias, IServices services) {
+            throw new UnsupportedOperationException("Not supported");
+        }
+
+        @Override
+        public Collection<KeyTestResult> testKey(String alias, char[] authCode, IServices services) {
+            throw new UnsupportedOperationException("Not supported");
+        }
+
+        @Override
+        public boolean removeKey(String alias, IServices services) {
+            throw new UnsupportedOperationException("Not supported");
+        }
+    }
+}
@@ -17,6 +17,7 @@ import java.io.File;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.disk.DiskFileItem;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -303,6 +304,60 @@ public class DataFactoryUnitTest {
         assertFalse("file removed", file.exists());
     }
 
+    /**
+     * Tests the method DataFactory.createReadabeData(FileItem,...) with data
+     * larger than the threshold so it has been stored on disk.
+     * @throws Exception 
+     */
+    @Test
+    public void testDataFactoryCreateReadableData_fileItemOnDisk() throws Exception {
+        DataFactory dataFactory = createDataFactory();
+        
+        byte[] bytes = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".getBytes(StandardCharsets.US_ASCII);
+        int length = bytes.length;
+        
+        final DiskFileItemFactory factory = new DiskFileItemFactory();
+        factory.setSizeThreshold(10);
+        factory.setRepository(fileRepository);
+
+        final BinaryFileUpload upload = new BinaryFileUpload(new ByteArrayInputStream(bytes), "application/octet-stream", factory);
+        upload.setSizeMax(10000);
+
+        final DiskFileItem item = (DiskFileItem) upload.parseTheRequest();
+        final File storeLocation = item.getStoreLocation();
+        assertTrue("stored on disk", storeLocation.exists());
+
+        File file;
+        try (CloseableReadableData readableData = dataFactory.createReadableData(item, fileRepository)) {
+            // Check length
+            assertEquals("length", length, readableData.getLength());
+            
+            // From file
+            assertTrue("file", readableData.isFile());
+
+            // The uploaded file was moved
+            assertFalse("moved", storeLocation.exists());
+            
+            // Can be read as byte array
+            assertEquals("byte array", Hex.toHexString(bytes), Hex.toHexString(readableData.getAsByteArray()));
+            
+            // Can be read as stream
+            assertEquals("stream", Hex.toHexString(bytes), Hex.toHexString(IOUtils.toByteArray(readableData.getAsInputStream())));
+            
+            // Can be read as file
+            file = readableData.getAsFile();
+            assertEquals("file", Hex.toHexString(bytes), Hex.toHexString(FileUtils.readFileToByteArray(file)));
+
+            // Response data defaults to disk
+            try (CloseableWritableData writableData = dataFactory.createWritableData(readableData, fileRepository)) {
+                writableData.getAsOutputStream().write(bytes);
+                assertTrue("response file", writableData.toReadableData().isFile());
+            }
+        }
+        // File removed (auto-closeable)
+        assertFalse("file removed", file.exists());
+    }
+
     /**
      * Tests that the method DataFactory.createReadabeData(FileItem,...) throws
      * an Exception on too large data (+1).
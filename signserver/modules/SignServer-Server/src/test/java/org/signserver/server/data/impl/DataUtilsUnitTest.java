@@ -0,0 +1,115 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.data.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.encoders.DecoderException;
+import org.bouncycastle.util.encoders.Hex;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit tests for the streaming base64 methods in DataUtils.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class DataUtilsUnitTest {
+
+    private final File fileRepository = new File(System.getProperty("java.io.tmpdir"));
+
+    private static byte[] randomData(int length) {
+        final byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Tests that streaming encoding gives the same result as encoding in
+     * memory for different lengths, including lengths not a multiple of the
+     * buffer sizes.
+     * @throws Exception
+     */
+    @Test
+    public void testEncodeBase64() throws Exception {
+        for (int length : new int[] {0, 1, 2, 3, 12287, 12288, 12289, 100001}) {
+            final byte[] data = randomData(length);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DataUtils.encodeBase64(new ByteArrayInputStream(data), out);
+            assertEquals("length " + length, Base64.toBase64String(data), out.toString(StandardCharsets.US_ASCII.name()));
+        }
+    }
+
+    /**
+     * Tests that streaming decoding gives the original data, also with
+     * line breaks in the encoded data.
+     * @throws Exception
+     */
+    @Test
+    public void testDecodeBase64() throws Exception {
+        for (int length : new int[] {0, 1, 2, 3, 16383, 16384, 16385, 100001}) {
+            final byte[] data = randomData(length);
+            final String encoded = Base64.toBase64String(data);
+            final String wrapped = encoded.replaceAll("(.{76})", "$1\r\n");
+
+            for (String input : new String[] {encoded, wrapped}) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                DataUtils.decodeBase64(new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII)), out);
+                assertEquals("stream length " + length, Hex.toHexString(data), Hex.toHexString(out.toByteArray()));
+
+                final ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+                DataUtils.decodeBase64(input, out2);
+                assertEquals("string length " + length, Hex.toHexString(data), Hex.toHexString(out2.toByteArray()));
+            }
+        }
+    }
+
+    /**
+     * Tests that incorrect data gives a DecoderException.
+     * @throws Exception
+     */
+    @Test
+    public void testDecodeBase64Incorrect() throws Exception {
+        try {
+            DataUtils.decodeBase64(new ByteArrayInputStream("QUJD*EVG".getBytes(StandardCharsets.US_ASCII)), new ByteArrayOutputStream());
+            fail("Should have thrown DecoderException");
+        } catch (DecoderException expected) { // NOPMD
+        }
+        try {
+            DataUtils.decodeBase64("QUJDŁEVG", new ByteArrayOutputStream());
+            fail("Should have thrown DecoderException");
+        } catch (DecoderException expected) { // NOPMD
+        }
+    }
+
+    /**
+     * Tests decoding to a file that is removed when closed.
+     * @throws Exception
+     */
+    @Test
+    public void testDecodeBase64ToFile() throws Exception {
+        final byte[] data = randomData(50000);
+        final File file;
+        try (CloseableReadableData readableData = DataUtils.decodeBase64ToFile(Base64.toBase64String(data), fileRepository)) {
+            assertTrue("file", readableData.isFile());
+            assertEquals("data", Hex.toHexString(data), Hex.toHexString(readableData.getAsByteArray()));
+            file = readableData.getAsFile();
+        }
+        assertFalse("file removed", file.exists());
+    }
+}
@@ -0,0 +1,128 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.data.impl;
+
+import java.util.Properties;
+import org.signserver.common.GlobalConfiguration;
+import org.signserver.common.ResyncException;
+import org.signserver.ejb.interfaces.GlobalConfigurationSessionLocal;
+import org.signserver.server.log.AdminInfo;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit tests for the UploadConfig class.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class UploadConfigUnitTest {
+
+    /**
+     * Tests that the configuration is read from the global configuration and
+     * only created once for each version of it.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testCreateCachedPerVersion() throws Exception {
+        final MockGlobalSession globalSession = new MockGlobalSession();
+
+        final Properties properties1 = new Properties();
+        properties1.setProperty("GLOB.HTTP_MAX_UPLOAD_SIZE", "1000");
+        properties1.setProperty("GLOB.FILE_SIZE_THRESHOLD", "100");
+        globalSession.configuration = new GlobalConfiguration(properties1, GlobalConfiguration.STATE_INSYNC, "1.2.3", 1000001);
+
+        final UploadConfig config1 = UploadConfig.create(globalSession);
+        assertEquals("max upload size", 1000, config1.getMaxUploadSize());
+        assertEquals("size threshold", 100, config1.getSizeThreshold());
+        assertSame("same instance for same version", config1, UploadConfig.create(globalSession));
+
+        final Properties properties2 = new Properties();
+        properties2.setProperty("GLOB.HTTP_MAX_UPLOAD_SIZE", "2000");
+        globalSession.configuration = new GlobalConfiguration(properties2, GlobalConfiguration.STATE_INSYNC, "1.2.3", 1000002);
+
+        final UploadConfig config2 = UploadConfig.create(globalSession);
+        assertNotSame("new instance for new version", config1, config2);
+        assertEquals("max upload size", 2000, config2.getMaxUploadSize());
+        assertEquals("default size threshold", 1024 * 1024, config2.getSizeThreshold());
+    }
+
+    /**
+     * Tests that a configuration without version is always read again.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testCreateNotVersioned() throws Exception {
+        final MockGlobalSession globalSession = new MockGlobalSession();
+        final Properties properties = new Properties();
+        properties.setProperty("GLOB.HTTP_MAX_UPLOAD_SIZE", "3000");
+        globalSession.configuration = new GlobalConfiguration(properties, GlobalConfiguration.STATE_INSYNC, "1.2.3");
+
+        final UploadConfig config1 = UploadConfig.create(globalSession);
+        assertEquals("max upload size", 3000, config1.getMaxUploadSize());
+
+        properties.setProperty("GLOB.HTTP_MAX_UPLOAD_SIZE", "4000");
+        final UploadConfig config2 = UploadConfig.create(globalSession);
+        assertEquals("max upload size", 4000, config2.getMaxUploadSize());
+    }
+
+    private static class MockGlobalSession implements GlobalConfigurationSessionLocal {
+
+        private GlobalConfiguration configuration;
+
+        @Override
+        public GlobalConfiguration getGlobalConfiguration() {
+            return configuration;
+        }
+
+        @Override
+        public void setProperty(String scope, String key, String value) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean removeProperty(String scope, String key) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void resync() throws ResyncException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void reload() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void setProperty(AdminInfo adminInfo, String scope, String key, String value) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean removeProperty(AdminInfo adminInfo, String scope, String key) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void resync(AdminInfo adminInfo) throws ResyncException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void reload(AdminInfo adminInfo) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+    }
+}
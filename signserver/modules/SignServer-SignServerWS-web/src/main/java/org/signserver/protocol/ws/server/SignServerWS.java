@@ -21,9 +21,16 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import jakarta.annotation.PostConstruct;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.jws.WebMethod;
 import jakarta.jws.WebParam;
 import jakarta.jws.WebService;
@@ -41,6 +48,7 @@ import org.signserver.common.GenericSignRequest;
 import org.signserver.common.GenericSignResponse;
 import org.signserver.common.GenericValidationRequest;
 import org.signserver.common.GenericValidationResponse;
+import org.signserver.common.GlobalConfiguration;
 import org.signserver.common.IllegalRequestException;
 import org.signserver.common.InvalidWorkerIdException;
 import org.signserver.common.ProcessRequest;
@@ -102,9 +110,40 @@ public class SignServerWS {
      */
     public static final String ALL_WORKERS = "ALLWORKERS";
 
+    /**
+     * Global configuration property for the number of requests from one
+     * batch that can be processed at the same time. Default is 1 meaning
+     * that the requests are processed one by one in the calling thread.
+     */
+    public static final String WS_PROCESS_BATCH_THREADS = "WS_PROCESS_BATCH_THREADS";
+    private static final int DEFAULT_BATCH_THREADS = 1;
+
+    /**
+     * Global configuration property for the maximum number of requests in
+     * one batch. Default is 0 meaning no limit.
+     */
+    public static final String WS_PROCESS_BATCH_MAX_REQUESTS = "WS_PROCESS_BATCH_MAX_REQUESTS";
+    private static final int DEFAULT_BATCH_MAX_REQUESTS = 0;
+
+    /**
+     * Global configuration property for the number of requests that can be
+     * processed by the executor at the same time on this node, counting the
+     * requests of all batches. A request not getting one of these is
+     * processed in the calling thread instead. Default is 16.
+     */
+    public static final String WS_PROCESS_BATCH_NODE_THREADS = "WS_PROCESS_BATCH_NODE_THREADS";
+    private static final int DEFAULT_BATCH_NODE_THREADS = 16;
+
+    /** Executor permits shared by all batches on this node. */
+    private static final AtomicReference<NodePermits> NODE_PERMITS = new AtomicReference<>();
+
     @Resource
     private WebServiceContext wsContext;
 
+    /** Executor used for processing requests from a batch concurrently. */
+    @Resource
+    private ManagedExecutorService executor;
+
     @EJB
     private GlobalConfigurationSessionLocal globalSession;
 
@@ -123,6 +162,23 @@ public class SignServerWS {
 
     private DataFactory dataFactory;
 
+    public SignServerWS() {
+    }
+
+    /**
+     * Creates an instance with the given resources instead of injected ones.
+     */
+    SignServerWS(final WebServiceContext wsContext, final ManagedExecutorService executor,
+            final GlobalConfigurationSessionLocal globalSession, final WorkerSessionLocal workerSession,
+            final ProcessSessionLocal processSession) {
+        this.wsContext = wsContext;
+        this.executor = executor;
+        this.globalSession = globalSession;
+        this.workerSession = workerSession;
+        this.processSession = processSession;
+        init();
+    }
+
     @PostConstruct
     protected void init() {
         dataFactory = DataUtils.createDataFactory();
@@ -203,231 +259,394 @@ public class SignServerWS {
             @WebParam(name = "arg1") final Collection<ProcessRequestWS> requests
     ) throws InvalidWorkerIdException, IllegalRequestException, CryptoTokenOfflineException, SignServerException {
         LOG.debug("WS process called");
-        final ArrayList<ProcessResponseWS> returnValues = new ArrayList<>();
+        final GlobalConfiguration globalConfiguration = globalSession.getGlobalConfiguration();
+        final int maxRequests = getBatchSetting(globalConfiguration, WS_PROCESS_BATCH_MAX_REQUESTS, DEFAULT_BATCH_MAX_REQUESTS);
+        if (maxRequests > 0 && requests.size() > maxRequests) {
+            throw new IllegalRequestException("Maximum number of requests in batch exceeded: " + requests.size() + " > " + maxRequests);
+        }
+        final int threads = getBatchSetting(globalConfiguration, WS_PROCESS_BATCH_THREADS, DEFAULT_BATCH_THREADS);
+        final int nodeThreads = getBatchSetting(globalConfiguration, WS_PROCESS_BATCH_NODE_THREADS, DEFAULT_BATCH_NODE_THREADS);
+
         final HttpServletRequest servletRequest = getHttpServletRequest();
         final String requestIP = getRequestIP();
         final X509Certificate clientCertificate = getClientCertificate();
-        final RequestContext requestContext = new RequestContext(clientCertificate, requestIP);
-        // Add credentials to the context
-        CredentialUtils.addToRequestContext(requestContext, servletRequest, clientCertificate);
-        final LogMap logMap = LogMap.getInstance(requestContext);
+        final String requestURL = servletRequest.getRequestURL().append("?")
+                .append(servletRequest.getQueryString()).toString();
+        final String contentLength = servletRequest.getHeader("Content-Length");
         final String xForwardedFor = servletRequest.getHeader(RequestContext.X_FORWARDED_FOR);
-        // Add HTTP specific log entries
-        logMap.put(IWorkerLogger.LOG_REQUEST_FULLURL, new Loggable() {
-            @Override
-            public String toString() {
-                return servletRequest.getRequestURL().append("?")
-                        .append(servletRequest.getQueryString()).toString();
-            }
-        });
+        final String xCustom1 = servletRequest.getHeader(RequestContext.X_SIGNSERVER_CUSTOM_1);
         //
-        logMap.put(IWorkerLogger.LOG_REQUEST_LENGTH, new Loggable() {
-            @Override
-            public String toString() {
-                return servletRequest.getHeader("Content-Length");
+        final WorkerIdentifier wi = WorkerIdentifier.createFromIdOrName(workerIdOrName);
+        final ArrayList<Certificate> signerCertificateChain = getSignerCertificateChain(wi);
+        final UploadConfig uploadConfig = UploadConfig.create(globalSession);
+
+        // Each request gets its own context (and log map) as the requests
+        // might be processed concurrently. The contexts are created here as
+        // the servlet request should only be accessed from this thread.
+        final List<ProcessRequestWS> entries = new ArrayList<>(requests);
+        final List<RequestContext> requestContexts = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            final RequestContext requestContext = new RequestContext(clientCertificate, requestIP);
+            // Add credentials to the context
+            CredentialUtils.addToRequestContext(requestContext, servletRequest, clientCertificate);
+            final LogMap logMap = LogMap.getInstance(requestContext);
+            // Add HTTP specific log entries
+            logMap.put(IWorkerLogger.LOG_REQUEST_FULLURL, new Loggable() {
+                @Override
+                public String toString() {
+                    return requestURL;
+                }
+            });
+            //
+            logMap.put(IWorkerLogger.LOG_REQUEST_LENGTH, new Loggable() {
+                @Override
+                public String toString() {
+                    return contentLength;
+                }
+            });
+            //
+            logMap.put(IWorkerLogger.LOG_XFORWARDEDFOR, new Loggable() {
+                @Override
+                public String toString() {
+                    return xForwardedFor;
+                }
+            });
+            if (xForwardedFor != null) {
+                requestContext.put(RequestContext.X_FORWARDED_FOR, xForwardedFor);
             }
-        });
-        //
-        logMap.put(IWorkerLogger.LOG_XFORWARDEDFOR, new Loggable() {
-            @Override
-            public String toString() {
-                return xForwardedFor;
+            // Add and log the X-SignServer-Custom-1 header if available
+            if (xCustom1 != null && !xCustom1.isEmpty()) {
+                requestContext.put(RequestContext.X_SIGNSERVER_CUSTOM_1, xCustom1);
             }
-        });
-        if (xForwardedFor != null) {
-            requestContext.put(RequestContext.X_FORWARDED_FOR, xForwardedFor);
+            logMap.put(IWorkerLogger.LOG_XCUSTOM1, xCustom1);
+            requestContexts.add(requestContext);
         }
-        // Add and log the X-SignServer-Custom-1 header if available
-        final String xCustom1 = servletRequest.getHeader(RequestContext.X_SIGNSERVER_CUSTOM_1);
-        if (xCustom1 != null && !xCustom1.isEmpty()) {
-            requestContext.put(RequestContext.X_SIGNSERVER_CUSTOM_1, xCustom1);
+
+        final ArrayList<ProcessResponseWS> returnValues = new ArrayList<>(entries.size());
+        if (threads <= 1 || nodeThreads == 0 || entries.size() <= 1 || executor == null) {
+            for (int i = 0; i < entries.size(); i++) {
+                returnValues.add(process(wi, entries.get(i), requestContexts.get(i), uploadConfig, signerCertificateChain));
+            }
+        } else {
+            processConcurrently(wi, entries, requestContexts, uploadConfig, signerCertificateChain, threads,
+                    getNodePermits(nodeThreads), returnValues);
         }
-        logMap.put(IWorkerLogger.LOG_XCUSTOM1, xCustom1);
-        //
-        final WorkerIdentifier wi = WorkerIdentifier.createFromIdOrName(workerIdOrName);
-        final ArrayList<Certificate> signerCertificateChain = getSignerCertificateChain(wi);
-        //
-        for (ProcessRequestWS next : requests) {
-            ProcessRequest req;
-            try {
-                req = RequestAndResponseManager.parseProcessRequest(next.getRequestData());
-            } catch (IOException e1) {
-                LOG.error("Error parsing process request", e1);
-                throw new IllegalRequestException(e1.getMessage());
+        return returnValues;
+    }
+
+    /**
+     * Processes the requests using the managed executor with at most the
+     * given number of requests of the batch in progress at the same time.
+     * A request is only handed to the executor if one of the node permits is
+     * available, otherwise it is processed in the calling thread.
+     * The responses are added in the same order as the requests.
+     * Processing stops at the first failure and that failure is thrown.
+     */
+    private void processConcurrently(final WorkerIdentifier wi, final List<ProcessRequestWS> entries,
+            final List<RequestContext> requestContexts, final UploadConfig uploadConfig,
+            final ArrayList<Certificate> signerCertificateChain, final int threads,
+            final Semaphore nodePermits, final List<ProcessResponseWS> returnValues)
+            throws IllegalRequestException, CryptoTokenOfflineException, SignServerException {
+        final Semaphore permits = new Semaphore(threads);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final ProcessResponseWS[] responses = new ProcessResponseWS[entries.size()];
+        final List<Future<ProcessResponseWS>> futures = new ArrayList<>(entries.size());
+        try {
+            for (int i = 0; i < entries.size() && !failed.get(); i++) {
+                final ProcessRequestWS next = entries.get(i);
+                final RequestContext requestContext = requestContexts.get(i);
+                permits.acquire();
+                if (!nodePermits.tryAcquire()) {
+                    try {
+                        responses[i] = process(wi, next, requestContext, uploadConfig, signerCertificateChain);
+                    } finally {
+                        permits.release();
+                    }
+                    futures.add(null);
+                    continue;
+                }
+                try {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            return process(wi, next, requestContext, uploadConfig, signerCertificateChain);
+                        } catch (Exception | Error e) {
+                            failed.set(true);
+                            throw e;
+                        } finally {
+                            nodePermits.release();
+                            permits.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException ex) {
+                    nodePermits.release();
+                    permits.release();
+                    throw new SignServerException("Unable to process request: " + ex.getMessage(), ex);
+                }
             }
-            //
-            Map<String, String> metadata = next.getRequestMetadata();
-            if (metadata == null) {
-                requestContext.remove(RequestContext.REQUEST_METADATA);
+            for (int i = 0; i < futures.size(); i++) {
+                final Future<ProcessResponseWS> future = futures.get(i);
+                returnValues.add(future == null ? responses[i] : future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SignServerException("Interrupted while processing requests", ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IllegalRequestException) {
+                throw (IllegalRequestException) cause;
+            } else if (cause instanceof CryptoTokenOfflineException) {
+                throw (CryptoTokenOfflineException) cause;
+            } else if (cause instanceof SignServerException) {
+                throw (SignServerException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
             } else {
-                requestContext.put(RequestContext.REQUEST_METADATA, metadata);
-                final String fileName = metadata.get(RequestContext.FILENAME);
-                if (fileName != null) {
-                    requestContext.put(RequestContext.FILENAME, fileName);
-                    logMap.put(IWorkerLogger.LOG_FILENAME, new Loggable() {
-                        @Override
-                        public String toString() {
-                            return fileName;
-                        }
-                    });
+                throw new SignServerException("Processing failed", cause);
+            }
+        } finally {
+            // Requests not yet started are not needed any more if one failed.
+            // Requests already in progress are left to complete so that their
+            // data gets cleaned up.
+            for (final Future<ProcessResponseWS> future : futures) {
+                if (future != null) {
+                    future.cancel(false);
                 }
             }
-            if (wi.hasName()) {
-                logMap.put(IWorkerLogger.LOG_WORKER_NAME, new Loggable() {
-                    @Override
-                    public String toString() {
-                        return wi.getName();
-                    }
-                });
+        }
+    }
+
+    /**
+     * Gets the node permits for the configured number of threads, replacing
+     * them if the configuration has changed. Requests holding permits from
+     * an earlier configuration release them to the old instance.
+     */
+    private static Semaphore getNodePermits(final int size) {
+        NodePermits current = NODE_PERMITS.get();
+        while (current == null || current.size != size) {
+            final NodePermits created = new NodePermits(size);
+            if (NODE_PERMITS.compareAndSet(current, created)) {
+                return created.semaphore;
             }
-            if (wi.hasId()) {
-                logMap.put(IWorkerLogger.LOG_WORKER_ID, new Loggable() {
+            current = NODE_PERMITS.get();
+        }
+        return current.semaphore;
+    }
+
+    /** Permits for a configured number of threads. */
+    private static final class NodePermits {
+        private final int size;
+        private final Semaphore semaphore;
+
+        NodePermits(final int size) {
+            this.size = size;
+            this.semaphore = new Semaphore(size);
+        }
+    }
+
+    /**
+     * Processes one of the requests in a batch.
+     */
+    private ProcessResponseWS process(final WorkerIdentifier wi, final ProcessRequestWS next,
+            final RequestContext requestContext, final UploadConfig uploadConfig,
+            final ArrayList<Certificate> signerCertificateChain)
+            throws IllegalRequestException, CryptoTokenOfflineException, SignServerException {
+        final LogMap logMap = LogMap.getInstance(requestContext);
+        ProcessRequest req;
+        try {
+            req = RequestAndResponseManager.parseProcessRequest(next.getRequestData());
+        } catch (IOException e1) {
+            LOG.error("Error parsing process request", e1);
+            throw new IllegalRequestException(e1.getMessage());
+        }
+        //
+        Map<String, String> metadata = next.getRequestMetadata();
+        if (metadata != null) {
+            requestContext.put(RequestContext.REQUEST_METADATA, metadata);
+            final String fileName = metadata.get(RequestContext.FILENAME);
+            if (fileName != null) {
+                requestContext.put(RequestContext.FILENAME, fileName);
+                logMap.put(IWorkerLogger.LOG_FILENAME, new Loggable() {
                     @Override
                     public String toString() {
-                        return String.valueOf(wi.getId());
+                        return fileName;
                     }
                 });
             }
-            // TODO: Duplicated in SignServerWS, AdminWS, ProcessSessionBean (remote)
-            CloseableReadableData requestData = null;
-            CloseableWritableData responseData = null;
-            int requestID;
-            try {
-                final Request req2;
-                // Use the new request types with large file support for
-                // GenericSignRequest and GenericValidationRequest
-                if (req instanceof GenericSignRequest) {
-                    byte[] data = ((GenericSignRequest) req).getRequestData();
-                    requestID = ((GenericSignRequest) req).getRequestID();
-                    // Upload handling (Note: close in finally clause)
-                    UploadConfig uploadConfig = UploadConfig.create(globalSession);
-                    requestData = dataFactory.createReadableData(
-                            data,
-                            uploadConfig.getMaxUploadSize(),
-                            uploadConfig.getRepository()
-                    );
-                    responseData = dataFactory.createWritableData(requestData, uploadConfig.getRepository());
-                    req2 = new SignatureRequest(requestID, requestData, responseData);
-                } else if (req instanceof GenericValidationRequest) {
-                    byte[] data = ((GenericValidationRequest) req).getRequestData();
-                    requestID = ((GenericValidationRequest) req).getRequestID();
-                    // Upload handling (Note: close in finally clause)
-                    UploadConfig uploadConfig = UploadConfig.create(globalSession);
-                    requestData = dataFactory.createReadableData(
-                            data,
-                            uploadConfig.getMaxUploadSize(),
-                            uploadConfig.getRepository()
-                    );
-                    req2 = new DocumentValidationRequest(requestID, requestData);
-                } else if (req instanceof ValidateRequest) {
-                    final ValidateRequest vr = (ValidateRequest) req;
-                    // Upload handling
-                    req2 = new CertificateValidationRequest(vr.getCertificate(), vr.getCertPurposesString());
-                } else if (req instanceof SODSignRequest) {
-                    SODSignRequest sodReq = (SODSignRequest) req;
-                    req2 = new SODRequest(
-                            sodReq.getRequestID(),
-                            sodReq.getDataGroupHashes(),
-                            sodReq.getLdsVersion(),
-                            sodReq.getUnicodeVersion(),
-                            responseData
-                    );
-                } else {
-                    // Passthroughs for all legacy requests
-                    req2 = new LegacyRequest(req);
-                }
-
-                final Response resp = getProcessSession().process(
-                        new AdminInfo("Client user", null, null),
-                        wi, req2, requestContext);
-                final ProcessResponse processResponse;
-                //
-                if (resp instanceof SignatureResponse) {
-                    SignatureResponse sigResp = (SignatureResponse) resp;
-                    processResponse = new GenericSignResponse(
-                            sigResp.getRequestID(),
-                            responseData.toReadableData().getAsByteArray(),
-                            sigResp.getSignerCertificate(),
-                            sigResp.getArchiveId(),
-                            sigResp.getArchivables()
-                    );
-                } else if (resp instanceof DocumentValidationResponse) {
-                    DocumentValidationResponse docResp = (DocumentValidationResponse) resp;
-                    processResponse = new GenericValidationResponse(
-                            docResp.getRequestID(),
-                            docResp.isValid(),
-                            convert(docResp.getCertificateValidationResponse()),
-                            requestData.getAsByteArray()
-                    );
-                } else if (resp instanceof CertificateValidationResponse) {
-                    CertificateValidationResponse certResp = (CertificateValidationResponse) resp;
-                    processResponse = new ValidateResponse(
-                            certResp.getValidation(),
-                            certResp.getValidCertificatePurposes()
-                    );
-                } else if (resp instanceof SODResponse) {
-                    SODResponse sodResp = (SODResponse) resp;
-                    processResponse = new SODSignResponse(
-                            sodResp.getRequestID(),
-                            responseData.toReadableData().getAsByteArray(),
-                            sodResp.getSignerCertificate(),
-                            sodResp.getArchiveId(),
-                            sodResp.getArchivables()
-                    );
-                } else if (resp instanceof LegacyResponse) {
-                    processResponse = ((LegacyResponse) resp).getLegacyResponse();
-                } else {
-                    throw new SignServerException("Unexpected response type: " + resp);
+        }
+        if (wi.hasName()) {
+            logMap.put(IWorkerLogger.LOG_WORKER_NAME, new Loggable() {
+                @Override
+                public String toString() {
+                    return wi.getName();
                 }
-                //
-                ProcessResponseWS wsResponse = new ProcessResponseWS();
-                if (processResponse instanceof GenericSignResponse) {
-                    GenericSignResponse sigResp = (GenericSignResponse) processResponse;
-                    wsResponse.setRequestID(sigResp.getRequestID());
-                    try {
-                        wsResponse.setWorkerCertificate(new Certificate(sigResp.getSignerCertificate()));
-                        wsResponse.setWorkerCertificateChain(signerCertificateChain);
-                    } catch (CertificateEncodingException e) {
-                        LOG.error(e);
-                    }
+            });
+        }
+        if (wi.hasId()) {
+            logMap.put(IWorkerLogger.LOG_WORKER_ID, new Loggable() {
+                @Override
+                public String toString() {
+                    return String.valueOf(wi.getId());
                 }
-                //
+            });
+        }
+        // TODO: Duplicated in SignServerWS, AdminWS, ProcessSessionBean (remote)
+        CloseableReadableData requestData = null;
+        CloseableWritableData responseData = null;
+        int requestID;
+        try {
+            final Request req2;
+            // Use the new request types with large file support for
+            // GenericSignRequest and GenericValidationRequest
+            if (req instanceof GenericSignRequest) {
+                byte[] data = ((GenericSignRequest) req).getRequestData();
+                requestID = ((GenericSignRequest) req).getRequestID();
+                // Upload handling (Note: close in finally clause)
+                requestData = dataFactory.createReadableData(
+                        data,
+                        uploadConfig.getMaxUploadSize(),
+                        uploadConfig.getRepository()
+                );
+                responseData = dataFactory.createWritableData(requestData, uploadConfig.getRepository());
+                req2 = new SignatureRequest(requestID, requestData, responseData);
+            } else if (req instanceof GenericValidationRequest) {
+                byte[] data = ((GenericValidationRequest) req).getRequestData();
+                requestID = ((GenericValidationRequest) req).getRequestID();
+                // Upload handling (Note: close in finally clause)
+                requestData = dataFactory.createReadableData(
+                        data,
+                        uploadConfig.getMaxUploadSize(),
+                        uploadConfig.getRepository()
+                );
+                req2 = new DocumentValidationRequest(requestID, requestData);
+            } else if (req instanceof ValidateRequest) {
+                final ValidateRequest vr = (ValidateRequest) req;
+                // Upload handling
+                req2 = new CertificateValidationRequest(vr.getCertificate(), vr.getCertPurposesString());
+            } else if (req instanceof SODSignRequest) {
+                SODSignRequest sodReq = (SODSignRequest) req;
+                req2 = new SODRequest(
+                        sodReq.getRequestID(),
+                        sodReq.getDataGroupHashes(),
+                        sodReq.getLdsVersion(),
+                        sodReq.getUnicodeVersion(),
+                        responseData
+                );
+            } else {
+                // Passthroughs for all legacy requests
+                req2 = new LegacyRequest(req);
+            }
+
+            final Response resp = getProcessSession().process(
+                    new AdminInfo("Client user", null, null),
+                    wi, req2, requestContext);
+            final ProcessResponse processResponse;
+            //
+            if (resp instanceof SignatureResponse) {
+                SignatureResponse sigResp = (SignatureResponse) resp;
+                processResponse = new GenericSignResponse(
+                        sigResp.getRequestID(),
+                        responseData.toReadableData().getAsByteArray(),
+                        sigResp.getSignerCertificate(),
+                        sigResp.getArchiveId(),
+                        sigResp.getArchivables()
+                );
+            } else if (resp instanceof DocumentValidationResponse) {
+                DocumentValidationResponse docResp = (DocumentValidationResponse) resp;
+                processResponse = new GenericValidationResponse(
+                        docResp.getRequestID(),
+                        docResp.isValid(),
+                        convert(docResp.getCertificateValidationResponse()),
+                        requestData.getAsByteArray()
+                );
+            } else if (resp instanceof CertificateValidationResponse) {
+                CertificateValidationResponse certResp = (CertificateValidationResponse) resp;
+                processResponse = new ValidateResponse(
+                        certResp.getValidation(),
+                        certResp.getValidCertificatePurposes()
+                );
+            } else if (resp instanceof SODResponse) {
+                SODResponse sodResp = (SODResponse) resp;
+                processResponse = new SODSignResponse(
+                        sodResp.getRequestID(),
+                        responseData.toReadableData().getAsByteArray(),
+                        sodResp.getSignerCertificate(),
+                        sodResp.getArchiveId(),
+                        sodResp.getArchivables()
+                );
+            } else if (resp instanceof LegacyResponse) {
+                processResponse = ((LegacyResponse) resp).getLegacyResponse();
+            } else {
+                throw new SignServerException("Unexpected response type: " + resp);
+            }
+            //
+            ProcessResponseWS wsResponse = new ProcessResponseWS();
+            if (processResponse instanceof GenericSignResponse) {
+                GenericSignResponse sigResp = (GenericSignResponse) processResponse;
+                wsResponse.setRequestID(sigResp.getRequestID());
                 try {
-                    wsResponse.setResponseData(RequestAndResponseManager.serializeProcessResponse(processResponse));
-                } catch (IOException e1) {
-                    LOG.error("Error parsing process response", e1);
-                    throw new SignServerException(e1.getMessage());
+                    wsResponse.setWorkerCertificate(new Certificate(sigResp.getSignerCertificate()));
+                    wsResponse.setWorkerCertificateChain(signerCertificateChain);
+                } catch (CertificateEncodingException e) {
+                    LOG.error(e);
                 }
+            }
+            //
+            try {
+                wsResponse.setResponseData(RequestAndResponseManager.serializeProcessResponse(processResponse));
+            } catch (IOException e1) {
+                LOG.error("Error parsing process response", e1);
+                throw new SignServerException(e1.getMessage());
+            }
 
-                returnValues.add(wsResponse);
-            } catch (FileUploadBase.SizeLimitExceededException ex) {
-                LOG.error("Maximum content length exceeded: " + ex.getLocalizedMessage());
-                throw new IllegalRequestException("Maximum content length exceeded");
-            } catch (FileUploadException ex) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Upload failed", ex);
+            return wsResponse;
+        } catch (FileUploadBase.SizeLimitExceededException ex) {
+            LOG.error("Maximum content length exceeded: " + ex.getLocalizedMessage());
+            throw new IllegalRequestException("Maximum content length exceeded");
+        } catch (FileUploadException ex) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Upload failed", ex);
+            }
+            throw new IllegalRequestException("Upload failed: " + ex.getLocalizedMessage());
+        } catch (IOException ex) {
+            throw new SignServerException("IO error", ex);
+        } finally {
+            if (requestData != null) {
+                try {
+                    requestData.close();
+                } catch (IOException ex) {
+                    LOG.error("Unable to remove temporary upload file: " + ex.getLocalizedMessage());
                 }
-                throw new IllegalRequestException("Upload failed: " + ex.getLocalizedMessage());
-            } catch (IOException ex) {
-                throw new SignServerException("IO error", ex);
-            } finally {
-                if (requestData != null) {
-                    try {
-                        requestData.close();
-                    } catch (IOException ex) {
-                        LOG.error("Unable to remove temporary upload file: " + ex.getLocalizedMessage());
-                    }
+            }
+            if (responseData != null) {
+                try {
+                    responseData.close();
+                } catch (IOException ex) {
+                    LOG.error("Unable to remove temporary response file: " + ex.getLocalizedMessage());
                 }
-                if (responseData != null) {
-                    try {
-                        responseData.close();
-                    } catch (IOException ex) {
-                        LOG.error("Unable to remove temporary response file: " + ex.getLocalizedMessage());
-                    }
+            }
+        }
+    }
+
+    /**
+     * Reads a non-negative integer batch setting from the global configuration.
+     */
+    private static int getBatchSetting(final GlobalConfiguration globalConfiguration, final String property, final int defaultValue) {
+        final String value = globalConfiguration.getProperty(GlobalConfiguration.SCOPE_GLOBAL, property);
+        int result = defaultValue;
+        if (value != null) {
+            try {
+                result = Integer.parseInt(value.trim());
+                if (result < 0) {
+                    LOG.error("Incorrect value for global configuration property " + property + ": " + value);
+                    result = defaultValue;
                 }
+            } catch (NumberFormatException ex) {
+                LOG.error("Incorrect value for global configuration property " + property + ": " + ex.getLocalizedMessage());
             }
         }
-        return returnValues;
+        return result;
     }
 
     private ArrayList<Certificate> getSignerCertificateChain(WorkerIdentifier wi) throws InvalidWorkerIdException {
@@ -0,0 +1,854 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.protocol.ws.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import jakarta.enterprise.concurrent.ContextService;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.ServletConnection;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpUpgradeHandler;
+import jakarta.servlet.http.Part;
+import jakarta.xml.ws.EndpointReference;
+import jakarta.xml.ws.WebServiceContext;
+import jakarta.xml.ws.handler.MessageContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signserver.common.GenericSignRequest;
+import org.signserver.common.GenericSignResponse;
+import org.signserver.common.GlobalConfiguration;
+import org.signserver.common.IllegalRequestException;
+import org.signserver.common.RequestAndResponseManager;
+import org.signserver.common.RequestContext;
+import org.signserver.common.RequestMetadata;
+import org.signserver.common.ResyncException;
+import org.signserver.common.SignServerException;
+import org.signserver.common.WorkerConfig;
+import org.signserver.common.WorkerIdentifier;
+import org.signserver.common.WorkerStatus;
+import org.signserver.common.data.Request;
+import org.signserver.common.data.Response;
+import org.signserver.common.data.SignatureRequest;
+import org.signserver.common.data.SignatureResponse;
+import org.signserver.ejb.interfaces.GlobalConfigurationSessionLocal;
+import org.signserver.ejb.interfaces.ProcessSessionLocal;
+import org.signserver.protocol.ws.ProcessRequestWS;
+import org.signserver.protocol.ws.ProcessResponseWS;
+import org.signserver.server.log.AdminInfo;
+import org.signserver.server.log.LogMap;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for processing of batches in SignServerWS.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class SignServerWSUnitTest {
+
+    private static final String WORKER = "TestSigner";
+
+    private final Properties globalProperties = new Properties();
+
+    /** Requests seen by the process session in the order started. */
+    private final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+    /** Request contexts seen by the process session. */
+    private final Set<RequestContext> contexts = Collections.newSetFromMap(Collections.synchronizedMap(new IdentityHashMap<>()));
+
+    /** Log maps seen by the process session. */
+    private final Set<LogMap> logMaps = Collections.newSetFromMap(Collections.synchronizedMap(new IdentityHashMap<>()));
+
+    /** Names of the threads used for processing. */
+    private final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final AtomicInteger maxInProgress = new AtomicInteger();
+
+    private ExecutorService executorService;
+    private SignServerWS instance;
+
+    @Before
+    public void setUp() throws Exception {
+        executorService = Executors.newCachedThreadPool();
+        instance = new SignServerWS(new MockedWebServiceContext(),
+                new MockedManagedExecutorService(executorService),
+                new MockedGlobalConfigurationSession(globalProperties),
+                new WorkerSessionLocalMock() {
+                    @Override
+                    public WorkerStatus getStatus(WorkerIdentifier wi) {
+                        return new WorkerStatus(1, Collections.emptyList(), new WorkerConfig()) {
+                            @Override
+                            public void displayStatus(PrintStream out, boolean complete) {
+                            }
+                        };
+                    }
+                },
+                new ProcessSessionLocal() {
+                    @Override
+                    public Response process(AdminInfo adminInfo, WorkerIdentifier wi, Request request, RequestContext requestContext)
+                            throws IllegalRequestException, SignServerException {
+                        try {
+                            return SignServerWSUnitTest.this.process((SignatureRequest) request, requestContext);
+                        } catch (IllegalRequestException | SignServerException ex) {
+                            throw ex;
+                        } catch (Exception ex) {
+                            throw new SignServerException("Processing failed", ex);
+                        }
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executorService.shutdownNow();
+        assertTrue("executor terminated", executorService.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Tests that the responses are returned in the order of the requests
+     * when processed one by one and when processed concurrently with the
+     * first requests taking the longest time.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testOrderPreserved() throws Exception {
+        final List<ProcessRequestWS> requests = createRequests("sleep50", "sleep30", "sleep10", "d", "e", "f");
+
+        assertEquals("sequential", "[SLEEP50, SLEEP30, SLEEP10, D, E, F]", responses(instance.process(WORKER, requests)).toString());
+        assertEquals("one thread", Collections.singleton(Thread.currentThread().getName()), threads);
+
+        globalProperties.setProperty(GlobalConfiguration.SCOPE_GLOBAL + SignServerWS.WS_PROCESS_BATCH_THREADS, "3");
+        threads.clear();
+        assertEquals("concurrent", "[SLEEP50, SLEEP30, SLEEP10, D, E, F]", responses(instance.process(WORKER, requests)).toString());
+        assertTrue("several threads: " + threads, threads.size() > 1);
+        assertTrue("at most 3 in progress: " + maxInProgress, maxInProgress.get() <= 3);
+    }
+
+    /**
+     * Tests that each request of a batch gets its own request context and
+     * log map with its own metadata.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testRequestContextIsolation() throws Exception {
+        globalProperties.setProperty(GlobalConfiguration.SCOPE_GLOBAL + SignServerWS.WS_PROCESS_BATCH_THREADS, "4");
+        final List<ProcessRequestWS> requests = createRequests("a", "b", "c", "d", "e", "f", "g", "h");
+
+        assertEquals("responses", "[A, B, C, D, E, F, G, H]", responses(instance.process(WORKER, requests)).toString());
+        assertEquals("request contexts", requests.size(), contexts.size());
+        assertEquals("log maps", requests.size(), logMaps.size());
+    }
+
+    /**
+     * Tests that a failing request stops the batch and that its failure is
+     * the one thrown.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testFailingRequestMidBatch() throws Exception {
+        final List<ProcessRequestWS> requests = createRequests("a", "b", "fail", "d", "e", "f");
+        try {
+            instance.process(WORKER, requests);
+            fail("Should have thrown IllegalRequestException");
+        } catch (IllegalRequestException expected) {
+            assertEquals("message", "Failing request", expected.getMessage());
+        }
+        assertEquals("stopped at the failure", "[a, b, fail]", processed.toString());
+
+        globalProperties.setProperty(GlobalConfiguration.SCOPE_GLOBAL + SignServerWS.WS_PROCESS_BATCH_THREADS, "2");
+        processed.clear();
+        try {
+            instance.process(WORKER, createRequests("a", "b", "fail", "sleep50", "sleep50", "sleep50", "sleep50", "sleep50", "sleep50"));
+            fail("Should have thrown IllegalRequestException");
+        } catch (IllegalRequestException expected) {
+            assertEquals("message", "Failing request", expected.getMessage());
+        }
+        assertTrue("not all processed: " + processed, processed.size() < 9);
+    }
+
+    /**
+     * Tests that a batch with more requests than the configured maximum is
+     * rejected without processing any of them.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testMaxRequests() throws Exception {
+        globalProperties.setProperty(GlobalConfiguration.SCOPE_GLOBAL + SignServerWS.WS_PROCESS_BATCH_MAX_REQUESTS, "3");
+
+        assertEquals("responses", "[A, B, C]", responses(instance.process(WORKER, createRequests("a", "b", "c"))).toString());
+
+        processed.clear();
+        try {
+            instance.process(WORKER, createRequests("a", "b", "c", "d"));
+            fail("Should have thrown IllegalRequestException");
+        } catch (IllegalRequestException expected) { // NOPMD
+            // OK
+        }
+        assertTrue("nothing processed: " + processed, processed.isEmpty());
+    }
+
+    /**
+     * Tests that requests not getting one of the node permits are processed
+     * in the calling thread and that the permits limit the number of
+     * requests in progress.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testNodeThreads() throws Exception {
+        globalProperties.setProperty(GlobalConfiguration.SCOPE_GLOBAL + SignServerWS.WS_PROCESS_BATCH_THREADS, "4");
+        globalProperties.setProperty(GlobalConfiguration.SCOPE_GLOBAL + SignServerWS.WS_PROCESS_BATCH_NODE_THREADS, "1");
+        final List<ProcessRequestWS> requests = createRequests("sleep20", "sleep20", "sleep20", "sleep20", "sleep20", "sleep20");
+
+        assertEquals("responses", "[SLEEP20, SLEEP20, SLEEP20, SLEEP20, SLEEP20, SLEEP20]", responses(instance.process(WORKER, requests)).toString());
+        assertTrue("calling thread used: " + threads, threads.contains(Thread.currentThread().getName()));
+        assertTrue("at most one executor thread and the calling thread: " + maxInProgress, maxInProgress.get() <= 2);
+
+        globalProperties.setProperty(GlobalConfiguration.SCOPE_GLOBAL + SignServerWS.WS_PROCESS_BATCH_NODE_THREADS, "0");
+        threads.clear();
+        assertEquals("responses", "[A, B]", responses(instance.process(WORKER, createRequests("a", "b"))).toString());
+        assertEquals("only calling thread", Collections.singleton(Thread.currentThread().getName()), threads);
+    }
+
+    private Response process(final SignatureRequest request, final RequestContext requestContext) throws Exception {
+        final String data = new String(request.getRequestData().getAsByteArray(), StandardCharsets.UTF_8);
+        final int current = inProgress.incrementAndGet();
+        maxInProgress.accumulateAndGet(current, Math::max);
+        try {
+            processed.add(data);
+            threads.add(Thread.currentThread().getName());
+            contexts.add(requestContext);
+            logMaps.add(LogMap.getInstance(requestContext));
+            assertEquals("file name of this request", data + ".txt", requestContext.get(RequestContext.FILENAME));
+            if ("fail".equals(data)) {
+                throw new IllegalRequestException("Failing request");
+            }
+            if (data.startsWith("sleep")) {
+                Thread.sleep(Long.parseLong(data.substring("sleep".length())));
+            }
+            try (OutputStream out = request.getResponseData().getAsOutputStream()) {
+                out.write(data.toUpperCase().getBytes(StandardCharsets.UTF_8));
+            }
+            return new SignatureResponse(request.getRequestID(), request.getResponseData(), null, null, null, "text/plain");
+        } finally {
+            inProgress.decrementAndGet();
+        }
+    }
+
+    private static List<ProcessRequestWS> createRequests(final String... datas) throws Exception {
+        final List<ProcessRequestWS> result = new ArrayList<>();
+        int requestId = 0;
+        for (String data : datas) {
+            final ProcessRequestWS request = new ProcessRequestWS(RequestAndResponseManager.serializeProcessRequest(
+                    new GenericSignRequest(++requestId, data.getBytes(StandardCharsets.UTF_8))));
+            final RequestMetadata metadata = new RequestMetadata();
+            metadata.put(RequestContext.FILENAME, data + ".txt");
+            request.setRequestMetadata(metadata);
+            result.add(request);
+        }
+        return result;
+    }
+
+    private static List<String> responses(final Iterable<ProcessResponseWS> responses) throws Exception {
+        final List<String> result = new ArrayList<>();
+        for (ProcessResponseWS response : responses) {
+            final GenericSignResponse signResponse = (GenericSignResponse) RequestAndResponseManager.parseProcessResponse(response.getResponseData());
+            result.add(new String(signResponse.getProcessedData(), StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    /** Web service context of a request from the local host. */
+    private static class MockedWebServiceContext implements WebServiceContext {
+
+        @Override
+        public MessageContext getMessageContext() {
+            final MockedMessageContext context = new MockedMessageContext();
+            context.put(MessageContext.SERVLET_REQUEST, new MockedHttpServletRequest());
+            return context;
+        }
+
+        @Override
+        public Principal getUserPrincipal() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean isUserInRole(String role) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public EndpointReference getEndpointReference(Element... referenceParameters) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public <T extends EndpointReference> T getEndpointReference(Class<T> clazz, Element... referenceParameters) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+    }
+
+    /** Message context holding the properties put into it. */
+    private static class MockedMessageContext extends HashMap<String, Object> implements MessageContext {
+
+        @Override
+        public void setScope(String name, Scope scope) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public Scope getScope(String name) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+    }
+
+    /** Plain HTTP request without client certificate, query string or headers. */
+    private static class MockedHttpServletRequest implements HttpServletRequest {
+
+        @Override
+        public String getAuthType() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public Cookie[] getCookies() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public long getDateHeader(String name) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return null;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public int getIntHeader(String name) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getMethod() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getPathInfo() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getPathTranslated() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getContextPath() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getQueryString() {
+            return null;
+        }
+
+        @Override
+        public String getRemoteUser() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean isUserInRole(String name) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public Principal getUserPrincipal() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getRequestURI() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public StringBuffer getRequestURL() {
+            return new StringBuffer("http://localhost:8080/signserver/SignServerWSService/SignServerWS");
+        }
+
+        @Override
+        public String getServletPath() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public HttpSession getSession() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String changeSessionId() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromCookie() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromURL() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean authenticate(HttpServletResponse response) throws IOException, ServletException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void login(String username, String password) throws ServletException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void logout() throws ServletException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public Collection<Part> getParts() throws IOException, ServletException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public Part getPart(String name) throws IOException, ServletException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public <T extends HttpUpgradeHandler> T upgrade(Class<T> handlerClass) throws IOException, ServletException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return null;
+        }
+
+        @Override
+        public Enumeration<String> getAttributeNames() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getCharacterEncoding() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void setCharacterEncoding(String env) throws UnsupportedEncodingException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public int getContentLength() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getContentType() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getParameter(String name) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public Enumeration<String> getParameterNames() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String[] getParameterValues(String name) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getProtocol() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getScheme() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getServerName() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public int getServerPort() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            return "127.0.0.1";
+        }
+
+        @Override
+        public String getRemoteHost() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void setAttribute(String name, Object o) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void removeAttribute(String name) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public Locale getLocale() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public Enumeration<Locale> getLocales() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean isSecure() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public RequestDispatcher getRequestDispatcher(String name) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public int getRemotePort() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getLocalName() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getLocalAddr() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public int getLocalPort() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public ServletContext getServletContext() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public AsyncContext startAsync() throws IllegalStateException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) throws IllegalStateException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean isAsyncStarted() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean isAsyncSupported() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public AsyncContext getAsyncContext() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public DispatcherType getDispatcherType() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getRequestId() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public String getProtocolRequestId() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public ServletConnection getServletConnection() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+    }
+
+    /** Global configuration session returning the given global properties. */
+    private static class MockedGlobalConfigurationSession implements GlobalConfigurationSessionLocal {
+
+        private final Properties properties;
+
+        MockedGlobalConfigurationSession(final Properties properties) {
+            this.properties = properties;
+        }
+
+        @Override
+        public GlobalConfiguration getGlobalConfiguration() {
+            return new GlobalConfiguration(properties, GlobalConfiguration.STATE_INSYNC, "test");
+        }
+
+        @Override
+        public void setProperty(String scope, String key, String value) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean removeProperty(String scope, String key) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void resync() throws ResyncException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void reload() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void setProperty(AdminInfo adminInfo, String scope, String key, String value) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public boolean removeProperty(AdminInfo adminInfo, String scope, String key) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void resync(AdminInfo adminInfo) throws ResyncException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public void reload(AdminInfo adminInfo) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+    }
+
+    /** Managed executor running the tasks using the given executor. */
+    private static class MockedManagedExecutorService extends AbstractExecutorService implements ManagedExecutorService {
+
+        private final ExecutorService delegate;
+
+        MockedManagedExecutorService(final ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(command);
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public <U> CompletableFuture<U> completedFuture(U value) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public <U> CompletionStage<U> completedStage(U value) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public <T> CompletableFuture<T> copy(CompletableFuture<T> stage) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public <T> CompletionStage<T> copy(CompletionStage<T> stage) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public <U> CompletableFuture<U> failedFuture(Throwable ex) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public <U> CompletionStage<U> failedStage(Throwable ex) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public ContextService getContextService() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public <U> CompletableFuture<U> newIncompleteFuture() {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public CompletableFuture<Void> runAsync(Runnable runnable) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public <U> CompletableFuture<U> supplyAsync(Supplier<U> supplier) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.benchmark;
+
+import jakarta.persistence.EntityManager;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signserver.common.RequestContext;
+import org.signserver.common.WorkerConfig;
+import org.signserver.server.SignServerContext;
+import org.signserver.server.archive.Archivable;
+import org.signserver.server.archive.DefaultArchivable;
+import org.signserver.server.archive.fsarchiver.FileSystemArchiver;
+import org.signserver.server.data.impl.ByteArrayReadableData;
+import org.signserver.server.data.impl.UploadConfig;
+
+/**
+ * Throughput of the FileSystemArchiver archiving responses of different sizes.
+ *
+ * The content is written to a temporary directory and synced to disk as in
+ * a real deployment while the reference that would be stored in the
+ * database is discarded. The archived files are removed after each
+ * iteration.
+ *
+ * @author agent
+ * @version $Id$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j1.compatibility=true")
+public class ArchiverBenchmark {
+
+    /** Size of the response to archive in bytes. */
+    @Param({"1024", "65536"})
+    public int payloadSize;
+
+    private Path directory;
+    private FileSystemArchiver archiver;
+    private EntityManager entityManager;
+    private File repository;
+    private byte[] payload;
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("signserver-benchmark-archive-");
+
+        entityManager = new NoOpEntityManager();
+
+        final WorkerConfig config = new WorkerConfig();
+        config.setProperty("ARCHIVER0.ARCHIVE_DIRECTORY", directory.toString());
+        archiver = new FileSystemArchiver();
+        archiver.init(0, config, new SignServerContext(entityManager, null));
+        final List<String> errors = archiver.getFatalErrors();
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Archiver not correctly configured: " + errors);
+        }
+
+        repository = new UploadConfig().getRepository();
+        payload = SignerBenchmarkBase.createPayload(payloadSize);
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeArchived() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .filter(path -> !path.equals(directory))
+                    .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        removeArchived();
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public boolean archive() throws Exception {
+        // Unique content as responses are, otherwise the archiver would
+        // find it already archived
+        final long value = ++counter;
+        for (int i = 0; i < Long.BYTES; i++) {
+            payload[i] = (byte) (value >>> (8 * i));
+        }
+
+        final RequestContext context = new RequestContext();
+        context.put(RequestContext.EM, entityManager);
+        context.put(RequestContext.WORKER_ID, WorkerHarness.WORKER_ID);
+        context.put(RequestContext.REMOTE_IP, "127.0.0.1");
+        final String archiveId = Long.toHexString(value);
+        return archiver.archive(new DefaultArchivable(Archivable.TYPE_RESPONSE,
+                new ByteArrayReadableData(payload, repository), archiveId), context);
+    }
+}
@@ -0,0 +1,128 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.Security;
+import java.security.cert.Certificate;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.signserver.common.WorkerConfig;
+import org.signserver.server.cryptotokens.KeystoreCryptoToken;
+import org.signserver.test.utils.builders.CertBuilder;
+import org.signserver.test.utils.builders.CertExt;
+import org.signserver.test.utils.builders.CryptoUtils;
+
+/**
+ * Temporary PKCS#12 key store with one signing key and one time-stamping key
+ * to be used by the workers under benchmark through a KeystoreCryptoToken.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class BenchmarkKeystore {
+
+    /** Alias of the key with a certificate for signing documents. */
+    public static final String SIGNER_ALIAS = "signer";
+
+    /** Alias of the key with a certificate for time-stamping. */
+    public static final String TSA_ALIAS = "tsa";
+
+    private static final String PASSWORD = "foo123";
+    private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+    private static final int KEY_SIZE = 2048;
+
+    private final File file;
+
+    private BenchmarkKeystore(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Generates the keys and self-signed certificates and stores them in a
+     * new temporary key store file.
+     *
+     * @return the new key store
+     * @throws Exception in case of failure
+     */
+    public static BenchmarkKeystore create() throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+
+        final KeyStore keystore = KeyStore.getInstance("PKCS12", BouncyCastleProvider.PROVIDER_NAME);
+        keystore.load(null, null);
+
+        final KeyPair signerKeyPair = CryptoUtils.generateRSA(KEY_SIZE);
+        final X509CertificateHolder signerCert = new CertBuilder()
+                .setSelfSignKeyPair(signerKeyPair)
+                .setSubject("CN=Benchmark Signer")
+                .setSignatureAlgorithm(SIGNATURE_ALGORITHM)
+                .addExtension(new CertExt(Extension.keyUsage, true, new KeyUsage(KeyUsage.digitalSignature | KeyUsage.nonRepudiation)))
+                .build();
+        keystore.setKeyEntry(SIGNER_ALIAS, signerKeyPair.getPrivate(), PASSWORD.toCharArray(),
+                new Certificate[] {new JcaX509CertificateConverter().getCertificate(signerCert)});
+
+        final KeyPair tsaKeyPair = CryptoUtils.generateRSA(KEY_SIZE);
+        final X509CertificateHolder tsaCert = new CertBuilder()
+                .setSelfSignKeyPair(tsaKeyPair)
+                .setSubject("CN=Benchmark TSA")
+                .setSignatureAlgorithm(SIGNATURE_ALGORITHM)
+                .addExtension(new CertExt(Extension.keyUsage, true, new KeyUsage(KeyUsage.digitalSignature)))
+                .addExtension(new CertExt(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(KeyPurposeId.id_kp_timeStamping)))
+                .build();
+        keystore.setKeyEntry(TSA_ALIAS, tsaKeyPair.getPrivate(), PASSWORD.toCharArray(),
+                new Certificate[] {new JcaX509CertificateConverter().getCertificate(tsaCert)});
+
+        final File file = File.createTempFile("signserver-benchmark-", ".p12");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file)) {
+            keystore.store(out, PASSWORD.toCharArray());
+        }
+        return new BenchmarkKeystore(file);
+    }
+
+    /**
+     * Configures a worker to use a KeystoreCryptoToken with this key store.
+     *
+     * @param config to set the crypto token properties in
+     * @param alias of the key to use by default
+     */
+    public void configure(final WorkerConfig config, final String alias) {
+        config.setProperty(WorkerConfig.CRYPTOTOKEN_IMPLEMENTATION_CLASS, KeystoreCryptoToken.class.getName());
+        config.setProperty(KeystoreCryptoToken.KEYSTORETYPE, KeystoreCryptoToken.TYPE_PKCS12);
+        config.setProperty(KeystoreCryptoToken.KEYSTOREPATH, file.getAbsolutePath());
+        config.setProperty(KeystoreCryptoToken.KEYSTOREPASSWORD, PASSWORD);
+        config.setProperty(KeystoreCryptoToken.DEFAULTKEY, alias);
+    }
+
+    /**
+     * Removes the key store file.
+     *
+     * @throws IOException in case of failure
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+}
@@ -0,0 +1,52 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.signserver.common.WorkerConfig;
+import org.signserver.module.cmssigner.CMSSigner;
+import org.signserver.server.IProcessable;
+
+/**
+ * Throughput of the CMSSigner creating CMS signatures of data of different
+ * sizes, with the data encapsulated or detached.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class CMSSignerBenchmark extends SignerBenchmarkBase {
+
+    /** Size of the data to sign in bytes. */
+    @Param({"1024", "65536", "1048576"})
+    public int payloadSize;
+
+    /** If the signature should be detached instead of encapsulating the data. */
+    @Param({"false", "true"})
+    public boolean detached;
+
+    @Override
+    protected IProcessable createWorker() {
+        return new CMSSigner();
+    }
+
+    @Override
+    protected void configure(final WorkerConfig config) {
+        config.setProperty(CMSSigner.SIGNATUREALGORITHM_PROPERTY, "SHA256withRSA");
+        config.setProperty(CMSSigner.DETACHEDSIGNATURE_PROPERTY, String.valueOf(detached));
+    }
+
+    @Override
+    protected byte[] createRequest() {
+        return createPayload(payloadSize);
+    }
+}
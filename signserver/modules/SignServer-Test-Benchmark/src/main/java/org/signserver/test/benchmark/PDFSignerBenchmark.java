@@ -0,0 +1,67 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.benchmark;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfWriter;
+import java.io.ByteArrayOutputStream;
+import org.bouncycastle.util.encoders.Hex;
+import org.openjdk.jmh.annotations.Param;
+import org.signserver.common.WorkerConfig;
+import org.signserver.module.pdfsigner.PDFSigner;
+import org.signserver.server.IProcessable;
+
+/**
+ * Throughput of the PDFSigner signing PDF documents of different sizes.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class PDFSignerBenchmark extends SignerBenchmarkBase {
+
+    /** Bytes of random data in each paragraph, hex encoded in the document. */
+    private static final int PARAGRAPH_SIZE = 32;
+
+    /** Approximate size of the PDF document to sign in bytes. */
+    @Param({"1024", "65536", "1048576"})
+    public int payloadSize;
+
+    @Override
+    protected IProcessable createWorker() {
+        return new PDFSigner();
+    }
+
+    @Override
+    protected void configure(final WorkerConfig config) {
+        config.setProperty(PDFSigner.DIGESTALGORITHM, "SHA256");
+    }
+
+    @Override
+    protected byte[] createRequest() throws Exception {
+        // Hex encoding and the text operators make each byte take about three
+        final byte[] payload = createPayload(payloadSize / 3);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(payloadSize + 4096);
+        final Document document = new Document();
+        final PdfWriter writer = PdfWriter.getInstance(document, out);
+
+        // Without compression the size of the document follows the payload
+        writer.setCompressionLevel(0);
+        document.open();
+        for (int offset = 0; offset < payload.length; offset += PARAGRAPH_SIZE) {
+            document.add(new Paragraph(Hex.toHexString(payload, offset, Math.min(PARAGRAPH_SIZE, payload.length - offset))));
+        }
+        document.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,46 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.signserver.common.WorkerConfig;
+import org.signserver.module.cmssigner.PlainSigner;
+import org.signserver.server.IProcessable;
+
+/**
+ * Throughput of the PlainSigner signing data of different sizes.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class PlainSignerBenchmark extends SignerBenchmarkBase {
+
+    /** Size of the data to sign in bytes. */
+    @Param({"1024", "65536", "1048576"})
+    public int payloadSize;
+
+    @Override
+    protected IProcessable createWorker() {
+        return new PlainSigner();
+    }
+
+    @Override
+    protected void configure(final WorkerConfig config) {
+        config.setProperty(PlainSigner.SIGNATUREALGORITHM_PROPERTY, "SHA256withRSA");
+    }
+
+    @Override
+    protected byte[] createRequest() {
+        return createPayload(payloadSize);
+    }
+}
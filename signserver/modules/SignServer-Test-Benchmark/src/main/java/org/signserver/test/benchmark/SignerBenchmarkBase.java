@@ -0,0 +1,118 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signserver.common.WorkerConfig;
+import org.signserver.common.WorkerType;
+import org.signserver.common.data.Response;
+import org.signserver.common.util.PropertiesConstants;
+import org.signserver.server.IProcessable;
+
+/**
+ * Base class for benchmarks of the throughput of one signer processing
+ * requests in-process.
+ *
+ * The signer uses a KeystoreCryptoToken with a generated key store and runs
+ * without database. Run with "-prof gc" to also get the allocation rate.
+ *
+ * @author agent
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j1.compatibility=true")
+public abstract class SignerBenchmarkBase {
+
+    private BenchmarkKeystore keystore;
+    private WorkerHarness harness;
+    private byte[] request;
+
+    /**
+     * @return a new instance of the signer to benchmark
+     */
+    protected abstract IProcessable createWorker();
+
+    /**
+     * Sets the worker properties specific for the signer.
+     *
+     * @param config to set the properties in
+     */
+    protected abstract void configure(WorkerConfig config);
+
+    /**
+     * @return the request to send to the signer in each invocation
+     * @throws Exception in case the request could not be created
+     */
+    protected abstract byte[] createRequest() throws Exception;
+
+    /**
+     * @return alias of the key in the key store to use
+     */
+    protected String getKeyAlias() {
+        return BenchmarkKeystore.SIGNER_ALIAS;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        keystore = BenchmarkKeystore.create();
+        final IProcessable worker = createWorker();
+        final WorkerConfig config = new WorkerConfig();
+        config.setProperty(PropertiesConstants.NAME, "Benchmark" + worker.getClass().getSimpleName());
+        config.setProperty(WorkerConfig.TYPE, WorkerType.PROCESSABLE.name());
+        config.setProperty(WorkerConfig.PROPERTY_AUTHTYPE, IProcessable.AUTHTYPE_NOAUTH);
+        keystore.configure(config, getKeyAlias());
+        configure(config);
+        harness = new WorkerHarness(worker, config);
+        request = createRequest();
+
+        // Fail early instead of measuring errors
+        harness.process(request);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        keystore.delete();
+    }
+
+    @Benchmark
+    public Response process() throws Exception {
+        return harness.process(request);
+    }
+
+    /**
+     * @param size number of bytes
+     * @return random bytes from a fixed seed so that runs are comparable
+     */
+    protected static byte[] createPayload(final int size) {
+        final byte[] result = new byte[size];
+        new Random(size).nextBytes(result);
+        return result;
+    }
+}
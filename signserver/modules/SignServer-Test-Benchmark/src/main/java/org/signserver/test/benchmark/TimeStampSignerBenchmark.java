@@ -0,0 +1,65 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.benchmark;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import org.bouncycastle.tsp.TSPAlgorithms;
+import org.bouncycastle.tsp.TimeStampRequestGenerator;
+import org.openjdk.jmh.annotations.Param;
+import org.signserver.common.WorkerConfig;
+import org.signserver.module.tsa.TimeStampSigner;
+import org.signserver.server.IProcessable;
+
+/**
+ * Throughput of the TimeStampSigner issuing RFC#3161 time-stamp tokens.
+ *
+ * The request only contains the digest of the data so the size of the data
+ * does not matter, instead the benchmark is run with and without requesting
+ * the certificate to be included in the token.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class TimeStampSignerBenchmark extends SignerBenchmarkBase {
+
+    private static final String TSA_POLICY_OID = "1.2.3";
+
+    /** If the TSA certificate should be included in the response. */
+    @Param({"false", "true"})
+    public boolean certReq;
+
+    @Override
+    protected IProcessable createWorker() {
+        return new TimeStampSigner();
+    }
+
+    @Override
+    protected String getKeyAlias() {
+        return BenchmarkKeystore.TSA_ALIAS;
+    }
+
+    @Override
+    protected void configure(final WorkerConfig config) {
+        config.setProperty(TimeStampSigner.DEFAULTTSAPOLICYOID, TSA_POLICY_OID);
+        config.setProperty(TimeStampSigner.ACCEPTANYPOLICY, "true");
+    }
+
+    @Override
+    protected byte[] createRequest() throws Exception {
+        final TimeStampRequestGenerator generator = new TimeStampRequestGenerator();
+        generator.setCertReq(certReq);
+        final byte[] digest = MessageDigest.getInstance("SHA-256").digest(createPayload(1024));
+        return generator.generate(TSPAlgorithms.SHA256, digest, BigInteger.valueOf(4242)).getEncoded();
+    }
+}
@@ -0,0 +1,121 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.benchmark;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.signserver.common.RequestContext;
+import org.signserver.common.RequestMetadata;
+import org.signserver.common.WorkerConfig;
+import org.signserver.common.data.Response;
+import org.signserver.common.data.SignatureRequest;
+import org.signserver.ejb.interfaces.GlobalConfigurationSessionLocal;
+import org.signserver.server.IProcessable;
+import org.signserver.server.IServices;
+import org.signserver.server.SignServerContext;
+import org.signserver.server.data.impl.ByteArrayReadableData;
+import org.signserver.server.data.impl.CloseableReadableData;
+import org.signserver.server.data.impl.CloseableWritableData;
+import org.signserver.server.data.impl.TemporarlyWritableData;
+import org.signserver.server.data.impl.UploadConfig;
+import org.signserver.server.log.LogMap;
+import org.signserver.test.utils.mock.GlobalConfigurationSessionMock;
+import org.signserver.test.utils.mock.KeyUsageCounterServiceMock;
+import org.signserver.test.utils.mock.MockedRequestContext;
+import org.signserver.test.utils.mock.MockedServicesImpl;
+
+/**
+ * Runs one worker in-process, without an application server and without a
+ * database, the same way as the WorkerSessionMock used by the unit tests.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class WorkerHarness {
+
+    /** Worker ID used for all workers under benchmark. */
+    public static final int WORKER_ID = 1000;
+
+    private final IProcessable worker;
+    private final IServices services;
+    private final File repository;
+    private final AtomicInteger requestId = new AtomicInteger();
+
+    /**
+     * Initializes the worker and checks that it is correctly configured.
+     *
+     * @param worker to run
+     * @param config of the worker including the crypto token properties
+     * @throws IllegalStateException in case the worker reports errors
+     */
+    public WorkerHarness(final IProcessable worker, final WorkerConfig config) {
+        this.worker = worker;
+        this.services = new MockedServicesImpl().with(GlobalConfigurationSessionLocal.class, new GlobalConfigurationSessionMock());
+        this.repository = new UploadConfig().getRepository();
+
+        worker.init(WORKER_ID, config, new SignServerContext(null, new KeyUsageCounterServiceMock()), null);
+        final List<String> errors = worker.getStatus(Collections.<String>emptyList(), services).getFatalErrors();
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Worker not correctly configured: " + errors);
+        }
+    }
+
+    /**
+     * @return a new request context for one request, with the same entries
+     * as set up by the worker session before calling the worker
+     */
+    public RequestContext createRequestContext() {
+        final RequestContext context = new MockedRequestContext(services);
+        context.put(RequestContext.TRANSACTION_ID, UUID.randomUUID().toString());
+        context.put(RequestContext.WORKER_ID, WORKER_ID);
+        LogMap.getInstance(context);
+        RequestMetadata.getInstance(context);
+        return context;
+    }
+
+    /**
+     * Lets the worker process one request with the response kept in memory.
+     *
+     * @param requestBytes the request data
+     * @return the response from the worker
+     * @throws Exception in case processing failed
+     */
+    public Response process(final byte[] requestBytes) throws Exception {
+        return process(requestBytes, createRequestContext());
+    }
+
+    /**
+     * Lets the worker process one request with the response kept in memory.
+     *
+     * @param requestBytes the request data
+     * @param context the request context to use
+     * @return the response from the worker
+     * @throws Exception in case processing failed
+     */
+    public Response process(final byte[] requestBytes, final RequestContext context) throws Exception {
+        try (CloseableReadableData requestData = new ByteArrayReadableData(requestBytes, repository);
+             CloseableWritableData responseData = new TemporarlyWritableData(false, repository)) {
+            return worker.processData(new SignatureRequest(requestId.incrementAndGet(), requestData, responseData), context);
+        }
+    }
+
+    /**
+     * @return the services available to the worker
+     */
+    public IServices getServices() {
+        return services;
+    }
+}
@@ -0,0 +1,114 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.benchmark;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signserver.common.RequestContext;
+import org.signserver.common.WorkerConfig;
+import org.signserver.common.WorkerType;
+import org.signserver.common.util.PropertiesConstants;
+import org.signserver.module.cmssigner.CMSSigner;
+import org.signserver.server.IProcessable;
+import org.signserver.server.SignServerContext;
+import org.signserver.server.log.AdminInfo;
+import org.signserver.server.log.IWorkerLogger;
+import org.signserver.server.log.LogMap;
+
+/**
+ * Throughput of the worker loggers writing the log line for one request.
+ *
+ * The log fields are the ones put by a CMSSigner when signing and by the
+ * worker session around it. The worker log is written to a file in the
+ * temporary directory as configured in log4j.properties.
+ *
+ * @author agent
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j1.compatibility=true")
+public class WorkerLoggerBenchmark {
+
+    /** Implementation in the org.signserver.server.log package. */
+    @Param({"NullWorkerLogger", "AllFieldsWorkerLogger", "PatternWorkerLogger"})
+    public String logger;
+
+    private BenchmarkKeystore keystore;
+    private IWorkerLogger instance;
+    private AdminInfo adminInfo;
+    private LogMap fields;
+    private RequestContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final WorkerConfig config = new WorkerConfig();
+        config.setProperty(PropertiesConstants.NAME, "BenchmarkCMSSigner");
+        config.setProperty(WorkerConfig.TYPE, WorkerType.PROCESSABLE.name());
+        config.setProperty(WorkerConfig.PROPERTY_AUTHTYPE, IProcessable.AUTHTYPE_NOAUTH);
+        keystore = BenchmarkKeystore.create();
+        keystore.configure(config, BenchmarkKeystore.SIGNER_ALIAS);
+
+        instance = (IWorkerLogger) Class.forName("org.signserver.server.log." + logger).getDeclaredConstructor().newInstance();
+        instance.init(WorkerHarness.WORKER_ID, config, new SignServerContext());
+        final List<String> errors = instance.getFatalErrors(null);
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Worker logger not correctly configured: " + errors);
+        }
+
+        // Get the log fields from a real request
+        final WorkerHarness harness = new WorkerHarness(new CMSSigner(), config);
+        context = harness.createRequestContext();
+        harness.process(SignerBenchmarkBase.createPayload(1024), context);
+
+        adminInfo = new AdminInfo("CN=Benchmark Client", "CN=Benchmark CA", BigInteger.ONE);
+        fields = LogMap.getInstance(context);
+        fields.put(IWorkerLogger.LOG_TIME, System.currentTimeMillis());
+        fields.put(IWorkerLogger.LOG_ID, context.get(RequestContext.TRANSACTION_ID));
+        fields.put(IWorkerLogger.LOG_CLIENT_IP, "127.0.0.1");
+        fields.put(IWorkerLogger.LOG_WORKER_ID, WorkerHarness.WORKER_ID);
+        fields.put(IWorkerLogger.LOG_WORKER_NAME, "BenchmarkCMSSigner");
+        fields.put(IWorkerLogger.LOG_WORKER_AUTHTYPE, IProcessable.AUTHTYPE_NOAUTH);
+        fields.put(IWorkerLogger.LOG_CLIENT_AUTHORIZED, true);
+        fields.put(IWorkerLogger.LOG_PURCHASED, false);
+        fields.put(IWorkerLogger.LOG_PROCESS_SUCCESS, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        keystore.delete();
+    }
+
+    @Benchmark
+    public LogMap log() throws Exception {
+        instance.log(adminInfo, fields, context);
+        return fields;
+    }
+}
@@ -0,0 +1,52 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.openjdk.jmh.annotations.Param;
+import org.signserver.common.WorkerConfig;
+import org.signserver.module.xades.signer.XAdESSigner;
+import org.signserver.server.IProcessable;
+
+/**
+ * Throughput of the XAdESSigner creating XAdES-BES signatures of XML
+ * documents of different sizes.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class XAdESSignerBenchmark extends SignerBenchmarkBase {
+
+    /** Approximate size of the XML document to sign in bytes. */
+    @Param({"1024", "65536", "1048576"})
+    public int payloadSize;
+
+    @Override
+    protected IProcessable createWorker() {
+        return new XAdESSigner();
+    }
+
+    @Override
+    protected void configure(final WorkerConfig config) {
+        config.setProperty(XAdESSigner.PROPERTY_XADESFORM, "BES");
+    }
+
+    @Override
+    protected byte[] createRequest() {
+        // Base 64 encoding adds a third so start with less data
+        final String data = Base64.getMimeEncoder().encodeToString(createPayload(payloadSize * 3 / 4));
+        return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><document><data>" + data + "</data></document>")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -43,6 +43,7 @@ import org.signserver.common.InvalidWorkerIdException;
 import org.signserver.common.KeyTestResult;
 import org.signserver.common.NoSuchAliasException;
 import org.signserver.common.OperationUnsupportedException;
+import org.signserver.common.ProcessingMetrics;
 import org.signserver.common.QueryException;
 import org.signserver.common.RequestContext;
 import org.signserver.common.SignServerException;
@@ -301,6 +302,11 @@ public class InternalKeystoreCryptoTokenTest extends CryptoTokenTestBase {
                         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
                     }
 
+                    @Override
+                    public List<ArchiveMetadata> searchArchiveAfter(AdminInfo adminInfo, String continuationToken, int max, QueryCriteria criteria, boolean includeData) throws AuthorizationDeniedException {
+                        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+                    }
+
                     @Override
                     public List<ArchiveMetadata> searchArchiveWithIds(AdminInfo adminInfo, List<String> uniqueIds, boolean includeData) throws AuthorizationDeniedException {
                         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -486,6 +492,21 @@ public class InternalKeystoreCryptoTokenTest extends CryptoTokenTestBase {
                         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
                     }
 
+                    @Override
+                    public List<ArchiveMetadata> searchArchiveAfter(String continuationToken, int max, QueryCriteria criteria, boolean includeData) throws AuthorizationDeniedException {
+                        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+                    }
+
+                    @Override
+                    public ProcessingMetrics getProcessingMetrics(WorkerIdentifier workerId) throws InvalidWorkerIdException {
+                        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+                    }
+
+                    @Override
+                    public void resetProcessingMetrics(WorkerIdentifier workerId) throws InvalidWorkerIdException {
+                        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+                    }
+
                     @Override
                     public List<ArchiveMetadata> searchArchiveWithIds(List<String> uniqueIds, boolean includeData) throws AuthorizationDeniedException {
                         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -592,6 +613,11 @@ public class InternalKeystoreCryptoTokenTest extends CryptoTokenTestBase {
                 throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
             }
 
+            @Override
+            public boolean incrementIfWithinLimit(String keyHash, long limit, long amount) {
+                throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+            }
+
             @Override
             public boolean isWithinLimit(String keyHash, long keyUsageLimit) {
                 throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -0,0 +1,165 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.cryptotokens;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.cesecore.util.CertTools;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.signserver.common.AbstractCertReqData;
+import org.signserver.common.GenericSignResponse;
+import org.signserver.common.GlobalConfiguration;
+import org.signserver.common.PKCS10CertReqInfo;
+import org.signserver.common.SignServerUtil;
+import org.signserver.common.WorkerConfig;
+import org.signserver.common.WorkerIdentifier;
+import org.signserver.common.WorkerType;
+import org.signserver.ejb.interfaces.WorkerSession;
+import org.signserver.test.utils.builders.CryptoUtils;
+import org.signserver.testutils.ModulesTestCase;
+
+/**
+ * Tests signing with a ShardedPKCS11CryptoToken spreading the signings over
+ * two slots.
+ *
+ * Requires two tokens labeled test.p11.slotlabel and test.p11.slotlabel2
+ * both holding the key test.p11.existingkey1 with the same key material. With
+ * SoftHSM they can be created by initializing two tokens and importing the
+ * same key in both using softhsm2-util --import.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class ShardedP11SignTest {
+
+    private static final int CRYPTO_TOKEN = 20200;
+    private static final int WORKER_PLAIN = 20201;
+    private static final String CRYPTO_TOKEN_NAME = "TestShardedCryptoTokenP11";
+
+    private final ModulesTestCase testCase = new ModulesTestCase();
+    private final WorkerSession workerSession = testCase.getWorkerSession();
+
+    private final String sharedLibraryName;
+    private final String slotLabel;
+    private final String slotLabel2;
+    private final String pin;
+    private final String existingKey1;
+
+    public ShardedP11SignTest() {
+        sharedLibraryName = testCase.getConfig().getProperty("test.p11.sharedLibraryName");
+        slotLabel = testCase.getConfig().getProperty("test.p11.slotlabel");
+        slotLabel2 = testCase.getConfig().getProperty("test.p11.slotlabel2");
+        pin = testCase.getConfig().getProperty("test.p11.pin");
+        existingKey1 = testCase.getConfig().getProperty("test.p11.existingkey1");
+    }
+
+    @Before
+    public void setUp() {
+        Assume.assumeFalse("P11NG".equalsIgnoreCase(testCase.getConfig().getProperty("test.p11.provider")));
+        Assume.assumeTrue("Test requires a second token", slotLabel2 != null && !slotLabel2.trim().isEmpty());
+        SignServerUtil.installBCProvider();
+    }
+
+    private void setupCryptoTokenProperties(final boolean cache) {
+        workerSession.setWorkerProperty(CRYPTO_TOKEN, WorkerConfig.TYPE, WorkerType.CRYPTO_WORKER.name());
+        workerSession.setWorkerProperty(CRYPTO_TOKEN, WorkerConfig.IMPLEMENTATION_CLASS, "org.signserver.server.signers.CryptoWorker");
+        workerSession.setWorkerProperty(CRYPTO_TOKEN, WorkerConfig.CRYPTOTOKEN_IMPLEMENTATION_CLASS, ShardedPKCS11CryptoToken.class.getName());
+        workerSession.setWorkerProperty(CRYPTO_TOKEN, "NAME", CRYPTO_TOKEN_NAME);
+        workerSession.setWorkerProperty(CRYPTO_TOKEN, "SHAREDLIBRARYNAME", sharedLibraryName);
+        workerSession.setWorkerProperty(CRYPTO_TOKEN, "SLOTLABELTYPE", "SLOT_LABEL");
+        workerSession.setWorkerProperty(CRYPTO_TOKEN, "SHARD1.SLOTLABELVALUE", slotLabel);
+        workerSession.setWorkerProperty(CRYPTO_TOKEN, "SHARD2.SLOTLABELVALUE", slotLabel2);
+        workerSession.setWorkerProperty(CRYPTO_TOKEN, "PIN", pin);
+        workerSession.setWorkerProperty(CRYPTO_TOKEN, "DEFAULTKEY", existingKey1);
+        workerSession.setWorkerProperty(CRYPTO_TOKEN, "CACHE_PRIVATEKEY", String.valueOf(cache));
+    }
+
+    private void setPlainSignerProperties() {
+        workerSession.setWorkerProperty(WORKER_PLAIN, WorkerConfig.TYPE, WorkerType.PROCESSABLE.name());
+        workerSession.setWorkerProperty(WORKER_PLAIN, WorkerConfig.IMPLEMENTATION_CLASS, "org.signserver.module.cmssigner.PlainSigner");
+        workerSession.setWorkerProperty(WORKER_PLAIN, "CRYPTOTOKEN", CRYPTO_TOKEN_NAME);
+        workerSession.setWorkerProperty(WORKER_PLAIN, "NAME", "PlainSignerShardedP11");
+        workerSession.setWorkerProperty(WORKER_PLAIN, "AUTHTYPE", "NOAUTH");
+        workerSession.setWorkerProperty(WORKER_PLAIN, "DEFAULTKEY", existingKey1);
+        workerSession.setWorkerProperty(WORKER_PLAIN, "SIGNATUREALGORITHM", "SHA256withRSA");
+    }
+
+    private void signerHelper(final boolean cache) throws Exception {
+        try {
+            setupCryptoTokenProperties(cache);
+            setPlainSignerProperties();
+            workerSession.reloadConfiguration(CRYPTO_TOKEN);
+            workerSession.reloadConfiguration(WORKER_PLAIN);
+
+            // Generate CSR and issue certificate
+            final PKCS10CertReqInfo certReqInfo = new PKCS10CertReqInfo("SHA256withRSA", "CN=Worker" + WORKER_PLAIN, null);
+            final AbstractCertReqData reqData = (AbstractCertReqData) workerSession.getCertificateRequest(new WorkerIdentifier(WORKER_PLAIN), certReqInfo, false);
+            final PKCS10CertificationRequest csr = new PKCS10CertificationRequest(reqData.toBinaryForm());
+            final KeyPair issuerKeyPair = CryptoUtils.generateRSA(1024);
+            final X509CertificateHolder cert = new X509v3CertificateBuilder(new X500Name("CN=TestP11 Issuer"), BigInteger.ONE, new Date(), new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365)), csr.getSubject(), csr.getSubjectPublicKeyInfo()).build(new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC").build(issuerKeyPair.getPrivate()));
+
+            workerSession.uploadSignerCertificate(WORKER_PLAIN, cert.getEncoded(), GlobalConfiguration.SCOPE_GLOBAL);
+            workerSession.uploadSignerCertificateChain(WORKER_PLAIN, Collections.singletonList(cert.getEncoded()), GlobalConfiguration.SCOPE_GLOBAL);
+            workerSession.reloadConfiguration(WORKER_PLAIN);
+            final X509Certificate xcert = CertTools.getCertfromByteArray(cert.getEncoded(), X509Certificate.class);
+
+            // Test active
+            final List<String> errors = workerSession.getStatus(new WorkerIdentifier(WORKER_PLAIN)).getFatalErrors();
+            assertEquals("errors: " + errors, 0, errors.size());
+
+            // Sign enough times for both shards to be used, all signatures
+            // must verify with the same certificate
+            final byte[] plainText = "some-data".getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < 10; i++) {
+                final GenericSignResponse response = testCase.signGenericDocument(WORKER_PLAIN, plainText);
+                assertTrue("signature verification " + i, P11SignTest.verifySignature(plainText, response.getProcessedData(), "SHA256withRSA", xcert.getPublicKey(), "BC"));
+            }
+        } finally {
+            testCase.removeWorker(WORKER_PLAIN);
+            testCase.removeWorker(CRYPTO_TOKEN);
+        }
+    }
+
+    /**
+     * Tests signing with the key looked up for each request.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testPlainSigner_uncached() throws Exception {
+        signerHelper(false);
+    }
+
+    /**
+     * Tests signing with the key cached for each shard.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testPlainSigner_cached() throws Exception {
+        signerHelper(true);
+    }
+}
@@ -18,11 +18,20 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Date;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
+import org.signserver.common.LatencyHistogram;
 
 /**
  * Thread running tests.
+ *
+ * By default the thread waits for the response before sending the next
+ * request (closed loop). With an arrival rate the requests are instead sent
+ * at a constant rate and the response times are measured from when each
+ * request should have been sent, so that the time a request would have been
+ * waiting behind a slow one is included (open loop).
  * 
  * @author Marcus Lundblad
  * @version $Id$
@@ -40,11 +49,14 @@ public class WorkerThread extends Thread {
     protected long respTimesSum;
     protected long maxRespTime;
     protected long minRespTime = Long.MAX_VALUE;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final AtomicReference<LatencyHistogram> intervalHistogram = new AtomicReference<>(new LatencyHistogram());
 
     private long startTime;
     private long warmupTime;
     private final long limitedTime;
     private final long maxWaitTime;
+    private final long arrivalInterval;
     private final File statFile;
     protected Random random;
     protected Task task;
@@ -55,9 +67,31 @@ public class WorkerThread extends Thread {
     public WorkerThread(final String name, final FailureCallback failureCallback,
             long maxWaitTime, int seed, long warmupTime, final long limitedTime,
             final File statFile, final boolean continueOnFailure) {
+        this(name, failureCallback, maxWaitTime, 0, seed, warmupTime, limitedTime, statFile, continueOnFailure);
+    }
+
+    /**
+     * Creates a thread sending requests at a constant rate if the arrival
+     * rate is larger than 0 and otherwise with a random wait time after each
+     * response.
+     *
+     * @param name of the thread
+     * @param failureCallback to call in case of failure
+     * @param maxWaitTime maximum time to wait after a response (closed loop)
+     * @param arrivalRate requests per second for this thread or 0 for closed loop
+     * @param seed for the random generator
+     * @param warmupTime time before starting to collect statistics
+     * @param limitedTime maximum run time or -1 for no limit
+     * @param statFile file to write the response times to or null
+     * @param continueOnFailure if the thread should continue after a failure
+     */
+    public WorkerThread(final String name, final FailureCallback failureCallback,
+            long maxWaitTime, final double arrivalRate, int seed, long warmupTime, final long limitedTime,
+            final File statFile, final boolean continueOnFailure) {
         super(name);
         this.failureCallback = failureCallback;
         this.maxWaitTime = maxWaitTime;
+        this.arrivalInterval = arrivalRate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / arrivalRate) : 0;
         this.warmupTime = warmupTime;
         this.limitedTime = limitedTime;
         this.statFile = statFile;
@@ -76,7 +110,18 @@ public class WorkerThread extends Thread {
             if (statFile != null) {
                 out = new BufferedWriter(new FileWriter(statFile));
             }
+            long nextStart = System.nanoTime();
             while (!isStop()) {
+                // Wait until it is time for the next request (open loop)
+                final long intendedStart = nextStart;
+                if (arrivalInterval > 0) {
+                    nextStart += arrivalInterval;
+                    final long delay = intendedStart - System.nanoTime();
+                    if (delay > 0) {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    }
+                }
+
                 long currentTime = (new Date().getTime());
                 long estimatedTime = 0;
                 boolean successfull;
@@ -87,6 +132,10 @@ public class WorkerThread extends Thread {
                 
                 try {
                     estimatedTime = task.run();
+                    if (arrivalInterval > 0) {
+                        // Include the time the request was late
+                        estimatedTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - intendedStart);
+                    }
                     successfull = true;
                 } catch (FailedException ex) {
                     if (continueOnFailure) {
@@ -109,7 +158,9 @@ public class WorkerThread extends Thread {
                 }
                 
                 // Sleep
-                Thread.sleep((int) (random.nextDouble() * maxWaitTime));
+                if (arrivalInterval == 0) {
+                    Thread.sleep((int) (random.nextDouble() * maxWaitTime));
+                }
 
                 operationsAttempted++;
             }
@@ -184,6 +235,8 @@ public class WorkerThread extends Thread {
         if (time < minRespTime) {
             minRespTime = time;
         }
+        histogram.record(time);
+        intervalHistogram.get().record(time);
     }
     
     /**
@@ -216,5 +269,20 @@ public class WorkerThread extends Thread {
     public long getMinResponseTime() {
         return minRespTime;
     }
+
+    /**
+     * @return Histogram of all response times
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Get the response times since the last call and start a new interval.
+     * @return Histogram of the response times in the interval
+     */
+    public LatencyHistogram takeIntervalHistogram() {
+        return intervalHistogram.getAndSet(new LatencyHistogram());
+    }
     
 }
@@ -25,9 +25,12 @@ import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.tsp.TSPAlgorithms;
 import org.signserver.cli.Log4jHelper;
 import org.signserver.common.InvalidWorkerIdException;
+import org.signserver.common.LatencyHistogram;
 import org.signserver.test.performance.FailureCallback;
 import org.signserver.test.performance.WorkerThread;
 import org.signserver.test.performance.impl.DocumentSignerThread;
+import org.signserver.test.performance.impl.RESTSignerThread;
+import org.signserver.test.performance.impl.SampleDocuments;
 import org.signserver.test.performance.impl.TimeStampThread;
 
 /**
@@ -48,9 +51,12 @@ public class Main {
     private static final String HASH_ALGORITHM = "hashalgorithm";
     private static final String PROCESS_URL = "processurl";
     private static final String WORKER_URL = "workerurl";
+    private static final String REST_URL = "resturl";
     private static final String WORKER_NAME_OR_ID = "worker";
     private static final String MAX_WAIT_TIME = "maxwaittime";
+    private static final String ARRIVAL_RATE = "arrivalrate";
     private static final String WARMUP_TIME = "warmuptime";
+    private static final String REPORT_INTERVAL = "reportinterval";
     private static final String STAT_OUTPUT_DIR = "statoutputdir";
     private static final String INFILE = "infile";
     private static final String DATA = "data";
@@ -65,11 +71,20 @@ public class Main {
     private static final String COMMAND = "stresstest";
 
     private static final int DEFUALT_MAX_WAIT_TIME = 100;
+    private static final long DEFAULT_REPORT_INTERVAL = 10000;
+
+    /** Percentiles to output to the histogram file. */
+    private static final double[] HISTOGRAM_PERCENTILES = {
+        0, 10, 20, 30, 40, 50, 60, 70, 75, 80, 85, 90, 95, 97.5, 99, 99.5, 99.9, 99.95, 99.99, 99.999, 100
+    };
 
     private static int exitCode;
     private static long startTime;
     private static long warmupTime;
 
+    private static Timer intervalTimer;
+    private static PrintWriter intervalOut;
+
     private static File infile;
     private static byte[] bytes;
 
@@ -82,6 +97,10 @@ public class Main {
         TimeStamp2,
         DocumentSigner1,
         DocumentValidator1,
+        CMSSigner1,
+        XAdESSigner1,
+        PDFSigner1,
+        RESTSigner1,
     }
 
     static {
@@ -92,15 +111,22 @@ public class Main {
         OPTIONS.addOption(TSA_URL, true, "URL to timestamp worker to use.");
         OPTIONS.addOption(HASH_ALGORITHM, true, "Optional. Hash algorithm for Time Stamping testsuites");
         OPTIONS.addOption(REQUEST_CERTIFICATE, false, "Optional. Add the certificate in the Time Stamp response");
-        OPTIONS.addOption(PROCESS_URL, true, "URL to process servlet (for the DocumentSigner/Validator1 test suites).");
-        OPTIONS.addOption(WORKER_URL, true, "URL to worker servlet (for the DocumentSigner/Validator1 test suites).");
-        OPTIONS.addOption(WORKER_NAME_OR_ID, true, "Worker name or ID to use (with the DocumentSigner/Validator1 test suites).");
+        OPTIONS.addOption(PROCESS_URL, true, "URL to process servlet (for the DocumentSigner/Validator1 and CMS/XAdES/PDFSigner1 test suites).");
+        OPTIONS.addOption(WORKER_URL, true, "URL to worker servlet (for the DocumentSigner1 and CMS/XAdES/PDFSigner1 test suites).");
+        OPTIONS.addOption(REST_URL, true, "Base URL of the REST interface (for the RESTSigner1 test suite), i.e. http://localhost:8080/signserver/rest/v1.");
+        OPTIONS.addOption(WORKER_NAME_OR_ID, true, "Worker name or ID to use (with the DocumentSigner/Validator1 test suites). Optional for the CMS/XAdES/PDF/RESTSigner1 test suites, which by default use the worker names from the sample configurations.");
         OPTIONS.addOption(MAX_WAIT_TIME, true, "Maximum number of milliseconds for a thread to wait until issuing the next time stamp. Default=100");
+        OPTIONS.addOption(ARRIVAL_RATE, true,
+                "Optional. Send this many requests per second in total, spread evenly over the threads, without waiting for earlier responses (open loop) instead of waiting a random time after each response. "
+                + "The response times are then measured from when each request should have been sent, so include the time waiting for a free thread. Use enough threads for the rate to be reached.");
+        OPTIONS.addOption(REPORT_INTERVAL, true,
+                "Optional. Number of milliseconds between reports of the response time percentiles of the last interval. Default=10000, 0 to disable.");
         OPTIONS.addOption(WARMUP_TIME, true,
                 "Don't count number of signings and response times until after this time (in milliseconds). Default=0 (no warmup time).");
         OPTIONS.addOption(STAT_OUTPUT_DIR, true,
-                "Optional. Directory to output statistics to. If set, each thread creates a file in this directory to output its response times to. The directory must exist.");
-        OPTIONS.addOption(INFILE, true, "Input file used for DocumentSigner/Validator1 testsuites.");
+                "Optional. Directory to output statistics to. If set, each thread creates a file in this directory to output its response times to. "
+                + "The response time percentiles are also written to intervals.csv for each report interval and to histogram.csv for the whole run. The directory must exist.");
+        OPTIONS.addOption(INFILE, true, "Input file used for DocumentSigner/Validator1 testsuites. Optional for the CMS/XAdES/PDF/RESTSigner1 testsuites, which by default sign a small sample document.");
         OPTIONS.addOption(DATA, true, "Input data to be used with the DocumentSigner/Validator1 testsuites using an XMLSigner.");
         OPTIONS.addOption(USERPREFIX, true, "Prefix for usernames.");
         OPTIONS.addOption(USERSUFFIXMIN, true, "Lowest suffix for usernames in form of an integer value (inclusive).");
@@ -126,7 +152,13 @@ public class Main {
                 .append("e) ").append(COMMAND)
                 .append(" -testsuite DocumentSigner1 -threads 4 -processurl http://localhost:8080/signserver/process -worker XMLSigner -data \"<root/>\" -userprefix user -usersuffixmin 1 -usersuffixmax 50").append(NL)
                 .append("f) ").append(COMMAND)
-                .append(" -testsuite DocumentValidator1 -threads 4 -processurl http://localhost:8080/signserver/process -worker DemoXMLValidator -infile signed.xml").append(NL);
+                .append(" -testsuite DocumentValidator1 -threads 4 -processurl http://localhost:8080/signserver/process -worker DemoXMLValidator -infile signed.xml").append(NL)
+                .append("g) ").append(COMMAND)
+                .append(" -testsuite CMSSigner1 -threads 4 -processurl http://localhost:8080/signserver/process").append(NL)
+                .append("h) ").append(COMMAND)
+                .append(" -testsuite PDFSigner1 -threads 20 -arrivalrate 50 -timelimit 60000 -statoutputdir ./statistics/ -processurl http://localhost:8080/signserver/process -worker PDFSigner -infile test.pdf").append(NL)
+                .append("i) ").append(COMMAND)
+                .append(" -testsuite RESTSigner1 -threads 4 -resturl http://localhost:8080/signserver/rest/v1 -worker XAdESSigner -data \"<root/>\"").append(NL);
 
         ByteArrayOutputStream bout = new ByteArrayOutputStream();
         final HelpFormatter formatter = new HelpFormatter();
@@ -188,22 +220,30 @@ public class Main {
                 }
                 url = commandLine.getOptionValue(TSA_URL);
             } else if (commandLine.hasOption(PROCESS_URL)) {
-                if (!ts.equals(TestSuites.DocumentSigner1) && !ts.equals(TestSuites.DocumentValidator1)) {
+                if (ts.name().startsWith("TimeStamp") || ts.equals(TestSuites.RESTSigner1)) {
                     throw new ParseException("Option " + PROCESS_URL + " can only be used with the " +
-                            TestSuites.DocumentSigner1.toString() + " or " + TestSuites.DocumentValidator1.toString() + " test suites.");
+                            TestSuites.DocumentSigner1.toString() + ", " + TestSuites.DocumentValidator1.toString() + " or signer test suites.");
                 }
                 url = commandLine.getOptionValue(PROCESS_URL);
                 useWorkerServlet = false;
             } else if (commandLine.hasOption(WORKER_URL)) {
-                if (!ts.equals(TestSuites.DocumentSigner1)) {
+                if (ts.name().startsWith("TimeStamp") || ts.equals(TestSuites.DocumentValidator1) || ts.equals(TestSuites.RESTSigner1)) {
                     throw new ParseException("Option " + WORKER_URL + " can only be used with the " +
-                            TestSuites.DocumentSigner1.toString() + " or " + TestSuites.DocumentValidator1.toString() + " test suites.");
+                            TestSuites.DocumentSigner1.toString() + " or signer test suites.");
                 }
                 url = commandLine.getOptionValue(WORKER_URL);
                 useWorkerServlet = true;
+            } else if (commandLine.hasOption(REST_URL)) {
+                if (!ts.equals(TestSuites.RESTSigner1)) {
+                    throw new ParseException("Option " + REST_URL + " can only be used with the " +
+                            TestSuites.RESTSigner1.toString() + " test suite.");
+                }
+                url = commandLine.getOptionValue(REST_URL);
             } else {
-                if (ts.equals(TestSuites.TimeStamp1)) {
+                if (ts.name().startsWith("TimeStamp")) {
                     throw new ParseException("Missing option: -" + TSA_URL);
+                } else if (ts.equals(TestSuites.RESTSigner1)) {
+                    throw new ParseException("Missing option: -" + REST_URL);
                 } else {
                     throw new ParseException("Missing option: -" + PROCESS_URL);
                 }
@@ -230,6 +270,8 @@ public class Main {
                 workerNameOrId = commandLine.getOptionValue(WORKER_NAME_OR_ID);
             } else if (ts.equals(TestSuites.DocumentSigner1)) {
                 throw new ParseException("Must specify worker name or ID.");
+            } else {
+                workerNameOrId = getDefaultWorkerName(ts);
             }
 
             if (commandLine.hasOption(INFILE)) {
@@ -239,6 +281,25 @@ public class Main {
                 bytes = commandLine.getOptionValue(DATA).getBytes();
             } else if (ts.equals(TestSuites.DocumentSigner1)) {
                 throw new ParseException("Must specify an input file.");
+            } else {
+                bytes = getDefaultDocument(ts);
+            }
+
+            final double arrivalRate;
+            if (commandLine.hasOption(ARRIVAL_RATE)) {
+                arrivalRate = Double.parseDouble(commandLine.getOptionValue(ARRIVAL_RATE));
+                if (arrivalRate <= 0) {
+                    throw new ParseException("Option -" + ARRIVAL_RATE + " must be larger than 0");
+                }
+            } else {
+                arrivalRate = 0;
+            }
+
+            final long reportInterval;
+            if (commandLine.hasOption(REPORT_INTERVAL)) {
+                reportInterval = Long.parseLong(commandLine.getOptionValue(REPORT_INTERVAL));
+            } else {
+                reportInterval = DEFAULT_REPORT_INTERVAL;
             }
 
             if (commandLine.hasOption(WARMUP_TIME)) {
@@ -294,11 +355,16 @@ public class Main {
                 + "   Threads:                 %10d%n"
                 + "   Warm up time:            %10d ms%n"
                 + "   Max wait time:           %10d ms%n"
+                + "   Arrival rate:            %s%n"
+                + "   Report interval:         %10d ms%n"
                 + "   Time limit:              %10d ms%n"
                 + "   URL:                     %s%n"
                 + "   Username(s):             %s%n"
                 + "   Output statistics:       %s%n"
-                + "-------------------------------------------------------------------------------%n", new Date(), ts.name(), numThreads, warmupTime, maxWaitTime, limitedTime, url, userNameDescription, statFolder == null ? "no" : statFolder.getAbsolutePath()));
+                + "-------------------------------------------------------------------------------%n", new Date(), ts.name(), numThreads, warmupTime, maxWaitTime,
+                    arrivalRate > 0 ? String.format("%12.1f tps (open loop)", arrivalRate) : "n/a (closed loop)", reportInterval,
+                    limitedTime, url, userNameDescription, statFolder == null ? "no" : statFolder.getAbsolutePath()));
+            final double threadArrivalRate = arrivalRate / numThreads;
 
             final LinkedList<WorkerThread> threads = new LinkedList<>();
             final FailureCallback callback = new FailureCallback() {
@@ -329,7 +395,7 @@ public class Main {
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("Shutdown hook called");
                     }
-                    shutdown(threads);
+                    shutdown(threads, statFolder);
                 }
             };
 
@@ -338,16 +404,22 @@ public class Main {
             try {
                 switch (ts) {
                 case TimeStamp1:
-                    timeStamp1(threads, numThreads, callback, url, maxWaitTime, warmupTime, limitedTime, statFolder, continueOnFailure, hashAlg, requestCertificate);
+                    timeStamp1(threads, numThreads, callback, url, maxWaitTime, threadArrivalRate, warmupTime, limitedTime, statFolder, continueOnFailure, hashAlg, requestCertificate);
                     break;
                 case TimeStamp2:
-                    timeStamp2(threads, numThreads, callback, url, maxWaitTime, warmupTime, limitedTime, statFolder, continueOnFailure, hashAlg, requestCertificate);
+                    timeStamp2(threads, numThreads, callback, url, maxWaitTime, threadArrivalRate, warmupTime, limitedTime, statFolder, continueOnFailure, hashAlg, requestCertificate);
                     break;
                 case DocumentSigner1:
-                    documentSigner1(threads, numThreads, callback, url, useWorkerServlet, workerNameOrId, maxWaitTime, warmupTime, limitedTime, statFolder, userPrefix, usersuffixMin, usersuffixMax, continueOnFailure);
+                case CMSSigner1:
+                case XAdESSigner1:
+                case PDFSigner1:
+                    documentSigner1(threads, numThreads, callback, url, useWorkerServlet, workerNameOrId, ts.name() + "-", maxWaitTime, threadArrivalRate, warmupTime, limitedTime, statFolder, userPrefix, usersuffixMin, usersuffixMax, continueOnFailure);
                     break;
                 case DocumentValidator1:
-                    documentValidator1(threads, numThreads, callback, url, useWorkerServlet, workerNameOrId, maxWaitTime, warmupTime, limitedTime, statFolder, userPrefix, usersuffixMin, usersuffixMax, continueOnFailure);
+                    documentValidator1(threads, numThreads, callback, url, useWorkerServlet, workerNameOrId, maxWaitTime, threadArrivalRate, warmupTime, limitedTime, statFolder, userPrefix, usersuffixMin, usersuffixMax, continueOnFailure);
+                    break;
+                case RESTSigner1:
+                    restSigner1(threads, numThreads, callback, url, workerNameOrId, maxWaitTime, threadArrivalRate, warmupTime, limitedTime, statFolder, userPrefix, usersuffixMin, usersuffixMax, continueOnFailure);
                     break;
                 default:
                     throw new Exception("Unsupported test suite");
@@ -363,6 +435,10 @@ public class Main {
                     w.start();
                 }
 
+                if (reportInterval > 0) {
+                    startIntervalReports(threads, reportInterval, statFolder);
+                }
+
                 // Wait for the threads to finish
                 try {
                     for (WorkerThread w : threads) {
@@ -399,11 +475,13 @@ public class Main {
      * Shutdown worker threads.
      *
      * @param threads
+     * @param statFolder Output folder for statistics or null
      */
-    private static void shutdown(final List<WorkerThread> threads) {
+    private static void shutdown(final List<WorkerThread> threads, final File statFolder) {
         for (WorkerThread w : threads) {
             w.stopIt();
         }
+        stopIntervalReports();
 
         // Total statistics
         long totalRunTime = System.currentTimeMillis() - startTime - warmupTime;
@@ -413,6 +491,7 @@ public class Main {
         double totalAverageResponseTime;
         long totalMaxResponseTime = 0;
         long totalMinResponseTime = Long.MAX_VALUE;
+        final LatencyHistogram totalHistogram = new LatencyHistogram();
 
         // Wait until all stopped
         try {
@@ -429,6 +508,7 @@ public class Main {
                 totalOperationsPerformed += operationsPerformed;
                 totalOperationsFailed += operationsFailed;
                 totalResponseTime += w.getResponseTimeSum();
+                totalHistogram.add(w.getHistogram());
 
                 totalMaxResponseTime = Math.max(totalMaxResponseTime, maxResponseTime);
                 totalMinResponseTime = Math.min(totalMinResponseTime, minResponseTime);
@@ -457,7 +537,11 @@ public class Main {
 
         logOutput(totalOperationsPerformed, totalOperationsFailed,
                   totalMinResponseTime, totalAverageResponseTime,
-                  totalMaxResponseTime, totalRunTime, tps);
+                  totalMaxResponseTime, totalRunTime, tps, totalHistogram);
+
+        if (statFolder != null) {
+            writeHistogram(totalHistogram, new File(statFolder, "histogram.csv"));
+        }
     }
 
     private static void logOutput(final long totalOperationsPerformed,
@@ -466,7 +550,8 @@ public class Main {
                                   final double totalAverageResponseTime,
                                   final long totalMaxResponseTime,
                                   final long totalRunTime,
-                                  final double tps) {
+                                  final double tps,
+                                  final LatencyHistogram histogram) {
         LOG.info(String.format(
                   "%n-- Summary -------------------------------------------------------------------%n"
                 + "   End time:                %s%n"
@@ -474,11 +559,87 @@ public class Main {
                 + "   Operations failed:       %10d%n"
                 + "   Minimum response time:   %10d   ms%n"
                 + "   Average response time:   %12.1f ms%n"
+                + "   50th percentile:         %10d   ms%n"
+                + "   90th percentile:         %10d   ms%n"
+                + "   99th percentile:         %10d   ms%n"
+                + "   99.9th percentile:       %10d   ms%n"
                 + "   Maximum response time:   %10d   ms%n"
                 + "   Run time:                %10d   ms%n"
                 + "   Transactions per second: %12.1f tps%n"
-                + "------------------------------------------------------------------------------%n", new Date(), totalOperationsPerformed, totalOperationsFailed, totalMinResponseTime, totalAverageResponseTime, totalMaxResponseTime, totalRunTime, tps));
+                + "------------------------------------------------------------------------------%n", new Date(), totalOperationsPerformed, totalOperationsFailed, totalMinResponseTime, totalAverageResponseTime,
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90), histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                totalMaxResponseTime, totalRunTime, tps));
+
+    }
+
+    /**
+     * Start logging the response time percentiles of each interval and
+     * writing them to intervals.csv in the statistics folder.
+     *
+     * @param threads The worker threads to collect the response times from.
+     * @param reportInterval Milliseconds between the reports.
+     * @param statFolder Output folder for statistics or null.
+     * @throws IOException If the file could not be created
+     */
+    private static synchronized void startIntervalReports(final List<WorkerThread> threads, final long reportInterval, final File statFolder) throws IOException {
+        if (statFolder != null) {
+            intervalOut = new PrintWriter(new BufferedWriter(new FileWriter(new File(statFolder, "intervals.csv"))));
+            intervalOut.println("time;operations;tps;p50;p90;p99;p99.9;max");
+            intervalOut.flush();
+        }
+        intervalTimer = new Timer("IntervalReport", true);
+        intervalTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                reportInterval(threads, reportInterval);
+            }
+        }, reportInterval, reportInterval);
+    }
+
+    private static synchronized void stopIntervalReports() {
+        if (intervalTimer != null) {
+            intervalTimer.cancel();
+            intervalTimer = null;
+        }
+        if (intervalOut != null) {
+            intervalOut.close();
+            intervalOut = null;
+        }
+    }
 
+    private static synchronized void reportInterval(final List<WorkerThread> threads, final long reportInterval) {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (WorkerThread w : threads) {
+            histogram.add(w.takeIntervalHistogram());
+        }
+        final long operations = histogram.getCount();
+        final double tps = operations / (reportInterval / 1000d);
+        LOG.info(String.format("   Interval: %8d ops %10.1f tps   p50 %6d ms   p90 %6d ms   p99 %6d ms   p99.9 %6d ms   max %6d ms",
+                operations, tps, histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMax()));
+        if (intervalOut != null) {
+            intervalOut.println(String.format(Locale.ROOT, "%d;%d;%.1f;%d;%d;%d;%d;%d", System.currentTimeMillis(), operations, tps,
+                    histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                    histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMax()));
+            intervalOut.flush();
+        }
+    }
+
+    /**
+     * Write the response times at each of the percentiles.
+     *
+     * @param histogram Response times for the whole run.
+     * @param file Output file.
+     */
+    private static void writeHistogram(final LatencyHistogram histogram, final File file) {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            out.println("percentile;value");
+            for (double percentile : HISTOGRAM_PERCENTILES) {
+                out.println(percentile + ";" + histogram.getValueAtPercentile(percentile));
+            }
+        } catch (IOException ex) {
+            LOG.error("File could not be written: " + ex.getMessage());
+        }
     }
 
     /**
@@ -489,6 +650,7 @@ public class Main {
      * @param failureCallback Callback to handle failures.
      * @param url Time stamp signer URL.
      * @param maxWaitTime Maximum waiting time between generated requests.
+     * @param arrivalRate Requests per second for each thread or 0 to wait between requests.
      * @param warmupTime Warmup time, if set to > 0, will add a warmup period where no stats are collected.
      * @param limitedTime Maximum run time, if set to -1, threads will run until interrupted.
      * @param statFolder Output folder for statistics.
@@ -497,7 +659,7 @@ public class Main {
      * @throws Exception
      */
     private static void timeStamp1(final List<WorkerThread> threads, final int numThreads, final FailureCallback failureCallback,
-            final String url, int maxWaitTime, long warmupTime, final long limitedTime, final File statFolder,
+            final String url, int maxWaitTime, final double arrivalRate, long warmupTime, final long limitedTime, final File statFolder,
             final boolean continueOnFailure, final String hashAlg, final boolean requestCertificate) throws Exception {
         final Random random = new Random();
         for (int i = 0; i < numThreads; i++) {
@@ -508,7 +670,7 @@ public class Main {
             } else {
                 statFile = new File(statFolder, name + ".csv");
             }
-            threads.add(new TimeStampThread(name, failureCallback, url, maxWaitTime, random.nextInt(),
+            threads.add(new TimeStampThread(name, failureCallback, url, maxWaitTime, arrivalRate, random.nextInt(),
                     warmupTime, limitedTime, statFile, new byte[getDigestAlgorithmLength(hashAlg)], getDigestAlgorithmFromString(hashAlg),
                     continueOnFailure, requestCertificate));
         }
@@ -522,6 +684,7 @@ public class Main {
      * @param failureCallback Callback to handle failures.
      * @param url Time stamp signer URL.
      * @param maxWaitTime Maximum waiting time between generated requests.
+     * @param arrivalRate Requests per second for each thread or 0 to wait between requests.
      * @param warmupTime Warmup time, if set to > 0, will add a warmup period where no stats are collected.
      * @param limitedTime Maximum run time, if set to -1, threads will run until interrupted.
      * @param statFolder Output folder for statistics.
@@ -530,7 +693,7 @@ public class Main {
      * @throws Exception
      */
     private static void timeStamp2(final List<WorkerThread> threads, final int numThreads, final FailureCallback failureCallback,
-            final String url, int maxWaitTime, long warmupTime, final long limitedTime, final File statFolder,
+            final String url, int maxWaitTime, final double arrivalRate, long warmupTime, final long limitedTime, final File statFolder,
             final boolean continueOnFailure, final String hashAlg, final boolean requestCertificate) throws Exception {
         final Random random = new Random();
         for (int i = 0; i < numThreads; i++) {
@@ -541,7 +704,7 @@ public class Main {
             } else {
                 statFile = new File(statFolder, name + ".csv");
             }
-            threads.add(new TimeStampThread(name, failureCallback, url, maxWaitTime, random.nextInt(),
+            threads.add(new TimeStampThread(name, failureCallback, url, maxWaitTime, arrivalRate, random.nextInt(),
                     warmupTime, limitedTime, statFile, new byte[getDigestAlgorithmLength(hashAlg)], getDigestAlgorithmFromString(hashAlg),
                     continueOnFailure, requestCertificate));
         }
@@ -555,7 +718,9 @@ public class Main {
      * @param failureCallback Callback to handle failures.
      * @param url Base process URL.
      * @param workerNameOrId Worker name of worker ID.
+     * @param threadNamePrefix Prefix for the thread names and statistics files.
      * @param maxWaitTime Maximum waiting time between generated requests.
+     * @param arrivalRate Requests per second for each thread or 0 to wait between requests.
      * @param warmupTime Warmup time, if set to > 0, will add a warmup period where no stats are collected.
      * @param limitedTime Maximum run time, if set to -1, threads will run until interrupted.
      * @param statFolder Output folder for statistics.
@@ -563,11 +728,11 @@ public class Main {
      */
     private static void documentSigner1(final List<WorkerThread> threads, final int numThreads,
             final FailureCallback failureCallback, final String url, final boolean useWorkerServlet,
-            final String workerNameOrId, int maxWaitTime, long warmupTime,
+            final String workerNameOrId, final String threadNamePrefix, int maxWaitTime, final double arrivalRate, long warmupTime,
             final long limitedTime, final File statFolder,
             final String userPrefix, final Integer userSuffixMin, final Integer userSuffixMax,
             final boolean continueOnFailure) throws Exception {
-        documentSignerOrValidator1(threads, numThreads, failureCallback, url, useWorkerServlet, workerNameOrId, maxWaitTime, warmupTime, limitedTime, statFolder, userPrefix, userSuffixMin, userSuffixMax, "DocumentSigner1-", "signDocument", continueOnFailure);
+        documentSignerOrValidator1(threads, numThreads, failureCallback, url, useWorkerServlet, workerNameOrId, maxWaitTime, arrivalRate, warmupTime, limitedTime, statFolder, userPrefix, userSuffixMin, userSuffixMax, threadNamePrefix, "signDocument", continueOnFailure);
     }
 
     /**
@@ -579,6 +744,7 @@ public class Main {
      * @param url Base process URL.
      * @param workerNameOrId Worker name of worker ID.
      * @param maxWaitTime Maximum waiting time between generated requests.
+     * @param arrivalRate Requests per second for each thread or 0 to wait between requests.
      * @param warmupTime Warmup time, if set to > 0, will add a warmup period where no stats are collected.
      * @param limitedTime Maximum run time, if set to -1, threads will run until interrupted.
      * @param statFolder Output folder for statistics.
@@ -586,16 +752,16 @@ public class Main {
      */
     private static void documentValidator1(final List<WorkerThread> threads, final int numThreads,
             final FailureCallback failureCallback, final String url, final boolean useWorkerServlet,
-            final String workerNameOrId, int maxWaitTime, long warmupTime,
+            final String workerNameOrId, int maxWaitTime, final double arrivalRate, long warmupTime,
             final long limitedTime, final File statFolder,
             final String userPrefix, final Integer userSuffixMin, final Integer userSuffixMax,
             final boolean continueOnFailure) throws Exception {
-        documentSignerOrValidator1(threads, numThreads, failureCallback, url, useWorkerServlet, workerNameOrId, maxWaitTime, warmupTime, limitedTime, statFolder, userPrefix, userSuffixMin, userSuffixMax, "DocumentValidator1-", "validateDocument", continueOnFailure);
+        documentSignerOrValidator1(threads, numThreads, failureCallback, url, useWorkerServlet, workerNameOrId, maxWaitTime, arrivalRate, warmupTime, limitedTime, statFolder, userPrefix, userSuffixMin, userSuffixMax, "DocumentValidator1-", "validateDocument", continueOnFailure);
     }
 
     private static void documentSignerOrValidator1(final List<WorkerThread> threads, final int numThreads,
             final FailureCallback failureCallback, final String url, final boolean useWorkerServlet,
-            final String workerNameOrId, int maxWaitTime, long warmupTime,
+            final String workerNameOrId, int maxWaitTime, final double arrivalRate, long warmupTime,
             final long limitedTime, final File statFolder,
             final String userPrefix, final Integer userSuffixMin, final Integer userSuffixMax,
             final String workerNamePrefix, final String processType,
@@ -609,12 +775,84 @@ public class Main {
             } else {
                 statFile = new File(statFolder, name + ".csv");
             }
-            threads.add(new DocumentSignerThread(name, failureCallback, url, useWorkerServlet, bytes, infile, workerNameOrId, processType, maxWaitTime,
+            threads.add(new DocumentSignerThread(name, failureCallback, url, useWorkerServlet, bytes, infile, workerNameOrId, processType, maxWaitTime, arrivalRate,
                     random.nextInt(), warmupTime, limitedTime, statFile,
                     userPrefix, userSuffixMin, userSuffixMax, continueOnFailure));
         }
     }
 
+    /**
+     * Initialize the worker thread list for the REST signer test suite.
+     *
+     * @param threads A list to hold the worker threads. This list is filled by the method.
+     * @param numThreads Number of threads to create.
+     * @param failureCallback Callback to handle failures.
+     * @param url Base REST URL.
+     * @param workerNameOrId Worker name of worker ID.
+     * @param maxWaitTime Maximum waiting time between generated requests.
+     * @param arrivalRate Requests per second for each thread or 0 to wait between requests.
+     * @param warmupTime Warmup time, if set to > 0, will add a warmup period where no stats are collected.
+     * @param limitedTime Maximum run time, if set to -1, threads will run until interrupted.
+     * @param statFolder Output folder for statistics.
+     * @throws Exception
+     */
+    private static void restSigner1(final List<WorkerThread> threads, final int numThreads,
+            final FailureCallback failureCallback, final String url,
+            final String workerNameOrId, int maxWaitTime, final double arrivalRate, long warmupTime,
+            final long limitedTime, final File statFolder,
+            final String userPrefix, final Integer userSuffixMin, final Integer userSuffixMax,
+            final boolean continueOnFailure) throws Exception {
+        final Random random = new Random();
+        for (int i = 0; i < numThreads; i++) {
+            final String name = "RESTSigner1-" + i;
+            final File statFile;
+            if (statFolder == null) {
+                statFile = null;
+            } else {
+                statFile = new File(statFolder, name + ".csv");
+            }
+            threads.add(new RESTSignerThread(name, failureCallback, url, bytes, infile, workerNameOrId, maxWaitTime, arrivalRate,
+                    random.nextInt(), warmupTime, limitedTime, statFile,
+                    userPrefix, userSuffixMin, userSuffixMax, continueOnFailure));
+        }
+    }
+
+    /**
+     * @param ts Test suite.
+     * @return Name of the worker in the sample configuration for the test suite.
+     */
+    private static String getDefaultWorkerName(final TestSuites ts) {
+        switch (ts) {
+            case XAdESSigner1:
+                return "XAdESSigner";
+            case PDFSigner1:
+                return "PDFSigner";
+            case CMSSigner1:
+            case RESTSigner1:
+                return "CMSSigner";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param ts Test suite.
+     * @return Sample document for the test suite.
+     */
+    private static byte[] getDefaultDocument(final TestSuites ts) {
+        switch (ts) {
+            case XAdESSigner1:
+                return SampleDocuments.xml();
+            case PDFSigner1:
+                return SampleDocuments.pdf();
+            case CMSSigner1:
+            case RESTSigner1:
+                return SampleDocuments.data();
+            default:
+                return null;
+        }
+    }
+
     /**
      * Helper method to return Digest Algorithms from String to ASN1ObjectIdentifier.
      *
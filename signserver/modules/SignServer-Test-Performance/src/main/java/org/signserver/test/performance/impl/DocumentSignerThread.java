@@ -29,11 +29,11 @@ public class DocumentSignerThread extends WorkerThread {
     
     public DocumentSignerThread(final String name, final FailureCallback failureCallback, final String url, 
             final boolean useWorkerServlet, final byte[] data, final File infile, final String workerNameOrId, final String processType,
-            int maxWaitTime,
+            int maxWaitTime, final double arrivalRate,
             int seed, long warmupTime, final long limitedTime, final File statFile,
             final String userPrefix, final Integer userSuffixMin, final Integer userSuffixMax,
             final boolean continueOnFailure) {
-        super(name, failureCallback, maxWaitTime, seed, warmupTime, limitedTime,
+        super(name, failureCallback, maxWaitTime, arrivalRate, seed, warmupTime, limitedTime,
               statFile, continueOnFailure);
         this.task = new DocumentSigner(url, useWorkerServlet, data, infile, workerNameOrId, processType, random, userPrefix, userSuffixMin, userSuffixMax);
     }
@@ -0,0 +1,139 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.performance.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.log4j.Logger;
+import org.bouncycastle.util.encoders.Base64;
+import org.signserver.test.performance.FailedException;
+import org.signserver.test.performance.Task;
+
+/**
+ * Invoke a worker using the REST interface.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class RESTSigner implements Task {
+    private static final Logger LOG = Logger.getLogger(RESTSigner.class);
+
+    private final String url;
+    private final String workerNameOrId;
+    private final Random random;
+    private final byte[] indata;
+    private final File infile;
+
+    private final String userPrefix;
+    private final Integer userSuffixMin;
+    private final Integer userSuffixMax;
+
+    private byte[] requestBody;
+
+    public RESTSigner(final String url, final byte[] indata, final File infile,
+            final String workerNameOrId, final Random random,
+            final String userPrefix, final Integer userSuffixMin, final Integer userSuffixMax) {
+        this.url = url;
+        this.indata = indata;
+        this.infile = infile;
+        this.workerNameOrId = workerNameOrId;
+        this.random = random;
+        this.userPrefix = userPrefix;
+        this.userSuffixMin = userSuffixMin;
+        this.userSuffixMax = userSuffixMax;
+    }
+
+    @Override
+    public long run() throws FailedException {
+        try {
+            if (requestBody == null) {
+                requestBody = createRequestBody();
+            }
+            return restRequest();
+        } catch (IOException ex) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Request failed", ex);
+            }
+            throw new FailedException("Request failed: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * The JSON request is the same for all requests so it is only created
+     * once and not measured.
+     */
+    private byte[] createRequestBody() throws IOException {
+        final byte[] data = indata == null ? Files.readAllBytes(infile.toPath()) : indata;
+        final String json = "{\"encoding\":\"BASE64\",\"filename\":\"noname.dat\",\"data\":\""
+                + Base64.toBase64String(data) + "\"}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Issue a request to the process resource of the worker.
+     *
+     * @return Run time (in ms).
+     * @throws IOException
+     * @throws FailedException
+     */
+    private long restRequest() throws IOException, FailedException {
+        final URL requestUrl = new URL(url + "/workers/" + workerNameOrId + "/process");
+
+        // Take start time
+        final long startTime = System.nanoTime();
+
+        final HttpURLConnection urlConn = (HttpURLConnection) requestUrl.openConnection();
+        urlConn.setRequestMethod("POST");
+        urlConn.setDoOutput(true);
+        urlConn.setAllowUserInteraction(false);
+        urlConn.setRequestProperty("Content-Type", "application/json");
+        urlConn.setRequestProperty("X-Keyfactor-Requested-With", "stresstest");
+        urlConn.setFixedLengthStreamingMode(requestBody.length);
+
+        // Send with username
+        if (userPrefix != null) {
+            final String username;
+            if (userSuffixMin == null) {
+                username = userPrefix;
+            } else {
+                username = userPrefix + (userSuffixMin + random.nextInt(userSuffixMax - userSuffixMin + 1));
+            }
+            urlConn.setRequestProperty("Authorization", "Basic " + new String(Base64.encode((username + ":").getBytes())));
+        }
+
+        try (OutputStream out = urlConn.getOutputStream()) {
+            out.write(requestBody);
+        }
+
+        final int responseCode = urlConn.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            throw new FailedException("Unexpected response: " + responseCode + " " + urlConn.getResponseMessage());
+        }
+        try (InputStream in = urlConn.getInputStream()) {
+            IOUtils.copyLarge(in, NullOutputStream.NULL_OUTPUT_STREAM);
+        }
+
+        // Take stop time
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+}
@@ -0,0 +1,38 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.performance.impl;
+
+import java.io.File;
+
+import org.signserver.test.performance.FailureCallback;
+import org.signserver.test.performance.WorkerThread;
+
+/**
+ * Thread invoking a worker using the REST interface.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class RESTSignerThread extends WorkerThread {
+
+    public RESTSignerThread(final String name, final FailureCallback failureCallback, final String url,
+            final byte[] data, final File infile, final String workerNameOrId,
+            int maxWaitTime, final double arrivalRate,
+            int seed, long warmupTime, final long limitedTime, final File statFile,
+            final String userPrefix, final Integer userSuffixMin, final Integer userSuffixMax,
+            final boolean continueOnFailure) {
+        super(name, failureCallback, maxWaitTime, arrivalRate, seed, warmupTime, limitedTime,
+              statFile, continueOnFailure);
+        this.task = new RESTSigner(url, data, infile, workerNameOrId, random, userPrefix, userSuffixMin, userSuffixMax);
+    }
+}
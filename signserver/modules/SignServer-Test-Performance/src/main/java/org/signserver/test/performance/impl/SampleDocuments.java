@@ -0,0 +1,69 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.test.performance.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Documents to sign when no input file or data is given for the test suites
+ * of a specific signer.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public final class SampleDocuments {
+
+    private SampleDocuments() {}
+
+    /**
+     * @return data to sign with a CMS signer
+     */
+    public static byte[] data() {
+        return "Sample data to sign.".getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return XML document to sign with a XAdES signer
+     */
+    public static byte[] xml() {
+        return "<root><data>Sample data to sign.</data></root>".getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a PDF document with one empty page
+     */
+    public static byte[] pdf() {
+        final String[] objects = {
+            "<< /Type /Catalog /Pages 2 0 R >>",
+            "<< /Type /Pages /Kids [3 0 R] /Count 1 >>",
+            "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] /Resources << >> >>"
+        };
+        final StringBuilder sb = new StringBuilder("%PDF-1.4\n");
+        final List<Integer> offsets = new ArrayList<>();
+        for (int i = 0; i < objects.length; i++) {
+            offsets.add(sb.length());
+            sb.append(i + 1).append(" 0 obj\n").append(objects[i]).append("\nendobj\n");
+        }
+        final int xref = sb.length();
+        sb.append("xref\n0 ").append(objects.length + 1).append('\n');
+        sb.append("0000000000 65535 f \n");
+        for (int offset : offsets) {
+            sb.append(String.format("%010d 00000 n \n", offset));
+        }
+        sb.append("trailer\n<< /Size ").append(objects.length + 1).append(" /Root 1 0 R >>\n");
+        sb.append("startxref\n").append(xref).append("\n%%EOF\n");
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -81,5 +81,55 @@ public class WorkerThreadTest extends TestCase {
         thread.addResponseTime(48);
         assertEquals("Max", 59, thread.getMaxResponseTime());
 	}
+
+    /**
+     * Tests that the response times are recorded in the histograms and that
+     * taking the interval histogram starts a new interval.
+     */
+    public void test04Histogram() throws Exception {
+        LOG.info("test04Histogram");
+        WorkerThread thread = new WorkerThread("test", null, 0, 0, 0, 0, null, false);
+
+        for (int i = 1; i <= 10; i++) {
+            thread.addResponseTime(i);
+        }
+
+        assertEquals("Count", 10, thread.getHistogram().getCount());
+        assertEquals("p50", 5, thread.getHistogram().getValueAtPercentile(50));
+        assertEquals("p100", 10, thread.getHistogram().getValueAtPercentile(100));
+        assertEquals("Interval count", 10, thread.takeIntervalHistogram().getCount());
+
+        thread.addResponseTime(42);
+        assertEquals("Next interval count", 1, thread.takeIntervalHistogram().getCount());
+        assertEquals("Total count", 11, thread.getHistogram().getCount());
+    }
+
+    /**
+     * Tests that with an arrival rate the time a request had to wait for the
+     * previous one is included in the response time.
+     */
+    public void test05OpenLoop() throws Exception {
+        LOG.info("test05OpenLoop");
+        final Task slowTask = () -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ex) {
+                throw new FailedException("Interrupted");
+            }
+            return 20;
+        };
+
+        // Closed loop: only the time of the task
+        WorkerThread closed = new WorkerThread("closed", null, 0, 0, 0, 0, 500, null, false);
+        closed.task = slowTask;
+        closed.run();
+        assertTrue("Closed loop max: " + closed.getMaxResponseTime(), closed.getMaxResponseTime() < 100);
+
+        // Open loop with 100 requests per second: requests are falling behind
+        WorkerThread open = new WorkerThread("open", null, 0, 100, 0, 0, 500, null, false);
+        open.task = slowTask;
+        open.run();
+        assertTrue("Open loop max: " + open.getMaxResponseTime(), open.getMaxResponseTime() >= 200);
+    }
 	
 }
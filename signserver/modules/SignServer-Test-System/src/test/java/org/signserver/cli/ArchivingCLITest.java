@@ -14,6 +14,13 @@ package org.signserver.cli;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import org.apache.log4j.Logger;
 import org.bouncycastle.tsp.TimeStampResponse;
 import org.signserver.client.cli.defaultimpl.TimeStampCommand;
@@ -47,6 +54,8 @@ public class ArchivingCLITest extends ModulesTestCase {
     private static final int WORKERID = 1000;
     private static final String TESTTSID = String.valueOf(WORKERID);
 
+    private static final Pattern CONTINUE_WITH = Pattern.compile("continue with: -after ([A-Za-z0-9_-]+)");
+
     private final CLITestHelper cli = getAdminCLI();
 
 
@@ -240,6 +249,68 @@ public class ArchivingCLITest extends ModulesTestCase {
         // clean up temp files
         datafileRequest.delete();
         datafileResponse.delete();
+
+        // test paging through the entries using continuation tokens
+        assertEquals("Command status", CommandLineInterface.RETURN_SUCCESS,
+                cli.execute("archive", "query", "-limit", "1",
+                            "-criteria", "signerid EQ " + TESTTSID,
+                            "-criteria", "archiveid EQ " + archiveId,
+                            "-paged"));
+        final String page1 = cli.getOut().toString();
+        Matcher matcher = CONTINUE_WITH.matcher(page1);
+        assertTrue("Should print continuation token: " + page1, matcher.find());
+
+        assertEquals("Command status", CommandLineInterface.RETURN_SUCCESS,
+                cli.execute("archive", "query", "-limit", "1",
+                            "-criteria", "signerid EQ " + TESTTSID,
+                            "-criteria", "archiveid EQ " + archiveId,
+                            "-after", matcher.group(1)));
+        final String page2 = cli.getOut().toString();
+        // Request and response could have the same time in which case the
+        // uniqueId decides the order
+        assertTrue("Should get request and response on different pages: " + page1 + page2,
+                (page1.contains("RESPONSE, " + TESTTSID) && page2.contains("REQUEST, " + TESTTSID))
+                || (page1.contains("REQUEST, " + TESTTSID) && page2.contains("RESPONSE, " + TESTTSID)));
+        matcher = CONTINUE_WITH.matcher(page2);
+        assertTrue("Should print continuation token: " + page2, matcher.find());
+
+        assertEquals("Command status", CommandLineInterface.RETURN_SUCCESS,
+                cli.execute("archive", "query", "-limit", "1",
+                            "-criteria", "signerid EQ " + TESTTSID,
+                            "-criteria", "archiveid EQ " + archiveId,
+                            "-after", matcher.group(1)));
+        assertNotPrinted("", cli.getOut(), archiveId + ", ");
+        assertNotPrinted("", cli.getOut(), "continue with");
+
+        // test exporting the entries to a ZIP file
+        final File exportFile = new File(getSignServerHome() + "/tmp/archive-export-" + archiveId + ".zip");
+        try {
+            assertEquals("Command status", CommandLineInterface.RETURN_SUCCESS,
+                    cli.execute("archive", "export",
+                                "-outfile", exportFile.getAbsolutePath(),
+                                "-criteria", "signerid EQ " + TESTTSID,
+                                "-criteria", "archiveid EQ " + archiveId,
+                                "-batchsize", "1"));
+            assertPrinted("", cli.getOut(), "Exported 2 archive entries");
+
+            final List<String> names = new ArrayList<>();
+            String manifest = null;
+            try (ZipInputStream zip = new ZipInputStream(new FileInputStream(exportFile))) {
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    names.add(entry.getName());
+                    if ("MANIFEST.csv".equals(entry.getName())) {
+                        manifest = new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+                    }
+                }
+            }
+            assertTrue("Should contain request: " + names, names.contains(TESTTSID + "/" + archiveId + ".request"));
+            assertTrue("Should contain response: " + names, names.contains(TESTTSID + "/" + archiveId + ".response"));
+            assertNotNull("Should contain manifest: " + names, manifest);
+            assertEquals("Manifest lines: " + manifest, 3, manifest.split("\n").length);
+        } finally {
+            exportFile.delete();
+        }
     }
 
     @Test
@@ -8,6 +8,7 @@ import org.bouncycastle.util.encoders.Base64;
 import org.json.simple.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
+import org.signserver.common.GlobalConfiguration;
 import org.signserver.common.InvalidWorkerIdException;
 import org.signserver.module.cmssigner.CMSSigner;
 import org.signserver.module.cmssigner.PlainSigner;
@@ -16,6 +17,8 @@ import org.signserver.testutils.ModulesTestCase;
 import org.signserver.testutils.RestTestUtils;
 
 import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import static io.restassured.RestAssured.given;
 import static io.restassured.http.ContentType.JSON;
@@ -124,6 +127,70 @@ public class RestWorkersTest extends ModulesTestCase {
     }
 
 
+    /**
+     * Test REST POST workers process binary by worker name, signing data with
+     * PlainSigner and getting the signature as the response body.
+     *
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testRestPostWorkersPlainSignerProcessBinary() throws Exception {
+        LOG.debug("testRestPostWorkersPlainSignerProcessBinary");
+        try {
+            addSigner(PlainSigner.class.getName(), PLAINSIGNER_WORKER_ID, PLAINSIGNER_WORKER_NAME, true);
+            Response response = given()
+                    .header("X-Keyfactor-Requested-With", "1")
+                    .contentType("application/octet-stream")
+                    .queryParam("REQUEST_METADATA.FILENAME", "data.txt")
+                    .body("Sample Text!".getBytes(StandardCharsets.UTF_8))
+                    .when()
+                    .post(baseURL + "/workers/" + PLAINSIGNER_WORKER_NAME + "/process/binary")
+                    .then()
+                    .statusCode(200)
+                    .extract().response();
+
+            assertNotNull("Check response contains archive ID header.", response.getHeader("X-SignServer-Archive-Id"));
+            assertNotNull("Check response contains signer certificate header.", response.getHeader("X-SignServer-Signer-Certificate"));
+            assertTrue("Check response contains signature.", response.asByteArray().length > 0);
+        } finally {
+            removeWorker(PLAINSIGNER_WORKER_ID);
+        }
+    }
+
+    /**
+     * Test REST POST workers process binary with a body larger than the
+     * maximum upload size. Should return status code 413 like the process
+     * servlet.
+     *
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testRestPostWorkersProcessBinaryTooLarge() throws Exception {
+        LOG.debug("testRestPostWorkersProcessBinaryTooLarge");
+        try {
+            addSigner(PlainSigner.class.getName(), PLAINSIGNER_WORKER_ID, PLAINSIGNER_WORKER_NAME, true);
+            getGlobalSession().setProperty(GlobalConfiguration.SCOPE_GLOBAL, "HTTP_MAX_UPLOAD_SIZE", "700"); // 700 bytes max
+            getGlobalSession().reload();
+
+            final byte[] data = new byte[701];
+            Arrays.fill(data, (byte) 'a');
+            Response response = given()
+                    .header("X-Keyfactor-Requested-With", "1")
+                    .contentType("application/octet-stream")
+                    .body(data)
+                    .when()
+                    .post(baseURL + "/workers/" + PLAINSIGNER_WORKER_NAME + "/process/binary")
+                    .then()
+                    .extract().response();
+
+            assertEquals("Check response status code is 413.", 413, response.statusCode());
+        } finally {
+            getGlobalSession().removeProperty(GlobalConfiguration.SCOPE_GLOBAL, "HTTP_MAX_UPLOAD_SIZE");
+            getGlobalSession().reload();
+            removeWorker(PLAINSIGNER_WORKER_ID);
+        }
+    }
+
     /**
      * Test REST POST workers process by worker ID, signing a pdf file sending to PDFSigner in base64 encoded form.
      *
@@ -12,12 +12,14 @@
  *************************************************************************/
 package org.signserver.server.archive;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import org.apache.log4j.Logger;
+import org.cesecore.util.query.Criteria;
 import org.cesecore.util.query.QueryCriteria;
 import org.cesecore.util.query.elems.RelationalOperator;
 import org.cesecore.util.query.elems.Term;
@@ -199,6 +201,52 @@ public class ArchiveTest extends ArchiveTestCase {
                 metadatas.iterator().next().getArchiveData());
     }
 
+    /**
+     * Test paging through the archive using continuation tokens gives the
+     * same entries as the offset based search, in the same order and without
+     * duplicates.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void test06archivePagedQuery() throws Exception {
+        LOG.debug(">test06archivePagedQuery");
+
+        getWorkerSession().setWorkerProperty(getSignerIdDummy1(), "ARCHIVE", "TRUE");
+        getWorkerSession().reloadConfiguration(getSignerIdDummy1());
+
+        Thread.sleep(10);
+        final long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            testArchive("<document id=\"" + RANDOM.nextLong() + "\"/>");
+        }
+
+        final QueryCriteria qc = QueryCriteria.create()
+                .add(new Term(RelationalOperator.GE, ArchiveMetadata.TIME, timestamp))
+                .add(Criteria.orderDesc(ArchiveMetadata.TIME))
+                .add(Criteria.orderDesc(ArchiveMetadata.UNIQUE_ID));
+        final List<String> expected = new ArrayList<>();
+        for (ArchiveMetadata entry : getWorkerSession().searchArchive(0, 10, qc, false)) {
+            expected.add(entry.getUniqueId());
+        }
+        assertEquals("Number of archive entries", 5, expected.size());
+
+        final List<String> actual = new ArrayList<>();
+        String token = null;
+        List<ArchiveMetadata> page;
+        do {
+            page = getWorkerSession().searchArchiveAfter(token, 2, qc, true);
+            for (ArchiveMetadata entry : page) {
+                assertNotNull("Should include archive data", entry.getArchiveData());
+                actual.add(entry.getUniqueId());
+                token = entry.getContinuationToken();
+            }
+        } while (page.size() == 2);
+
+        assertEquals("Same entries in the same order", expected, actual);
+
+        LOG.debug("<test06archivePagedQuery");
+    }
+
     /**
      * Remove the workers created etc.
      * @throws Exception in case of error
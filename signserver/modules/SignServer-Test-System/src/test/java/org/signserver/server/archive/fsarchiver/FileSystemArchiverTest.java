@@ -0,0 +1,145 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.archive.fsarchiver;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.signserver.common.ArchiveDataVO;
+import org.signserver.common.WorkerIdentifier;
+import org.signserver.server.archive.ArchiveTestCase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the FileSystemArchiver.
+ *
+ * Note: The archive directory is created in the temp directory so this test
+ * assumes the application server is running on the same host.
+ *
+ * @author agent
+ * @version $Id$
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class FileSystemArchiverTest extends ArchiveTestCase {
+
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getLogger(FileSystemArchiverTest.class);
+
+    private static final Random RANDOM = new Random();
+
+    private static final String ARCHIVER = "org.signserver.server.archive.fsarchiver.FileSystemArchiver";
+
+    private static File archiveDirectory;
+
+    @Test
+    public void test00SetupDatabase() throws Exception {
+        archiveDirectory = Files.createTempDirectory("fsarchiver").toFile();
+        addDummySigner(getSignerIdDummy1(), getSignerNameDummy1(), true);
+        addTimeStampSigner(getSignerIdTimeStampSigner1(), getSignerNameTimeStampSigner1(), true);
+    }
+
+    /**
+     * Tests that a missing or non-existing archive directory gives an error.
+     * @throws Exception In case of error.
+     */
+    @Test
+    public void test10missingArchiveDirectory() throws Exception {
+        final int signerId = getSignerIdDummy1();
+
+        getWorkerSession().setWorkerProperty(signerId, "ARCHIVERS", ARCHIVER);
+        getWorkerSession().removeWorkerProperty(signerId, "ARCHIVER0.ARCHIVE_DIRECTORY");
+        getWorkerSession().reloadConfiguration(signerId);
+
+        List<String> fatalErrors = getWorkerSession().getStatus(new WorkerIdentifier(signerId)).getFatalErrors();
+        assertTrue("Should mention missing property: " + fatalErrors,
+                fatalErrors.toString().contains("ARCHIVER0.ARCHIVE_DIRECTORY"));
+
+        getWorkerSession().setWorkerProperty(signerId, "ARCHIVER0.ARCHIVE_DIRECTORY",
+                new File(archiveDirectory, "non-existing").getAbsolutePath());
+        getWorkerSession().reloadConfiguration(signerId);
+
+        fatalErrors = getWorkerSession().getStatus(new WorkerIdentifier(signerId)).getFatalErrors();
+        assertTrue("Should mention not a directory: " + fatalErrors,
+                fatalErrors.toString().contains("Not a directory"));
+    }
+
+    /**
+     * Tests archiving to the file system and that the same content is only
+     * stored once.
+     * @throws Exception In case of error.
+     */
+    @Test
+    public void test30archiveAndDeduplicate() throws Exception {
+        LOG.debug(">test30archiveAndDeduplicate");
+
+        final int signerId = getSignerIdDummy1();
+        getWorkerSession().setWorkerProperty(signerId, "ARCHIVERS", ARCHIVER);
+        getWorkerSession().setWorkerProperty(signerId, "ARCHIVER0.ARCHIVE_DIRECTORY",
+                archiveDirectory.getAbsolutePath());
+        getWorkerSession().reloadConfiguration(signerId);
+        assertEquals("fatal errors", "[]",
+                getWorkerSession().getStatus(new WorkerIdentifier(signerId)).getFatalErrors().toString());
+
+        final String document = "<document id=\"" + RANDOM.nextLong() + "\"/>";
+        final ArchiveDataVO archiveData1 = testArchive(document);
+        assertEquals("type of archive", ArchiveDataVO.TYPE_RESPONSE, archiveData1.getType());
+        assertTrue("archived bytes", archiveData1.getArchivedBytes().length > 0);
+
+        final ArchiveDataVO archiveData2 = testArchive(document);
+        assertFalse("different archive ids",
+                archiveData1.getArchiveId().equals(archiveData2.getArchiveId()));
+
+        assertEquals("files in archive", 1,
+                FileUtils.listFiles(archiveDirectory, null, true).size());
+
+        LOG.debug("<test30archiveAndDeduplicate");
+    }
+
+    @Test
+    public void test50archiveRequestAndResponse() throws Exception {
+        LOG.debug(">test50archiveRequestAndResponse");
+
+        final int signerId = getSignerIdTimeStampSigner1();
+        getWorkerSession().removeWorkerProperty(signerId, "ARCHIVE");
+        getWorkerSession().setWorkerProperty(signerId, "ARCHIVERS", ARCHIVER);
+        getWorkerSession().setWorkerProperty(signerId, "ARCHIVER0.ARCHIVE_DIRECTORY",
+                archiveDirectory.getAbsolutePath());
+        getWorkerSession().setWorkerProperty(signerId, "ARCHIVER0.ARCHIVE_OF_TYPE", "REQUEST_AND_RESPONSE");
+        getWorkerSession().reloadConfiguration(signerId);
+
+        archiveRequestAndResponse(signerId);
+
+        LOG.debug("<test50archiveRequestAndResponse");
+    }
+
+    /**
+     * Remove the workers created etc.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void test99TearDownDatabase() throws Exception {
+        removeWorker(getSignerIdDummy1());
+        removeWorker(getSignerIdTimeStampSigner1());
+        FileUtils.deleteQuietly(archiveDirectory);
+    }
+}
@@ -82,4 +82,67 @@ public class ValidationCacheTest {
         Thread.sleep(1000);
         assertTrue(cache.get(cert2) == null);
     }
+
+    /**
+     * Tests that the oldest validations are evicted when the cache is full
+     * and that the lookups are counted.
+     */
+    @Test
+    public void testValidationCacheMaxEntries() {
+        ArrayList<String> cachedIssuerDNs = new ArrayList<>();
+        cachedIssuerDNs.add(CertTools.getIssuerDN(cert1));
+        cachedIssuerDNs.add(CertTools.getIssuerDN(cert2));
+        cachedIssuerDNs.add(CertTools.getIssuerDN(cert3));
+        ValidationCache cache = new ValidationCache(cachedIssuerDNs, 60000, 2);
+
+        cache.put(cert1, new Validation(cert1, null, Validation.Status.VALID, "TESTMESSAGE"));
+        cache.put(cert2, new Validation(cert2, null, Validation.Status.VALID, "TESTMESSAGE"));
+        cache.put(cert2, new Validation(cert2, null, Validation.Status.REVOKED, "TESTMESSAGE"));
+        assertEquals(2, cache.size());
+        cache.put(cert3, new Validation(cert3, null, Validation.Status.VALID, "TESTMESSAGE"));
+        assertEquals(2, cache.size());
+
+        assertNull("oldest evicted", cache.get(cert1));
+        assertEquals(Validation.Status.REVOKED, cache.get(cert2).getStatus());
+        assertNotNull(cache.get(cert3));
+        assertEquals("evictions", 1, cache.getEvictions());
+        assertEquals("hits", 2, cache.getHits());
+        assertEquals("misses", 1, cache.getMisses());
+    }
+
+    /**
+     * Tests that putting the same certificate again replaces its entry in
+     * the expiry order instead of adding another one and that the replaced
+     * validation is the one evicted last.
+     */
+    @Test
+    public void testValidationCacheReplace() {
+        ArrayList<String> cachedIssuerDNs = new ArrayList<>();
+        cachedIssuerDNs.add(CertTools.getIssuerDN(cert1));
+        cachedIssuerDNs.add(CertTools.getIssuerDN(cert2));
+        cachedIssuerDNs.add(CertTools.getIssuerDN(cert3));
+        ValidationCache cache = new ValidationCache(cachedIssuerDNs, 60000, 2);
+
+        cache.put(cert1, new Validation(cert1, null, Validation.Status.VALID, "TESTMESSAGE"));
+        for (int i = 0; i < 100; i++) {
+            cache.put(cert2, new Validation(cert2, null, Validation.Status.VALID, "TESTMESSAGE"));
+        }
+        assertEquals("size", 2, cache.size());
+        assertEquals("queue size", 2, cache.queueSize());
+
+        cache.put(cert1, new Validation(cert1, null, Validation.Status.REVOKED, "TESTMESSAGE"));
+        cache.put(cert3, new Validation(cert3, null, Validation.Status.VALID, "TESTMESSAGE"));
+        assertEquals("queue size", 2, cache.queueSize());
+        assertNull("oldest evicted", cache.get(cert2));
+        assertEquals(Validation.Status.REVOKED, cache.get(cert1).getStatus());
+        assertEquals("evictions", 1, cache.getEvictions());
+    }
+
+    /**
+     * Tests that a cache without room for any validation is not accepted.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidationCacheNoEntries() {
+        new ValidationCache(new ArrayList<>(), 60000, 0);
+    }
 }
@@ -38,6 +38,11 @@ public class KeyUsageCounterServiceMock implements IKeyUsageCounterDataService {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
+    @Override
+    public boolean incrementIfWithinLimit(String keyHash, long limit, long amount) {
+        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    }
+
     @Override
     public boolean isWithinLimit(String keyHash, long keyUsageLimit) {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -33,6 +33,7 @@ import org.signserver.common.IllegalRequestException;
 import org.signserver.common.InvalidWorkerIdException;
 import org.signserver.common.KeyTestResult;
 import org.signserver.common.OperationUnsupportedException;
+import org.signserver.common.ProcessingMetrics;
 import org.signserver.common.QueryException;
 import org.signserver.common.RequestContext;
 import org.signserver.common.RequestMetadata;
@@ -351,6 +352,16 @@ public class WorkerSessionMock implements WorkerSessionLocal,
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    @Override
+    public ProcessingMetrics getProcessingMetrics(WorkerIdentifier workerId) throws InvalidWorkerIdException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public void resetProcessingMetrics(WorkerIdentifier workerId) throws InvalidWorkerIdException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
     @Override
     public boolean removeKey(AdminInfo adminInfo, WorkerIdentifier signerId, String alias) throws CryptoTokenOfflineException, InvalidWorkerIdException, KeyStoreException, SignServerException {
         throw new UnsupportedOperationException("Not supported yet.");
@@ -458,6 +469,19 @@ public class WorkerSessionMock implements WorkerSessionLocal,
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    @Override
+    public List<ArchiveMetadata> searchArchiveAfter(String continuationToken,
+            int max, QueryCriteria criteria, final boolean includeData) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public List<ArchiveMetadata> searchArchiveAfter(AdminInfo adminInfo,
+            String continuationToken, int max, QueryCriteria criteria,
+            final boolean includeData) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
     @Override
     public List<ArchiveMetadata> searchArchiveWithIds(AdminInfo adminInfo,
         List<String> uniqueIds, boolean includeData) throws AuthorizationDeniedException {
@@ -39,6 +39,7 @@ import org.signserver.common.InvalidWorkerIdException;
 import org.signserver.common.KeyTestResult;
 import org.signserver.common.NoSuchWorkerException;
 import org.signserver.common.OperationUnsupportedException;
+import org.signserver.common.ProcessingMetrics;
 import org.signserver.common.QueryException;
 import org.signserver.common.SignServerException;
 import org.signserver.common.UnsupportedCryptoTokenParameter;
@@ -242,6 +243,16 @@ public class WorkerSessionRest implements WorkerSessionRemote {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    @Override
+    public ProcessingMetrics getProcessingMetrics(WorkerIdentifier workerId) throws InvalidWorkerIdException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public void resetProcessingMetrics(WorkerIdentifier workerId) throws InvalidWorkerIdException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
     @Override
     public boolean removeKey(WorkerIdentifier signerId, String alias) throws CryptoTokenOfflineException, InvalidWorkerIdException, KeyStoreException, SignServerException {
         throw new UnsupportedOperationException("Not supported yet.");
@@ -297,6 +308,11 @@ public class WorkerSessionRest implements WorkerSessionRemote {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    @Override
+    public List<ArchiveMetadata> searchArchiveAfter(String continuationToken, int max, QueryCriteria criteria, boolean includeData) throws AuthorizationDeniedException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
     @Override
     public List<ArchiveMetadata> searchArchiveWithIds(List<String> uniqueIds, boolean includeData) throws AuthorizationDeniedException {
         throw new UnsupportedOperationException("Not supported yet.");
@@ -355,6 +355,25 @@ public interface WorkerSession {
     long getKeyUsageCounterValue(final WorkerIdentifier workerId) 
             throws CryptoTokenOfflineException;
 
+    /**
+     * Returns the time spent in each phase of processing requests by the
+     * worker since it was first used after startup or the metrics were
+     * reset.
+     * @param workerId of the worker
+     * @return A copy of the processing metrics
+     * @throws InvalidWorkerIdException In case the worker does not exist
+     */
+    ProcessingMetrics getProcessingMetrics(WorkerIdentifier workerId)
+            throws InvalidWorkerIdException;
+
+    /**
+     * Forgets the processing metrics recorded so far by the worker.
+     * @param workerId of the worker
+     * @throws InvalidWorkerIdException In case the worker does not exist
+     */
+    void resetProcessingMetrics(WorkerIdentifier workerId)
+            throws InvalidWorkerIdException;
+
     /**
      * Attempt to remove the specified key with the key alias.
      *
@@ -494,6 +513,24 @@ public interface WorkerSession {
             int max, QueryCriteria criteria, boolean includeData)
             throws AuthorizationDeniedException; 
     
+    /**
+     * Query contents of archive continuing after the entry identified by a
+     * continuation token instead of skipping a number of entries.
+     * The result is ordered by time and uniqueId, newest first.
+     * 
+     * @param continuationToken Continuation token of the last entry of the
+     * previous page or null to start with the newest entry
+     * @param max Maximum number of results returned, 0 means all matching results
+     * @param criteria Search criteria for matching results (any ordering is ignored)
+     * @param includeData If true, include actual archive data in entries
+     * @return List of metadata objects describing matching entries
+     * @throws AuthorizationDeniedException
+     * @see ArchiveMetadata#getContinuationToken()
+     */
+    List<ArchiveMetadata> searchArchiveAfter(String continuationToken,
+            int max, QueryCriteria criteria, boolean includeData)
+            throws AuthorizationDeniedException;
+    
     /**
      * Query contents of archive based on list of uniqueIds (primary key in DB).
      * 
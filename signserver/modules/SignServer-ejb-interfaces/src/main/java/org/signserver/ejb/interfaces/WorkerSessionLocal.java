@@ -420,6 +420,28 @@ public interface WorkerSessionLocal extends WorkerSession {
             boolean includeData)
             throws AuthorizationDeniedException;
 
+    /**
+     * Query contents of archive continuing after the entry identified by a
+     * continuation token instead of skipping a number of entries.
+     * The result is ordered by time and uniqueId, newest first.
+     *
+     * @param adminInfo Administrator information
+     * @param continuationToken Continuation token of the last entry of the
+     * previous page or null to start with the newest entry
+     * @param max Maximum number of results returned, 0 means all matching
+     * results
+     * @param criteria Search criteria for matching results (any ordering is
+     * ignored)
+     * @param includeData If true, archive data is included in the meta data
+     * entries
+     * @return List of metadata objects describing matching entries
+     * @throws AuthorizationDeniedException
+     */
+    List<ArchiveMetadata> searchArchiveAfter(AdminInfo adminInfo,
+            String continuationToken, int max, QueryCriteria criteria,
+            boolean includeData)
+            throws AuthorizationDeniedException;
+
     /**
      * Query contents of archive based on list of unique IDs (primary key in
      * DB).
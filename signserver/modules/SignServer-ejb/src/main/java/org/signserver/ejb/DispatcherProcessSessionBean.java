@@ -35,6 +35,7 @@ import org.signserver.ejb.interfaces.DispatcherProcessSessionLocal;
 import org.signserver.ejb.interfaces.DispatcherProcessTransactionSessionLocal;
 import org.signserver.ejb.interfaces.InternalProcessSessionLocal;
 import org.signserver.ejb.interfaces.ProcessSessionLocal;
+import org.signserver.ejb.worker.impl.AdmissionController;
 import org.signserver.ejb.worker.impl.WorkerManagerSingletonBean;
 import org.signserver.server.entities.FileBasedKeyUsageCounterDataService;
 import org.signserver.server.entities.IKeyUsageCounterDataService;
@@ -139,11 +140,19 @@ public class DispatcherProcessSessionBean implements DispatcherProcessSessionLoc
             throws IllegalRequestException, CryptoTokenOfflineException,
             SignServerException {
         requestContext.setServices(servicesImpl);
-        if (SessionUtils.needsTransaction(workerManagerSession, wi)) {
-            // use separate transaction bean to avoid deadlock
-            return dispatcherProcessTransSession.processWithTransaction(adminInfo, wi, request, requestContext);
-        } else {
-            return processImpl.process(adminInfo, wi, request, requestContext);
+        // Wait for admission before any transaction is started
+        final AdmissionController admitted = processImpl.admit(wi, requestContext);
+        try {
+            if (SessionUtils.needsTransaction(workerManagerSession, wi)) {
+                // use separate transaction bean to avoid deadlock
+                return dispatcherProcessTransSession.processWithTransaction(adminInfo, wi, request, requestContext);
+            } else {
+                return processImpl.process(adminInfo, wi, request, requestContext);
+            }
+        } finally {
+            if (admitted != null) {
+                admitted.release();
+            }
         }
     }
 
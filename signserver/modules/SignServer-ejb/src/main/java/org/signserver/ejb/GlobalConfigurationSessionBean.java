@@ -105,7 +105,7 @@ public class GlobalConfigurationSessionBean implements GlobalConfigurationSessio
         auditLog(adminInfo, SignServerEventTypes.SET_GLOBAL_PROPERTY, scope + key, value);
 
         if (cache.getCurrentState().equals(GlobalConfiguration.STATE_OUTOFSYNC)) {
-            cache.getCachedGlobalConfig().setProperty(propertyKeyHelper(scope, key), value);
+            cache.setCachedProperty(propertyKeyHelper(scope, key), value);
         } else {
             setPropertyHelper(propertyKeyHelper(scope, key), value);
         }
@@ -138,7 +138,7 @@ public class GlobalConfigurationSessionBean implements GlobalConfigurationSessio
         auditLog(adminInfo, SignServerEventTypes.REMOVE_GLOBAL_PROPERTY, scope + key, null);
 
         if (cache.getCurrentState().equals(GlobalConfiguration.STATE_OUTOFSYNC)) {
-            cache.getCachedGlobalConfig().remove(propertyKeyHelper(scope, key));
+            cache.removeCachedProperty(propertyKeyHelper(scope, key));
         } else {
             try {
                 retval = getGlobalConfigurationDataService().removeGlobalProperty(propertyKeyHelper(scope, key));
@@ -146,7 +146,7 @@ public class GlobalConfigurationSessionBean implements GlobalConfigurationSessio
             } catch (Throwable e) {
                 LOG.error("Error connecting to database, configuration is un-syncronized", e);
                 cache.setCurrentState(GlobalConfiguration.STATE_OUTOFSYNC);
-                cache.getCachedGlobalConfig().remove(propertyKeyHelper(scope, key));
+                cache.removeCachedProperty(propertyKeyHelper(scope, key));
             }
         }
         return retval;
@@ -166,35 +166,37 @@ public class GlobalConfigurationSessionBean implements GlobalConfigurationSessio
      */
     @Override
     public GlobalConfiguration getGlobalConfiguration() {
-        GlobalConfiguration retval;
+        GlobalConfiguration retval = cache.getSnapshot();
 
-        if (cache.getCachedGlobalConfig() == null) {
-            Properties properties = new Properties();
+        while (retval == null) {
+            if (cache.getCachedGlobalConfig() == null) {
+                Properties properties = new Properties();
 
-            Iterator<GlobalConfigurationDataBean> iter = getGlobalConfigurationDataService().findAll().iterator();
-            while (iter.hasNext()) {
-                GlobalConfigurationDataBean data = iter.next();
-                String rawkey = data.getPropertyKey();
-                String propertyValue = data.getPropertyValue();
-                
-                if (rawkey.startsWith(GlobalConfiguration.SCOPE_NODE)) {
-                    String key = rawkey.replaceFirst(WorkerConfig.getNodeId() + ".", "");
-                    properties.setProperty(key, propertyValue == null ? "" : propertyValue);
-                } else {
-                    if (rawkey.startsWith(GlobalConfiguration.SCOPE_GLOBAL)) {
-                    	properties.setProperty(rawkey,
-                    			propertyValue == null ? "" : propertyValue);
+                Iterator<GlobalConfigurationDataBean> iter = getGlobalConfigurationDataService().findAll().iterator();
+                while (iter.hasNext()) {
+                    GlobalConfigurationDataBean data = iter.next();
+                    String rawkey = data.getPropertyKey();
+                    String propertyValue = data.getPropertyValue();
+
+                    if (rawkey.startsWith(GlobalConfiguration.SCOPE_NODE)) {
+                        String key = rawkey.replaceFirst(WorkerConfig.getNodeId() + ".", "");
+                        properties.setProperty(key, propertyValue == null ? "" : propertyValue);
                     } else {
-                        LOG.error("Illegal property in Global Configuration " + rawkey);
+                        if (rawkey.startsWith(GlobalConfiguration.SCOPE_GLOBAL)) {
+                            properties.setProperty(rawkey,
+                                    propertyValue == null ? "" : propertyValue);
+                        } else {
+                            LOG.error("Illegal property in Global Configuration " + rawkey);
+                        }
                     }
                 }
-            }
 
-            cache.setCachedGlobalConfig(properties);
+                cache.setCachedGlobalConfig(properties);
+            }
+            // The configuration is created once per version and then shared
+            // (null if the cache was cleared in between, then load again)
+            retval = cache.createSnapshot(CompileTimeSettings.getInstance().getProperty(CompileTimeSettings.SIGNSERVER_VERSION));
         }
-        retval = new GlobalConfiguration(cache.getCachedGlobalConfig(), 
-                cache.getCurrentState(), 
-                CompileTimeSettings.getInstance().getProperty(CompileTimeSettings.SIGNSERVER_VERSION));
 
         return retval;
     }
@@ -305,7 +307,7 @@ public class GlobalConfigurationSessionBean implements GlobalConfigurationSessio
             String message = "Error connecting to database, configuration is un-syncronized :";
             LOG.error(message, e);
             cache.setCurrentState(GlobalConfiguration.STATE_OUTOFSYNC);
-            cache.getCachedGlobalConfig().setProperty(key, value);
+            cache.setCachedProperty(key, value);
         }
 
     }
@@ -60,6 +60,7 @@ import org.signserver.common.data.SODRequest;
 import org.signserver.common.data.SODResponse;
 import org.signserver.ejb.interfaces.DispatcherProcessSessionLocal;
 import org.signserver.ejb.interfaces.InternalProcessSessionLocal;
+import org.signserver.ejb.worker.impl.AdmissionController;
 import org.signserver.ejb.worker.impl.WorkerManagerSingletonBean;
 import org.signserver.server.entities.FileBasedKeyUsageCounterDataService;
 import org.signserver.server.entities.IKeyUsageCounterDataService;
@@ -336,11 +337,19 @@ public class ProcessSessionBean implements ProcessSessionRemote, ProcessSessionL
             LOG.debug(">process: " + wi);
         }
         
-        if (SessionUtils.needsTransaction(workerManagerSession, wi)) {
-            // use separate transaction bean to avoid deadlock
-            return processTransSession.processWithTransaction(adminInfo, wi, request, requestContext);
-        } else {
-            return processImpl.process(adminInfo, wi, request, requestContext);
+        // Wait for admission before any transaction is started
+        final AdmissionController admitted = processImpl.admit(wi, requestContext);
+        try {
+            if (SessionUtils.needsTransaction(workerManagerSession, wi)) {
+                // use separate transaction bean to avoid deadlock
+                return processTransSession.processWithTransaction(adminInfo, wi, request, requestContext);
+            } else {
+                return processImpl.process(adminInfo, wi, request, requestContext);
+            }
+        } finally {
+            if (admitted != null) {
+                admitted.release();
+            }
         }
     }        
     
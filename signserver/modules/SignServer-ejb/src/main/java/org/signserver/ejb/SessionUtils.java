@@ -17,6 +17,7 @@ import org.signserver.common.WorkerIdentifier;
 import org.signserver.ejb.worker.impl.PreloadedWorkerConfig;
 import org.signserver.ejb.worker.impl.WorkerManagerSingletonBean;
 import org.signserver.ejb.worker.impl.WorkerWithComponents;
+import org.signserver.server.dispatchers.BaseDispatcher;
 
 /**
  * Utility functions for session beans.
@@ -38,8 +39,16 @@ public class SessionUtils {
             final WorkerWithComponents worker = session.getWorkerWithComponents(wi);
             final PreloadedWorkerConfig pwc = worker.getPreloadedConfig();
 
-            return !worker.getArchivers().isEmpty() ||
-                   !pwc.isDisableKeyUsageCounter() || pwc.isKeyUsageLimitSpecified();
+            if (!worker.getArchivers().isEmpty()) {
+                return true;
+            }
+
+            // The key usage of a dispatcher is counted by the worker it
+            // dispatches to, in its own transaction
+            if (worker.getWorker() instanceof BaseDispatcher) {
+                return false;
+            }
+            return !pwc.isDisableKeyUsageCounter() || pwc.isKeyUsageLimitSpecified();
         } catch (NoSuchWorkerException e) {
             return false;
         }
@@ -59,6 +59,7 @@ import org.signserver.ejb.interfaces.GlobalConfigurationSessionLocal;
 import org.signserver.ejb.interfaces.ServiceTimerSessionLocal;
 import org.signserver.server.IWorker;
 import org.signserver.server.config.entities.FileBasedWorkerConfigDataService;
+import org.signserver.server.config.entities.JournaledWorkerConfigDataService;
 import org.signserver.statusrepo.StatusRepositorySessionLocal;
 
 /**
@@ -119,6 +120,12 @@ public class StartupSingletonBean {
         } catch (Exception ex) {
             LOG.info("Exception caught trying to cancel timers. This happens with some application servers: " + ex.getMessage());
         }
+
+        // Close the worker configuration journal
+        final FileBasedDatabaseManager nodb = FileBasedDatabaseManager.getInstance();
+        if (nodb.isUsed() && nodb.isJournaledWorkerConfig()) {
+            new JournaledWorkerConfigDataService(nodb).close();
+        }
     }
 
     @PostConstruct
@@ -226,7 +233,11 @@ public class StartupSingletonBean {
             }
             
             // Table upgrades
-            new FileBasedWorkerConfigDataService(nodb).upgrade();
+            if (nodb.isJournaledWorkerConfig()) {
+                new JournaledWorkerConfigDataService(nodb).upgrade();
+            } else {
+                new FileBasedWorkerConfigDataService(nodb).upgrade();
+            }
         }
 
         // Perform database upgrade if needed
@@ -31,13 +31,16 @@ import org.signserver.common.IArchivableProcessResponse;
 import org.signserver.common.IllegalRequestException;
 import org.signserver.common.NoSuchWorkerException;
 import org.signserver.common.NotGrantedException;
+import org.signserver.common.ProcessingMetrics;
 import org.signserver.common.RequestContext;
 import org.signserver.common.SignServerException;
 import org.signserver.common.WorkerConfig;
+import org.signserver.common.WorkerOverloadedException;
 import org.signserver.common.data.DocumentValidationResponse;
 import org.signserver.common.data.Request;
 import org.signserver.common.data.Response;
 import org.signserver.common.data.SignatureResponse;
+import org.signserver.ejb.worker.impl.AdmissionController;
 import org.signserver.ejb.worker.impl.WorkerManagerSingletonBean;
 import org.signserver.ejb.worker.impl.WorkerWithComponents;
 import org.signserver.server.AccounterException;
@@ -65,6 +68,7 @@ import org.signserver.ejb.worker.impl.PreloadedWorkerConfig;
 import org.signserver.server.IServices;
 import org.signserver.server.log.ExceptionLoggable;
 import org.signserver.server.log.Loggable;
+import org.signserver.server.dispatchers.BaseDispatcher;
 
 /**
  * Implements the business logic for the process method.
@@ -76,6 +80,9 @@ class WorkerProcessImpl {
     /** Log4j instance for this class. */
     private static final Logger LOG = Logger.getLogger(WorkerProcessImpl.class);
 
+    /** Request context key for the reason the request was not admitted. */
+    private static final String ADMISSION_FAILURE = "ADMISSION_FAILURE";
+
     private final EntityManager em;
 
     private final IKeyUsageCounterDataService keyUsageCounterDataService;
@@ -100,6 +107,46 @@ class WorkerProcessImpl {
 
     
 
+    /**
+     * Waits for the turn of the request if the number of concurrent requests
+     * to the worker is limited. Call this before starting any transaction
+     * for the processing so that the time spent waiting does not count
+     * towards the transaction timeout. A request not admitted is logged and
+     * failed by the process method.
+     *
+     * @param wi worker to process the request
+     * @param requestContext of the request
+     * @return the admission controller to release when the processing has
+     * finished or null if the request was not admitted or the worker does
+     * not limit the number of concurrent requests
+     */
+    public AdmissionController admit(final WorkerIdentifier wi, final RequestContext requestContext) {
+        final WorkerWithComponents worker;
+        try {
+            worker = workerManagerSession.getWorkerWithComponents(wi);
+        } catch (NoSuchWorkerException ex) {
+            // Logged when processing
+            return null;
+        }
+        final AdmissionController admissionController = worker.getAdmissionController();
+        if (admissionController == null) {
+            return null;
+        }
+
+        final ProcessingMetrics metrics = workerManagerSession.getProcessingMetrics(worker.getId());
+        final Object priority = requestContext.get(RequestContext.QOS_PRIORITY);
+        final long start = System.nanoTime();
+        try {
+            admissionController.acquire(priority instanceof Integer ? (Integer) priority : 0);
+            return admissionController;
+        } catch (WorkerOverloadedException ex) {
+            requestContext.put(ADMISSION_FAILURE, ex);
+            return null;
+        } finally {
+            metrics.record(ProcessingMetrics.Phase.QUEUE, System.nanoTime() - start);
+        }
+    }
+
     /**
      * @see WorkerSession#process(int, org.signserver.common.ProcessRequest, org.signserver.common.RequestContext)
      */
@@ -121,6 +168,7 @@ class WorkerProcessImpl {
         
         // Start time
         final long startTime = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
 
         // Map of log entries
         final LogMap logMap = LogMap.getInstance(requestContext);
@@ -188,6 +236,10 @@ class WorkerProcessImpl {
             requestContext.put(RequestContext.ORIGINAL_WORKER_IDENTIFIER, wiBoth);
         }
 
+        // Time spent in each phase
+        final ProcessingMetrics metrics = workerManagerSession.getProcessingMetrics(workerId);
+        long phaseStart;
+
         try {
             // Get processable
             if (!(worker.getWorker() instanceof IProcessable)) {
@@ -200,7 +252,12 @@ class WorkerProcessImpl {
             final IProcessable processable = (IProcessable) worker.getWorker();
 
             // Authorizer
-            handleAuthorization(processable, worker, request, logMap, adminInfo, workerLogger, requestContext);
+            phaseStart = System.nanoTime();
+            try {
+                handleAuthorization(processable, worker, request, logMap, adminInfo, workerLogger, requestContext);
+            } finally {
+                metrics.record(ProcessingMetrics.Phase.AUTHORIZATION, System.nanoTime() - phaseStart);
+            }
 
             // Check activation
             if (pwc.isDisabled()) {
@@ -223,8 +280,34 @@ class WorkerProcessImpl {
                 throw exception;
             }
 
-            // Process the request
-            final Response res = handleProcessing(processable, workerId, request, requestContext, logMap, workerLogger, adminInfo);
+            // Fail the request if it was not admitted
+            final Object rejected = requestContext.get(ADMISSION_FAILURE);
+            if (rejected instanceof WorkerOverloadedException) {
+                requestContext.remove(ADMISSION_FAILURE);
+                final WorkerOverloadedException ex = (WorkerOverloadedException) rejected;
+                logException(adminInfo, ex, logMap, workerLogger, requestContext);
+                throw ex;
+            }
+
+            // Process the request and tell the crypto tokens how it went
+            phaseStart = System.nanoTime();
+            CryptoInstances.setCompletionReported(requestContext);
+            Throwable failure = null;
+            final Response res;
+            try {
+                res = handleProcessing(processable, workerId, request, requestContext, logMap, workerLogger, adminInfo);
+            } catch (Throwable t) {
+                failure = t;
+                throw t;
+            } finally {
+                final CryptoInstances cryptoInstances = CryptoInstances.getInstance(requestContext);
+                cryptoInstances.complete(failure);
+                final long acquireTime = cryptoInstances.getAcquireTime();
+                if (acquireTime > 0) {
+                    metrics.record(ProcessingMetrics.Phase.CRYPTO_INSTANCE, acquireTime);
+                }
+                metrics.record(ProcessingMetrics.Phase.PROCESSING, System.nanoTime() - phaseStart - acquireTime);
+            }
 
             // Check signer certificate            
             Certificate signerCertificate = null;
@@ -234,14 +317,39 @@ class WorkerProcessImpl {
             handleSignerCertificate(signerCertificate, workerId, logMap, pwc, requestContext, workerLogger, adminInfo);
 
             // Charge the client if the request was successfull
-            handleAccounting(worker, requestContext, logMap, request, res, workerLogger, adminInfo);
+            phaseStart = System.nanoTime();
+            try {
+                handleAccounting(worker, requestContext, logMap, request, res, workerLogger, adminInfo);
+            } finally {
+                metrics.record(ProcessingMetrics.Phase.ACCOUNTING, System.nanoTime() - phaseStart);
+            }
 
             // Archiving
-            handleArchiving(res, worker, requestContext);
+            final List<Archiver> archivers = worker.getArchivers();
+            if (archivers != null && !archivers.isEmpty()) {
+                phaseStart = System.nanoTime();
+                try {
+                    handleArchiving(res, worker, requestContext);
+                } finally {
+                    metrics.record(ProcessingMetrics.Phase.ARCHIVING, System.nanoTime() - phaseStart);
+                }
+            }
 
-            // Check key usage limit
-            if (!pwc.isDisableKeyUsageCounter() || pwc.isKeyUsageLimitSpecified()) {
-                checkSignerKeyUsageCounter(signerCertificate, workerId, pwc.getKeyUsageLimit(), em, true, requestContext.getServices());
+            // Check key usage limit. A dispatcher returns the response from
+            // the worker it dispatched to, which has already counted the usage
+            // of the same key, so it is only checked against the limit above.
+            final boolean dispatched = processable instanceof BaseDispatcher;
+            if (!dispatched && (!pwc.isDisableKeyUsageCounter() || pwc.isKeyUsageLimitSpecified())) {
+                final Object keyUsageCount = requestContext.get(RequestContext.KEY_USAGE_COUNT);
+                final int increment = keyUsageCount instanceof Integer ? (Integer) keyUsageCount : 1;
+                if (increment > 0) {
+                    phaseStart = System.nanoTime();
+                    try {
+                        checkSignerKeyUsageCounter(signerCertificate, workerId, pwc.getKeyUsageLimit(), em, increment, requestContext.getServices());
+                    } finally {
+                        metrics.record(ProcessingMetrics.Phase.KEY_USAGE_COUNTER, System.nanoTime() - phaseStart);
+                    }
+                }
             }
 
             // Output successfully
@@ -274,7 +382,12 @@ class WorkerProcessImpl {
             if (loggable == null) {
             	logMap.put(IWorkerLogger.LOG_PROCESS_SUCCESS, true);
             }
-            workerLogger.log(adminInfo, logMap, requestContext);
+            phaseStart = System.nanoTime();
+            try {
+                workerLogger.log(adminInfo, logMap, requestContext);
+            } finally {
+                metrics.record(ProcessingMetrics.Phase.LOGGING, System.nanoTime() - phaseStart);
+            }
 
             LOG.debug("<process");
             return res;
@@ -285,6 +398,8 @@ class WorkerProcessImpl {
             LOG.error(exception.getMessage(), exception);
             throw exception;
         } finally {
+            metrics.record(ProcessingMetrics.Phase.TOTAL, System.nanoTime() - startNanos);
+
             // Check that the worker is behaving well and have returned all of
             // its aquired crypto instances
             final Collection<ICryptoInstance> cryptoInstances
@@ -318,11 +433,13 @@ class WorkerProcessImpl {
      * @param workerId
      * @param awc
      * @param em
+     * @param increment number of key usages to add to the counter or 0 to
+     * only check the value
      * @throws CryptoTokenOfflineException
      */
     private void checkSignerKeyUsageCounter(final Certificate cert,
             final int workerId, final long keyUsageLimit, EntityManager em,
-            final boolean increment, final IServices services)
+            final long increment, final IServices services)
         throws CryptoTokenOfflineException {
 
         if (cert != null) {
@@ -336,8 +453,8 @@ class WorkerProcessImpl {
                         + "Key hash: " + keyHash);
             }
 
-            if (increment) {
-                if (!keyUsageCounterDataService.incrementIfWithinLimit(keyHash, keyUsageLimit)) {
+            if (increment > 0) {
+                if (!keyUsageCounterDataService.incrementIfWithinLimit(keyHash, keyUsageLimit, increment)) {
                     final String message
                             = "Key usage limit exceeded or not initialized for worker "
                             + workerId;
@@ -474,7 +591,7 @@ class WorkerProcessImpl {
                 }
                 if (!pwc.isDisableKeyUsageCounter() || pwc.isKeyUsageLimitSpecified()) {
                     checkSignerKeyUsageCounter(signerCertificate, workerId, pwc.getKeyUsageLimit(), em,
-                            false, requestContext.getServices());
+                            0, requestContext.getServices());
                 }
             } catch (CryptoTokenOfflineException ex) {
                 final CryptoTokenOfflineException exception =
@@ -46,6 +46,7 @@ import org.signserver.admin.common.config.RekeyUtil;
 import org.signserver.common.*;
 import org.signserver.common.KeyTestResult;
 import org.signserver.common.util.PropertiesConstants;
+import org.signserver.ejb.worker.impl.AdmissionController;
 import org.signserver.ejb.worker.impl.WorkerManagerSingletonBean;
 import org.signserver.server.*;
 import org.signserver.server.archive.olddbarchiver.entities.ArchiveDataBean;
@@ -53,6 +54,7 @@ import org.signserver.server.archive.olddbarchiver.entities.ArchiveDataService;
 import org.signserver.server.cesecore.AlwaysAllowLocalAuthenticationToken;
 import org.signserver.server.config.entities.FileBasedWorkerConfigDataService;
 import org.signserver.server.config.entities.IWorkerConfigDataService;
+import org.signserver.server.config.entities.JournaledWorkerConfigDataService;
 import org.signserver.server.config.entities.WorkerConfigDataService;
 import org.signserver.common.DuplicateAliasException;
 import org.signserver.common.NoSuchAliasException;
@@ -74,6 +76,7 @@ import org.signserver.ejb.interfaces.WorkerSessionRemote;
 import org.signserver.ejb.interfaces.GlobalConfigurationSessionLocal;
 import org.signserver.ejb.interfaces.ServiceTimerSessionLocal;
 import org.signserver.server.archive.Archiver;
+import org.signserver.server.archive.fsarchiver.FileSystemArchiver;
 import org.signserver.server.cryptotokens.CryptoTokenHelper;
 import org.signserver.statusrepo.StatusRepositorySessionLocal;
 
@@ -124,14 +127,20 @@ public class WorkerSessionBean implements WorkerSessionLocal, WorkerSessionRemot
             if (LOG.isDebugEnabled()) {
                 LOG.debug("No EntityManager injected. Running without database.");
             }
-            workerConfigService = new FileBasedWorkerConfigDataService(FileBasedDatabaseManager.getInstance());
+            final FileBasedDatabaseManager nodb = FileBasedDatabaseManager.getInstance();
+            if (nodb.isJournaledWorkerConfig()) {
+                workerConfigService = new JournaledWorkerConfigDataService(nodb);
+            } else {
+                workerConfigService = new FileBasedWorkerConfigDataService(nodb);
+            }
             keyUsageCounterDataService = new FileBasedKeyUsageCounterDataService(FileBasedDatabaseManager.getInstance());
         } else {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("EntityManager injected. Running with database.");
             }
             workerConfigService = new WorkerConfigDataService(em);
-            archiveDataService = new ArchiveDataService(em);
+            archiveDataService = new ArchiveDataService(em, (signerId, reference) ->
+                    FileSystemArchiver.resolveArchivedFile(getWorkerConfig(signerId), reference));
             keyUsageCounterDataService = new KeyUsageCounterDataService(em);
         }
 
@@ -283,8 +292,13 @@ public class WorkerSessionBean implements WorkerSessionLocal, WorkerSessionRemot
             }
             
             errorsAtEjbLevel.addAll(worker.getCreateErrors());
-        
-            return new StaticWorkerStatus(worker.getWorker().getStatus(errorsAtEjbLevel, servicesImpl));
+
+            final WorkerStatusInfo info = worker.getWorker().getStatus(errorsAtEjbLevel, servicesImpl);
+            final AdmissionController admissionController = worker.getAdmissionController();
+            if (admissionController != null && info.getCompleteEntries() != null) {
+                info.getCompleteEntries().add(new WorkerStatusInfo.Entry("Admission control", admissionController.toString()));
+            }
+            return new StaticWorkerStatus(info);
         } catch (NoSuchWorkerException ex) {
             throw new InvalidWorkerIdException(ex.getMessage());
         }
@@ -307,6 +321,27 @@ public class WorkerSessionBean implements WorkerSessionLocal, WorkerSessionRemot
         return result;
     }
 
+    @Override
+    public ProcessingMetrics getProcessingMetrics(WorkerIdentifier workerId) throws InvalidWorkerIdException {
+        try {
+            final int id = workerManagerSession.getWorkerWithComponents(workerId).getId();
+            final ProcessingMetrics metrics = workerManagerSession.findProcessingMetrics(id);
+            return metrics == null ? new ProcessingMetrics() : metrics.copy();
+        } catch (NoSuchWorkerException ex) {
+            throw new InvalidWorkerIdException(ex.getMessage());
+        }
+    }
+
+    @Override
+    public void resetProcessingMetrics(WorkerIdentifier workerId) throws InvalidWorkerIdException {
+        try {
+            final int id = workerManagerSession.getWorkerWithComponents(workerId).getId();
+            workerManagerSession.resetProcessingMetrics(id);
+        } catch (NoSuchWorkerException ex) {
+            throw new InvalidWorkerIdException(ex.getMessage());
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.signserver.ejb.interfaces.WorkerSession#getWorkerId(java.lang.String)
      */
@@ -758,6 +793,7 @@ public class WorkerSessionBean implements WorkerSessionLocal, WorkerSessionRemot
         if (config.getProperties().size() <= config.getVirtualPropertiesNumber()) {
             workerConfigService.removeWorkerConfig(workerId);
             LOG.debug("WorkerConfig is empty and therefore removed.");
+            workerManagerSession.resetProcessingMetrics(workerId);
             auditLog(adminInfo, SignServerEventTypes.SET_WORKER_CONFIG, SignServerModuleTypes.WORKER_CONFIG, new WorkerIdentifier(workerId));
         } else {
             setWorkerConfig(adminInfo, workerId, config, null, null);
@@ -852,6 +888,7 @@ public class WorkerSessionBean implements WorkerSessionLocal, WorkerSessionRemot
 
         if (result) {
             LOG.debug("Worker " + workerId + " removed.");
+            workerManagerSession.resetProcessingMetrics(workerId);
             auditLog(adminInfo, SignServerEventTypes.SET_WORKER_CONFIG, SignServerModuleTypes.WORKER_CONFIG, new WorkerIdentifier(workerId));
         } else {
             LOG.debug("Removing worker with ID " + workerId + " failed.");
@@ -1374,7 +1411,7 @@ public class WorkerSessionBean implements WorkerSessionLocal, WorkerSessionRemot
              for (Object o : list) {
                  if (o instanceof ArchiveDataBean) {
                      final ArchiveDataBean adb = (ArchiveDataBean) o;
-                     result.add(adb.getArchiveDataVO());
+                     result.add(archiveDataService.toArchiveDataVO(adb));
                  }
              }
         }
@@ -1396,7 +1433,7 @@ public class WorkerSessionBean implements WorkerSessionLocal, WorkerSessionRemot
         } else {
             Collection<ArchiveDataBean> archives = archiveDataService.findAllByRequestIP(signerId, requestIP);
             for (ArchiveDataBean archive : archives) {
-                retval.add(archive.getArchiveDataVO());
+                retval.add(archiveDataService.toArchiveDataVO(archive));
             }
         }
 
@@ -1423,7 +1460,7 @@ public class WorkerSessionBean implements WorkerSessionLocal, WorkerSessionRemot
             Collection<ArchiveDataBean> archives = archiveDataService.
                     findAllByRequestCertificate(signerId, issuerDN, serialNumber);
             for (ArchiveDataBean archive : archives) {
-                retval.add(archive.getArchiveDataVO());
+                retval.add(archiveDataService.toArchiveDataVO(archive));
             }
         }
 
@@ -1550,6 +1587,27 @@ public class WorkerSessionBean implements WorkerSessionLocal, WorkerSessionRemot
         }
     }
 
+    @Override
+    public List<ArchiveMetadata> searchArchiveAfter(final String continuationToken,
+            final int max, final QueryCriteria criteria, final boolean includeData) {
+        return searchArchiveAfter(new AdminInfo("CLI user", null, null),
+                continuationToken, max, criteria, includeData);
+    }
+
+    @Override
+    public List<ArchiveMetadata> searchArchiveAfter(final AdminInfo adminInfo,
+            final String continuationToken, final int max,
+            final QueryCriteria criteria, final boolean includeData) {
+        if (archiveDataService == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Archiving to database is not supported when running without database");
+            }
+            return Collections.emptyList();
+        } else {
+            return archiveDataService.findMatchingCriteriaAfter(continuationToken, max, criteria, includeData);
+        }
+    }
+
     @Override
     public List<ArchiveMetadata> searchArchiveWithIds(AdminInfo adminInfo,
         List<String> uniqueIds, boolean includeData) {
@@ -0,0 +1,272 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.ejb.worker.impl;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.signserver.common.WorkerOverloadedException;
+
+/**
+ * Limits the number of requests processed by one worker at the same time.
+ *
+ * Requests beyond the limit wait in a queue where the ones with the highest
+ * priority are admitted first and requests with the same priority in the
+ * order they arrived. When the queue is full a request with higher priority
+ * than the lowest one queued takes its place, otherwise the new request is
+ * rejected right away. A request is also rejected if it has waited for the
+ * maximum queue time.
+ *
+ * A slot is handed over directly from the request releasing it to the next
+ * one in the queue so that a newly arrived request can not overtake the
+ * queued ones.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class AdmissionController {
+
+    private static final Comparator<Waiter> ORDER = Comparator
+            .comparingInt((Waiter w) -> -w.priority)
+            .thenComparingLong(w -> w.sequence);
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxQueueWaitNanos;
+    private final long retryAfter;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeSet<Waiter> queue = new TreeSet<>(ORDER);
+    private int active;
+    private long sequence;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder queueWaitTotal = new LongAdder();
+    private final AtomicLong queueWaitMax = new AtomicLong();
+
+    /**
+     * @param maxConcurrent maximum number of requests in progress
+     * @param maxQueued maximum number of requests waiting
+     * @param maxQueueWait maximum time in milliseconds to wait
+     * @param retryAfter seconds to suggest the client to wait when rejected
+     */
+    public AdmissionController(final int maxConcurrent, final int maxQueued, final long maxQueueWait, final long retryAfter) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWait);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Waits until the request can be processed. If this method returns
+     * normally {@link #release()} must be called when the request is done.
+     *
+     * @param priority of the request, higher value means higher priority
+     * @throws WorkerOverloadedException if the request was not admitted
+     */
+    public void acquire(final int priority) throws WorkerOverloadedException {
+        final Waiter waiter;
+        lock.lock();
+        try {
+            if (active < maxConcurrent && queue.isEmpty()) {
+                active++;
+                admitted.increment();
+                return;
+            }
+            if (queue.size() >= maxQueued) {
+                final Waiter lowest = queue.isEmpty() ? null : queue.last();
+                if (lowest == null || lowest.priority >= priority) {
+                    rejected.increment();
+                    throw new WorkerOverloadedException("Too many requests queued", retryAfter);
+                }
+                // Give the place in the queue to this request
+                queue.remove(lowest);
+                lowest.state = State.REJECTED;
+                lowest.condition.signal();
+            }
+            waiter = new Waiter(priority, sequence++, lock.newCondition());
+            queue.add(waiter);
+            queued.increment();
+        } finally {
+            lock.unlock();
+        }
+
+        final long start = System.nanoTime();
+        lock.lock();
+        try {
+            long remaining = maxQueueWaitNanos;
+            while (waiter.state == State.WAITING && remaining > 0) {
+                try {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            switch (waiter.state) {
+                case ADMITTED:
+                    if (!Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    // Pass it on
+                    releaseLocked();
+                    throw new WorkerOverloadedException("Interrupted while queued", retryAfter);
+                case REJECTED:
+                    rejected.increment();
+                    throw new WorkerOverloadedException("Too many requests queued", retryAfter);
+                default:
+                    queue.remove(waiter);
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new WorkerOverloadedException("Interrupted while queued", retryAfter);
+                    }
+                    timedOut.increment();
+                    throw new WorkerOverloadedException("Timed out waiting in queue", retryAfter);
+            }
+        } finally {
+            lock.unlock();
+            final long wait = System.nanoTime() - start;
+            queueWaitTotal.add(wait);
+            queueWaitMax.accumulateAndGet(wait, Math::max);
+        }
+    }
+
+    /**
+     * Releases the slot taken by a request admitted by
+     * {@link #acquire(int)}.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            releaseLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked() {
+        final Waiter next = queue.pollFirst();
+        if (next == null) {
+            active--;
+        } else {
+            next.state = State.ADMITTED;
+            next.condition.signal();
+            admitted.increment();
+        }
+    }
+
+    /**
+     * @return number of requests in progress
+     */
+    public int getActive() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of requests waiting
+     */
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of requests admitted
+     */
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    /**
+     * @return number of requests that had to wait in the queue
+     */
+    public long getQueued() {
+        return queued.sum();
+    }
+
+    /**
+     * @return number of requests rejected because the queue was full
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return number of requests rejected after waiting the maximum time
+     */
+    public long getTimedOut() {
+        return timedOut.sum();
+    }
+
+    /**
+     * @return total time in milliseconds requests have waited in the queue
+     */
+    public long getQueueWaitTotal() {
+        return TimeUnit.NANOSECONDS.toMillis(queueWaitTotal.sum());
+    }
+
+    /**
+     * @return longest time in milliseconds a request has waited in the queue
+     */
+    public long getQueueWaitMax() {
+        return TimeUnit.NANOSECONDS.toMillis(queueWaitMax.get());
+    }
+
+    @Override
+    public String toString() {
+        final long queuedCount = getQueued();
+        return "Active: " + getActive() + " of " + maxConcurrent
+                + ", Queued: " + getQueueSize() + " of " + maxQueued
+                + ", Admitted: " + getAdmitted()
+                + ", Rejected: " + getRejected()
+                + ", Timed out: " + getTimedOut()
+                + ", Queue wait (mean/max ms): " + (queuedCount == 0 ? 0 : getQueueWaitTotal() / queuedCount) + "/" + getQueueWaitMax();
+    }
+
+    private enum State {
+        WAITING,
+        ADMITTED,
+        REJECTED
+    }
+
+    /**
+     * Request waiting in the queue.
+     */
+    private static class Waiter {
+        private final int priority;
+        private final long sequence;
+        private final Condition condition;
+        private State state = State.WAITING;
+
+        Waiter(final int priority, final long sequence, final Condition condition) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.condition = condition;
+        }
+    }
+}
@@ -27,6 +27,10 @@ import static org.signserver.common.util.PropertiesConstants.NAME;
  * @version $Id$
  */
 public class PreloadedWorkerConfig {
+
+    private static final int DEFAULT_MAX_QUEUED_REQUESTS = 50;
+    private static final long DEFAULT_MAX_QUEUE_WAIT = 30000;
+    private static final long DEFAULT_RETRY_AFTER = 1;
     
     private final String name;
     private final boolean disabled;
@@ -39,6 +43,11 @@ public class PreloadedWorkerConfig {
     private final boolean checkPrivateKeyValidity;
     private final int minRemainingCertValidity;
 
+    private final int maxConcurrentRequests;
+    private final int maxQueuedRequests;
+    private final long maxQueueWait;
+    private final long retryAfter;
+
     /**
      * Parse and construct the worker configuration.
      *
@@ -76,6 +85,30 @@ public class PreloadedWorkerConfig {
             minRemainingCertValidityValue = 0;
         }
         this.minRemainingCertValidity = minRemainingCertValidityValue;
+
+        // Admission control
+        this.maxConcurrentRequests = (int) getLong(config, SignServerConstants.MAX_CONCURRENT_REQUESTS, -1, 1, fatalErrors);
+        this.maxQueuedRequests = (int) getLong(config, SignServerConstants.MAX_QUEUED_REQUESTS, DEFAULT_MAX_QUEUED_REQUESTS, 0, fatalErrors);
+        this.maxQueueWait = getLong(config, SignServerConstants.MAX_QUEUE_WAIT, DEFAULT_MAX_QUEUE_WAIT, 0, fatalErrors);
+        this.retryAfter = getLong(config, SignServerConstants.RETRY_AFTER, DEFAULT_RETRY_AFTER, 0, fatalErrors);
+    }
+
+    private static long getLong(final WorkerConfig config, final String property, final long defaultValue, final long minValue, final List<String> fatalErrors) {
+        final String value = config.getProperty(property);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            final long result = Long.parseLong(value.trim());
+            if (result < minValue || result > Integer.MAX_VALUE) {
+                fatalErrors.add("Incorrect value for property " + property + ": " + value);
+                return defaultValue;
+            }
+            return result;
+        } catch (NumberFormatException ex) {
+            fatalErrors.add("Incorrect value for property " + property + ": " + value);
+            return defaultValue;
+        }
     }
 
     public String getName() {
@@ -109,5 +142,25 @@ public class PreloadedWorkerConfig {
     public int getMinRemainingCertValidity() {
         return minRemainingCertValidity;
     }
+
+    /**
+     * @return maximum number of requests processed at the same time or -1
+     * for no limit
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public int getMaxQueuedRequests() {
+        return maxQueuedRequests;
+    }
+
+    public long getMaxQueueWait() {
+        return maxQueueWait;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
     
 }
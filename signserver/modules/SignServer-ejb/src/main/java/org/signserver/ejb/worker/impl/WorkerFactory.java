@@ -204,8 +204,14 @@ public class WorkerFactory {
             createErrors.add(ex.getLocalizedMessage());
         }
 
+        // Admission control
+        AdmissionController admissionController = null;
+        if (loadedConfig.getMaxConcurrentRequests() > 0) {
+            admissionController = new AdmissionController(loadedConfig.getMaxConcurrentRequests(), loadedConfig.getMaxQueuedRequests(), loadedConfig.getMaxQueueWait(), loadedConfig.getRetryAfter());
+        }
+
         // Worker with components
-        result = new WorkerWithComponents(workerId, worker, createErrors, loadedConfig, workerLogger, authorizer, accounter, archivers);
+        result = new WorkerWithComponents(workerId, worker, createErrors, loadedConfig, workerLogger, authorizer, accounter, archivers, admissionController);
         cache.putWorkerWithComponents(workerId, result);
         if (LOG.isTraceEnabled()) {
             LOG.trace("<loadWorkerWithComponents(" + workerId + "): " + worker + " in " + result);
@@ -13,6 +13,7 @@
 package org.signserver.ejb.worker.impl;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import jakarta.annotation.PostConstruct;
 import jakarta.ejb.ConcurrencyManagement;
 import jakarta.ejb.ConcurrencyManagementType;
@@ -20,12 +21,14 @@ import jakarta.ejb.Singleton;
 import jakarta.persistence.EntityManager;
 import org.apache.log4j.Logger;
 import org.signserver.common.NoSuchWorkerException;
+import org.signserver.common.ProcessingMetrics;
 import org.signserver.common.WorkerIdentifier;
 import org.signserver.common.WorkerType;
 import org.signserver.server.IWorker;
 import org.signserver.server.SignServerContext;
 import org.signserver.server.config.entities.FileBasedWorkerConfigDataService;
 import org.signserver.server.config.entities.IWorkerConfigDataService;
+import org.signserver.server.config.entities.JournaledWorkerConfigDataService;
 import org.signserver.server.config.entities.WorkerConfigDataService;
 import org.signserver.server.entities.FileBasedKeyUsageCounterDataService;
 import org.signserver.server.entities.IKeyUsageCounterDataService;
@@ -55,13 +58,21 @@ public class WorkerManagerSingletonBean {
     
     private SignServerContext workerContext;
 
+    /** Processing metrics by worker ID, kept when the worker is reloaded. */
+    private final ConcurrentHashMap<Integer, ProcessingMetrics> processingMetrics = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void create() {
         if (em == null) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("No EntityManager injected. Running without database.");
             }
-            workerConfigService = new FileBasedWorkerConfigDataService(FileBasedDatabaseManager.getInstance());
+            final FileBasedDatabaseManager nodb = FileBasedDatabaseManager.getInstance();
+            if (nodb.isJournaledWorkerConfig()) {
+                workerConfigService = new JournaledWorkerConfigDataService(nodb);
+            } else {
+                workerConfigService = new FileBasedWorkerConfigDataService(nodb);
+            }
             keyUsageCounterDataService = new FileBasedKeyUsageCounterDataService(FileBasedDatabaseManager.getInstance());
         } else {
             if (LOG.isDebugEnabled()) {
@@ -136,6 +147,38 @@ public class WorkerManagerSingletonBean {
         return workerConfigService.findAllIds(workerType);
     }
 
+    /**
+     * Get the processing metrics for the worker, creating empty metrics if
+     * the worker has none yet.
+     *
+     * @param workerId of worker to get metrics for
+     * @return the metrics recorded since the worker was first used or the
+     * metrics were reset
+     */
+    public ProcessingMetrics getProcessingMetrics(final int workerId) {
+        return processingMetrics.computeIfAbsent(workerId, id -> new ProcessingMetrics());
+    }
+
+    /**
+     * Find the processing metrics for the worker without creating any.
+     *
+     * @param workerId of worker to get metrics for
+     * @return the metrics or null if the worker has not processed any
+     * requests since startup or the metrics were reset
+     */
+    public ProcessingMetrics findProcessingMetrics(final int workerId) {
+        return processingMetrics.get(workerId);
+    }
+
+    /**
+     * Forget the processing metrics recorded so far for the worker.
+     *
+     * @param workerId of worker to reset metrics for
+     */
+    public void resetProcessingMetrics(final int workerId) {
+        processingMetrics.remove(workerId);
+    }
+
     public void upgradeWorkerNames() {
         workerConfigService.populateNameColumn();
     }
@@ -35,8 +35,9 @@ public class WorkerWithComponents {
     private final IAuthorizer authorizer;
     private final IAccounter accounter;
     private final List<Archiver> archivers;
+    private final AdmissionController admissionController;
 
-    public WorkerWithComponents(int id, IWorker worker, List<String> createErrors, PreloadedWorkerConfig preloadedConfig, IWorkerLogger workerLogger, IAuthorizer authorizer, IAccounter accounter, List<Archiver> archivers) {
+    public WorkerWithComponents(int id, IWorker worker, List<String> createErrors, PreloadedWorkerConfig preloadedConfig, IWorkerLogger workerLogger, IAuthorizer authorizer, IAccounter accounter, List<Archiver> archivers, AdmissionController admissionController) {
         this.id = id;
         this.worker = worker;
         this.createErrors = createErrors;
@@ -45,6 +46,7 @@ public class WorkerWithComponents {
         this.authorizer = authorizer;
         this.accounter = accounter;
         this.archivers = archivers;
+        this.admissionController = admissionController;
     }
 
     public IWorker getWorker() {
@@ -79,6 +81,14 @@ public class WorkerWithComponents {
         return archivers;
     }
 
+    /**
+     * @return the admission controller or null if the number of concurrent
+     * requests is not limited
+     */
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
     public int getId() {
         return id;
     }
@@ -31,9 +31,20 @@ public class GlobalConfigurationCache {
     
     /**
      * Cached configuration used for non-synced state.
+     * The instance is never modified after it has been set, instead a new
+     * instance is set, so that snapshots sharing it stays unchanged.
      */
-    private Properties cachedGlobalConfig;
-    private String currentState = GlobalConfiguration.STATE_INSYNC;
+    private volatile Properties cachedGlobalConfig;
+    private volatile String currentState = GlobalConfiguration.STATE_INSYNC;
+
+    /** Increased for every change of the cached configuration or state. */
+    private long version = 1;
+
+    /**
+     * Immutable configuration for the current version or null if it has not
+     * been created yet. Read without locking.
+     */
+    private volatile GlobalConfiguration snapshot;
 
     private GlobalConfigurationCache() {}
     
@@ -41,19 +52,73 @@ public class GlobalConfigurationCache {
         return INSTANCE;
     }
 
-    public synchronized Properties getCachedGlobalConfig() {
+    public Properties getCachedGlobalConfig() {
         return cachedGlobalConfig;
     }
 
     public synchronized void setCachedGlobalConfig(final Properties cachedGlobalConfig) {
         this.cachedGlobalConfig = cachedGlobalConfig;
+        invalidate();
+    }
+
+    /**
+     * Sets a property in the cached configuration.
+     * @param key with scope
+     * @param value to set
+     */
+    public synchronized void setCachedProperty(final String key, final String value) {
+        final Properties properties = new Properties();
+        properties.putAll(cachedGlobalConfig);
+        properties.setProperty(key, value);
+        this.cachedGlobalConfig = properties;
+        invalidate();
+    }
+
+    /**
+     * Removes a property from the cached configuration.
+     * @param key with scope
+     */
+    public synchronized void removeCachedProperty(final String key) {
+        final Properties properties = new Properties();
+        properties.putAll(cachedGlobalConfig);
+        properties.remove(key);
+        this.cachedGlobalConfig = properties;
+        invalidate();
     }
 
-    public synchronized String getCurrentState() {
+    public String getCurrentState() {
         return currentState;
     }
 
     public synchronized void setCurrentState(final String currentState) {
         this.currentState = currentState;
+        invalidate();
+    }
+
+    /**
+     * @return the configuration for the current version or null if none has
+     * been created since the last change
+     */
+    public GlobalConfiguration getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Creates the configuration for the current version, unless already
+     * created, from the cached configuration and state.
+     *
+     * @param appVersion of the server
+     * @return the configuration or null if there is no cached configuration
+     */
+    public synchronized GlobalConfiguration createSnapshot(final String appVersion) {
+        if (snapshot == null && cachedGlobalConfig != null) {
+            snapshot = new GlobalConfiguration(cachedGlobalConfig, currentState, appVersion, version);
+        }
+        return snapshot;
+    }
+
+    private void invalidate() {
+        version++;
+        snapshot = null;
     }
 }
@@ -12,15 +12,24 @@
  *************************************************************************/
 package org.signserver.server;
 
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.security.SecureRandom;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
 import jakarta.persistence.EntityManager;
 import org.apache.log4j.Logger;
+import org.bouncycastle.util.encoders.DecoderException;
 import org.bouncycastle.util.encoders.Hex;
 import org.signserver.common.AuthorizationRequiredException;
 import org.signserver.common.IllegalRequestException;
@@ -33,6 +42,16 @@ import org.signserver.server.log.Loggable;
 
 /**
  * Authorizer requiring a username password pair.
+ *
+ * The presented password is hashed using a new digest instance for each
+ * request so that the authorizer can be used concurrently and the result is
+ * compared to the configured hash in constant time.
+ *
+ * Optionally, successfully verified credentials can be remembered for a
+ * short time by setting CREDENTIAL_CACHE_TTL (in milliseconds) so that
+ * clients sending many requests do not have to have their password hashed
+ * for every request. The cache is keyed by a keyed MAC of the presented
+ * credentials so no passwords are kept in memory.
  * 
  * @version $Id$
  */
@@ -52,19 +71,53 @@ public class UsernamePasswordAuthorizer implements IAuthorizer {
      */
     private static final String USER_PREFIX = "USER.";
 
+    /** Time in milliseconds to remember verified credentials (default 0, disabled). */
+    public static final String CREDENTIAL_CACHE_TTL = "CREDENTIAL_CACHE_TTL";
+
+    /** Maximum number of verified credentials to remember. */
+    private static final int CREDENTIAL_CACHE_MAX_SIZE = 10000;
+
+    private static final String CACHE_MAC_ALGORITHM = "HmacSHA256";
+
     private Map<String, Account> userMap = Collections.emptyMap();
 
-    
+    private long credentialCacheTTL;
+
+    /** Verified credentials MACs (hex encoded) to time of expiry. */
+    private final Map<String, Long> credentialCache = new ConcurrentHashMap<>();
+
+    private SecretKey cacheKey;
+
+    private List<String> fatalErrors;
+
     @Override
     public void init(final int workerId, final WorkerConfig config,
             final EntityManager em)
             throws SignServerException {
+        fatalErrors = new LinkedList<>();
         loadAccounts(config);
+
+        final String ttlValue = config.getProperty(CREDENTIAL_CACHE_TTL, "0");
+        try {
+            credentialCacheTTL = Long.parseLong(ttlValue.trim());
+            if (credentialCacheTTL < 0) {
+                fatalErrors.add("Illegal value for " + CREDENTIAL_CACHE_TTL + ": " + ttlValue);
+            }
+        } catch (NumberFormatException e) {
+            fatalErrors.add("Illegal value for " + CREDENTIAL_CACHE_TTL + ": " + ttlValue);
+        }
+
+        credentialCache.clear();
+        if (credentialCacheTTL > 0) {
+            final byte[] keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            cacheKey = new SecretKeySpec(keyBytes, CACHE_MAC_ALGORITHM);
+        }
     }
     
     @Override
     public List<String> getFatalErrors() {
-        return Collections.emptyList();
+        return fatalErrors;
     }
 
     @Override
@@ -104,7 +157,6 @@ public class UsernamePasswordAuthorizer implements IAuthorizer {
                     final String[] parts = value.split(":");
                     final String password;
                     String digestAlgorithm = null;
-                    final MessageDigest digest;
                     String salt = "";
                     password = parts[0];
                     if (parts.length > 1) {
@@ -118,11 +170,17 @@ public class UsernamePasswordAuthorizer implements IAuthorizer {
                             LOG.debug("Loading account: " + key);
                         }
 
-                        digest = digestAlgorithm == null ? null
-                                : MessageDigest.getInstance(digestAlgorithm, "BC");
+                        final byte[] expected;
+                        if (digestAlgorithm == null) {
+                            expected = password.getBytes(StandardCharsets.UTF_8);
+                        } else {
+                            // Check that the algorithm is available
+                            MessageDigest.getInstance(digestAlgorithm, "BC");
+                            expected = Hex.decode(password);
+                        }
 
                         userMap.put(key.substring(USER_PREFIX.length()).toUpperCase(),
-                                new Account(password, salt, digest));
+                                new Account(expected, salt, digestAlgorithm));
 
                     } catch (NoSuchAlgorithmException ex) {
                         LOG.error("Unsupported digest algorithm: "
@@ -130,6 +188,9 @@ public class UsernamePasswordAuthorizer implements IAuthorizer {
                     } catch (NoSuchProviderException ex) {
                         LOG.error("No BC provider getting digest algorithm",
                             ex);
+                    } catch (DecoderException ex) {
+                        LOG.error("Hashed password not in hex format for account: "
+                                + key);
                     }
                 }
             }
@@ -150,19 +211,50 @@ public class UsernamePasswordAuthorizer implements IAuthorizer {
                     LOG.info("No such user: " + credential.getUsername());
                 }
                 result = false;
-            } else {
+            } else if (credentialCacheTTL > 0) {
+                final String cacheId = getCacheId(credential);
+                final Long expiry = credentialCache.get(cacheId);
+                final long now = System.currentTimeMillis();
 
-                String password = credential.getPassword() + a.getSalt();
-                if (a.getDigest() != null) {
-                    a.getDigest().reset();
-                    password = new String(Hex.encode(a.getDigest().digest(password.getBytes())));
+                if (expiry != null && expiry > now) {
+                    result = true;
+                } else {
+                    result = a.verify(credential.getPassword());
+                    if (result) {
+                        if (credentialCache.size() >= CREDENTIAL_CACHE_MAX_SIZE) {
+                            credentialCache.values().removeIf(e -> e <= now);
+                            if (credentialCache.size() >= CREDENTIAL_CACHE_MAX_SIZE) {
+                                credentialCache.clear();
+                            }
+                        }
+                        credentialCache.put(cacheId, now + credentialCacheTTL);
+                    } else if (expiry != null) {
+                        credentialCache.remove(cacheId);
+                    }
                 }
-                result = password.equals(a.getPassword());
+            } else {
+                result = a.verify(credential.getPassword());
             }
         }
         return result;
     }
 
+    /**
+     * @return the hex encoded MAC over the username and password
+     */
+    private String getCacheId(final UsernamePasswordClientCredential credential) {
+        try {
+            final Mac mac = Mac.getInstance(CACHE_MAC_ALGORITHM);
+            mac.init(cacheKey);
+            mac.update(credential.getUsername().getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(String.valueOf(credential.getPassword()).getBytes(StandardCharsets.UTF_8));
+            return Hex.toHexString(mac.doFinal());
+        } catch (NoSuchAlgorithmException | InvalidKeyException ex) {
+            throw new IllegalStateException("Unable to compute credential MAC", ex);
+        }
+    }
+
     private static void logUsername(final String username,
             final RequestContext requestContext) {
         LogMap.getInstance(requestContext).put(IAuthorizer.LOG_USERNAME,
@@ -176,27 +268,37 @@ public class UsernamePasswordAuthorizer implements IAuthorizer {
 
     private static class Account {
 
-        private String password;
-        private String salt;
-        private MessageDigest digest;
+        private final byte[] expected;
+        private final String salt;
+        private final String digestAlgorithm;
 
-        public Account(final String password, final String salt,
-                final MessageDigest digest) {
-            this.password = password;
+        public Account(final byte[] expected, final String salt,
+                final String digestAlgorithm) {
+            this.expected = expected;
             this.salt = salt;
-            this.digest = digest;
+            this.digestAlgorithm = digestAlgorithm;
         }
 
-        public MessageDigest getDigest() {
-            return digest;
-        }
-
-        public String getPassword() {
-            return password;
-        }
-
-        public String getSalt() {
-            return salt;
+        /**
+         * Verify the password against this account.
+         *
+         * @param password presented by the client
+         * @return true if the password matched
+         */
+        public boolean verify(final String password) {
+            final byte[] actual;
+            if (digestAlgorithm == null) {
+                actual = (password + salt).getBytes(StandardCharsets.UTF_8);
+            } else {
+                try {
+                    actual = MessageDigest.getInstance(digestAlgorithm, "BC")
+                            .digest((password + salt).getBytes(StandardCharsets.UTF_8));
+                } catch (NoSuchAlgorithmException | NoSuchProviderException ex) {
+                    LOG.error("Digest algorithm no longer available: " + digestAlgorithm, ex);
+                    return false;
+                }
+            }
+            return MessageDigest.isEqual(expected, actual);
         }
     }
 }
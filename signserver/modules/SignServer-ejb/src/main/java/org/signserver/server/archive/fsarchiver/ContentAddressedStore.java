@@ -0,0 +1,188 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.archive.fsarchiver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+import org.apache.log4j.Logger;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * Directory where files are named by the hex encoded SHA-256 digest of their
+ * content and placed in two levels of sub-directories named by the first two
+ * bytes of the digest. The same content is only stored once.
+ *
+ * Files are first written to a temporary file in the target directory and
+ * then atomically renamed so that a file with a digest name is always
+ * complete.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class ContentAddressedStore {
+
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getLogger(ContentAddressedStore.class);
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final Pattern DIGEST_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+
+    /**
+     * @param root directory to store the files in
+     */
+    public ContentAddressedStore(final Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    /**
+     * @return the directory the files are stored in
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Stores the content unless a file with the same content already exists.
+     *
+     * @param content to store
+     * @return the hex encoded digest of the content
+     * @throws IOException in case the content could not be stored
+     */
+    public String store(final byte[] content) throws IOException {
+        final String digest = Hex.toHexString(createDigest().digest(content));
+        final Path target = resolve(digest);
+        if (!Files.exists(target)) {
+            final Path tmp = createTempFile(target);
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                final ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(true);
+            } catch (IOException ex) {
+                Files.deleteIfExists(tmp);
+                throw ex;
+            }
+            moveIntoPlace(tmp, target);
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("Content already stored: " + digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Stores the content of the file unless a file with the same content
+     * already exists. The content is copied using FileChannel.transferTo
+     * without reading it into memory.
+     *
+     * @param source file with the content to store
+     * @return the hex encoded digest of the content
+     * @throws IOException in case the content could not be stored
+     */
+    public String store(final Path source) throws IOException {
+        final String digest = Hex.toHexString(digest(source));
+        final Path target = resolve(digest);
+        if (!Files.exists(target)) {
+            final Path tmp = createTempFile(target);
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                final long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, out);
+                }
+                out.force(true);
+            } catch (IOException ex) {
+                Files.deleteIfExists(tmp);
+                throw ex;
+            }
+            moveIntoPlace(tmp, target);
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("Content already stored: " + digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Gives the path of the file with the given digest.
+     *
+     * @param digest hex encoded SHA-256 digest of the content
+     * @return the path of the file in this store
+     * @throws IOException in case the digest is malformed or the path would
+     * be outside of the store
+     */
+    public Path resolve(final String digest) throws IOException {
+        if (digest == null || !DIGEST_PATTERN.matcher(digest).matches()) {
+            throw new IOException("Malformed archive file reference");
+        }
+        final Path result = root.resolve(digest.substring(0, 2))
+                .resolve(digest.substring(2, 4))
+                .resolve(digest)
+                .normalize();
+        if (!result.startsWith(root)) {
+            throw new IOException("Archive file reference outside of the archive directory");
+        }
+        return result;
+    }
+
+    private static Path createTempFile(final Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        return Files.createTempFile(target.getParent(), ".", ".tmp");
+    }
+
+    /**
+     * Atomically renames the completely written temporary file to its final
+     * name. If an other thread stored the same content in the meantime the
+     * temporary file is just removed.
+     */
+    private static void moveIntoPlace(final Path tmp, final Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException ex) {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static byte[] digest(final Path file) throws IOException {
+        final MessageDigest md = createDigest();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                md.update(buffer, 0, n);
+            }
+        }
+        return md.digest();
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Digest algorithm not available: " + DIGEST_ALGORITHM, ex);
+        }
+    }
+}
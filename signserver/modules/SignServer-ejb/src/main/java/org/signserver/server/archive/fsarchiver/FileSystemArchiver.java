@@ -0,0 +1,278 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.archive.fsarchiver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import jakarta.persistence.EntityManager;
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.signserver.common.ArchiveDataVO;
+import org.signserver.common.RequestContext;
+import org.signserver.common.SignServerConstants;
+import org.signserver.common.WorkerConfig;
+import org.signserver.common.data.ReadableData;
+import org.signserver.common.util.XForwardedForUtils;
+import org.signserver.server.SignServerContext;
+import org.signserver.server.archive.Archivable;
+import org.signserver.server.archive.ArchiveException;
+import org.signserver.server.archive.Archiver;
+import org.signserver.server.archive.ArchiverInitException;
+import org.signserver.server.archive.BaseArchiver;
+import org.signserver.server.archive.DefaultArchivable;
+import org.signserver.server.archive.olddbarchiver.ArchiveOfTypes;
+import org.signserver.server.archive.olddbarchiver.entities.ArchiveDataService;
+import org.signserver.server.log.IWorkerLogger;
+import org.signserver.server.log.LogMap;
+import org.signserver.server.log.Loggable;
+
+/**
+ * Archiver storing the archived bytes in a content-addressed directory
+ * structure and only an index row with the SHA-256 digest of the content in
+ * the database table ArchiveData.
+ *
+ * The files are named by the hex encoded digest of their content and placed
+ * in two levels of sub-directories named by the first two bytes of the
+ * digest. The same content is only stored once. The archive entry does not
+ * contain the path, so when reading it the file is looked up in the archive
+ * directory configured for the worker.
+ *
+ * If the data to archive is already backed by a file it is copied using
+ * FileChannel.transferTo without reading it into memory.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class FileSystemArchiver extends BaseArchiver implements Archiver {
+
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getLogger(FileSystemArchiver.class);
+
+    private static final String PROPERTY_ARCHIVE_DIRECTORY = "ARCHIVE_DIRECTORY";
+    private static final String PROPERTY_ARCHIVE_OF_TYPE = "ARCHIVE_OF_TYPE";
+    private static final String PROPERTY_USE_FORWARDED_ADDRESS = "USE_FORWARDED_ADDRESS";
+    private static final String PROPERTY_MAX_FORWARDED_ADDRESSES = "MAX_FORWARDED_ADDRESSES";
+    private static final String PROPERTY_INCLUDE_DIRECT_ADDRESS = "INCLUDE_DIRECT_ADDRESS";
+    private static final int DEFAULT_MAX_FORWARDED_ADDRESSES = 1;
+
+    private ContentAddressedStore store;
+    private ArchiveOfTypes archiveOfTypes;
+
+    private boolean useXForwardedFor = false;
+    private int maxForwardedAddresses;
+    private boolean includeDirectAddress;
+
+    @Override
+    public void init(int listIndex, WorkerConfig config, SignServerContext context) throws ArchiverInitException {
+        if (!context.isDatabaseConfigured()) {
+            addFatalError("FileSystemArchiver requires a database connection.");
+        }
+
+        // Directory to store the files in
+        final String propertyArchiveDirectory = "ARCHIVER" + listIndex + "." + PROPERTY_ARCHIVE_DIRECTORY;
+        final String directory = config.getProperty(propertyArchiveDirectory);
+        if (directory == null || directory.trim().isEmpty()) {
+            addFatalError("Missing worker property " + propertyArchiveDirectory);
+        } else {
+            final Path archiveDirectory = new File(directory.trim()).getAbsoluteFile().toPath();
+            store = new ContentAddressedStore(archiveDirectory);
+            if (!Files.isDirectory(archiveDirectory)) {
+                addFatalError("Not a directory: " + propertyArchiveDirectory);
+            } else if (!Files.isWritable(archiveDirectory)) {
+                addFatalError("Directory not writable: " + propertyArchiveDirectory);
+            }
+        }
+
+        // Configuration of what to archive
+        final String propertyArchiveOfType = "ARCHIVER" + listIndex + "." + PROPERTY_ARCHIVE_OF_TYPE;
+        try {
+            archiveOfTypes = ArchiveOfTypes.valueOf(config.getProperty(propertyArchiveOfType, ArchiveOfTypes.RESPONSE.name()));
+        } catch (IllegalArgumentException ex) {
+            final String error =
+                    "Illegal value for worker property " + propertyArchiveOfType;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(error + ": " + ex.getMessage());
+            }
+
+            addFatalError(error);
+        }
+
+        final boolean noRequestArchiving = Boolean.valueOf(config.getProperty(WorkerConfig.NO_REQUEST_ARCHIVING));
+        if (noRequestArchiving &&
+            (archiveOfTypes == ArchiveOfTypes.REQUEST || archiveOfTypes == ArchiveOfTypes.REQUEST_AND_RESPONSE)) {
+            addFatalError("Can not specifiy " + PROPERTY_ARCHIVE_OF_TYPE + " " + archiveOfTypes.name() + " when " +
+                          WorkerConfig.NO_REQUEST_ARCHIVING + " is set to true");
+        }
+
+        // configuration for using the X-FORWARDED-FOR header to determine source IP
+        final String propertyXForwardedFor = "ARCHIVER" + listIndex + "." + PROPERTY_USE_FORWARDED_ADDRESS;
+        final String propertyMaxForwardedAddresses =
+                "ARCHIVER" + listIndex + "." + PROPERTY_MAX_FORWARDED_ADDRESSES;
+        final String propertyIncludeDirect = "ARCHIVER" + listIndex + "." + PROPERTY_INCLUDE_DIRECT_ADDRESS;
+        useXForwardedFor = Boolean.valueOf(config.getProperty(propertyXForwardedFor));
+        maxForwardedAddresses =
+                Integer.valueOf(config.getProperty(propertyMaxForwardedAddresses,
+                        String.valueOf(DEFAULT_MAX_FORWARDED_ADDRESSES)));
+        includeDirectAddress = Boolean.valueOf(config.getProperty(propertyIncludeDirect));
+    }
+
+    @Override
+    public boolean archive(Archivable archivable, RequestContext requestContext)
+            throws ArchiveException {
+        final boolean archived;
+
+        // Get the type of this request
+        int archiveType = -1;
+        if (Archivable.TYPE_RESPONSE.equals(archivable.getType())) {
+            archiveType = ArchiveDataVO.TYPE_RESPONSE;
+        } else if (Archivable.TYPE_REQUEST.equals(archivable.getType())) {
+            archiveType = ArchiveDataVO.TYPE_REQUEST;
+        }
+
+        // Only archive if the type of this request is the type configured for this Archiver
+        if ((archiveOfTypes == ArchiveOfTypes.REQUEST && archiveType == ArchiveDataVO.TYPE_REQUEST)
+                || (archiveOfTypes == ArchiveOfTypes.RESPONSE && archiveType == ArchiveDataVO.TYPE_RESPONSE)
+                || (archiveOfTypes == ArchiveOfTypes.REQUEST_AND_RESPONSE && (archiveType == ArchiveDataVO.TYPE_RESPONSE || archiveType == ArchiveDataVO.TYPE_REQUEST))) {
+            final EntityManager em = requestContext.getEntityManager();
+            if (em == null || store == null) {
+                throw new ArchiveException("Could not archive as archiver was not successfully initialized");
+            }
+            final String digest = store(archivable);
+
+            final ArchiveDataService dataService = new ArchiveDataService(em);
+            final Integer workerId = (Integer) requestContext.get(RequestContext.WORKER_ID);
+            final X509Certificate certificate = (X509Certificate) requestContext.get(RequestContext.CLIENT_CERTIFICATE);
+            String remoteIp = (String) requestContext.get(RequestContext.REMOTE_IP);
+
+            if (useXForwardedFor) {
+                final List<String> ips = new LinkedList<>();
+                final String[] forwardedIps =
+                        XForwardedForUtils.getXForwardedForIPs(requestContext, maxForwardedAddresses);
+
+                if (includeDirectAddress) {
+                    ips.add(remoteIp);
+                }
+
+                if (forwardedIps != null) {
+                    ips.addAll(Arrays.asList(forwardedIps));
+                }
+
+                Collections.reverse(ips);
+
+                if (!ips.isEmpty()) {
+                    remoteIp = StringUtils.join(ips, ", ");
+                }
+            }
+
+            final String uniqueId = dataService.createFileReference(archiveType,
+                            workerId,
+                            archivable.getArchiveId(),
+                            certificate,
+                            remoteIp,
+                            digest);
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Archived with uniqueId: " + uniqueId + " as " + digest);
+            }
+
+            final LogMap logMap = LogMap.getInstance(requestContext);
+            final Object loggable = logMap.get(IWorkerLogger.LOG_ARCHIVE_IDS);
+
+            logMap.put(IWorkerLogger.LOG_ARCHIVE_IDS, new Loggable() {
+                @Override
+                public String toString() {
+                    final String ids;
+
+                    if (loggable == null) {
+                        ids = uniqueId;
+                    } else {
+                        ids = loggable.toString() + ", " + uniqueId;
+                    }
+                    return ids;
+                }
+            });
+
+            archived = true;
+        } else {
+            archived = false;
+        }
+        return archived;
+    }
+
+    /**
+     * Stores the content of the archivable unless a file with the same
+     * content already exists.
+     *
+     * @param archivable to store
+     * @return the hex encoded digest of the content
+     * @throws ArchiveException in case the content could not be stored
+     */
+    private String store(final Archivable archivable) throws ArchiveException {
+        final ReadableData data = archivable instanceof DefaultArchivable
+                ? ((DefaultArchivable) archivable).getData() : null;
+        try {
+            if (data != null && data.isFile()) {
+                return store.store(data.getAsFile().toPath());
+            } else {
+                return store.store(archivable.getContentEncoded());
+            }
+        } catch (IOException ex) {
+            throw new ArchiveException("Could not archive to file: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Finds the file archived by a FileSystemArchiver of the worker.
+     *
+     * The archive entry only contains the digest of the content so the file
+     * is looked up in the archive directories currently configured for the
+     * worker. This way the archive directory can be moved as long as the
+     * worker configuration is updated.
+     *
+     * @param config of the worker that archived the file
+     * @param reference the digest stored in the archive entry
+     * @return the archived file
+     * @throws IOException in case the reference is malformed or the file
+     * could not be found in any of the archive directories
+     */
+    public static Path resolveArchivedFile(final WorkerConfig config, final String reference) throws IOException {
+        final String archivers = config.getProperty(SignServerConstants.ARCHIVERS);
+        if (archivers != null) {
+            int index = 0;
+            for (String className : archivers.split(",")) {
+                className = className.trim();
+                if (className.isEmpty()) {
+                    continue;
+                }
+                if (FileSystemArchiver.class.getName().equals(className)) {
+                    final String directory = config.getProperty("ARCHIVER" + index + "." + PROPERTY_ARCHIVE_DIRECTORY);
+                    if (directory != null && !directory.trim().isEmpty()) {
+                        final Path file = new ContentAddressedStore(new File(directory.trim()).toPath()).resolve(reference);
+                        if (Files.isRegularFile(file)) {
+                            return file;
+                        }
+                    }
+                }
+                index++;
+            }
+        }
+        throw new IOException("Archived file not found in the archive directories of the worker");
+    }
+}
@@ -0,0 +1,301 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.dispatchers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import jakarta.persistence.EntityManager;
+import org.apache.log4j.Logger;
+import org.signserver.common.CryptoTokenOfflineException;
+import org.signserver.common.IllegalRequestException;
+import org.signserver.common.NoSuchWorkerException;
+import org.signserver.common.RequestContext;
+import org.signserver.common.SignServerException;
+import org.signserver.common.WorkerConfig;
+import org.signserver.common.WorkerIdentifier;
+import org.signserver.common.data.Request;
+import org.signserver.common.data.Response;
+import org.signserver.ejb.interfaces.DispatcherProcessSessionLocal;
+import org.signserver.server.CircuitBreaker;
+import org.signserver.server.IServices;
+import org.signserver.server.WorkerContext;
+import org.signserver.server.log.AdminInfo;
+
+/**
+ * Dispatching requests to one of the configured workers, balancing the load
+ * between them and skipping workers that are failing.
+ *
+ * Each worker has a circuit breaker. After FAILURE_THRESHOLD consecutive
+ * requests failed because the worker was offline the worker is not invoked
+ * for CIRCUIT_OPEN_TIME seconds. After that one request is let through to
+ * probe if the worker is back.
+ *
+ * Properties:<br/>
+ * WORKERS = Comma separated list of worker names<br/>
+ * WEIGHTS = Comma separated list of weights for the workers (optional, default 1 for all)<br/>
+ * STRATEGY = LEAST_OUTSTANDING (default) or WEIGHTED_ROUND_ROBIN<br/>
+ * FAILURE_THRESHOLD = Consecutive failures before skipping a worker (optional, default 3)<br/>
+ * CIRCUIT_OPEN_TIME = Seconds to skip a failing worker before probing it (optional, default 30)
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class LoadBalancingDispatcher extends BaseDispatcher {
+
+    /** Log4j instance for this class. */
+    private static final Logger LOG = Logger.getLogger(
+            LoadBalancingDispatcher.class);
+
+    private static final String PROPERTY_WORKERS = "WORKERS";
+    private static final String PROPERTY_WEIGHTS = "WEIGHTS";
+    private static final String PROPERTY_STRATEGY = "STRATEGY";
+    private static final String PROPERTY_FAILURE_THRESHOLD = "FAILURE_THRESHOLD";
+    private static final String PROPERTY_CIRCUIT_OPEN_TIME = "CIRCUIT_OPEN_TIME";
+
+    private static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    private static final long DEFAULT_CIRCUIT_OPEN_TIME = 30;
+
+    /** Strategy for choosing the worker to try first. */
+    public enum Strategy {
+        /** The worker with least requests in progress relative to its weight. */
+        LEAST_OUTSTANDING,
+        /** The workers in turn, proportional to their weights. */
+        WEIGHTED_ROUND_ROBIN
+    }
+
+    /** A worker to dispatch to. */
+    private static class Target {
+        private final String workerName;
+        private final int weight;
+        private final CircuitBreaker circuitBreaker;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        Target(final String workerName, final int weight, final CircuitBreaker circuitBreaker) {
+            this.workerName = workerName;
+            this.weight = weight;
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        double getLoad() {
+            return (double) outstanding.get() / weight;
+        }
+    }
+
+    /** Configuration errors. */
+    private LinkedList<String> configErrors;
+
+    private List<Target> targets;
+
+    /** Target index for each weighted round-robin slot. */
+    private int[] schedule;
+
+    private final AtomicLong counter = new AtomicLong();
+
+    private Strategy strategy;
+
+    @Override
+    public void init(final int workerId, final WorkerConfig config,
+            final WorkerContext workerContext, final EntityManager workerEM) {
+        super.init(workerId, config, workerContext, workerEM);
+        configErrors = new LinkedList<>();
+        targets = new ArrayList<>();
+
+        final String name = config.getProperty("NAME");
+
+        final List<String> workers = new ArrayList<>();
+        final String workersValue = config.getProperty(PROPERTY_WORKERS);
+        if (workersValue == null) {
+            configErrors.add("Property " + PROPERTY_WORKERS + " missing!");
+        } else {
+            for (String workerName : workersValue.split(",")) {
+                workerName = workerName.trim();
+                if (workerName.equalsIgnoreCase(name)) {
+                    LOG.warn("Ignoring dispatching to it self (worker "
+                            + name + ")");
+                } else if (!workerName.isEmpty()) {
+                    workers.add(workerName);
+                }
+            }
+            if (workers.isEmpty()) {
+                configErrors.add("No workers to dispatch to in property " + PROPERTY_WORKERS);
+            }
+        }
+
+        final int[] weights = new int[workers.size()];
+        final String weightsValue = config.getProperty(PROPERTY_WEIGHTS);
+        if (weightsValue == null) {
+            Arrays.fill(weights, 1);
+        } else {
+            final String[] parts = weightsValue.split(",");
+            if (parts.length != workers.size()) {
+                configErrors.add("Property " + PROPERTY_WEIGHTS + " should have one weight for each worker in " + PROPERTY_WORKERS);
+            } else {
+                for (int i = 0; i < parts.length; i++) {
+                    try {
+                        weights[i] = Integer.parseInt(parts[i].trim());
+                        if (weights[i] < 1) {
+                            configErrors.add("Weights in property " + PROPERTY_WEIGHTS + " must be positive: " + weights[i]);
+                        }
+                    } catch (NumberFormatException ex) {
+                        configErrors.add("Incorrect value for property " + PROPERTY_WEIGHTS + ": " + parts[i]);
+                    }
+                }
+            }
+        }
+
+        final String strategyValue = config.getProperty(PROPERTY_STRATEGY, Strategy.LEAST_OUTSTANDING.name());
+        try {
+            strategy = Strategy.valueOf(strategyValue.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            configErrors.add("Incorrect value for property " + PROPERTY_STRATEGY + ": " + strategyValue);
+        }
+
+        final int failureThreshold = (int) getPositiveLong(config, PROPERTY_FAILURE_THRESHOLD, DEFAULT_FAILURE_THRESHOLD);
+        final long openTime = getPositiveLong(config, PROPERTY_CIRCUIT_OPEN_TIME, DEFAULT_CIRCUIT_OPEN_TIME);
+
+        if (configErrors.isEmpty()) {
+            final List<Integer> slots = new ArrayList<>();
+            for (int i = 0; i < workers.size(); i++) {
+                targets.add(new Target(workers.get(i), weights[i], new CircuitBreaker(failureThreshold, openTime * 1000)));
+            }
+            // Interleave the slots so that the workers are taken in turn
+            for (int round = 0, max = Arrays.stream(weights).max().orElse(0); round < max; round++) {
+                for (int i = 0; i < weights.length; i++) {
+                    if (round < weights[i]) {
+                        slots.add(i);
+                    }
+                }
+            }
+            schedule = slots.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private long getPositiveLong(final WorkerConfig config, final String property, final long defaultValue) {
+        final String value = config.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            final long result = Long.parseLong(value.trim());
+            if (result < 1) {
+                configErrors.add("Property " + property + " must be positive: " + value);
+            }
+            return result;
+        } catch (NumberFormatException ex) {
+            configErrors.add("Incorrect value for property " + property + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    protected DispatcherProcessSessionLocal getWorkerSession(final RequestContext requestContext) {
+        return requestContext.getServices().get(DispatcherProcessSessionLocal.class);
+    }
+
+    @Override
+    public Response processData(final Request signRequest,
+            final RequestContext requestContext) throws IllegalRequestException,
+            CryptoTokenOfflineException, SignServerException {
+        if (!configErrors.isEmpty()) {
+            throw new SignServerException("Worker is misconfigured");
+        }
+
+        final RequestContext nextContext = requestContext.copyWithNewLogMap();
+
+        // Mark request comming from a dispatcher so the DispatchedAuthorizer can be used
+        nextContext.put(RequestContext.DISPATCHER_AUTHORIZED_CLIENT, true);
+
+        for (final Target target : getCandidates()) {
+            if (!target.circuitBreaker.tryAcquire(System.currentTimeMillis())) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Skipping worker with open circuit: " + target.workerName);
+                }
+                continue;
+            }
+            target.outstanding.incrementAndGet();
+            try {
+                final Response response = getWorkerSession(requestContext).process(new AdminInfo("Client user", null, null),
+                        new WorkerIdentifier(target.workerName), signRequest,
+                        nextContext);
+                target.circuitBreaker.onSuccess();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Dispatched to worker: " + target.workerName);
+                }
+                return response;
+            } catch (CryptoTokenOfflineException | NoSuchWorkerException ex) {
+                target.circuitBreaker.onFailure(System.currentTimeMillis());
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Skipping failing worker: " + target.workerName + " ("
+                            + ex.getMessage() + ")");
+                }
+            } catch (IllegalRequestException | SignServerException | RuntimeException ex) {
+                // Not a problem with the worker as such
+                target.circuitBreaker.onIgnored();
+                throw ex;
+            } finally {
+                target.outstanding.decrementAndGet();
+            }
+        }
+        throw new CryptoTokenOfflineException("No active worker found");
+    }
+
+    /**
+     * @return the targets in the order they should be tried
+     */
+    private List<Target> getCandidates() {
+        final long next = counter.getAndIncrement();
+        final Set<Target> result = new LinkedHashSet<>();
+        if (strategy == Strategy.WEIGHTED_ROUND_ROBIN) {
+            final int start = (int) (next % schedule.length);
+            for (int i = 0; i < schedule.length; i++) {
+                result.add(targets.get(schedule[(start + i) % schedule.length]));
+            }
+        } else {
+            // Rotate the starting point so that ties are spread out
+            final List<Target> rotated = new ArrayList<>(targets.size());
+            final int start = (int) (next % targets.size());
+            for (int i = 0; i < targets.size(); i++) {
+                rotated.add(targets.get((start + i) % targets.size()));
+            }
+            rotated.sort(Comparator.comparingDouble(Target::getLoad));
+            result.addAll(rotated);
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * @param workerName of target
+     * @return state of the circuit breaker for the worker or null if not a target
+     */
+    CircuitBreaker.State getCircuitState(final String workerName) {
+        for (final Target target : targets) {
+            if (target.workerName.equals(workerName)) {
+                return target.circuitBreaker.getState();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected List<String> getFatalErrors(IServices services) {
+        final LinkedList<String> errors = new LinkedList<>(super.getFatalErrors(services));
+        errors.addAll(configErrors);
+        return errors;
+    }
+}
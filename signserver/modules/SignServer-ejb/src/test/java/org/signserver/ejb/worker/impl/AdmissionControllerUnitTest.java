@@ -0,0 +1,190 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.ejb.worker.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+import org.signserver.common.WorkerOverloadedException;
+
+/**
+ * Unit tests for the AdmissionController class.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class AdmissionControllerUnitTest {
+
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getLogger(AdmissionControllerUnitTest.class);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that requests up to the limit are admitted without queueing.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testAdmittedBelowLimit() throws Exception {
+        LOG.info("testAdmittedBelowLimit");
+        final AdmissionController instance = new AdmissionController(2, 0, 0, 1);
+
+        instance.acquire(0);
+        instance.acquire(0);
+        assertEquals("active", 2, instance.getActive());
+        assertEquals("queued", 0, instance.getQueued());
+
+        instance.release();
+        instance.release();
+        assertEquals("active", 0, instance.getActive());
+        assertEquals("admitted", 2, instance.getAdmitted());
+    }
+
+    /**
+     * Tests that a request is rejected with the configured retry after
+     * value when the queue is full.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testRejectedWhenQueueFull() throws Exception {
+        LOG.info("testRejectedWhenQueueFull");
+        final AdmissionController instance = new AdmissionController(1, 0, 10000, 7);
+
+        instance.acquire(0);
+        try {
+            instance.acquire(0);
+            fail("Should have been rejected");
+        } catch (WorkerOverloadedException expected) {
+            assertEquals("retry after", 7, expected.getRetryAfter());
+        }
+        assertEquals("rejected", 1, instance.getRejected());
+        assertEquals("active", 1, instance.getActive());
+    }
+
+    /**
+     * Tests that queued requests are admitted in priority order and within
+     * the same priority in the order they arrived.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testPriorityOrder() throws Exception {
+        LOG.info("testPriorityOrder");
+        final AdmissionController instance = new AdmissionController(1, 10, 10000, 1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        instance.acquire(0);
+        final List<Future<?>> futures = new ArrayList<>();
+        futures.add(submit(instance, 0, "low1", order));
+        awaitQueueSize(instance, 1);
+        futures.add(submit(instance, 5, "high", order));
+        awaitQueueSize(instance, 2);
+        futures.add(submit(instance, 0, "low2", order));
+        awaitQueueSize(instance, 3);
+
+        instance.release();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals("order", "[high, low1, low2]", order.toString());
+        assertEquals("active", 0, instance.getActive());
+        assertEquals("queued", 3, instance.getQueued());
+    }
+
+    /**
+     * Tests that a request with higher priority takes the place of the lowest
+     * one in a full queue.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testLowerPriorityEvicted() throws Exception {
+        LOG.info("testLowerPriorityEvicted");
+        final AdmissionController instance = new AdmissionController(1, 1, 10000, 1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        instance.acquire(0);
+        final Future<?> low = submit(instance, 0, "low", order);
+        awaitQueueSize(instance, 1);
+        final Future<?> high = submit(instance, 5, "high", order);
+
+        try {
+            low.get(10, TimeUnit.SECONDS);
+            fail("Should have been evicted");
+        } catch (java.util.concurrent.ExecutionException expected) {
+            assertTrue("cause: " + expected.getCause(), expected.getCause() instanceof WorkerOverloadedException);
+        }
+        assertEquals("queue size", 1, instance.getQueueSize());
+
+        instance.release();
+        high.get(10, TimeUnit.SECONDS);
+        assertEquals("order", "[high]", order.toString());
+        assertEquals("rejected", 1, instance.getRejected());
+    }
+
+    /**
+     * Tests that a request is rejected after waiting the maximum time.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testTimedOut() throws Exception {
+        LOG.info("testTimedOut");
+        final AdmissionController instance = new AdmissionController(1, 1, 100, 1);
+
+        instance.acquire(0);
+        try {
+            instance.acquire(0);
+            fail("Should have timed out");
+        } catch (WorkerOverloadedException expected) {
+            assertTrue("message: " + expected.getMessage(), expected.getMessage().contains("Timed out"));
+        }
+        assertEquals("timed out", 1, instance.getTimedOut());
+        assertEquals("queue size", 0, instance.getQueueSize());
+        assertTrue("queue wait: " + instance.getQueueWaitMax(), instance.getQueueWaitMax() >= 100);
+
+        // The slot is still usable by the holder
+        instance.release();
+        instance.acquire(0);
+        assertEquals("active", 1, instance.getActive());
+    }
+
+    private Future<?> submit(final AdmissionController instance, final int priority, final String name, final List<String> order) {
+        return executor.submit(() -> {
+            instance.acquire(priority);
+            order.add(name);
+            instance.release();
+            return null;
+        });
+    }
+
+    private static void awaitQueueSize(final AdmissionController instance, final int size) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (instance.getQueueSize() < size) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Queue size " + instance.getQueueSize() + " never reached " + size);
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -12,10 +12,13 @@
  *************************************************************************/
 package org.signserver.server;
 
+import java.math.BigInteger;
 import java.security.Security;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.cesecore.util.CertTools;
 import static org.junit.Assert.assertEquals;
@@ -24,10 +27,14 @@ import static org.junit.Assert.fail;
 import org.junit.Before;
 import org.junit.Test;
 import org.signserver.common.AuthorizedClient;
+import org.signserver.common.CertificateMatchingRule;
 import org.signserver.common.IllegalRequestException;
+import org.signserver.common.MatchIssuerWithType;
+import org.signserver.common.MatchSubjectWithType;
 import org.signserver.common.RequestContext;
 import org.signserver.common.WorkerConfig;
 import org.signserver.common.data.Request;
+import org.signserver.test.utils.builders.CertBuilder;
 
 
 /**
@@ -308,4 +315,56 @@ public class ClientCertAuthorizerUnitTest {
         // Check that the DN in the error message is represented as expected.
         assertTrue("message: " + message, message.contains(TEST_ISSUER2));
     }
+
+    /**
+     * Tests that a subject RDN rule is matched also when there are many
+     * other rules configured and that the other rules are not matched.
+     * @throws Exception
+     */
+    @Test
+    public void testManyRulesWithSubjectRdn() throws Exception {
+        final CertBuilder builder = new CertBuilder();
+        builder.setSerialNumber(new BigInteger(TEST_SERIALNUMBER, 16));
+        builder.setIssuer(TEST_ISSUER);
+        builder.setSubject("CN=Client 1,OU=Unit 1,O=TestOrganization,C=SE");
+        final X509Certificate cert = new JcaX509CertificateConverter().getCertificate(builder.build());
+
+        final List<CertificateMatchingRule> rules = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            rules.add(new CertificateMatchingRule(MatchSubjectWithType.CERTIFICATE_SERIALNO, MatchIssuerWithType.ISSUER_DN_BCSTYLE, Integer.toHexString(i), TEST_ISSUER, null));
+            rules.add(new CertificateMatchingRule(MatchSubjectWithType.SUBJECT_RDN_CN, MatchIssuerWithType.ISSUER_DN_BCSTYLE, "Client " + i + "x", TEST_ISSUER, null));
+        }
+        testAuthorizedGen2(cert, rules, false);
+
+        // Matching value but other issuer
+        rules.add(new CertificateMatchingRule(MatchSubjectWithType.SUBJECT_RDN_OU, MatchIssuerWithType.ISSUER_DN_BCSTYLE, "Unit 1", OTHER_ISSUER, null));
+        testAuthorizedGen2(cert, rules, false);
+
+        rules.add(new CertificateMatchingRule(MatchSubjectWithType.SUBJECT_RDN_OU, MatchIssuerWithType.ISSUER_DN_BCSTYLE, "Unit 1", TEST_ISSUER, null));
+        testAuthorizedGen2(cert, rules, true);
+    }
+
+    private void testAuthorizedGen2(final X509Certificate cert, final List<CertificateMatchingRule> rules,
+                                    final boolean expectAuthorized) throws Exception {
+        final ClientCertAuthorizer instance = new ClientCertAuthorizer();
+        final WorkerConfig config = new WorkerConfig();
+        for (final CertificateMatchingRule rule : rules) {
+            config.addAuthorizedClientGen2(rule);
+        }
+        instance.init(DUMMY_WORKER_ID, config, null);
+
+        final RequestContext context = new RequestContext();
+        context.put(RequestContext.CLIENT_CERTIFICATE, cert);
+
+        try {
+            instance.isAuthorized(null, context);
+            if (!expectAuthorized) {
+                fail("Should not be authorized");
+            }
+        } catch (IllegalRequestException e) {
+            if (expectAuthorized) {
+                fail("Request should be authorized: " + e.getMessage());
+            }
+        }
+    }
 }
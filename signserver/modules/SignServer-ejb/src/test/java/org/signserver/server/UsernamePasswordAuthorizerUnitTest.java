@@ -0,0 +1,142 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server;
+
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.signserver.common.AuthorizationRequiredException;
+import org.signserver.common.RequestContext;
+import org.signserver.common.WorkerConfig;
+
+/**
+ * Unit tests for the UsernamePasswordAuthorizer class.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class UsernamePasswordAuthorizerUnitTest {
+
+    private static final int DUMMY_WORKER_ID = 4711;
+
+    @Before
+    public void setUp() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    private UsernamePasswordAuthorizer createAuthorizer(final String cacheTTL) throws Exception {
+        final WorkerConfig config = new WorkerConfig();
+        // user1, foo123 (plain text)
+        config.setProperty("USER.USER1", "foo123");
+        // user2, foo123 = SHA1(foo123)
+        config.setProperty("USER.USER2", "3b303d8b0364d9265c06adc8584258376150c9b5:SHA1");
+        // user3, foo123 = SHA1(foo123salt123)
+        config.setProperty("USER.USER3", "26c110963ad873c9b7db331e4c3130c266416d47:SHA1:salt123");
+        if (cacheTTL != null) {
+            config.setProperty(UsernamePasswordAuthorizer.CREDENTIAL_CACHE_TTL, cacheTTL);
+        }
+        final UsernamePasswordAuthorizer instance = new UsernamePasswordAuthorizer();
+        instance.init(DUMMY_WORKER_ID, config, null);
+        return instance;
+    }
+
+    private static boolean isAuthorized(final UsernamePasswordAuthorizer instance,
+            final String username, final String password) throws Exception {
+        final RequestContext context = new RequestContext();
+        context.put(RequestContext.CLIENT_CREDENTIAL_PASSWORD,
+                new UsernamePasswordClientCredential(username, password));
+        try {
+            instance.isAuthorized(null, context);
+            return true;
+        } catch (AuthorizationRequiredException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tests plain, hashed and salted hashed passwords.
+     * @throws Exception
+     */
+    @Test
+    public void testPasswords() throws Exception {
+        final UsernamePasswordAuthorizer instance = createAuthorizer(null);
+        assertEquals("fatal errors", 0, instance.getFatalErrors().size());
+
+        assertTrue("plain", isAuthorized(instance, "user1", "foo123"));
+        assertTrue("hashed", isAuthorized(instance, "user2", "foo123"));
+        assertTrue("salted", isAuthorized(instance, "user3", "foo123"));
+
+        assertFalse("plain wrong", isAuthorized(instance, "user1", "foo1234"));
+        assertFalse("hashed wrong", isAuthorized(instance, "user2", "foo1234"));
+        assertFalse("salted wrong", isAuthorized(instance, "user3", "foo123salt123"));
+        assertFalse("no such user", isAuthorized(instance, "user4", "foo123"));
+    }
+
+    /**
+     * Tests that wrong passwords are not accepted when the credential cache
+     * is enabled and that previously verified credentials still are.
+     * @throws Exception
+     */
+    @Test
+    public void testCredentialCache() throws Exception {
+        final UsernamePasswordAuthorizer instance = createAuthorizer("60000");
+        assertEquals("fatal errors", 0, instance.getFatalErrors().size());
+
+        assertTrue("first", isAuthorized(instance, "user3", "foo123"));
+        assertTrue("cached", isAuthorized(instance, "user3", "foo123"));
+        assertFalse("wrong after cached", isAuthorized(instance, "user3", "bar123"));
+        assertFalse("other user with same password", isAuthorized(instance, "user2", "bar123"));
+    }
+
+    /**
+     * Tests that an illegal cache TTL gives a fatal error.
+     * @throws Exception
+     */
+    @Test
+    public void testIllegalCacheTTL() throws Exception {
+        assertEquals("fatal errors", 1, createAuthorizer("-1").getFatalErrors().size());
+        assertEquals("fatal errors", 1, createAuthorizer("abc").getFatalErrors().size());
+    }
+
+    /**
+     * Tests verifying passwords from multiple threads at the same time.
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentVerification() throws Exception {
+        final UsernamePasswordAuthorizer instance = createAuthorizer(null);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                final boolean correct = i % 2 == 0;
+                results.add(executor.submit(() ->
+                        isAuthorized(instance, "user3", correct ? "foo123" : "foo12") == correct));
+            }
+            for (final Future<Boolean> result : results) {
+                assertTrue("expected result", result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.archive.fsarchiver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import jakarta.persistence.EntityManager;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signserver.common.RequestContext;
+import org.signserver.common.SignServerConstants;
+import org.signserver.common.WorkerConfig;
+import org.signserver.server.SignServerContext;
+import org.signserver.server.archive.Archivable;
+import org.signserver.server.archive.DefaultArchivable;
+import org.signserver.server.archive.olddbarchiver.entities.ArchiveDataBean;
+import org.signserver.server.data.impl.ByteArrayReadableData;
+import org.signserver.server.data.impl.UploadConfig;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the FileSystemArchiver and its ContentAddressedStore.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class FileSystemArchiverUnitTest {
+
+    private static final String DIGEST_OF_ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    private Path root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("fsarchiver");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    /**
+     * Tests that the same content is only stored once and named by its
+     * digest, both from bytes and from a file.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testStoreDeduplicates() throws Exception {
+        final ContentAddressedStore store = new ContentAddressedStore(root);
+        final byte[] content = "abc".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals("digest", DIGEST_OF_ABC, store.store(content));
+        assertEquals("digest again", DIGEST_OF_ABC, store.store(content));
+
+        final Path source = Files.createTempFile(root, "source", ".bin");
+        Files.write(source, content);
+        assertEquals("digest from file", DIGEST_OF_ABC, store.store(source));
+        Files.delete(source);
+
+        final Path expected = root.resolve("ba").resolve("78").resolve(DIGEST_OF_ABC);
+        assertEquals("files", List.of(expected), listFiles());
+        assertArrayEquals("content", content, Files.readAllBytes(expected));
+    }
+
+    /**
+     * Tests that concurrently storing the same content results in one
+     * complete file and no temporary files left behind.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testConcurrentStoreAtomicMove() throws Exception {
+        final ContentAddressedStore store = new ContentAddressedStore(root);
+        final byte[] content = new byte[1024 * 1024];
+        new java.util.Random(1).nextBytes(content);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Callable<String>> tasks = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                tasks.add(() -> store.store(content));
+            }
+            final List<String> digests = new ArrayList<>();
+            for (Future<String> future : executor.invokeAll(tasks)) {
+                digests.add(future.get());
+            }
+            assertEquals("same digest", 1, digests.stream().distinct().count());
+
+            final List<Path> files = listFiles();
+            assertEquals("one file and no temporary files: " + files, 1, files.size());
+            assertArrayEquals("complete content", content, Files.readAllBytes(store.resolve(digests.get(0))));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that references not being a digest are rejected so that only
+     * files in the archive directory can be read.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testResolveRejectsOtherReferences() throws Exception {
+        final ContentAddressedStore store = new ContentAddressedStore(root);
+        for (String reference : new String[] {
+                null,
+                "",
+                "../../../../etc/passwd",
+                "/etc/passwd",
+                root.resolve("ba").resolve("78").resolve(DIGEST_OF_ABC).toString(),
+                DIGEST_OF_ABC.toUpperCase(),
+                DIGEST_OF_ABC.substring(1),
+                "../" + DIGEST_OF_ABC.substring(3)}) {
+            try {
+                store.resolve(reference);
+                fail("Should have rejected: " + reference);
+            } catch (IOException expected) { // NOPMD
+                // OK
+            }
+        }
+    }
+
+    /**
+     * Tests archiving stores the digest in the archive entry and that the
+     * data can be read using the archive directory currently configured for
+     * the worker, also after the directory has been moved.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testArchiveAndResolveAfterMove() throws Exception {
+        final WorkerConfig config = new WorkerConfig();
+        config.setProperty(SignServerConstants.ARCHIVERS,
+                "org.signserver.server.archive.base64dbarchiver.Base64DatabaseArchiver, " + FileSystemArchiver.class.getName());
+        config.setProperty("ARCHIVER1.ARCHIVE_DIRECTORY", root.toString());
+        config.setProperty("ARCHIVER1.ARCHIVE_OF_TYPE", "RESPONSE");
+
+        final List<Object> persisted = new ArrayList<>();
+        final EntityManager em = new EntityManagerMock() {
+            @Override
+            public void persist(Object entity) {
+                persisted.add(entity);
+            }
+        };
+
+        final FileSystemArchiver instance = new FileSystemArchiver();
+        instance.init(1, config, new SignServerContext(em, null));
+        assertEquals("fatal errors", "[]", instance.getFatalErrors().toString());
+
+        final RequestContext context = new RequestContext();
+        context.put(RequestContext.EM, em);
+        context.put(RequestContext.WORKER_ID, 42);
+        final byte[] content = "abc".getBytes(StandardCharsets.US_ASCII);
+        final File repository = new UploadConfig().getRepository();
+        assertTrue("archived", instance.archive(new DefaultArchivable(Archivable.TYPE_RESPONSE, "application/octet-stream",
+                new ByteArrayReadableData(content, repository), "archive1"), context));
+
+        assertEquals("persisted", 1, persisted.size());
+        final ArchiveDataBean bean = (ArchiveDataBean) persisted.get(0);
+        assertEquals("encoding", Integer.valueOf(ArchiveDataBean.DATA_ENCODING_FILE_REFERENCE), bean.getDataEncoding());
+        assertEquals("only the digest is stored", DIGEST_OF_ABC, bean.getArchiveData());
+        assertArrayEquals("read back", content,
+                bean.getArchiveDataVO((signerId, reference) -> FileSystemArchiver.resolveArchivedFile(config, reference)).getArchivedBytes());
+
+        // Move the archive directory and update the configuration
+        final Path moved = Files.createTempDirectory("fsarchiver-moved");
+        try {
+            FileUtils.copyDirectory(root.toFile(), moved.toFile());
+            FileUtils.cleanDirectory(root.toFile());
+            config.setProperty("ARCHIVER1.ARCHIVE_DIRECTORY", moved.toString());
+            assertArrayEquals("read back after move", content,
+                    bean.getArchiveDataVO((signerId, reference) -> FileSystemArchiver.resolveArchivedFile(config, reference)).getArchivedBytes());
+        } finally {
+            FileUtils.deleteQuietly(moved.toFile());
+        }
+
+        // Not found and no resolver
+        try {
+            bean.getArchiveDataVO((signerId, reference) -> FileSystemArchiver.resolveArchivedFile(config, reference));
+            fail("Should fail as the file is gone");
+        } catch (IllegalArgumentException expected) { // NOPMD
+            // OK
+        }
+        try {
+            bean.getArchiveDataVO();
+            fail("Should fail without resolver");
+        } catch (IllegalArgumentException expected) { // NOPMD
+            // OK
+        }
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+}
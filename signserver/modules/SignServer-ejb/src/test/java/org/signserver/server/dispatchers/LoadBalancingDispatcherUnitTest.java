@@ -0,0 +1,254 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.server.dispatchers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.log4j.Logger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.signserver.common.CryptoTokenOfflineException;
+import org.signserver.common.IllegalRequestException;
+import org.signserver.common.RequestContext;
+import org.signserver.common.WorkerConfig;
+import org.signserver.common.WorkerType;
+import org.signserver.common.data.LegacyResponse;
+import org.signserver.common.data.Response;
+import org.signserver.ejb.interfaces.DispatcherProcessSessionLocal;
+import org.signserver.server.CircuitBreaker;
+import org.signserver.server.IServices;
+import org.signserver.server.SignServerContext;
+
+/**
+ * Unit tests for the LoadBalancingDispatcher and CircuitBreaker classes.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class LoadBalancingDispatcherUnitTest {
+
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getLogger(LoadBalancingDispatcherUnitTest.class);
+
+    private static final Response RESPONSE = new LegacyResponse(null);
+
+    /**
+     * Tests that incorrect properties gives errors.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testConfigErrors() throws Exception {
+        LOG.info("testConfigErrors");
+        final IServices services = null;
+
+        LoadBalancingDispatcher instance = createDispatcher(null, new WorkerConfig());
+        assertTrue("errs: " + instance.getFatalErrors(services), instance.getFatalErrors(services).toString().contains("WORKERS"));
+
+        WorkerConfig config = new WorkerConfig();
+        config.setProperty("WORKERS", "worker1, worker2");
+        config.setProperty("WEIGHTS", "1");
+        instance = createDispatcher(null, config);
+        assertTrue("errs: " + instance.getFatalErrors(services), instance.getFatalErrors(services).toString().contains("WEIGHTS"));
+
+        config.setProperty("WEIGHTS", "1, 0");
+        instance = createDispatcher(null, config);
+        assertTrue("errs: " + instance.getFatalErrors(services), instance.getFatalErrors(services).toString().contains("WEIGHTS"));
+
+        config.setProperty("WEIGHTS", "1, 2");
+        config.setProperty("STRATEGY", "RANDOM");
+        instance = createDispatcher(null, config);
+        assertTrue("errs: " + instance.getFatalErrors(services), instance.getFatalErrors(services).toString().contains("STRATEGY"));
+
+        config.setProperty("STRATEGY", "weighted_round_robin");
+        config.setProperty("CIRCUIT_OPEN_TIME", "-1");
+        instance = createDispatcher(null, config);
+        assertTrue("errs: " + instance.getFatalErrors(services), instance.getFatalErrors(services).toString().contains("CIRCUIT_OPEN_TIME"));
+
+        config.setProperty("CIRCUIT_OPEN_TIME", "10");
+        instance = createDispatcher(null, config);
+        assertTrue("errs: " + instance.getFatalErrors(services), instance.getFatalErrors(services).isEmpty());
+    }
+
+    /**
+     * Tests that the requests are divided between the workers according to
+     * the weights.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testWeightedRoundRobin() throws Exception {
+        LOG.info("testWeightedRoundRobin");
+        final List<String> invoked = new ArrayList<>();
+        final WorkerConfig config = new WorkerConfig();
+        config.setProperty("WORKERS", "worker1, worker2");
+        config.setProperty("WEIGHTS", "1, 3");
+        config.setProperty("STRATEGY", "WEIGHTED_ROUND_ROBIN");
+        final LoadBalancingDispatcher instance = createDispatcher((info, wi, request, context) -> {
+            invoked.add(wi.getName());
+            return RESPONSE;
+        }, config);
+
+        for (int i = 0; i < 8; i++) {
+            instance.processData(null, new RequestContext());
+        }
+        assertEquals("worker1", 2, Collections.frequency(invoked, "worker1"));
+        assertEquals("worker2", 6, Collections.frequency(invoked, "worker2"));
+    }
+
+    /**
+     * Tests that requests are spread over the workers when all are idle.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testLeastOutstanding() throws Exception {
+        LOG.info("testLeastOutstanding");
+        final Set<String> invoked = new HashSet<>();
+        final WorkerConfig config = new WorkerConfig();
+        config.setProperty("WORKERS", "worker1, worker2, worker3");
+        final LoadBalancingDispatcher instance = createDispatcher((info, wi, request, context) -> {
+            invoked.add(wi.getName());
+            return RESPONSE;
+        }, config);
+
+        for (int i = 0; i < 3; i++) {
+            instance.processData(null, new RequestContext());
+        }
+        assertEquals("all workers used", 3, invoked.size());
+    }
+
+    /**
+     * Tests that an offline worker is skipped without being invoked once its
+     * circuit is open.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testOfflineWorkerSkipped() throws Exception {
+        LOG.info("testOfflineWorkerSkipped");
+        final List<String> invoked = new ArrayList<>();
+        final WorkerConfig config = new WorkerConfig();
+        config.setProperty("WORKERS", "worker1, worker2");
+        config.setProperty("FAILURE_THRESHOLD", "2");
+        final LoadBalancingDispatcher instance = createDispatcher((info, wi, request, context) -> {
+            invoked.add(wi.getName());
+            if ("worker1".equals(wi.getName())) {
+                throw new CryptoTokenOfflineException("Offline");
+            }
+            return RESPONSE;
+        }, config);
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(RESPONSE, instance.processData(null, new RequestContext()));
+        }
+        assertEquals("worker1 invoked until circuit opened", 2, Collections.frequency(invoked, "worker1"));
+        assertEquals("worker2", 10, Collections.frequency(invoked, "worker2"));
+        assertEquals(CircuitBreaker.State.OPEN, instance.getCircuitState("worker1"));
+        assertEquals(CircuitBreaker.State.CLOSED, instance.getCircuitState("worker2"));
+    }
+
+    /**
+     * Tests that an illegal request is not retried and does not count as
+     * a failure of the worker.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testIllegalRequestNotRetried() throws Exception {
+        LOG.info("testIllegalRequestNotRetried");
+        final List<String> invoked = new ArrayList<>();
+        final WorkerConfig config = new WorkerConfig();
+        config.setProperty("WORKERS", "worker1, worker2");
+        config.setProperty("FAILURE_THRESHOLD", "1");
+        final LoadBalancingDispatcher instance = createDispatcher((info, wi, request, context) -> {
+            invoked.add(wi.getName());
+            throw new IllegalRequestException("Bad request");
+        }, config);
+
+        try {
+            instance.processData(null, new RequestContext());
+            fail("Should have thrown");
+        } catch (IllegalRequestException expected) { // NOPMD
+            // OK
+        }
+        assertEquals("invoked once", 1, invoked.size());
+        assertEquals(CircuitBreaker.State.CLOSED, instance.getCircuitState(invoked.get(0)));
+    }
+
+    /**
+     * Tests that no worker available gives CryptoTokenOfflineException.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testAllOffline() throws Exception {
+        LOG.info("testAllOffline");
+        final WorkerConfig config = new WorkerConfig();
+        config.setProperty("WORKERS", "worker1, worker2");
+        final LoadBalancingDispatcher instance = createDispatcher((info, wi, request, context) -> {
+            throw new CryptoTokenOfflineException("Offline");
+        }, config);
+
+        try {
+            instance.processData(null, new RequestContext());
+            fail("Should have thrown");
+        } catch (CryptoTokenOfflineException expected) { // NOPMD
+            // OK
+        }
+    }
+
+    /**
+     * Tests the state transitions of the circuit breaker.
+     */
+    @Test
+    public void testCircuitBreaker() {
+        LOG.info("testCircuitBreaker");
+        final CircuitBreaker breaker = new CircuitBreaker(2, 1000);
+
+        assertTrue(breaker.tryAcquire(0));
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire(0));
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        assertFalse("open", breaker.tryAcquire(999));
+
+        // Half-open: only one probe at a time
+        assertTrue("probe", breaker.tryAcquire(1000));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse("second probe", breaker.tryAcquire(1000));
+
+        // Failed probe opens again
+        breaker.onFailure(1000);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse("open again", breaker.tryAcquire(1999));
+
+        // Successful probe closes
+        assertTrue("probe", breaker.tryAcquire(2000));
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire(2000));
+    }
+
+    private static LoadBalancingDispatcher createDispatcher(final DispatcherProcessSessionLocal session, final WorkerConfig config) {
+        config.setProperty(WorkerConfig.TYPE, WorkerType.PROCESSABLE.name());
+        config.setProperty("NAME", "Dispatcher1");
+        final LoadBalancingDispatcher instance = new LoadBalancingDispatcher() {
+            @Override
+            protected DispatcherProcessSessionLocal getWorkerSession(RequestContext context) {
+                return session;
+            }
+        };
+        instance.init(1, config, new SignServerContext(null, null), null);
+        return instance;
+    }
+}
@@ -14,10 +14,14 @@ package org.signserver.web;
  *************************************************************************/
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Properties;
@@ -31,6 +35,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.signserver.common.InvalidWorkerIdException;
+import org.signserver.common.ProcessingMetrics;
 import org.signserver.common.ServiceLocator;
 import org.signserver.common.WorkerIdentifier;
 import org.signserver.common.WorkerStatus;
@@ -49,6 +54,16 @@ import org.signserver.web.pub.cluster.IHealthCheck;
  * Database connection can be established.
  * All SignerTokens are active if not set as offline.
  * 
+ * If a worker check interval is configured (through web.xml with param
+ * "WorkerCheckInterval") the database and the workers are instead checked in
+ * the background at that interval and the health check is answered from the
+ * result of the last check, which is treated as an error if it is older than
+ * "WorkerCheckMaxAge". Until the first check has finished the health check is
+ * answered as initialising.
+ *
+ * The processing metrics of the workers are reported instead if the
+ * "metrics" request parameter is given.
+ *
  * If a maintenance file has been configured during build, it can be used to enable maintenance mode.
  * When enabled, none of the above system checks are performed, instead a down-for-maintenance message is returned.
  * 
@@ -68,6 +83,8 @@ public class SignServerHealthCheck implements IHealthCheck {
     private String maintenanceFile;
     private String maintenancePropertyName;
     private EntityManager em;
+    private long workerCheckMaxAge;
+    private WorkerHealthEvaluator evaluator;
 
     private WorkerSessionLocal getWorkerSession() {
         if (signserversession == null) {
@@ -97,6 +114,54 @@ public class SignServerHealthCheck implements IHealthCheck {
             LOG.debug(buff.append(buff));
         }
         initMaintenanceFile();
+
+        final long workerCheckInterval = getSecondsParameter(config, "WorkerCheckInterval", 0);
+        if (workerCheckInterval > 0) {
+            workerCheckMaxAge = getSecondsParameter(config, "WorkerCheckMaxAge", 3 * workerCheckInterval);
+            final long workerCheckTimeout = getSecondsParameter(config, "WorkerCheckTimeout", 10000);
+            LOG.info("Checking workers in the background every " + workerCheckInterval + " ms");
+            evaluator = new WorkerHealthEvaluator(new WorkerHealthEvaluator.Checks() {
+                @Override
+                public List<String> checkPreconditions() {
+                    return checkDatabase();
+                }
+
+                @Override
+                public List<Integer> getWorkerIds() {
+                    return getWorkerSession().getWorkers(WorkerType.PROCESSABLE);
+                }
+
+                @Override
+                public List<String> checkWorker(int workerId) throws Exception {
+                    return SignServerHealthCheck.this.checkWorker(workerId);
+                }
+            }, workerCheckInterval, workerCheckTimeout);
+            evaluator.start();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (evaluator != null) {
+            evaluator.stop();
+        }
+    }
+
+    /**
+     * @return value of the init parameter in seconds converted to
+     * milliseconds or the default value if not set
+     */
+    private static long getSecondsParameter(final ServletConfig config, final String name, final long defaultValue) {
+        final String value = config.getInitParameter(name);
+        if (StringUtils.isBlank(value) || value.startsWith("${")) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim()) * 1000;
+        } catch (NumberFormatException ex) {
+            LOG.error("Incorrect value for health check parameter " + name + ": " + value);
+            return defaultValue;
+        }
     }
 
     @Override
@@ -111,17 +176,31 @@ public class SignServerHealthCheck implements IHealthCheck {
         
         // Perform further checks unless Down for maintenance
         if (errors.size() == 0) { 
-            if (FileBasedDatabaseManager.getInstance().isUsed()) {
-                LOG.debug("Checking file based database");
-                errors.addAll(FileBasedDatabaseManager.getInstance().getFatalErrors());
+            if (evaluator == null) {
+                errors.addAll(checkDatabase());
+
+                if (errors.size() == 0) {
+                    errors.addAll(HealthCheckUtils.checkMemory(minfreememory));
+                    errors.addAll(checkSigners());
+                }
             } else {
-                LOG.debug("Checking real database");
-                errors.addAll(HealthCheckUtils.checkDB(em, checkDBString));
-            }
-            
-            if (errors.size() == 0) {
-                errors.addAll(HealthCheckUtils.checkMemory(minfreememory));
-                errors.addAll(checkSigners());
+                final WorkerHealthEvaluator.Snapshot snapshot = evaluator.getSnapshot();
+                if (snapshot == null) {
+                    // No background check has finished yet: answer directly
+                    // instead of blocking the probe on checking the workers
+                    errors.add("Health check initialising");
+                } else {
+                    final long age = System.currentTimeMillis() - snapshot.getTime();
+                    if (age > workerCheckMaxAge) {
+                        errors.add("Worker health not checked for " + age / 1000 + " seconds");
+                    }
+                    errors.addAll(snapshot.getPreconditionErrors());
+
+                    if (errors.size() == 0) {
+                        errors.addAll(HealthCheckUtils.checkMemory(minfreememory));
+                        errors.addAll(snapshot.getWorkerErrors());
+                    }
+                }
             }
         }
         
@@ -144,6 +223,55 @@ public class SignServerHealthCheck implements IHealthCheck {
         return result;
     }
 
+    /**
+     * Reports the processing metrics of the worker given by the "metrics"
+     * request parameter or of all workers having processed any requests if
+     * the parameter is empty or "all".
+     */
+    @Override
+    public String getMetrics(HttpServletRequest request) {
+        final String worker = request.getParameter("metrics");
+        final List<Integer> workerIds;
+        try {
+            if (StringUtils.isBlank(worker) || "all".equalsIgnoreCase(worker)) {
+                workerIds = getWorkerSession().getWorkers(WorkerType.PROCESSABLE);
+            } else {
+                workerIds = Collections.singletonList(getWorkerSession().getWorkerId(worker.trim()));
+            }
+        } catch (InvalidWorkerIdException e) {
+            return "No such worker: " + worker;
+        }
+
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(bout, false, StandardCharsets.UTF_8)) {
+            for (final int workerId : workerIds) {
+                try {
+                    final ProcessingMetrics metrics = getWorkerSession().getProcessingMetrics(new WorkerIdentifier(workerId));
+                    if (workerIds.size() == 1 || metrics.getHistogram(ProcessingMetrics.Phase.TOTAL).getCount() > 0) {
+                        out.println("Worker " + workerId + ":");
+                        metrics.display(out);
+                        out.println();
+                    }
+                } catch (InvalidWorkerIdException e) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Worker no longer exists: " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return bout.toString(StandardCharsets.UTF_8);
+    }
+
+    private List<String> checkDatabase() {
+        if (FileBasedDatabaseManager.getInstance().isUsed()) {
+            LOG.debug("Checking file based database");
+            return FileBasedDatabaseManager.getInstance().getFatalErrors();
+        } else {
+            LOG.debug("Checking real database");
+            return HealthCheckUtils.checkDB(em, checkDBString);
+        }
+    }
+
     private List<String> checkSigners() {
         final LinkedList<String> result = new LinkedList<>();
         Iterator<Integer> iter = getWorkerSession().getWorkers(WorkerType.PROCESSABLE).iterator();
@@ -151,26 +279,31 @@ public class SignServerHealthCheck implements IHealthCheck {
             int processableId = ((Integer) iter.next());
 
             try {
-                WorkerStatus workerStatus = getWorkerSession().getStatus(new WorkerIdentifier(processableId));
-                if (workerStatus.isDisabled()) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Not checking worker " + processableId + " as it is disabled");
-                    }
-                } else {
-                    final List<String> fatalErrors = workerStatus.getFatalErrors();
-                    if (!fatalErrors.isEmpty()) {
-                        for (String error : fatalErrors) {
-                            result.add("Worker " + workerStatus.getWorkerId() + ": " + error);
-                        }
-                    }
-                }
-
+                result.addAll(checkWorker(processableId));
             } catch (InvalidWorkerIdException e) {
                 LOG.error(e.getMessage(), e);
             }
         }
         return result;
     }
+
+    private List<String> checkWorker(final int processableId) throws InvalidWorkerIdException {
+        final LinkedList<String> result = new LinkedList<>();
+        WorkerStatus workerStatus = getWorkerSession().getStatus(new WorkerIdentifier(processableId));
+        if (workerStatus.isDisabled()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Not checking worker " + processableId + " as it is disabled");
+            }
+        } else {
+            final List<String> fatalErrors = workerStatus.getFatalErrors();
+            if (!fatalErrors.isEmpty()) {
+                for (String error : fatalErrors) {
+                    result.add("Worker " + workerStatus.getWorkerId() + ": " + error);
+                }
+            }
+        }
+        return result;
+    }
     
 	private List<String> checkMaintenance() {
         final LinkedList<String> result = new LinkedList<>();
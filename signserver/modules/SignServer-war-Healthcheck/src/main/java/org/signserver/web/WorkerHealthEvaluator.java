@@ -0,0 +1,363 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.web;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import org.apache.log4j.Logger;
+
+/**
+ * Evaluates the health of the workers in the background and keeps the
+ * result of the last evaluation as a snapshot so that health check probes
+ * do not have to query all workers (and their crypto tokens) themselves.
+ *
+ * The evaluation is scheduled with a random jitter of up to 10% of the
+ * interval so that nodes started at the same time do not check their HSMs
+ * at the same time. The workers are checked in parallel against a common
+ * timeout on a bounded pool of threads of their own, separate from the
+ * executor scheduling the evaluations. A check not finished within the
+ * timeout is cancelled and a worker still being checked from a previous
+ * evaluation, i.e. because the check does not respond to the cancellation,
+ * is reported as timed out without being checked again.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class WorkerHealthEvaluator {
+
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getLogger(WorkerHealthEvaluator.class);
+
+    private static final String MANAGED_EXECUTOR = "java:comp/DefaultManagedScheduledExecutorService";
+
+    /** Maximum number of workers checked at the same time. */
+    private static final int CHECK_THREADS = 8;
+
+    /**
+     * The checks performed by an evaluation.
+     */
+    public interface Checks {
+
+        /**
+         * @return errors from checks that should stop the workers from being
+         * checked, i.e. database errors
+         */
+        List<String> checkPreconditions();
+
+        /**
+         * @return IDs of the workers to check
+         */
+        List<Integer> getWorkerIds();
+
+        /**
+         * @param workerId of worker to check
+         * @return errors for the worker
+         * @throws Exception in case of failure
+         */
+        List<String> checkWorker(int workerId) throws Exception;
+    }
+
+    /**
+     * Result of one evaluation.
+     */
+    public static class Snapshot {
+        private final long time;
+        private final List<String> preconditionErrors;
+        private final List<String> workerErrors;
+
+        Snapshot(final long time, final List<String> preconditionErrors, final List<String> workerErrors) {
+            this.time = time;
+            this.preconditionErrors = Collections.unmodifiableList(preconditionErrors);
+            this.workerErrors = Collections.unmodifiableList(workerErrors);
+        }
+
+        /**
+         * @return time in milliseconds when the evaluation finished
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public List<String> getPreconditionErrors() {
+            return preconditionErrors;
+        }
+
+        public List<String> getWorkerErrors() {
+            return workerErrors;
+        }
+    }
+
+    private final Checks checks;
+    private final long intervalMillis;
+    private final long timeoutMillis;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    /** Workers with a check started and not yet finished. */
+    private final Set<Integer> running = ConcurrentHashMap.newKeySet();
+
+    /** Set while an evaluation is running. */
+    private final AtomicBoolean evaluating = new AtomicBoolean();
+
+    private volatile ScheduledExecutorService scheduler;
+    private volatile ExecutorService checkExecutor;
+    private boolean ownScheduler;
+    private volatile ScheduledFuture<?> scheduled;
+    private volatile boolean stopped;
+
+    /**
+     * Creates an evaluator.
+     * @param checks to perform
+     * @param intervalMillis between evaluations
+     * @param timeoutMillis for checking one worker
+     */
+    public WorkerHealthEvaluator(final Checks checks, final long intervalMillis, final long timeoutMillis) {
+        this.checks = checks;
+        this.intervalMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Creates an evaluator checking the workers using the given executor
+     * without scheduling any evaluations. Used by the unit tests.
+     */
+    WorkerHealthEvaluator(final Checks checks, final long intervalMillis, final long timeoutMillis, final ExecutorService checkExecutor) {
+        this(checks, intervalMillis, timeoutMillis);
+        this.checkExecutor = checkExecutor;
+    }
+
+    /**
+     * Starts the background evaluation, scheduled using the container's
+     * managed scheduled executor if available.
+     */
+    public synchronized void start() {
+        try {
+            scheduler = (ScheduledExecutorService) new InitialContext().lookup(MANAGED_EXECUTOR);
+        } catch (NamingException ex) {
+            LOG.info("No managed executor available, using own thread for scheduling health checks: " + ex.getMessage());
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "SignServer health check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ownScheduler = true;
+        }
+
+        // The checks run on threads of their own so that hung checks can not
+        // starve the executor the evaluation itself is waiting on. At most
+        // one check per worker is queued or running.
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(CHECK_THREADS, CHECK_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    final Thread thread = new Thread(r, "SignServer health check worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        checkExecutor = executor;
+        schedule(0);
+    }
+
+    /**
+     * Stops the background evaluation.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        final ScheduledFuture<?> current = scheduled;
+        if (current != null) {
+            current.cancel(false);
+        }
+        if (ownScheduler) {
+            scheduler.shutdownNow();
+        }
+        if (checkExecutor != null) {
+            checkExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the result of the last evaluation or null if no evaluation has
+     * finished yet
+     */
+    public Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * @return the interval between evaluations in milliseconds
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    private void schedule(final long delay) {
+        if (!stopped) {
+            try {
+                scheduled = scheduler.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                LOG.debug("Health evaluation not scheduled: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            evaluate();
+        } catch (RuntimeException ex) {
+            LOG.error("Health evaluation failed", ex);
+        } finally {
+            final long jitter = ThreadLocalRandom.current().nextLong(intervalMillis / 10 + 1);
+            schedule(intervalMillis + jitter);
+        }
+    }
+
+    /**
+     * Performs one evaluation and publishes the result.
+     *
+     * The checks of all workers are submitted before any of them is waited
+     * for and they are then collected against one common deadline so that an
+     * evaluation takes at most about one timeout regardless of the number of
+     * workers. Only one evaluation runs at a time; a concurrent call returns
+     * the last snapshot instead of waiting for the running evaluation.
+     *
+     * @return the new snapshot or the last snapshot (possibly null) if
+     * another evaluation is already running
+     */
+    Snapshot evaluate() {
+        if (!evaluating.compareAndSet(false, true)) {
+            return snapshot.get();
+        }
+        try {
+            final List<String> preconditionErrors = new LinkedList<>(checks.checkPreconditions());
+            final List<String> workerErrors = new LinkedList<>();
+
+            if (preconditionErrors.isEmpty()) {
+                final Map<Integer, Check> submitted = new LinkedHashMap<>();
+                for (final Integer workerId : checks.getWorkerIds()) {
+                    if (!running.add(workerId)) {
+                        // Timed out before and still not finished: do not
+                        // wait for it again
+                        workerErrors.add("Worker " + workerId + ": Health check timed out");
+                    } else {
+                        submitted.put(workerId, submit(workerId));
+                    }
+                }
+
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                for (final Map.Entry<Integer, Check> entry : submitted.entrySet()) {
+                    workerErrors.addAll(collect(entry.getKey(), entry.getValue(), deadline));
+                }
+            }
+
+            final Snapshot result = new Snapshot(System.currentTimeMillis(), preconditionErrors, workerErrors);
+            snapshot.set(result);
+            return result;
+        } finally {
+            evaluating.set(false);
+        }
+    }
+
+    private Check submit(final int workerId) {
+        final Check check = new Check(workerId);
+        if (checkExecutor == null) {
+            // Not started: check in this thread
+            check.run();
+        } else {
+            try {
+                checkExecutor.execute(check);
+            } catch (RejectedExecutionException ex) {
+                check.cancel(false);
+            }
+        }
+        return check;
+    }
+
+    private List<String> collect(final int workerId, final Check check, final long deadline) {
+        try {
+            return check.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            check.cancel(true);
+            LOG.warn("Health check for worker " + workerId + " did not finish within " + timeoutMillis + " ms");
+            return Collections.singletonList("Worker " + workerId + ": Health check timed out");
+        } catch (CancellationException ex) {
+            return Collections.singletonList("Worker " + workerId + ": Health check not started");
+        } catch (ExecutionException ex) {
+            LOG.error("Health check failed for worker " + workerId, ex.getCause());
+            return Collections.singletonList("Worker " + workerId + ": Health check failed: " + ex.getCause().getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            check.cancel(true);
+            return Collections.singletonList("Worker " + workerId + ": Health check interrupted");
+        }
+    }
+
+    /**
+     * Check of one worker. The worker is removed from the running ones when
+     * the check has finished or, if it was cancelled before it started, when
+     * it was cancelled.
+     */
+    private class Check extends FutureTask<List<String>> {
+
+        private final int workerId;
+
+        /** Set by whichever of the check and the cancellation comes first. */
+        private final AtomicBoolean claimed;
+
+        Check(final int workerId) {
+            this(workerId, new AtomicBoolean());
+        }
+
+        private Check(final int workerId, final AtomicBoolean claimed) {
+            super(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return Collections.emptyList();
+                }
+                try {
+                    return checks.checkWorker(workerId);
+                } finally {
+                    running.remove(workerId);
+                }
+            });
+            this.workerId = workerId;
+            this.claimed = claimed;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled() && claimed.compareAndSet(false, true)) {
+                running.remove(workerId);
+            }
+        }
+    }
+}
@@ -61,6 +61,9 @@ public class HealthCheckServlet extends HttpServlet {
     private boolean allIPsAuth;
     
     private static final SameRequestRateLimiter<String> rateLimiter = new SameRequestRateLimiter<>();
+
+    /** Request parameter asking for the metrics instead of the health. */
+    private static final String PARAM_METRICS = "metrics";
     
     /** EntityManager is conditionally injected from web.xml. */
     private EntityManager em;
@@ -101,6 +104,14 @@ public class HealthCheckServlet extends HttpServlet {
         }
     }
 
+    @Override
+    public void destroy() {
+        if (healthcheck != null) {
+            healthcheck.destroy();
+        }
+        super.destroy();
+    }
+
     /**
      * Handles HTTP POST
      *
@@ -137,6 +148,20 @@ public class HealthCheckServlet extends HttpServlet {
         log.trace("<doGet()");
     }
     
+    private void metrics(HttpServletRequest request, HttpServletResponse response) {
+        try {
+            final String metrics = healthcheck.getMetrics(request);
+            if (metrics == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND, "Metrics not supported");
+            } else {
+                response.setContentType("text/plain");
+                response.getWriter().write(metrics);
+            }
+        } catch (IOException e) {
+            log.error("Error writing to Servlet Response.", e);
+        }
+    }
+
     private void check(HttpServletRequest request, HttpServletResponse response){
     	boolean authorizedIP = false;
     	String remoteIP = request.getRemoteAddr();
@@ -150,7 +175,9 @@ public class HealthCheckServlet extends HttpServlet {
     	    }
     	}
 
-    	if (authorizedIP) {
+    	if (authorizedIP && request.getParameter(PARAM_METRICS) != null) {
+    	    metrics(request, response);
+    	} else if (authorizedIP) {
     	    final SameRequestRateLimiter<String>.Result result = rateLimiter.getResult();
     	    
     	    if (result.isFirst()) {
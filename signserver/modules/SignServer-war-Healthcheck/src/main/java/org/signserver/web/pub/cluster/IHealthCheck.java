@@ -45,4 +45,20 @@ public interface IHealthCheck {
      */
     public String checkHealth(HttpServletRequest request);
 
+    /**
+     * Method used to report performance metrics of the application.
+     *
+     * @param request Servlet request
+     * @return The metrics as text or null if not supported.
+     */
+    default String getMetrics(HttpServletRequest request) {
+        return null;
+    }
+
+    /**
+     * Method called when the health checker is taken out of service.
+     */
+    default void destroy() {
+    }
+
 }
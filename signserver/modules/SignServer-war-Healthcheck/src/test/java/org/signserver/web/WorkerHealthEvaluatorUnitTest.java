@@ -0,0 +1,315 @@
+/*************************************************************************
+ *                                                                       *
+ *  SignServer: The OpenSource Automated Signing Server                  *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.signserver.web;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the WorkerHealthEvaluator.
+ *
+ * @author agent
+ * @version $Id$
+ */
+public class WorkerHealthEvaluatorUnitTest {
+
+    private static final long TIMEOUT = 500;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that slow workers are checked in parallel so that an evaluation
+     * takes about one timeout and not one timeout per worker.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testChecksWorkersAgainstOneDeadline() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final FakeChecks checks = new FakeChecks(Arrays.asList(1, 2, 3, 4));
+        for (int i = 1; i <= 4; i++) {
+            checks.blockers.put(i, release);
+        }
+        final WorkerHealthEvaluator instance = new WorkerHealthEvaluator(checks, 60000, TIMEOUT, executor);
+
+        try {
+            final long start = System.nanoTime();
+            final WorkerHealthEvaluator.Snapshot snapshot = instance.evaluate();
+            final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals("errors: " + snapshot.getWorkerErrors(), 4, snapshot.getWorkerErrors().size());
+            for (final String error : snapshot.getWorkerErrors()) {
+                assertTrue(error, error.endsWith("Health check timed out"));
+            }
+            assertTrue("elapsed: " + elapsed, elapsed < 3 * TIMEOUT);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Tests that a check not finished within the timeout is cancelled and
+     * that the worker is checked again by the next evaluation.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testTimedOutCheckCancelled() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final FakeChecks checks = new FakeChecks(Collections.singletonList(1));
+        checks.blockers.put(1, release);
+        final WorkerHealthEvaluator instance = new WorkerHealthEvaluator(checks, 60000, TIMEOUT, executor);
+
+        try {
+            final WorkerHealthEvaluator.Snapshot snapshot = instance.evaluate();
+            assertEquals(Collections.singletonList("Worker 1: Health check timed out"), snapshot.getWorkerErrors());
+
+            for (int i = 0; i < 100 && checks.getFinished(1) == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals("interrupted checks", 1, checks.interrupted.get());
+
+            checks.blockers.remove(1);
+            assertEquals(Collections.emptyList(), instance.evaluate().getWorkerErrors());
+            assertEquals("worker 1 checks", 2, checks.getCount(1));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Tests that a worker still being checked from an earlier evaluation,
+     * as the check does not respond to being cancelled, is reported as timed
+     * out without being waited for or checked again and that it is checked
+     * again once the earlier check has finished.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testTimedOutCheckNotAwaitedAgain() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final FakeChecks checks = new FakeChecks(Arrays.asList(1, 2));
+        checks.blockers.put(1, release);
+        checks.uninterruptible = true;
+        final WorkerHealthEvaluator instance = new WorkerHealthEvaluator(checks, 60000, TIMEOUT, executor);
+
+        try {
+            WorkerHealthEvaluator.Snapshot snapshot = instance.evaluate();
+            assertEquals(Collections.singletonList("Worker 1: Health check timed out"), snapshot.getWorkerErrors());
+
+            final long start = System.nanoTime();
+            snapshot = instance.evaluate();
+            final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(Collections.singletonList("Worker 1: Health check timed out"), snapshot.getWorkerErrors());
+            assertTrue("elapsed: " + elapsed, elapsed < TIMEOUT);
+            assertEquals("worker 1 checks", 1, checks.getCount(1));
+            assertEquals("worker 2 checks", 2, checks.getCount(2));
+        } finally {
+            release.countDown();
+        }
+
+        // Wait for the earlier check to finish
+        for (int i = 0; i < 100 && checks.getFinished(1) == 0; i++) {
+            Thread.sleep(10);
+        }
+        checks.blockers.remove(1);
+        final WorkerHealthEvaluator.Snapshot snapshot = instance.evaluate();
+        assertEquals(Collections.emptyList(), snapshot.getWorkerErrors());
+        assertEquals("worker 1 checks", 2, checks.getCount(1));
+    }
+
+    /**
+     * Tests that checks waiting for a thread when all threads are taken by
+     * hung checks are reported as timed out and submitted again by the next
+     * evaluation.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testChecksQueuedBehindHungCheck() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final FakeChecks checks = new FakeChecks(Arrays.asList(1, 2));
+        checks.blockers.put(1, release);
+        checks.uninterruptible = true;
+        final ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        final WorkerHealthEvaluator instance = new WorkerHealthEvaluator(checks, 60000, TIMEOUT, singleThread);
+
+        try {
+            final List<String> expected = Arrays.asList("Worker 1: Health check timed out",
+                    "Worker 2: Health check timed out");
+            assertEquals(expected, instance.evaluate().getWorkerErrors());
+            assertEquals(expected, instance.evaluate().getWorkerErrors());
+            assertEquals("worker 2 checks", 0, checks.getCount(2));
+
+            release.countDown();
+            for (int i = 0; i < 100 && checks.getFinished(1) == 0; i++) {
+                Thread.sleep(10);
+            }
+            checks.blockers.remove(1);
+            assertEquals(Collections.emptyList(), instance.evaluate().getWorkerErrors());
+            assertEquals("worker 2 checks", 1, checks.getCount(2));
+        } finally {
+            release.countDown();
+            singleThread.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that failing checks are reported and that the workers are not
+     * checked if the preconditions fail.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testFailuresAndPreconditions() throws Exception {
+        final FakeChecks checks = new FakeChecks(Arrays.asList(1, 2));
+        checks.errors.put(2, Collections.singletonList("Worker 2: Token offline"));
+        checks.failures.put(1, new IllegalStateException("Broken"));
+        final WorkerHealthEvaluator instance = new WorkerHealthEvaluator(checks, 60000, TIMEOUT, executor);
+
+        WorkerHealthEvaluator.Snapshot snapshot = instance.evaluate();
+        assertEquals(Arrays.asList("Worker 1: Health check failed: Broken", "Worker 2: Token offline"),
+                snapshot.getWorkerErrors());
+        assertSame(snapshot, instance.getSnapshot());
+
+        checks.preconditionErrors = Collections.singletonList("Error connecting to database");
+        snapshot = instance.evaluate();
+        assertEquals(checks.preconditionErrors, snapshot.getPreconditionErrors());
+        assertEquals(Collections.emptyList(), snapshot.getWorkerErrors());
+        assertEquals("worker 1 checks", 1, checks.getCount(1));
+    }
+
+    /**
+     * Tests that an evaluation started while another is running does not
+     * wait for it but returns the last snapshot.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void testConcurrentEvaluationNotBlocked() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final FakeChecks checks = new FakeChecks(Collections.singletonList(1));
+        checks.blockers.put(1, release);
+        final WorkerHealthEvaluator instance = new WorkerHealthEvaluator(checks, 60000, 10000, executor);
+
+        try {
+            executor.submit(instance::evaluate);
+            for (int i = 0; i < 100 && checks.getCount(1) == 0; i++) {
+                Thread.sleep(10);
+            }
+
+            final long start = System.nanoTime();
+            assertNull(instance.evaluate());
+            final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("elapsed: " + elapsed, elapsed < TIMEOUT);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /** Checks with configurable results per worker. */
+    private static class FakeChecks implements WorkerHealthEvaluator.Checks {
+        private final List<Integer> workerIds;
+        private final Map<Integer, CountDownLatch> blockers = new ConcurrentHashMap<>();
+        private final Map<Integer, List<String>> errors = new ConcurrentHashMap<>();
+        private final Map<Integer, Exception> failures = new ConcurrentHashMap<>();
+        private final Map<Integer, AtomicInteger> counts = new ConcurrentHashMap<>();
+        private final Map<Integer, AtomicInteger> finished = new ConcurrentHashMap<>();
+        private final AtomicInteger interrupted = new AtomicInteger();
+        private volatile List<String> preconditionErrors = Collections.emptyList();
+
+        /** If the blocked checks should ignore being interrupted. */
+        private volatile boolean uninterruptible;
+
+        FakeChecks(final List<Integer> workerIds) {
+            this.workerIds = workerIds;
+        }
+
+        @Override
+        public List<String> checkPreconditions() {
+            return preconditionErrors;
+        }
+
+        @Override
+        public List<Integer> getWorkerIds() {
+            return workerIds;
+        }
+
+        @Override
+        public List<String> checkWorker(final int workerId) throws Exception {
+            counts.computeIfAbsent(workerId, id -> new AtomicInteger()).incrementAndGet();
+            try {
+                final CountDownLatch blocker = blockers.get(workerId);
+                if (blocker != null) {
+                    await(blocker);
+                }
+                final Exception failure = failures.get(workerId);
+                if (failure != null) {
+                    throw failure;
+                }
+                return errors.getOrDefault(workerId, Collections.emptyList());
+            } finally {
+                finished.computeIfAbsent(workerId, id -> new AtomicInteger()).incrementAndGet();
+            }
+        }
+
+        private void await(final CountDownLatch blocker) throws InterruptedException {
+            boolean wasInterrupted = false;
+            while (true) {
+                try {
+                    blocker.await();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted.incrementAndGet();
+                    if (!uninterruptible) {
+                        throw ex;
+                    }
+                    wasInterrupted = true;
+                }
+            }
+            if (wasInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        int getCount(final int workerId) {
+            final AtomicInteger count = counts.get(workerId);
+            return count == null ? 0 : count.get();
+        }
+
+        int getFinished(final int workerId) {
+            final AtomicInteger count = finished.get(workerId);
+            return count == null ? 0 : count.get();
+        }
+    }
+}
@@ -94,6 +94,7 @@ public class GenericProcessServlet extends AbstractProcessServlet {
     private static final String CERT_PURPOSES_PROPERTY_NAME = "certPurposes";
     private static final String HTTP_MAX_UPLOAD_SIZE = "HTTP_MAX_UPLOAD_SIZE";
     private static final String HTTP_MAX_UPLOAD_FIELD_COUNT = "HTTP_MAX_UPLOAD_FIELD_COUNT";
+    private static final String HTTP_RETRY_AFTER = "Retry-After";
 
     private enum ProcessType {
         signDocument,
@@ -248,24 +249,26 @@ public class GenericProcessServlet extends AbstractProcessServlet {
                         return;
                     }
 
-                    // Special handling of base64 encoded data. Note: no large file support for this
+                    // Special handling of base64 encoded data
                     if (encoding != null && !encoding.isEmpty()) {
-                        // Read in all data and base64 decode it
-                        byte[] bytes = data.getAsByteArray();
-                        if (bytes.length > 0) {
-                            try {
-                                bytes = Base64.decode(bytes);
-                            } catch (DecoderException ex) {
-                                sendBadRequest(res, "Incorrect base64 data");
-                                return;
-                            } finally {
-                                data.close();
-                            }
-                        }
-
-                        // Now put the decoded data
+                        final CloseableReadableData encodedData = data;
                         try {
-                            data = dataFactory.createReadableData(bytes, uploadConfig.getMaxUploadSize(), uploadConfig.getRepository());
+                            if (encodedData.isFile()) {
+                                // Decode directly to a new file so the data is not read into memory
+                                data = DataUtils.decodeBase64ToFile(encodedData.getAsInputStream(), uploadConfig.getRepository());
+                            } else {
+                                // Read in all data and base64 decode it
+                                byte[] bytes = encodedData.getAsByteArray();
+                                if (bytes.length > 0) {
+                                    bytes = Base64.decode(bytes);
+                                }
+
+                                // Now put the decoded data
+                                data = dataFactory.createReadableData(bytes, uploadConfig.getMaxUploadSize(), uploadConfig.getRepository());
+                            }
+                        } catch (DecoderException ex) {
+                            sendBadRequest(res, "Incorrect base64 data");
+                            return;
                         } catch (FileUploadBase.SizeLimitExceededException ex) {
                             LOG.error(HTTP_MAX_UPLOAD_SIZE + " exceeded: " + ex.getLocalizedMessage());
                             res.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
@@ -273,6 +276,10 @@ public class GenericProcessServlet extends AbstractProcessServlet {
                             return;
                         } catch (FileUploadException ex) {
                             throw new ServletException("Upload failed", ex);
+                        } finally {
+                            if (encodedData != data) {
+                                encodedData.close();
+                            }
                         }
                     }
                 } catch (FileUploadBase.SizeLimitExceededException ex) {
@@ -677,6 +684,9 @@ public class GenericProcessServlet extends AbstractProcessServlet {
         } catch (IllegalRequestException e) {
             res.setHeader(X_SIGNSERVER_ERROR_MESSAGE, e.getMessage());
             res.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        } catch (WorkerOverloadedException e) {
+            res.setHeader(HTTP_RETRY_AFTER, String.valueOf(e.getRetryAfter()));
+            res.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
         } catch (CryptoTokenOfflineException | ServiceUnavailableException e) {
             res.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
         } catch (NotGrantedException e) {